@@ -21,6 +21,7 @@ import ru.r2cloud.cloud.SatnogsClient;
 import ru.r2cloud.ddns.DDNSClient;
 import ru.r2cloud.device.Device;
 import ru.r2cloud.device.DeviceManager;
+import ru.r2cloud.device.DiskBudgetPlanner;
 import ru.r2cloud.device.LoraAtDevice;
 import ru.r2cloud.device.LoraDevice;
 import ru.r2cloud.device.SdrDevice;
@@ -32,16 +33,20 @@ import ru.r2cloud.metrics.Metrics;
 import ru.r2cloud.model.DeviceConfiguration;
 import ru.r2cloud.model.SdrType;
 import ru.r2cloud.model.SharedSchedule;
+import ru.r2cloud.predict.PassCache;
 import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.satellite.EphemerisSnapshotService;
 import ru.r2cloud.satellite.IObservationDao;
 import ru.r2cloud.satellite.LoraTransmitterFilter;
 import ru.r2cloud.satellite.ObservationDao;
 import ru.r2cloud.satellite.ObservationDaoCache;
 import ru.r2cloud.satellite.ObservationFactory;
+import ru.r2cloud.satellite.ObservationWatcher;
 import ru.r2cloud.satellite.SatelliteDao;
 import ru.r2cloud.satellite.Schedule;
+import ru.r2cloud.satellite.ScheduleStrategyFactory;
 import ru.r2cloud.satellite.SdrTransmitterFilter;
-import ru.r2cloud.satellite.SequentialTimetable;
+import ru.r2cloud.satellite.TimetableFactory;
 import ru.r2cloud.satellite.decoder.DecoderService;
 import ru.r2cloud.satellite.decoder.Decoders;
 import ru.r2cloud.tle.CelestrakClient;
@@ -60,6 +65,7 @@ import ru.r2cloud.web.Authenticator;
 import ru.r2cloud.web.HttpContoller;
 import ru.r2cloud.web.WebServer;
 import ru.r2cloud.web.api.AccessToken;
+import ru.r2cloud.web.api.EphemerisList;
 import ru.r2cloud.web.api.Health;
 import ru.r2cloud.web.api.PresentationMode;
 import ru.r2cloud.web.api.TLE;
@@ -79,6 +85,7 @@ import ru.r2cloud.web.api.schedule.ScheduleStart;
 import ru.r2cloud.web.api.setup.Restore;
 import ru.r2cloud.web.api.setup.Setup;
 import ru.r2cloud.web.api.status.MetricsController;
+import ru.r2cloud.web.api.status.DiskStatus;
 import ru.r2cloud.web.api.status.Overview;
 
 public class R2Cloud {
@@ -106,6 +113,7 @@ public class R2Cloud {
 	private final ThreadPoolFactory threadFactory;
 	private final ObservationFactory observationFactory;
 	private final ProcessFactory processFactory;
+	private final ObservationDao observationDao;
 	private final IObservationDao resultDao;
 	private final LeoSatDataService leoSatDataService;
 	private final LeoSatDataClient leoSatDataClient;
@@ -114,6 +122,9 @@ public class R2Cloud {
 	private final Decoders decoders;
 	private final SignedURL signed;
 	private final DeviceManager deviceManager;
+	private final DiskBudgetPlanner diskBudgetPlanner;
+	private final ObservationWatcher observationWatcher;
+	private final EphemerisSnapshotService ephemerisService;
 
 	public R2Cloud(Configuration props, Clock clock) {
 		threadFactory = new ThreadPoolFactoryImpl(props.getThreadPoolShutdownMillis());
@@ -128,7 +139,11 @@ public class R2Cloud {
 		leoSatDataClient = new LeoSatDataClient(props, clock);
 		satnogsClient = new SatnogsClient(props, clock);
 		spectogramService = new SpectogramService(props);
-		resultDao = new ObservationDaoCache(new ObservationDao(props));
+		observationDao = new ObservationDao(props);
+		ObservationDaoCache observationCache = new ObservationDaoCache(observationDao, props.getInteger("scheduler.data.cache.maxObservations"));
+		observationDao.setListener(observationCache);
+		observationWatcher = new ObservationWatcher(props, observationDao, observationCache, threadFactory, clock);
+		resultDao = observationCache;
 		leoSatDataService = new LeoSatDataService(props, resultDao, leoSatDataClient, spectogramService);
 		metrics = new Metrics(props, clock);
 		predict = new PredictOreKit(props);
@@ -139,13 +154,15 @@ public class R2Cloud {
 		tleDao = new TleDao(props);
 		signed = new SignedURL(props, clock);
 		decoders = new Decoders(predict, props, processFactory);
-		decoderService = new DecoderService(props, decoders, resultDao, leoSatDataService, threadFactory, metrics, satelliteDao);
+		decoderService = new DecoderService(props, decoders, resultDao, leoSatDataService, threadFactory, metrics, satelliteDao, predict);
 		houseKeeping = new Housekeeping(props, satelliteDao, threadFactory, new CelestrakClient(props), tleDao, satnogsClient, leoSatDataClient, decoderService);
 
-		observationFactory = new ObservationFactory(predict, props);
+		observationFactory = new ObservationFactory(predict, new PassCache(predict, props, metrics), props);
 
-		deviceManager = new DeviceManager(props, satelliteDao, threadFactory, clock);
-		Map<String, SharedSchedule> sharedSchedule = createSharedSchedules(props, observationFactory);
+		deviceManager = new DeviceManager(props, satelliteDao, observationFactory, threadFactory, clock, metrics);
+		houseKeeping.subscribe(deviceManager);
+		ephemerisService = new EphemerisSnapshotService(props, satelliteDao, predict, threadFactory, clock);
+		Map<String, SharedSchedule> sharedSchedule = createSharedSchedules(props, observationFactory, resultDao, clock);
 		for (DeviceConfiguration cur : props.getSdrConfigurations()) {
 			int numberOfConcurrentObservations = 1;
 			if (props.getSdrType().equals(SdrType.SDRSERVER) && cur.getRotatorConfiguration() == null) {
@@ -164,6 +181,8 @@ public class R2Cloud {
 			deviceManager.addDevice(new LoraAtDevice(cur.getId(), new LoraTransmitterFilter(cur), 1, observationFactory, threadFactory, clock, cur, resultDao, decoderService, props, predict, findSharedOrNull(sharedSchedule, cur), client));
 		}
 
+		diskBudgetPlanner = new DiskBudgetPlanner(props, deviceManager, observationDao, threadFactory, metrics, clock);
+
 		// setup web server
 		index(new Health());
 		index(new AccessToken(auth));
@@ -172,6 +191,7 @@ public class R2Cloud {
 		index(new Restore(auth));
 		index(new MetricsController(signed, metrics));
 		index(new Overview(props, deviceManager));
+		index(new DiskStatus(diskBudgetPlanner));
 		index(new General(props, autoUpdate));
 		index(new DDNS(props, ddnsClient));
 		index(new TLE(satelliteDao, tleDao));
@@ -186,16 +206,21 @@ public class R2Cloud {
 		index(new ScheduleComplete(deviceManager));
 		index(new PresentationMode(props, satelliteDao, resultDao, deviceManager));
 		index(new ScheduleFull(deviceManager));
+		index(new EphemerisList(ephemerisService, satelliteDao, deviceManager, clock));
 		webServer = new WebServer(props, controllers, auth, signed);
 	}
 
 	public void start() {
 		ddnsClient.start();
 		decoderService.start();
+		observationWatcher.start();
 		houseKeeping.start();
 		// device manager should start after tle (it uses TLE to schedule
 		// observations)
 		deviceManager.start();
+		// planner uses schedule created by device manager
+		diskBudgetPlanner.start();
+		ephemerisService.start();
 		metrics.start();
 		webServer.start();
 		LOG.info("=================================");
@@ -206,9 +231,15 @@ public class R2Cloud {
 	public void stop() {
 		webServer.stop();
 		metrics.stop();
+		ephemerisService.stop();
+		diskBudgetPlanner.stop();
 		deviceManager.stop();
+		observationFactory.stop();
 		houseKeeping.stop();
 		decoderService.stop();
+		observationWatcher.stop();
+		// decoders and devices might update observations while stopping
+		observationDao.flush();
 		ddnsClient.stop();
 	}
 
@@ -297,7 +328,7 @@ public class R2Cloud {
 		}
 	}
 
-	private static Map<String, SharedSchedule> createSharedSchedules(Configuration props, ObservationFactory factory) {
+	private static Map<String, SharedSchedule> createSharedSchedules(Configuration props, ObservationFactory factory, IObservationDao resultDao, Clock clock) {
 		Map<String, SharedSchedule> temp = new HashMap<>();
 		List<DeviceConfiguration> allDeviceConfigurations = new ArrayList<>();
 		allDeviceConfigurations.addAll(props.getSdrConfigurations());
@@ -314,12 +345,14 @@ public class R2Cloud {
 			}
 			previous.getDevicesIds().add(cur.getId());
 		}
+		TimetableFactory timetableFactory = new TimetableFactory(props);
+		ScheduleStrategyFactory strategyFactory = new ScheduleStrategyFactory(props, resultDao, clock);
 		Map<String, SharedSchedule> result = new HashMap<>();
 		for (Map.Entry<String, SharedSchedule> cur : temp.entrySet()) {
 			if (cur.getValue().getDevicesIds().size() < 2) {
 				continue;
 			}
-			cur.getValue().setSchedule(new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory));
+			cur.getValue().setSchedule(new Schedule(timetableFactory.createSequential(Device.PARTIAL_TOLERANCE_MILLIS), factory, strategyFactory.createSequential()));
 			LOG.info("[{}] using shared rotator for: {}", cur.getKey(), cur.getValue().getDevicesIds());
 			result.put(cur.getKey(), cur.getValue());
 		}
@@ -4,14 +4,18 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.orekit.frames.TopocentricFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,20 +30,25 @@ import ru.r2cloud.model.Observation;
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.ObservationStatus;
 import ru.r2cloud.model.RotatorStatus;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.model.ScheduleSnapshot;
+import ru.r2cloud.model.Tle;
 import ru.r2cloud.model.Transmitter;
 import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.satellite.IObservationDao;
 import ru.r2cloud.satellite.ObservationFactory;
 import ru.r2cloud.satellite.ObservationRequestComparator;
-import ru.r2cloud.satellite.OverlappedTimetable;
 import ru.r2cloud.satellite.RotatorService;
 import ru.r2cloud.satellite.Schedule;
+import ru.r2cloud.satellite.ScheduleSnapshotDao;
+import ru.r2cloud.satellite.ScheduleStrategyFactory;
 import ru.r2cloud.satellite.ScheduledObservation;
-import ru.r2cloud.satellite.SequentialTimetable;
+import ru.r2cloud.satellite.TimetableFactory;
 import ru.r2cloud.satellite.TransmitterFilter;
 import ru.r2cloud.satellite.decoder.DecoderService;
 import ru.r2cloud.satellite.reader.IQReader;
 import ru.r2cloud.util.Clock;
+import ru.r2cloud.util.Configuration;
 import ru.r2cloud.util.NamingThreadFactory;
 import ru.r2cloud.util.SafeRunnable;
 import ru.r2cloud.util.ThreadPoolFactory;
@@ -62,14 +71,19 @@ public abstract class Device implements Lifecycle {
 	private final IObservationDao observationDao;
 	private final DecoderService decoderService;
 	private final DeviceConfiguration deviceConfiguration;
+	private final PredictOreKit predict;
+	private final Configuration config;
+	private final ScheduleSnapshotDao snapshotDao;
+	private final List<ObservationRequest> freed = new ArrayList<>();
 
 	private Long currentBandFrequency = null;
 	private int numberOfObservationsOnCurrentBand = 0;
 	private ScheduledExecutorService startThread = null;
 	private ScheduledExecutorService stopThread = null;
+	private boolean transmittersRemoved = false;
 
 	protected Device(String id, TransmitterFilter filter, int numberOfConcurrentObservations, ObservationFactory observationFactory, ThreadPoolFactory threadpoolFactory, Clock clock, DeviceConfiguration deviceConfiguration, IObservationDao observationDao, DecoderService decoderService,
-			PredictOreKit predict, Schedule schedule) {
+			PredictOreKit predict, Schedule schedule, Configuration config) {
 		this.id = id;
 		this.filter = filter;
 		this.numberOfConcurrentObservations = numberOfConcurrentObservations;
@@ -83,13 +97,18 @@ public abstract class Device implements Lifecycle {
 		this.observationDao = observationDao;
 		this.decoderService = decoderService;
 		this.deviceConfiguration = deviceConfiguration;
+		this.predict = predict;
+		this.config = config;
+		this.snapshotDao = new ScheduleSnapshotDao(config);
 		if (schedule != null) {
 			this.schedule = schedule;
 		} else {
+			TimetableFactory timetableFactory = new TimetableFactory(config);
+			ScheduleStrategyFactory strategyFactory = new ScheduleStrategyFactory(config, observationDao, clock);
 			if (numberOfConcurrentObservations == 1) {
-				this.schedule = new Schedule(new SequentialTimetable(PARTIAL_TOLERANCE_MILLIS), observationFactory);
+				this.schedule = new Schedule(timetableFactory.createSequential(PARTIAL_TOLERANCE_MILLIS), observationFactory, strategyFactory.createSequential());
 			} else {
-				this.schedule = new Schedule(new OverlappedTimetable(PARTIAL_TOLERANCE_MILLIS), observationFactory);
+				this.schedule = new Schedule(timetableFactory.createOverlapped(PARTIAL_TOLERANCE_MILLIS), observationFactory, strategyFactory.createOverlapped());
 			}
 		}
 	}
@@ -187,7 +206,6 @@ public abstract class Device implements Lifecycle {
 				if (dataFile == null) {
 					return;
 				}
-
 				synchronized (Device.this) {
 					if (startThread == null) {
 						return;
@@ -220,7 +238,7 @@ public abstract class Device implements Lifecycle {
 		}
 	}
 
-	public void reschedule() {
+	public void reschedule(long current) {
 		synchronized (sdrServerLock) {
 			currentBandFrequency = null;
 			numberOfObservationsOnCurrentBand = 0;
@@ -230,19 +248,167 @@ public abstract class Device implements Lifecycle {
 				LOG.info("[{}] no available satellites for this device", id);
 				return;
 			}
-			long current = clock.millis();
-			List<ObservationRequest> newSchedule = schedule.createInitialSchedule(scheduledTransmitters, current);
-			for (ObservationRequest cur : newSchedule) {
-				Transmitter fullSatelliteInfo = findById(cur.getTransmitterId());
-				if (fullSatelliteInfo == null) {
-					LOG.error("unable to find full transmitter info for schedule observation: {}", cur.getId());
-					continue;
-				}
-				schedule(cur, fullSatelliteInfo);
-			}
+			scheduleObservations(schedule.createInitialSchedule(scheduledTransmitters, current));
 			if (numberOfConcurrentObservations > 1) {
 				logBandsForSdrServer(scheduledTransmitters);
 			}
+			saveSnapshot();
+		}
+	}
+
+	/**
+	 * Restore previously saved schedule and arm observations immediately.
+	 * 
+	 * @return transmitters which should be predicted again or null if the saved
+	 *         schedule cannot be used
+	 */
+	public synchronized List<Transmitter> restoreSchedule() {
+		if (scheduledTransmitters.isEmpty()) {
+			return null;
+		}
+		ScheduleSnapshot snapshot = snapshotDao.load(id);
+		if (snapshot == null) {
+			return null;
+		}
+		Double lat = config.getDouble("locaiton.lat");
+		Double lon = config.getDouble("locaiton.lon");
+		TopocentricFrame position = predict.getPosition();
+		if (lat == null || lon == null || position == null) {
+			return null;
+		}
+		if (Double.compare(lat, snapshot.getLatitude()) != 0 || Double.compare(lon, snapshot.getLongitude()) != 0 || Double.compare(predict.getMinElevation(), snapshot.getMinElevation()) != 0 || Double.compare(predict.getGuaranteedElevation(), snapshot.getGuaranteedElevation()) != 0) {
+			LOG.info("[{}] ground station has changed. saved schedule is ignored", id);
+			return null;
+		}
+		long current = clock.millis();
+		List<Transmitter> valid = new ArrayList<>();
+		List<Transmitter> stale = new ArrayList<>();
+		for (Transmitter cur : scheduledTransmitters) {
+			Tle tle = snapshot.getTleByTransmitterId().get(cur.getId());
+			Long until = snapshot.getScheduledUntilByTransmitterId().get(cur.getId());
+			if (tle == null || until == null || until <= current || !isSameOrbit(tle, cur.getTle())) {
+				stale.add(cur);
+			} else {
+				valid.add(cur);
+			}
+		}
+		if (valid.isEmpty()) {
+			return null;
+		}
+		for (ObservationRequest cur : snapshot.getObservations()) {
+			Transmitter transmitter = findById(cur.getTransmitterId());
+			if (transmitter == null) {
+				continue;
+			}
+			cur.setTle(transmitter.getTle());
+			cur.setGroundStation(position.getPoint());
+		}
+		List<ObservationRequest> restored = schedule.restore(valid, snapshot, current);
+		scheduleObservations(restored);
+		LOG.info("[{}] restored observations: {} transmitters to predict: {}", id, restored.size(), stale.size());
+		return stale;
+	}
+
+	/**
+	 * @return the earliest time when the schedule should be predicted again or
+	 *         null if nothing is scheduled
+	 */
+	public synchronized Long getScheduledUntil() {
+		return schedule.findScheduledUntil(scheduledTransmitters);
+	}
+
+	private static boolean isSameOrbit(Tle saved, Tle current) {
+		if (current == null || saved.getRaw().length < 3 || current.getRaw().length < 3) {
+			return false;
+		}
+		// name might change
+		return Objects.equals(saved.getRaw()[1], current.getRaw()[1]) && Objects.equals(saved.getRaw()[2], current.getRaw()[2]);
+	}
+
+	private synchronized void saveSnapshot() {
+		if (!snapshotDao.isEnabled()) {
+			return;
+		}
+		Double lat = config.getDouble("locaiton.lat");
+		Double lon = config.getDouble("locaiton.lon");
+		if (lat == null || lon == null) {
+			return;
+		}
+		ScheduleSnapshot snapshot = new ScheduleSnapshot();
+		snapshot.setCreatedMillis(clock.millis());
+		snapshot.setLatitude(lat);
+		snapshot.setLongitude(lon);
+		snapshot.setMinElevation(predict.getMinElevation());
+		snapshot.setGuaranteedElevation(predict.getGuaranteedElevation());
+		schedule.exportTo(scheduledTransmitters, snapshot);
+		snapshotDao.save(id, snapshot);
+	}
+
+	public synchronized void extendSchedule(long until) {
+		if (scheduledTransmitters.isEmpty()) {
+			return;
+		}
+		List<ObservationRequest> newObservations = schedule.extendSchedule(scheduledTransmitters, clock.millis(), until);
+		scheduleObservations(newObservations);
+		saveSnapshot();
+		LOG.info("[{}] schedule extended till {}. new observations: {}", id, new Date(until), newObservations.size());
+	}
+
+	public synchronized void updateTle(List<Satellite> updated, long current) {
+		Map<String, Transmitter> updatedById = new HashMap<>();
+		for (Satellite cur : updated) {
+			for (Transmitter curTransmitter : cur.getTransmitters()) {
+				updatedById.put(curTransmitter.getId(), curTransmitter);
+			}
+		}
+		List<Transmitter> affected = new ArrayList<>();
+		for (int i = 0; i < scheduledTransmitters.size(); i++) {
+			Transmitter cur = updatedById.get(scheduledTransmitters.get(i).getId());
+			if (cur == null) {
+				continue;
+			}
+			// satellites might be re-created on reload
+			scheduledTransmitters.set(i, cur);
+			affected.add(cur);
+		}
+		if (affected.isEmpty()) {
+			return;
+		}
+		List<ObservationRequest> newObservations = schedule.repredict(affected, current);
+		scheduleObservations(newObservations);
+		saveSnapshot();
+		LOG.info("[{}] tle updated for transmitters: {} new observations: {}", id, affected.size(), newObservations.size());
+	}
+
+	/**
+	 * Predict passes for the transmitters which could not be restored
+	 */
+	public synchronized void repredict(List<Transmitter> transmitters, long current) {
+		List<Transmitter> affected = new ArrayList<>();
+		for (Transmitter cur : transmitters) {
+			// might be disabled meanwhile
+			Transmitter scheduled = findById(cur.getId());
+			if (scheduled != null) {
+				affected.add(scheduled);
+			}
+		}
+		if (affected.isEmpty()) {
+			return;
+		}
+		List<ObservationRequest> newObservations = schedule.repredict(affected, current);
+		scheduleObservations(newObservations);
+		saveSnapshot();
+		LOG.info("[{}] predicted transmitters: {} new observations: {}", id, affected.size(), newObservations.size());
+	}
+
+	private void scheduleObservations(List<ObservationRequest> newSchedule) {
+		for (ObservationRequest cur : newSchedule) {
+			Transmitter fullSatelliteInfo = findById(cur.getTransmitterId());
+			if (fullSatelliteInfo == null) {
+				LOG.error("unable to find full transmitter info for schedule observation: {}", cur.getId());
+				continue;
+			}
+			schedule(cur, fullSatelliteInfo);
 		}
 	}
 
@@ -338,6 +504,7 @@ public abstract class Device implements Lifecycle {
 			for (ObservationRequest cur : batch) {
 				schedule(cur, transmitter);
 			}
+			saveSnapshot();
 		}
 
 		// return first
@@ -345,19 +512,73 @@ public abstract class Device implements Lifecycle {
 		return batch.get(0);
 	}
 
+	/**
+	 * @return observations sorted by start time
+	 */
 	public List<ObservationRequest> findScheduledObservations() {
-		List<ObservationRequest> result = new ArrayList<>();
+		// schedule can be shared. thus containing observations from different
+		// transmitters
+		Set<String> transmitterIds = new HashSet<>();
 		for (Transmitter cur : scheduledTransmitters) {
-			result.addAll(schedule.getByTransmitterId(cur.getId()));
+			transmitterIds.add(cur.getId());
+		}
+		List<ObservationRequest> result = new ArrayList<>();
+		for (ObservationRequest cur : schedule.findAll()) {
+			if (transmitterIds.contains(cur.getTransmitterId())) {
+				result.add(cur);
+			}
 		}
 		return result;
 	}
 
+	/**
+	 * @return the next observation of every transmitter sorted by start time.
+	 *         Might contain observations of other devices if schedule is shared
+	 */
+	public List<ObservationRequest> findFirstObservations(int limit) {
+		return schedule.findFirstObservations(clock.millis(), limit);
+	}
+
 	public synchronized void disableTransmitter(Transmitter transmitter) {
-		if (removeTransmitter(transmitter.getId())) {
-			reschedule();
-			LOG.info("[{}] rescheduled", id);
+		if (removeTransmitters(Collections.singletonList(transmitter))) {
+			fillFreedSlots(clock.millis());
+		}
+	}
+
+	/**
+	 * Cancel observations of the transmitters immediately. Freed slots are
+	 * filled by {@link #fillFreedSlots(long)}, so any number of transmitters can
+	 * be disabled with a single schedule update
+	 * 
+	 * @return true if at least one transmitter was scheduled on this device
+	 */
+	public synchronized boolean removeTransmitters(List<Transmitter> transmitters) {
+		boolean removed = false;
+		for (Transmitter cur : transmitters) {
+			if (!removeTransmitter(cur.getId())) {
+				continue;
+			}
+			removed = true;
+			freed.addAll(schedule.getByTransmitterId(cur.getId()));
+			schedule.cancelByTransmitter(cur.getId());
+		}
+		if (removed) {
+			transmittersRemoved = true;
+		}
+		return removed;
+	}
+
+	// keep the rest of the schedule and fill only the freed slots
+	public synchronized void fillFreedSlots(long current) {
+		if (!transmittersRemoved) {
+			return;
 		}
+		List<ObservationRequest> newObservations = schedule.fillGaps(scheduledTransmitters, freed, current);
+		scheduleObservations(newObservations);
+		saveSnapshot();
+		LOG.info("[{}] cancelled observations: {} new observations: {}", id, freed.size(), newObservations.size());
+		freed.clear();
+		transmittersRemoved = false;
 	}
 
 	private Transmitter findById(String id) {
@@ -374,6 +595,9 @@ public abstract class Device implements Lifecycle {
 			schedule.cancelByTransmitter(cur.getId());
 		}
 		scheduledTransmitters.clear();
+		// full reschedule will follow
+		freed.clear();
+		transmittersRemoved = false;
 	}
 
 	private boolean removeTransmitter(String id) {
@@ -390,6 +614,18 @@ public abstract class Device implements Lifecycle {
 		return removed;
 	}
 
+	public String getId() {
+		return id;
+	}
+
+	public TransmitterFilter getFilter() {
+		return filter;
+	}
+
+	public int getNumberOfConcurrentObservations() {
+		return numberOfConcurrentObservations;
+	}
+
 	public DeviceStatus getStatus() {
 		DeviceStatus result = new DeviceStatus();
 		result.setConfig(deviceConfiguration);
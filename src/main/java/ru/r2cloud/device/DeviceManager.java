@@ -3,22 +3,36 @@ package ru.r2cloud.device;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry.MetricSupplier;
+import com.codahale.metrics.Timer;
+
 import ru.r2cloud.Lifecycle;
+import ru.r2cloud.metrics.FormattedGauge;
+import ru.r2cloud.metrics.MetricFormat;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.DeviceConnectionStatus;
 import ru.r2cloud.model.DeviceStatus;
 import ru.r2cloud.model.DeviceStatusComparator;
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.Satellite;
 import ru.r2cloud.model.Transmitter;
 import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.satellite.ObservationFactory;
 import ru.r2cloud.satellite.ObservationRequestComparator;
 import ru.r2cloud.satellite.SatelliteDao;
+import ru.r2cloud.satellite.TransmitterFilter;
+import ru.r2cloud.tle.TleListener;
 import ru.r2cloud.util.Clock;
 import ru.r2cloud.util.ConfigListener;
 import ru.r2cloud.util.Configuration;
@@ -27,30 +41,75 @@ import ru.r2cloud.util.SafeRunnable;
 import ru.r2cloud.util.ThreadPoolFactory;
 import ru.r2cloud.util.Util;
 
-public class DeviceManager implements Lifecycle, ConfigListener {
+public class DeviceManager implements Lifecycle, ConfigListener, TleListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(DeviceManager.class);
+    private static final long PREDICT_INTERVAL_MILLIS = (long) (PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000);
 
     private final Configuration config;
     private final SatelliteDao dao;
+    private final ObservationFactory factory;
+    private final Metrics metrics;
     private final ThreadPoolFactory threadpoolFactory;
     private final List<Device> devices = new ArrayList<>();
     private final Clock clock;
+    private final Timer rescheduleTimer;
+    private final Timer extendTimer;
+    private final boolean rollingHorizon;
+    private final long rollingPeriodMillis;
+    private final boolean balanced;
+    private final long rescheduleDebounceMillis;
     private ScheduledExecutorService rescheduleThread = null;
+    private ScheduledFuture<?> fillFreedSlots = null;
 
     private int currentDevice = 0;
 
-    public DeviceManager(Configuration config, SatelliteDao dao, ThreadPoolFactory threadpoolFactory, Clock clock) {
+    public DeviceManager(Configuration config, SatelliteDao dao, ObservationFactory factory, ThreadPoolFactory threadpoolFactory, Clock clock, Metrics metrics) {
         this.dao = dao;
+        this.factory = factory;
+        this.metrics = metrics;
         this.config = config;
         this.threadpoolFactory = threadpoolFactory;
         this.clock = clock;
+        this.rescheduleTimer = metrics.getRegistry().timer("reschedule");
+        this.extendTimer = metrics.getRegistry().timer("reschedule-extend");
+        this.rollingHorizon = config.getBoolean("scheduler.rolling.enabled");
+        this.rollingPeriodMillis = config.getLong("scheduler.rolling.periodMillis");
+        this.balanced = "balanced".equalsIgnoreCase(config.getProperty("scheduler.assignment"));
+        this.rescheduleDebounceMillis = config.getLong("scheduler.reschedule.debounceMillis");
         this.config.subscribe(this, "locaiton.lat");
         this.config.subscribe(this, "locaiton.lon");
     }
 
     public void addDevice(Device device) {
         this.devices.add(device);
+        metrics.getRegistry().gauge("utilization-" + device.getId(), new MetricSupplier<>() {
+            @Override
+            public Gauge<Double> newMetric() {
+                return new FormattedGauge<Double>(MetricFormat.NORMAL) {
+
+                    @Override
+                    public Double getValue() {
+                        return getUtilization(device, clock.millis());
+                    }
+                };
+            }
+        });
+        if (device.getStatus().getRotatorStatus().getStatus() != DeviceConnectionStatus.DISABLED) {
+            // degrees between the rotator and the satellite during the pass
+            metrics.getRegistry().gauge("rotator-pointing-error-" + device.getId(), new MetricSupplier<>() {
+                @Override
+                public Gauge<Double> newMetric() {
+                    return new FormattedGauge<Double>(MetricFormat.NORMAL) {
+
+                        @Override
+                        public Double getValue() {
+                            return device.getStatus().getRotatorStatus().getPointingError();
+                        }
+                    };
+                }
+            });
+        }
     }
 
     @Override
@@ -59,41 +118,236 @@ public class DeviceManager implements Lifecycle, ConfigListener {
             devices.get(i).start();
         }
         rescheduleThread = threadpoolFactory.newScheduledThreadPool(1, new NamingThreadFactory("re-schedule"));
-        reschedule();
+        long current = clock.millis();
+        assignTransmitters(current);
+        if (!restore(current)) {
+            reschedule(current);
+        }
     }
 
-    private void reschedule() {
+    // arm saved observations first and predict the rest in background
+    private boolean restore(long current) {
+        List<Device> notRestored = new ArrayList<>();
+        Map<Device, List<Transmitter>> staleByDevice = new HashMap<>();
         for (int i = 0; i < devices.size(); i++) {
-            devices.get(i).removeAllTransmitters();
+            Device device = devices.get(i);
+            List<Transmitter> stale = device.restoreSchedule();
+            if (stale == null) {
+                notRestored.add(device);
+                continue;
+            }
+            staleByDevice.put(device, stale);
         }
-        List<Satellite> all = dao.findEnabled();
-        for (Satellite cur : all) {
-            for (Transmitter curTransmitter : cur.getTransmitters()) {
-                for (int i = 0; i < devices.size(); i++) {
-                    if (next().tryTransmitter(curTransmitter)) {
-                        break;
+        if (staleByDevice.isEmpty()) {
+            return false;
+        }
+        for (Device cur : notRestored) {
+            cur.reschedule(current);
+        }
+        logUtilization();
+        synchronized (this) {
+            if (rescheduleThread == null) {
+                return true;
+            }
+            rescheduleThread.submit(new SafeRunnable() {
+
+                @Override
+                public void safeRun() {
+                    // same window for all devices
+                    long repredictCurrent = clock.millis();
+                    for (Map.Entry<Device, List<Transmitter>> cur : staleByDevice.entrySet()) {
+                        if (cur.getValue().isEmpty()) {
+                            continue;
+                        }
+                        cur.getKey().repredict(cur.getValue(), repredictCurrent);
                     }
                 }
-            }
+            });
         }
+        // the next full reschedule when the first restored schedule ends
+        long next = current + (long) PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000;
         for (int i = 0; i < devices.size(); i++) {
-            devices.get(i).reschedule();
+            Long until = devices.get(i).getScheduledUntil();
+            if (until != null && until < next) {
+                next = until;
+            }
+        }
+        scheduleNext(Math.max(0, next - current));
+        return true;
+    }
+
+    private void reassignAndReschedule() {
+        long current = clock.millis();
+        assignTransmitters(current);
+        reschedule(current);
+    }
+
+    // all devices use the same window and share predictions via PassCache
+    private void reschedule(long current) {
+        Timer.Context timer = rescheduleTimer.time();
+        try {
+            for (int i = 0; i < devices.size(); i++) {
+                devices.get(i).reschedule(current);
+            }
+        } finally {
+            long took = timer.stop();
+            LOG.info("reschedule took {}ms", TimeUnit.NANOSECONDS.toMillis(took));
         }
-        long period = (long) PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000;
-        LOG.info("observations scheduled. next update at: {}", new Date(clock.millis() + period));
+        logUtilization();
+        scheduleNext((long) PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000);
+    }
+
+    private void scheduleNext(long periodMillis) {
+        if (rollingHorizon) {
+            LOG.info("observations scheduled. next extension at: {}", new Date(clock.millis() + rollingPeriodMillis));
+            synchronized (this) {
+                if (rescheduleThread == null) {
+                    return;
+                }
+                rescheduleThread.scheduleAtFixedRate(new SafeRunnable() {
+
+                    @Override
+                    public void safeRun() {
+                        extend();
+                    }
+                }, rollingPeriodMillis, rollingPeriodMillis, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        LOG.info("observations scheduled. next update at: {}", new Date(clock.millis() + periodMillis));
         synchronized (this) {
+            if (rescheduleThread == null) {
+                return;
+            }
             rescheduleThread.schedule(new SafeRunnable() {
 
                 @Override
                 public void safeRun() {
                     LOG.info("reschedule observations");
-                    reschedule();
+                    reassignAndReschedule();
                 }
-            }, period, TimeUnit.MILLISECONDS);
+            }, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // move the horizon forward without touching already scheduled observations
+    private void extend() {
+        long until = clock.millis() + (long) PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000;
+        Timer.Context timer = extendTimer.time();
+        try {
+            for (int i = 0; i < devices.size(); i++) {
+                devices.get(i).extendSchedule(until);
+            }
+        } finally {
+            long took = timer.stop();
+            LOG.info("schedule extension took {}ms", TimeUnit.NANOSECONDS.toMillis(took));
+        }
+    }
+
+    private void assignTransmitters(long current) {
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).removeAllTransmitters();
+        }
+        List<Transmitter> all = new ArrayList<>();
+        for (Satellite cur : dao.findEnabled()) {
+            all.addAll(cur.getTransmitters());
+        }
+        if (balanced && devices.size() > 1) {
+            assignBalanced(all, current);
+            return;
+        }
+        for (Transmitter curTransmitter : all) {
+            for (int i = 0; i < devices.size(); i++) {
+                if (next().tryTransmitter(curTransmitter)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // predicted passes are cached, so devices rescheduled with the same
+    // current time will get them for free
+    private void assignBalanced(List<Transmitter> all, long current) {
+        Map<String, List<ObservationRequest>> passes = factory.createSchedule(new Date(current), all);
+        Map<String, Long> busyMillisByTransmitterId = new HashMap<>();
+        for (Map.Entry<String, List<ObservationRequest>> cur : passes.entrySet()) {
+            long busyMillis = 0;
+            for (ObservationRequest curPass : cur.getValue()) {
+                busyMillis += curPass.getEndTimeMillis() - curPass.getStartTimeMillis();
+            }
+            busyMillisByTransmitterId.put(cur.getKey(), busyMillis);
+        }
+        List<TransmitterFilter> filters = new ArrayList<>(devices.size());
+        int[] capacity = new int[devices.size()];
+        for (int i = 0; i < devices.size(); i++) {
+            filters.add(devices.get(i).getFilter());
+            capacity[i] = devices.get(i).getNumberOfConcurrentObservations();
+        }
+        LoadBalancer balancer = new LoadBalancer(filters, capacity);
+        balancer.assign(all, busyMillisByTransmitterId);
+        for (int i = 0; i < devices.size(); i++) {
+            Device device = devices.get(i);
+            for (Transmitter cur : balancer.getAssigned(i)) {
+                device.tryTransmitter(cur);
+            }
+            LOG.info("[{}] assigned transmitters: {} expected busy: {}%", device.getId(), balancer.getAssigned(i).size(), String.format("%.1f", 100.0 * balancer.getBusyMillis(i) / (PREDICT_INTERVAL_MILLIS * capacity[i])));
+        }
+    }
+
+    private void logUtilization() {
+        long current = clock.millis();
+        for (int i = 0; i < devices.size(); i++) {
+            Device device = devices.get(i);
+            LOG.info("[{}] scheduled utilization: {}%", device.getId(), String.format("%.1f", getUtilization(device, current)));
         }
     }
 
-    public ObservationRequest enableSatellite(Satellite satellite) {
+    /**
+     * @return percent of the device time reserved for observations within the
+     *         next prediction interval
+     */
+    private static double getUtilization(Device device, long current) {
+        long end = current + PREDICT_INTERVAL_MILLIS;
+        long busyMillis = 0;
+        for (ObservationRequest cur : device.findScheduledObservations()) {
+            long start = Math.max(current, cur.getStartTimeMillis());
+            long stop = Math.min(end, cur.getEndTimeMillis());
+            if (stop > start) {
+                busyMillis += stop - start;
+            }
+        }
+        return 100.0 * busyMillis / (PREDICT_INTERVAL_MILLIS * device.getNumberOfConcurrentObservations());
+    }
+
+    @Override
+    public void onTleUpdated(List<Satellite> updated) {
+        synchronized (this) {
+            // everything will be scheduled on start
+            if (rescheduleThread == null) {
+                return;
+            }
+        }
+        long current = clock.millis();
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).updateTle(updated, current);
+        }
+    }
+
+    /**
+     * @return the next observation by satellite id
+     */
+    public Map<String, ObservationRequest> enableSatellites(List<Satellite> satellites) {
+        Map<String, ObservationRequest> result = new HashMap<>();
+        for (Satellite cur : satellites) {
+            ObservationRequest next = enableSatellite(cur);
+            if (next != null) {
+                result.put(cur.getId(), next);
+            }
+        }
+        return result;
+    }
+
+    private ObservationRequest enableSatellite(Satellite satellite) {
         LOG.info("satellite {} enabled", satellite);
         ObservationRequest result = null;
         for (int i = 0; i < devices.size(); i++) {
@@ -109,13 +363,49 @@ public class DeviceManager implements Lifecycle, ConfigListener {
         return result;
     }
 
-    public void disableSatellite(Satellite satelliteToEdit) {
-        LOG.info("satellite {} disabled. reschedule", satelliteToEdit.getId());
+    /**
+     * Observations of the satellites are cancelled immediately. Freed slots
+     * are filled once the changes stop coming for
+     * scheduler.reschedule.debounceMillis
+     */
+    public void disableSatellites(List<Satellite> satellites) {
+        List<Transmitter> transmitters = new ArrayList<>();
+        for (Satellite cur : satellites) {
+            LOG.info("satellite {} disabled", cur.getId());
+            transmitters.addAll(cur.getTransmitters());
+        }
+        boolean removed = false;
         for (int i = 0; i < devices.size(); i++) {
-            for (Transmitter curTransmitter : satelliteToEdit.getTransmitters()) {
-                devices.get(i).disableTransmitter(curTransmitter);
+            if (devices.get(i).removeTransmitters(transmitters)) {
+                removed = true;
+            }
+        }
+        if (!removed) {
+            return;
+        }
+        synchronized (this) {
+            if (rescheduleThread != null) {
+                if (fillFreedSlots != null) {
+                    fillFreedSlots.cancel(false);
+                }
+                fillFreedSlots = rescheduleThread.schedule(new SafeRunnable() {
+
+                    @Override
+                    public void safeRun() {
+                        fillFreedSlots();
+                    }
+                }, rescheduleDebounceMillis, TimeUnit.MILLISECONDS);
+                return;
             }
         }
+        fillFreedSlots();
+    }
+
+    private void fillFreedSlots() {
+        long current = clock.millis();
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).fillFreedSlots(current);
+        }
     }
 
     private Device next() {
@@ -163,15 +453,62 @@ public class DeviceManager implements Lifecycle, ConfigListener {
     public List<ObservationRequest> findScheduledObservations() {
         List<ObservationRequest> result = new ArrayList<>();
         for (int i = 0; i < devices.size(); i++) {
-            result.addAll(devices.get(i).findScheduledObservations());
+            // each device returns sorted observations
+            result = merge(result, devices.get(i).findScheduledObservations());
         }
+        return result;
+    }
+
+    /**
+     * @return the next observation of every transmitter sorted by start time
+     */
+    public List<ObservationRequest> findFirstObservations(int limit) {
+        Map<String, ObservationRequest> firstByTransmitterId = new HashMap<>();
+        for (int i = 0; i < devices.size(); i++) {
+            for (ObservationRequest cur : devices.get(i).findFirstObservations(limit)) {
+                ObservationRequest previous = firstByTransmitterId.get(cur.getTransmitterId());
+                if (previous == null || previous.getStartTimeMillis() > cur.getStartTimeMillis()) {
+                    firstByTransmitterId.put(cur.getTransmitterId(), cur);
+                }
+            }
+        }
+        List<ObservationRequest> result = new ArrayList<>(firstByTransmitterId.values());
         Collections.sort(result, ObservationRequestComparator.INSTANCE);
+        if (result.size() > limit) {
+            return new ArrayList<>(result.subList(0, limit));
+        }
+        return result;
+    }
+
+    private static List<ObservationRequest> merge(List<ObservationRequest> first, List<ObservationRequest> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<ObservationRequest> result = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (ObservationRequestComparator.INSTANCE.compare(first.get(i), second.get(j)) <= 0) {
+                result.add(first.get(i++));
+            } else {
+                result.add(second.get(j++));
+            }
+        }
+        result.addAll(first.subList(i, first.size()));
+        result.addAll(second.subList(j, second.size()));
         return result;
     }
 
     @Override
     public void stop() {
         Util.shutdown(rescheduleThread, config.getThreadPoolShutdownMillis());
+        synchronized (this) {
+            rescheduleThread = null;
+            fillFreedSlots = null;
+        }
         for (int i = 0; i < devices.size(); i++) {
             devices.get(i).stop();
         }
@@ -0,0 +1,201 @@
+package ru.r2cloud.device;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry.MetricSupplier;
+
+import ru.r2cloud.Lifecycle;
+import ru.r2cloud.metrics.FormattedGauge;
+import ru.r2cloud.metrics.MetricFormat;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.DiskBudget;
+import ru.r2cloud.model.DiskReservation;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.satellite.ObservationDao;
+import ru.r2cloud.util.Clock;
+import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.NamingThreadFactory;
+import ru.r2cloud.util.SafeRunnable;
+import ru.r2cloud.util.ThreadPoolFactory;
+import ru.r2cloud.util.Util;
+
+/**
+ * Estimates raw data size of the scheduled observations and frees disk space
+ * before they start. Raw files are assumed to be uncompressed, so the estimate
+ * is an upper bound
+ */
+public class DiskBudgetPlanner implements Lifecycle {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DiskBudgetPlanner.class);
+
+	private final Configuration config;
+	private final DeviceManager deviceManager;
+	private final ObservationDao dao;
+	private final ThreadPoolFactory threadpoolFactory;
+	private final Metrics metrics;
+	private final Clock clock;
+
+	private ScheduledExecutorService executor = null;
+	private volatile DiskBudget budget = null;
+
+	public DiskBudgetPlanner(Configuration config, DeviceManager deviceManager, ObservationDao dao, ThreadPoolFactory threadpoolFactory, Metrics metrics, Clock clock) {
+		this.config = config;
+		this.deviceManager = deviceManager;
+		this.dao = dao;
+		this.threadpoolFactory = threadpoolFactory;
+		this.metrics = metrics;
+		this.clock = clock;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		metrics.getRegistry().gauge("disk-reserved", new MetricSupplier<>() {
+			@Override
+			public Gauge<Long> newMetric() {
+				return new FormattedGauge<Long>(MetricFormat.BYTES) {
+
+					@Override
+					public Long getValue() {
+						DiskBudget current = budget;
+						if (current == null) {
+							return null;
+						}
+						return current.getReservedBytes();
+					}
+				};
+			}
+		});
+		metrics.getRegistry().gauge("disk-projected-free", new MetricSupplier<>() {
+			@Override
+			public Gauge<Long> newMetric() {
+				return new FormattedGauge<Long>(MetricFormat.BYTES) {
+
+					@Override
+					public Long getValue() {
+						DiskBudget current = budget;
+						if (current == null) {
+							return null;
+						}
+						return current.getProjectedFreeBytes();
+					}
+				};
+			}
+		});
+		long periodMillis = config.getLong("scheduler.data.planner.periodMillis");
+		executor = threadpoolFactory.newScheduledThreadPool(1, new NamingThreadFactory("disk-planner"));
+		executor.scheduleAtFixedRate(new SafeRunnable() {
+
+			@Override
+			public void safeRun() {
+				plan();
+			}
+		}, 0, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public DiskBudget plan() {
+		long current = clock.millis();
+		long horizonMillis = TimeUnit.HOURS.toMillis(config.getLong("scheduler.data.planner.horizonHours"));
+		List<DiskReservation> reservations = new ArrayList<>();
+		long reservedBytes = 0;
+		for (ObservationRequest cur : deviceManager.findScheduledObservations()) {
+			if (cur.getEndTimeMillis() < current || cur.getStartTimeMillis() > current + horizonMillis) {
+				continue;
+			}
+			long bytes = estimateBytes(cur, current);
+			if (bytes <= 0) {
+				continue;
+			}
+			DiskReservation reservation = new DiskReservation();
+			reservation.setObservationId(cur.getId());
+			reservation.setSatelliteId(cur.getSatelliteId());
+			reservation.setStartTimeMillis(cur.getStartTimeMillis());
+			reservation.setBytes(bytes);
+			reservations.add(reservation);
+			reservedBytes += bytes;
+		}
+
+		DiskBudget result = new DiskBudget();
+		result.setCalculatedTimeMillis(current);
+		result.setHorizonMillis(horizonMillis);
+		result.setReservations(reservations);
+		result.setReservedBytes(reservedBytes);
+		Long freeBytes = getUsableSpace();
+		long shortageBytes = 0;
+		if (freeBytes != null) {
+			result.setFreeBytes(freeBytes);
+			result.setProjectedFreeBytes(freeBytes - reservedBytes);
+			shortageBytes = Math.max(0, reservedBytes - freeBytes);
+		}
+		LOG.info("{} observations within {} hours require {}Mb. free: {}Mb", reservations.size(), TimeUnit.MILLISECONDS.toHours(horizonMillis), reservedBytes / 1024 / 1024, freeBytes != null ? freeBytes / 1024 / 1024 : "unknown");
+		dao.reserve(reservedBytes, shortageBytes);
+		budget = result;
+		return result;
+	}
+
+	public DiskBudget getBudget() {
+		return budget;
+	}
+
+	private Long getUsableSpace() {
+		Path basepath = config.getSatellitesBasePath();
+		if (!Files.exists(basepath)) {
+			return null;
+		}
+		try {
+			return Files.getFileStore(basepath).getUsableSpace();
+		} catch (IOException e) {
+			LOG.error("unable to get usable space: {}", basepath, e);
+			return null;
+		}
+	}
+
+	static long estimateBytes(ObservationRequest req, long current) {
+		if (req.getSdrType() == null) {
+			return 0;
+		}
+		int bytesPerSample;
+		switch (req.getSdrType()) {
+		case RTLSDR:
+			// 8bit I and Q
+			bytesPerSample = 2;
+			break;
+		case PLUTOSDR:
+			// 16bit I and Q
+			bytesPerSample = 4;
+			break;
+		case SDRSERVER:
+			// complex float
+			bytesPerSample = 8;
+			break;
+		default:
+			// lora devices do not store raw data
+			return 0;
+		}
+		// observation might be already in progress
+		long durationMillis = req.getEndTimeMillis() - Math.max(req.getStartTimeMillis(), current);
+		if (durationMillis <= 0) {
+			return 0;
+		}
+		return durationMillis * req.getSampleRate() * bytesPerSample / 1000;
+	}
+
+	@Override
+	public synchronized void stop() {
+		Util.shutdown(executor, config.getThreadPoolShutdownMillis());
+		executor = null;
+	}
+
+}
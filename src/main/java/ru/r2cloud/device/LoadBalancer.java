@@ -0,0 +1,101 @@
+package ru.r2cloud.device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.satellite.TransmitterFilter;
+
+/**
+ * Assign transmitters to the compatible devices so that the expected busy time
+ * is balanced. Transmitters compatible with fewer devices are assigned first,
+ * then transmitters with the longest busy time. Each goes to the compatible
+ * device with the least busy time per concurrent observation (longest
+ * processing time first)
+ */
+public class LoadBalancer {
+
+	private final List<TransmitterFilter> filters;
+	private final int[] capacity;
+	private final long[] busyMillis;
+	private final List<List<Transmitter>> assigned = new ArrayList<>();
+
+	public LoadBalancer(List<TransmitterFilter> filters, int[] capacity) {
+		this.filters = filters;
+		this.capacity = capacity;
+		this.busyMillis = new long[filters.size()];
+		for (int i = 0; i < filters.size(); i++) {
+			assigned.add(new ArrayList<>());
+		}
+	}
+
+	public void assign(List<Transmitter> transmitters, Map<String, Long> busyMillisByTransmitterId) {
+		Map<String, Integer> compatibleById = new HashMap<>();
+		for (Transmitter cur : transmitters) {
+			int compatible = 0;
+			for (int i = 0; i < filters.size(); i++) {
+				if (filters.get(i).accept(cur)) {
+					compatible++;
+				}
+			}
+			compatibleById.put(cur.getId(), compatible);
+		}
+		List<Transmitter> sorted = new ArrayList<>(transmitters);
+		Collections.sort(sorted, new Comparator<Transmitter>() {
+
+			@Override
+			public int compare(Transmitter o1, Transmitter o2) {
+				int result = Integer.compare(compatibleById.get(o1.getId()), compatibleById.get(o2.getId()));
+				if (result != 0) {
+					return result;
+				}
+				return Long.compare(getBusyMillis(busyMillisByTransmitterId, o2), getBusyMillis(busyMillisByTransmitterId, o1));
+			}
+		});
+		for (Transmitter cur : sorted) {
+			int best = -1;
+			for (int i = 0; i < filters.size(); i++) {
+				if (!filters.get(i).accept(cur)) {
+					continue;
+				}
+				if (best == -1 || isLessLoaded(i, best)) {
+					best = i;
+				}
+			}
+			if (best == -1) {
+				continue;
+			}
+			assigned.get(best).add(cur);
+			busyMillis[best] += getBusyMillis(busyMillisByTransmitterId, cur);
+		}
+	}
+
+	public List<Transmitter> getAssigned(int device) {
+		return assigned.get(device);
+	}
+
+	public long getBusyMillis(int device) {
+		return busyMillis[device];
+	}
+
+	// transmitters without passes are spread evenly
+	private boolean isLessLoaded(int device, int other) {
+		int result = Double.compare(busyMillis[device] / (double) capacity[device], busyMillis[other] / (double) capacity[other]);
+		if (result != 0) {
+			return result < 0;
+		}
+		return assigned.get(device).size() < assigned.get(other).size();
+	}
+
+	private static long getBusyMillis(Map<String, Long> busyMillisByTransmitterId, Transmitter transmitter) {
+		Long result = busyMillisByTransmitterId.get(transmitter.getId());
+		if (result == null) {
+			return 0;
+		}
+		return result;
+	}
+}
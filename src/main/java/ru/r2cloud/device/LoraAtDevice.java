@@ -27,7 +27,7 @@ public class LoraAtDevice extends Device {
 
 	public LoraAtDevice(String id, TransmitterFilter filter, int numberOfConcurrentObservations, ObservationFactory observationFactory, ThreadPoolFactory threadpoolFactory, Clock clock, DeviceConfiguration deviceConfiguration, IObservationDao observationDao, DecoderService decoderService,
 						Configuration config, PredictOreKit predict, Schedule schedule, LoraAtClient client) {
-		super(id, filter, numberOfConcurrentObservations, observationFactory, threadpoolFactory, clock, deviceConfiguration, observationDao, decoderService, predict, schedule);
+		super(id, filter, numberOfConcurrentObservations, observationFactory, threadpoolFactory, clock, deviceConfiguration, observationDao, decoderService, predict, schedule, config);
 		this.client = client;
 		this.config = config;
 	}
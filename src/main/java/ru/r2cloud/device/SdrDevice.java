@@ -32,7 +32,7 @@ public class SdrDevice extends Device {
 
     public SdrDevice(String id, TransmitterFilter filter, int numberOfConcurrentObservations, ObservationFactory observationFactory, ThreadPoolFactory threadpoolFactory, Clock clock, DeviceConfiguration deviceConfiguration, IObservationDao observationDao, DecoderService decoderService,
                      PredictOreKit predict, Schedule schedule, Configuration config, ProcessFactory processFactory) {
-        super(id, filter, numberOfConcurrentObservations, observationFactory, threadpoolFactory, clock, deviceConfiguration, observationDao, decoderService, predict, schedule);
+        super(id, filter, numberOfConcurrentObservations, observationFactory, threadpoolFactory, clock, deviceConfiguration, observationDao, decoderService, predict, schedule, config);
         this.config = config;
         this.processFactory = processFactory;
         this.statusDao = new SdrStatusDao(config, processFactory, deviceConfiguration.getRtlDeviceId());
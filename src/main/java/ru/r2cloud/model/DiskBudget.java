@@ -0,0 +1,62 @@
+package ru.r2cloud.model;
+
+import java.util.List;
+
+public class DiskBudget {
+
+	private long calculatedTimeMillis;
+	private long horizonMillis;
+	private Long freeBytes;
+	private long reservedBytes;
+	private Long projectedFreeBytes;
+	private List<DiskReservation> reservations;
+
+	public long getCalculatedTimeMillis() {
+		return calculatedTimeMillis;
+	}
+
+	public void setCalculatedTimeMillis(long calculatedTimeMillis) {
+		this.calculatedTimeMillis = calculatedTimeMillis;
+	}
+
+	public long getHorizonMillis() {
+		return horizonMillis;
+	}
+
+	public void setHorizonMillis(long horizonMillis) {
+		this.horizonMillis = horizonMillis;
+	}
+
+	public Long getFreeBytes() {
+		return freeBytes;
+	}
+
+	public void setFreeBytes(Long freeBytes) {
+		this.freeBytes = freeBytes;
+	}
+
+	public long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	public void setReservedBytes(long reservedBytes) {
+		this.reservedBytes = reservedBytes;
+	}
+
+	public Long getProjectedFreeBytes() {
+		return projectedFreeBytes;
+	}
+
+	public void setProjectedFreeBytes(Long projectedFreeBytes) {
+		this.projectedFreeBytes = projectedFreeBytes;
+	}
+
+	public List<DiskReservation> getReservations() {
+		return reservations;
+	}
+
+	public void setReservations(List<DiskReservation> reservations) {
+		this.reservations = reservations;
+	}
+
+}
@@ -0,0 +1,42 @@
+package ru.r2cloud.model;
+
+public class DiskReservation {
+
+	private String observationId;
+	private String satelliteId;
+	private long startTimeMillis;
+	private long bytes;
+
+	public String getObservationId() {
+		return observationId;
+	}
+
+	public void setObservationId(String observationId) {
+		this.observationId = observationId;
+	}
+
+	public String getSatelliteId() {
+		return satelliteId;
+	}
+
+	public void setSatelliteId(String satelliteId) {
+		this.satelliteId = satelliteId;
+	}
+
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	public void setStartTimeMillis(long startTimeMillis) {
+		this.startTimeMillis = startTimeMillis;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+}
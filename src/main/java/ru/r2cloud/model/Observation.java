@@ -47,6 +47,9 @@ public class Observation {
 	private String dataURL;
 	private File dataPath;
 
+	private String ephemerisURL;
+	private File ephemerisPath;
+
 	private ObservationStatus status;
 
 	public Observation() {
@@ -92,6 +95,7 @@ public class Observation {
 		result.setCenterBandFrequency(centerBandFrequency);
 		result.setRtlDeviceId(rtlDeviceId);
 		result.setPpm(ppm);
+		result.setEphemerisPath(ephemerisPath);
 		return result;
 	}
 
@@ -271,6 +275,22 @@ public class Observation {
 		this.dataPath = dataPath;
 	}
 
+	public String getEphemerisURL() {
+		return ephemerisURL;
+	}
+
+	public void setEphemerisURL(String ephemerisURL) {
+		this.ephemerisURL = ephemerisURL;
+	}
+
+	public File getEphemerisPath() {
+		return ephemerisPath;
+	}
+
+	public void setEphemerisPath(File ephemerisPath) {
+		this.ephemerisPath = ephemerisPath;
+	}
+
 	public String getTransmitterId() {
 		return transmitterId;
 	}
@@ -354,17 +374,20 @@ public class Observation {
 		result.setaURL(meta.getString("aURL", null));
 		result.setSpectogramURL(meta.getString("spectogramURL", null));
 		result.setDataURL(meta.getString("data", null));
+		result.setStatus(statusFromJson(meta));
+		return result;
+	}
+
+	public static ObservationStatus statusFromJson(JsonObject meta) {
 		String statusStr = meta.getString("status", null);
-		if (statusStr != null) {
-			ObservationStatus status = ObservationStatus.valueOf(statusStr);
-			if (status.equals(ObservationStatus.NEW)) {
-				status = ObservationStatus.RECEIVED;
-			}
-			result.setStatus(status);
-		} else {
-			result.setStatus(ObservationStatus.UPLOADED);
+		if (statusStr == null) {
+			return ObservationStatus.UPLOADED;
 		}
-		return result;
+		ObservationStatus status = ObservationStatus.valueOf(statusStr);
+		if (status.equals(ObservationStatus.NEW)) {
+			return ObservationStatus.RECEIVED;
+		}
+		return status;
 	}
 
 	public JsonObject toJson(SignedURL signed) {
@@ -402,6 +425,7 @@ public class Observation {
 		addNullable("aURL", getaURL(), signed, json);
 		addNullable("spectogramURL", getSpectogramURL(), signed, json);
 		addNullable("data", getDataURL(), signed, json);
+		addNullable("ephemerisURL", getEphemerisURL(), signed, json);
 		ObservationStatus statusToSave = getStatus();
 		if (statusToSave == null) {
 			// this would avoid double upload/decode of old observations
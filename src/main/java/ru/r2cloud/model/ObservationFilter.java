@@ -0,0 +1,97 @@
+package ru.r2cloud.model;
+
+/**
+ * All criteria are optional. Matching observations are returned newest first
+ */
+public class ObservationFilter {
+
+	private String satelliteId;
+	private String transmitterId;
+	private ObservationStatus status;
+	// inclusive
+	private Long startTimeMillisFrom;
+	// exclusive
+	private Long startTimeMillisTo;
+	private int offset;
+	private Integer limit;
+
+	public String getSatelliteId() {
+		return satelliteId;
+	}
+
+	public void setSatelliteId(String satelliteId) {
+		this.satelliteId = satelliteId;
+	}
+
+	public String getTransmitterId() {
+		return transmitterId;
+	}
+
+	public void setTransmitterId(String transmitterId) {
+		this.transmitterId = transmitterId;
+	}
+
+	public ObservationStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(ObservationStatus status) {
+		this.status = status;
+	}
+
+	public Long getStartTimeMillisFrom() {
+		return startTimeMillisFrom;
+	}
+
+	public void setStartTimeMillisFrom(Long startTimeMillisFrom) {
+		this.startTimeMillisFrom = startTimeMillisFrom;
+	}
+
+	public Long getStartTimeMillisTo() {
+		return startTimeMillisTo;
+	}
+
+	public void setStartTimeMillisTo(Long startTimeMillisTo) {
+		this.startTimeMillisTo = startTimeMillisTo;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	public Integer getLimit() {
+		return limit;
+	}
+
+	public void setLimit(Integer limit) {
+		this.limit = limit;
+	}
+
+	public boolean matches(ObservationSummary summary) {
+		if (satelliteId != null && !satelliteId.equals(summary.getSatelliteId())) {
+			return false;
+		}
+		if (transmitterId != null && !transmitterId.equals(summary.getTransmitterId())) {
+			return false;
+		}
+		if (status != null && !status.equals(summary.getStatus())) {
+			return false;
+		}
+		if (startTimeMillisFrom != null && summary.getStartTimeMillis() < startTimeMillisFrom) {
+			return false;
+		}
+		if (startTimeMillisTo != null && summary.getStartTimeMillis() >= startTimeMillisTo) {
+			return false;
+		}
+		return true;
+	}
+
+	public boolean isLimitReached(int size) {
+		return limit != null && size >= limit;
+	}
+
+}
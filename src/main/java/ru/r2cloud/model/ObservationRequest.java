@@ -1,7 +1,11 @@
 package ru.r2cloud.model;
 
+import java.io.File;
+
 import org.orekit.bodies.GeodeticPoint;
 
+import com.eclipsesource.json.JsonObject;
+
 public class ObservationRequest {
 
 	private String id;
@@ -11,6 +15,7 @@ public class ObservationRequest {
 	private String transmitterId;
 	private Tle tle;
 	private GeodeticPoint groundStation;
+	private double maxElevation;
 
 	private SdrType sdrType;
 	private int sampleRate;
@@ -22,6 +27,7 @@ public class ObservationRequest {
 	private int rtlDeviceId;
 	private int ppm;
 	private SdrServerConfiguration sdrServerConfiguration;
+	private File ephemerisPath;
 
 	public String getId() {
 		return id;
@@ -47,6 +53,14 @@ public class ObservationRequest {
 		this.endTimeMillis = endTimeMillis;
 	}
 
+	public double getMaxElevation() {
+		return maxElevation;
+	}
+
+	public void setMaxElevation(double maxElevation) {
+		this.maxElevation = maxElevation;
+	}
+
 	public String getSatelliteId() {
 		return satelliteId;
 	}
@@ -151,4 +165,47 @@ public class ObservationRequest {
 		this.sdrServerConfiguration = sdrServerConfiguration;
 	}
 
+	public File getEphemerisPath() {
+		return ephemerisPath;
+	}
+
+	public void setEphemerisPath(File ephemerisPath) {
+		this.ephemerisPath = ephemerisPath;
+	}
+
+	// only schedule-related fields. device-specific parameters are set on
+	// schedule
+	public JsonObject toJson() {
+		JsonObject result = new JsonObject();
+		result.add("id", id);
+		result.add("start", startTimeMillis);
+		result.add("end", endTimeMillis);
+		result.add("satelliteId", satelliteId);
+		result.add("transmitterId", transmitterId);
+		result.add("maxElevation", maxElevation);
+		if (sdrType != null) {
+			result.add("sdrType", sdrType.name());
+		}
+		result.add("actualFrequency", actualFrequency);
+		result.add("centerBandFrequency", centerBandFrequency);
+		return result;
+	}
+
+	public static ObservationRequest fromJson(JsonObject json) {
+		ObservationRequest result = new ObservationRequest();
+		result.setId(json.getString("id", null));
+		result.setStartTimeMillis(json.getLong("start", 0));
+		result.setEndTimeMillis(json.getLong("end", 0));
+		result.setSatelliteId(json.getString("satelliteId", null));
+		result.setTransmitterId(json.getString("transmitterId", null));
+		result.setMaxElevation(json.getDouble("maxElevation", 0.0));
+		String sdrTypeStr = json.getString("sdrType", null);
+		if (sdrTypeStr != null) {
+			result.setSdrType(SdrType.valueOf(sdrTypeStr));
+		}
+		result.setActualFrequency(json.getLong("actualFrequency", 0));
+		result.setCenterBandFrequency(json.getLong("centerBandFrequency", 0));
+		return result;
+	}
+
 }
@@ -0,0 +1,54 @@
+package ru.r2cloud.model;
+
+import com.eclipsesource.json.JsonObject;
+
+public class ObservationSummary {
+
+	private final String satelliteId;
+	private final String id;
+	private final String transmitterId;
+	private final long startTimeMillis;
+	private final ObservationStatus status;
+
+	public ObservationSummary(String satelliteId, String id, String transmitterId, long startTimeMillis, ObservationStatus status) {
+		this.satelliteId = satelliteId;
+		this.id = id;
+		this.transmitterId = transmitterId;
+		this.startTimeMillis = startTimeMillis;
+		this.status = status;
+	}
+
+	public ObservationSummary(ObservationCacheKey key, Observation observation) {
+		this(key.getSatelliteId(), key.getObservationId(), observation.getTransmitterId(), observation.getStartTimeMillis(), observation.getStatus());
+	}
+
+	public static ObservationSummary fromJson(ObservationCacheKey key, JsonObject meta) {
+		// same defaults as Observation#fromJson
+		return new ObservationSummary(key.getSatelliteId(), key.getObservationId(), meta.getString("transmitterId", key.getSatelliteId() + "-0"), meta.getLong("start", -1L), Observation.statusFromJson(meta));
+	}
+
+	public ObservationCacheKey getKey() {
+		return new ObservationCacheKey(satelliteId, id);
+	}
+
+	public String getSatelliteId() {
+		return satelliteId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getTransmitterId() {
+		return transmitterId;
+	}
+
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	public ObservationStatus getStatus() {
+		return status;
+	}
+
+}
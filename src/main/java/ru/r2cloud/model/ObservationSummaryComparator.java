@@ -0,0 +1,35 @@
+package ru.r2cloud.model;
+
+import java.util.Comparator;
+
+/**
+ * Newest first. Summaries without ids are used as range boundaries and go
+ * before any summary with the same start time
+ */
+public class ObservationSummaryComparator implements Comparator<ObservationSummary> {
+
+	public static final ObservationSummaryComparator INSTANCE = new ObservationSummaryComparator();
+
+	@Override
+	public int compare(ObservationSummary o1, ObservationSummary o2) {
+		int result = Long.compare(o2.getStartTimeMillis(), o1.getStartTimeMillis());
+		if (result != 0) {
+			return result;
+		}
+		result = compareNullable(o1.getSatelliteId(), o2.getSatelliteId());
+		if (result != 0) {
+			return result;
+		}
+		return compareNullable(o1.getId(), o2.getId());
+	}
+
+	private static int compareNullable(String o1, String o2) {
+		if (o1 == null) {
+			return o2 == null ? 0 : -1;
+		}
+		if (o2 == null) {
+			return 1;
+		}
+		return o1.compareTo(o2);
+	}
+}
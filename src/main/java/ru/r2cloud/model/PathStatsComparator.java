@@ -0,0 +1,20 @@
+package ru.r2cloud.model;
+
+import java.util.Comparator;
+
+/**
+ * Oldest first
+ */
+public class PathStatsComparator implements Comparator<PathStats> {
+
+	public static final PathStatsComparator INSTANCE = new PathStatsComparator();
+
+	@Override
+	public int compare(PathStats o1, PathStats o2) {
+		int result = Long.compare(o1.getLastUpdateTime(), o2.getLastUpdateTime());
+		if (result != 0) {
+			return result;
+		}
+		return o1.getPath().compareTo(o2.getPath());
+	}
+}
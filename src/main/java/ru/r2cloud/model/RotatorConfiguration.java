@@ -8,6 +8,8 @@ public class RotatorConfiguration {
 	private int timeout;
 	private double tolerance;
 	private int cycleMillis;
+	private double maxAzimuth = 360.0;
+	private double maxElevation = 90.0;
 
 	public String getId() {
 		return id;
@@ -57,4 +59,20 @@ public class RotatorConfiguration {
 		this.cycleMillis = cycleMillis;
 	}
 
+	public double getMaxAzimuth() {
+		return maxAzimuth;
+	}
+
+	public void setMaxAzimuth(double maxAzimuth) {
+		this.maxAzimuth = maxAzimuth;
+	}
+
+	public double getMaxElevation() {
+		return maxElevation;
+	}
+
+	public void setMaxElevation(double maxElevation) {
+		this.maxElevation = maxElevation;
+	}
+
 }
@@ -6,6 +6,7 @@ public class RotatorStatus {
 	private String model;
 	private DeviceConnectionStatus status;
 	private String failureMessage;
+	private double pointingError;
 
 	public String getHostport() {
 		return hostport;
@@ -39,4 +40,12 @@ public class RotatorStatus {
 		this.failureMessage = failureMessage;
 	}
 
+	public double getPointingError() {
+		return pointingError;
+	}
+
+	public void setPointingError(double pointingError) {
+		this.pointingError = pointingError;
+	}
+
 }
@@ -7,6 +7,8 @@ public class SatPass {
 
 	private AbsoluteDate start;
 	private AbsoluteDate end;
+	private AbsoluteDate maxElevation;
+	private double maxElevationDegrees;
 
 	public AbsoluteDate getStart() {
 		return start;
@@ -32,4 +34,20 @@ public class SatPass {
 		this.end = end;
 	}
 
+	public AbsoluteDate getMaxElevation() {
+		return maxElevation;
+	}
+
+	public void setMaxElevation(AbsoluteDate maxElevation) {
+		this.maxElevation = maxElevation;
+	}
+
+	public double getMaxElevationDegrees() {
+		return maxElevationDegrees;
+	}
+
+	public void setMaxElevationDegrees(double maxElevationDegrees) {
+		this.maxElevationDegrees = maxElevationDegrees;
+	}
+
 }
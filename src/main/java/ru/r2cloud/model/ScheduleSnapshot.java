@@ -0,0 +1,148 @@
+package ru.r2cloud.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Computed schedule of the device. Valid only for the same ground station,
+ * elevation thresholds and TLE of every transmitter
+ */
+public class ScheduleSnapshot {
+
+	private long createdMillis;
+	private double latitude;
+	private double longitude;
+	private double minElevation;
+	private double guaranteedElevation;
+	private Map<String, Tle> tleByTransmitterId = new HashMap<>();
+	private Map<String, Long> scheduledUntilByTransmitterId = new HashMap<>();
+	private List<ObservationRequest> observations = new ArrayList<>();
+
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
+	public void setCreatedMillis(long createdMillis) {
+		this.createdMillis = createdMillis;
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public void setLatitude(double latitude) {
+		this.latitude = latitude;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public void setLongitude(double longitude) {
+		this.longitude = longitude;
+	}
+
+	public double getMinElevation() {
+		return minElevation;
+	}
+
+	public void setMinElevation(double minElevation) {
+		this.minElevation = minElevation;
+	}
+
+	public double getGuaranteedElevation() {
+		return guaranteedElevation;
+	}
+
+	public void setGuaranteedElevation(double guaranteedElevation) {
+		this.guaranteedElevation = guaranteedElevation;
+	}
+
+	public Map<String, Tle> getTleByTransmitterId() {
+		return tleByTransmitterId;
+	}
+
+	public void setTleByTransmitterId(Map<String, Tle> tleByTransmitterId) {
+		this.tleByTransmitterId = tleByTransmitterId;
+	}
+
+	public Map<String, Long> getScheduledUntilByTransmitterId() {
+		return scheduledUntilByTransmitterId;
+	}
+
+	public void setScheduledUntilByTransmitterId(Map<String, Long> scheduledUntilByTransmitterId) {
+		this.scheduledUntilByTransmitterId = scheduledUntilByTransmitterId;
+	}
+
+	public List<ObservationRequest> getObservations() {
+		return observations;
+	}
+
+	public void setObservations(List<ObservationRequest> observations) {
+		this.observations = observations;
+	}
+
+	public JsonObject toJson() {
+		JsonObject result = new JsonObject();
+		result.add("created", createdMillis);
+		result.add("lat", latitude);
+		result.add("lon", longitude);
+		result.add("minElevation", minElevation);
+		result.add("guaranteedElevation", guaranteedElevation);
+		JsonArray transmitters = new JsonArray();
+		for (Map.Entry<String, Tle> cur : tleByTransmitterId.entrySet()) {
+			Long until = scheduledUntilByTransmitterId.get(cur.getKey());
+			if (until == null) {
+				continue;
+			}
+			JsonObject curTransmitter = new JsonObject();
+			curTransmitter.add("id", cur.getKey());
+			curTransmitter.add("tle", cur.getValue().toJson());
+			curTransmitter.add("until", until);
+			transmitters.add(curTransmitter);
+		}
+		result.add("transmitters", transmitters);
+		JsonArray observationsJson = new JsonArray();
+		for (ObservationRequest cur : observations) {
+			observationsJson.add(cur.toJson());
+		}
+		result.add("observations", observationsJson);
+		return result;
+	}
+
+	public static ScheduleSnapshot fromJson(JsonObject json) {
+		ScheduleSnapshot result = new ScheduleSnapshot();
+		result.setCreatedMillis(json.getLong("created", 0));
+		result.setLatitude(json.getDouble("lat", 0.0));
+		result.setLongitude(json.getDouble("lon", 0.0));
+		result.setMinElevation(json.getDouble("minElevation", 0.0));
+		result.setGuaranteedElevation(json.getDouble("guaranteedElevation", 0.0));
+		JsonValue transmitters = json.get("transmitters");
+		if (transmitters != null && transmitters.isArray()) {
+			for (JsonValue cur : transmitters.asArray()) {
+				JsonObject curTransmitter = cur.asObject();
+				String id = curTransmitter.getString("id", null);
+				JsonValue tle = curTransmitter.get("tle");
+				if (id == null || tle == null || !tle.isObject()) {
+					continue;
+				}
+				result.getTleByTransmitterId().put(id, Tle.fromJson(tle.asObject()));
+				result.getScheduledUntilByTransmitterId().put(id, curTransmitter.getLong("until", 0));
+			}
+		}
+		JsonValue observationsJson = json.get("observations");
+		if (observationsJson != null && observationsJson.isArray()) {
+			for (JsonValue cur : observationsJson.asArray()) {
+				result.getObservations().add(ObservationRequest.fromJson(cur.asObject()));
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,187 @@
+package ru.r2cloud.predict;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.r2cloud.rotctrld.Position;
+
+/**
+ * Satellite position and range rate sampled with the fixed step over the
+ * observation. Values between the samples are linearly interpolated, so
+ * lookups at the sample times are the same as the direct propagation.
+ */
+public class Ephemeris {
+
+	private static final String HEADER = "time,azimuth,elevation,rangeRate";
+
+	private long startMillis;
+	private long stepMillis;
+	private double[] azimuth;
+	private double[] elevation;
+	private double[] rangeRate;
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	public void setStartMillis(long startMillis) {
+		this.startMillis = startMillis;
+	}
+
+	public long getStepMillis() {
+		return stepMillis;
+	}
+
+	public void setStepMillis(long stepMillis) {
+		this.stepMillis = stepMillis;
+	}
+
+	public double[] getAzimuth() {
+		return azimuth;
+	}
+
+	public void setAzimuth(double[] azimuth) {
+		this.azimuth = azimuth;
+	}
+
+	public double[] getElevation() {
+		return elevation;
+	}
+
+	public void setElevation(double[] elevation) {
+		this.elevation = elevation;
+	}
+
+	public double[] getRangeRate() {
+		return rangeRate;
+	}
+
+	public void setRangeRate(double[] rangeRate) {
+		this.rangeRate = rangeRate;
+	}
+
+	public long getEndMillis() {
+		return startMillis + (rangeRate.length - 1) * stepMillis;
+	}
+
+	public boolean covers(long millis) {
+		return millis >= startMillis && millis <= getEndMillis();
+	}
+
+	public Position getPosition(long millis) {
+		int index = getIndex(millis);
+		double fraction = getFraction(millis, index);
+		double result = azimuth[index];
+		if (fraction != 0.0) {
+			double delta = azimuth[index + 1] - azimuth[index];
+			// shortest way across the north
+			if (delta > 180.0) {
+				delta -= 360.0;
+			} else if (delta < -180.0) {
+				delta += 360.0;
+			}
+			result += delta * fraction;
+			if (result < 0.0) {
+				result += 360.0;
+			} else if (result >= 360.0) {
+				result -= 360.0;
+			}
+		}
+		Position position = new Position();
+		position.setAzimuth(result);
+		position.setElevation(interpolate(elevation, index, fraction));
+		return position;
+	}
+
+	public double getRangeRate(long millis) {
+		int index = getIndex(millis);
+		return interpolate(rangeRate, index, getFraction(millis, index));
+	}
+
+	public long getDownlinkFreq(long frequency, long millis) {
+		return PredictOreKit.getDownlinkFreq(frequency, getRangeRate(millis));
+	}
+
+	private int getIndex(long millis) {
+		if (!covers(millis)) {
+			throw new IllegalArgumentException("not covered: " + millis);
+		}
+		int result = (int) ((millis - startMillis) / stepMillis);
+		// last sample
+		return Math.min(result, rangeRate.length - 2);
+	}
+
+	private double getFraction(long millis, int index) {
+		return (millis - startMillis - index * stepMillis) / (double) stepMillis;
+	}
+
+	private static double interpolate(double[] values, int index, double fraction) {
+		if (fraction == 0.0) {
+			return values[index];
+		}
+		return values[index] + (values[index + 1] - values[index]) * fraction;
+	}
+
+	public void toCsv(Writer w) throws IOException {
+		w.append(HEADER).append('\n');
+		for (int i = 0; i < rangeRate.length; i++) {
+			w.append(String.valueOf(startMillis + i * stepMillis)).append(',');
+			w.append(String.valueOf(azimuth[i])).append(',');
+			w.append(String.valueOf(elevation[i])).append(',');
+			w.append(String.valueOf(rangeRate[i])).append('\n');
+		}
+	}
+
+	public static Ephemeris fromCsv(BufferedReader r) throws IOException {
+		String header = r.readLine();
+		if (!HEADER.equals(header)) {
+			throw new IOException("unsupported header: " + header);
+		}
+		List<double[]> rows = new ArrayList<>();
+		List<Long> times = new ArrayList<>();
+		String curLine;
+		while ((curLine = r.readLine()) != null) {
+			if (curLine.trim().length() == 0) {
+				continue;
+			}
+			String[] parts = curLine.split(",");
+			if (parts.length != 4) {
+				throw new IOException("invalid row: " + curLine);
+			}
+			try {
+				times.add(Long.valueOf(parts[0]));
+				rows.add(new double[] { Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]) });
+			} catch (NumberFormatException e) {
+				throw new IOException("invalid row: " + curLine, e);
+			}
+		}
+		if (times.size() < 2) {
+			throw new IOException("not enough rows: " + times.size());
+		}
+		Ephemeris result = new Ephemeris();
+		result.setStartMillis(times.get(0));
+		result.setStepMillis(times.get(1) - times.get(0));
+		if (result.getStepMillis() <= 0) {
+			throw new IOException("invalid step: " + result.getStepMillis());
+		}
+		double[] azimuth = new double[rows.size()];
+		double[] elevation = new double[rows.size()];
+		double[] rangeRate = new double[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			if (times.get(i) != result.getStartMillis() + i * result.getStepMillis()) {
+				throw new IOException("non-uniform step at: " + times.get(i));
+			}
+			azimuth[i] = rows.get(i)[0];
+			elevation[i] = rows.get(i)[1];
+			rangeRate[i] = rows.get(i)[2];
+		}
+		result.setAzimuth(azimuth);
+		result.setElevation(elevation);
+		result.setRangeRate(rangeRate);
+		return result;
+	}
+
+}
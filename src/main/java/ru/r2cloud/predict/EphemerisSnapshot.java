@@ -0,0 +1,49 @@
+package ru.r2cloud.predict;
+
+import java.util.Map;
+
+/**
+ * Ephemerides of all enabled satellites calculated for the same time window.
+ * Snapshot is never modified once created.
+ */
+public class EphemerisSnapshot {
+
+	private long startMillis;
+	private long endMillis;
+	private long stepMillis;
+	// satellite id -> ephemeris
+	private Map<String, Ephemeris> ephemerides;
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	public void setStartMillis(long startMillis) {
+		this.startMillis = startMillis;
+	}
+
+	public long getEndMillis() {
+		return endMillis;
+	}
+
+	public void setEndMillis(long endMillis) {
+		this.endMillis = endMillis;
+	}
+
+	public long getStepMillis() {
+		return stepMillis;
+	}
+
+	public void setStepMillis(long stepMillis) {
+		this.stepMillis = stepMillis;
+	}
+
+	public Map<String, Ephemeris> getEphemerides() {
+		return ephemerides;
+	}
+
+	public void setEphemerides(Map<String, Ephemeris> ephemerides) {
+		this.ephemerides = ephemerides;
+	}
+
+}
@@ -0,0 +1,183 @@
+package ru.r2cloud.predict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.hipparchus.util.FastMath;
+import org.orekit.bodies.GeodeticPoint;
+import org.orekit.frames.TopocentricFrame;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.SatPass;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.util.ConfigListener;
+import ru.r2cloud.util.Configuration;
+
+/**
+ * Passes calculated for the same TLE and ground station are the same for
+ * every transmitter and device. Orekit detects events on a grid which depends
+ * on the propagation interval, so predictions are cached for the exact
+ * window only. All transmitters and devices scheduled at the same time share
+ * the same window and the same prediction. Passes are cached untrimmed and
+ * every caller trims them to its own current time.
+ */
+public class PassCache implements ConfigListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PassCache.class);
+	private static final long PREDICT_INTERVAL_MILLIS = (long) (PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000);
+
+	private final Map<PassCacheKey, Future<List<SatPass>>> passes = new ConcurrentHashMap<>();
+	private final PredictOreKit predict;
+	private final Configuration config;
+	private final Counter hit;
+	private final Counter miss;
+
+	public PassCache(PredictOreKit predict, Configuration config, Metrics metrics) {
+		this.predict = predict;
+		this.config = config;
+		this.hit = metrics.getRegistry().counter("pass-cache-hit");
+		this.miss = metrics.getRegistry().counter("pass-cache-miss");
+		this.config.subscribe(this, "locaiton.lat");
+		this.config.subscribe(this, "locaiton.lon");
+	}
+
+	/**
+	 * Same as {@link PredictOreKit#calculateSchedule(Date, TLEPropagator)}. Returned
+	 * passes are copies and can be modified.
+	 */
+	public List<SatPass> find(Date current, Tle tle) {
+		return find(current.getTime(), current.getTime(), current.getTime() + PREDICT_INTERVAL_MILLIS, tle);
+	}
+
+	/**
+	 * Find passes with the max elevation within [startMillis, endMillis). Adjacent
+	 * windows never return the same pass. Passes started before the current time
+	 * are trimmed.
+	 */
+	public List<SatPass> find(long current, long startMillis, long endMillis, Tle tle) {
+		Double lat = config.getDouble("locaiton.lat");
+		Double lon = config.getDouble("locaiton.lon");
+		if (lat == null || lon == null || startMillis >= endMillis) {
+			return Collections.emptyList();
+		}
+		PassCacheKey key = new PassCacheKey(new String[] { tle.getRaw()[1], tle.getRaw()[2] }, lat, lon, predict.getMinElevation(), predict.getGuaranteedElevation(), startMillis, endMillis);
+		Future<List<SatPass>> result = passes.get(key);
+		if (result == null) {
+			FutureTask<List<SatPass>> task = new FutureTask<>(new Callable<List<SatPass>>() {
+
+				@Override
+				public List<SatPass> call() throws Exception {
+					TopocentricFrame baseStationFrame = predict.getPosition(new GeodeticPoint(FastMath.toRadians(lat), FastMath.toRadians(lon), 0.0));
+					TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new TLE(key.getTle()[0], key.getTle()[1]));
+					return predict.findPasses(new Date(startMillis), tlePropagator, baseStationFrame, (endMillis - startMillis) / 1000.0);
+				}
+			});
+			result = passes.putIfAbsent(key, task);
+			if (result == null) {
+				miss.inc();
+				evictStale(key);
+				result = task;
+				task.run();
+			} else {
+				hit.inc();
+			}
+		} else {
+			hit.inc();
+		}
+		List<SatPass> all;
+		try {
+			all = result.get();
+		} catch (ExecutionException e) {
+			passes.remove(key, result);
+			LOG.error("unable to calculate schedule for {}", tle.getRaw()[0], e.getCause());
+			return Collections.emptyList();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Collections.emptyList();
+		}
+		return select(all, current, startMillis, endMillis);
+	}
+
+	public void clear() {
+		passes.clear();
+	}
+
+	@Override
+	public void onConfigUpdated() {
+		LOG.info("base station location changed. clearing pass cache");
+		clear();
+	}
+
+	// time goes forward, so earlier windows of the same length, past windows
+	// and other TLEs of the same satellite will never be requested again
+	private void evictStale(PassCacheKey key) {
+		String satelliteNumber = getSatelliteNumber(key.getTle()[0]);
+		long length = key.getEndMillis() - key.getStartMillis();
+		for (Iterator<PassCacheKey> it = passes.keySet().iterator(); it.hasNext();) {
+			PassCacheKey cur = it.next();
+			if (cur.equals(key)) {
+				continue;
+			}
+			if (cur.getEndMillis() <= key.getStartMillis()) {
+				it.remove();
+				continue;
+			}
+			if (cur.getEndMillis() - cur.getStartMillis() == length && cur.getStartMillis() < key.getStartMillis()) {
+				it.remove();
+				continue;
+			}
+			if (!Arrays.equals(cur.getTle(), key.getTle()) && satelliteNumber.equals(getSatelliteNumber(cur.getTle()[0]))) {
+				it.remove();
+			}
+		}
+	}
+
+	private static String getSatelliteNumber(String line1) {
+		if (line1.length() < 7) {
+			return line1;
+		}
+		return line1.substring(2, 7);
+	}
+
+	// keep passes with the max elevation within the window. this is
+	// what PredictOreKit would return if started from the window start
+	private static List<SatPass> select(List<SatPass> all, long current, long startMillis, long endMillis) {
+		AbsoluteDate currentDate = new AbsoluteDate(new Date(current), TimeScalesFactory.getUTC());
+		AbsoluteDate startDate = new AbsoluteDate(new Date(startMillis), TimeScalesFactory.getUTC());
+		AbsoluteDate endDate = new AbsoluteDate(new Date(endMillis), TimeScalesFactory.getUTC());
+		List<SatPass> result = new ArrayList<>();
+		for (SatPass cur : all) {
+			if (cur.getMaxElevation().compareTo(startDate) < 0 || cur.getMaxElevation().compareTo(endDate) >= 0) {
+				continue;
+			}
+			SatPass copy = new SatPass();
+			copy.setStart(cur.getStart());
+			copy.setEnd(cur.getEnd());
+			copy.setMaxElevation(cur.getMaxElevation());
+			copy.setMaxElevationDegrees(cur.getMaxElevationDegrees());
+			if (copy.getStartMillis() < current) {
+				copy.setStart(currentDate);
+			}
+			result.add(copy);
+		}
+		return result;
+	}
+}
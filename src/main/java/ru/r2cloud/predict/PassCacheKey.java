@@ -0,0 +1,98 @@
+package ru.r2cloud.predict;
+
+import java.util.Arrays;
+
+public class PassCacheKey {
+
+	private final String[] tle;
+	private final double latitude;
+	private final double longitude;
+	private final double minElevation;
+	private final double guaranteedElevation;
+	private final long startMillis;
+	private final long endMillis;
+
+	public PassCacheKey(String[] tle, double latitude, double longitude, double minElevation, double guaranteedElevation, long startMillis, long endMillis) {
+		this.tle = tle;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.minElevation = minElevation;
+		this.guaranteedElevation = guaranteedElevation;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+	}
+
+	public String[] getTle() {
+		return tle;
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public double getMinElevation() {
+		return minElevation;
+	}
+
+	public double getGuaranteedElevation() {
+		return guaranteedElevation;
+	}
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	public long getEndMillis() {
+		return endMillis;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (endMillis ^ (endMillis >>> 32));
+		long temp;
+		temp = Double.doubleToLongBits(guaranteedElevation);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		temp = Double.doubleToLongBits(latitude);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		temp = Double.doubleToLongBits(longitude);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		temp = Double.doubleToLongBits(minElevation);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		result = prime * result + (int) (startMillis ^ (startMillis >>> 32));
+		result = prime * result + Arrays.hashCode(tle);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PassCacheKey other = (PassCacheKey) obj;
+		if (endMillis != other.endMillis)
+			return false;
+		if (Double.doubleToLongBits(guaranteedElevation) != Double.doubleToLongBits(other.guaranteedElevation))
+			return false;
+		if (Double.doubleToLongBits(latitude) != Double.doubleToLongBits(other.latitude))
+			return false;
+		if (Double.doubleToLongBits(longitude) != Double.doubleToLongBits(other.longitude))
+			return false;
+		if (Double.doubleToLongBits(minElevation) != Double.doubleToLongBits(other.minElevation))
+			return false;
+		if (startMillis != other.startMillis)
+			return false;
+		if (!Arrays.equals(tle, other.tle))
+			return false;
+		return true;
+	}
+
+}
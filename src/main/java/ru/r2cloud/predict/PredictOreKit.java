@@ -1,14 +1,20 @@
 package ru.r2cloud.predict;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.ode.events.Action;
 import org.hipparchus.util.FastMath;
+import org.hipparchus.util.MathUtils;
 import org.orekit.bodies.BodyShape;
 import org.orekit.bodies.GeodeticPoint;
 import org.orekit.bodies.OneAxisEllipsoid;
@@ -18,6 +24,7 @@ import org.orekit.data.DirectoryCrawler;
 import org.orekit.frames.Frame;
 import org.orekit.frames.FramesFactory;
 import org.orekit.frames.TopocentricFrame;
+import org.orekit.frames.Transform;
 import org.orekit.propagation.SpacecraftState;
 import org.orekit.propagation.analytical.tle.TLEPropagator;
 import org.orekit.propagation.events.ElevationDetector;
@@ -34,6 +41,7 @@ import org.orekit.utils.PVCoordinates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.SatPass;
 import ru.r2cloud.rotctrld.Position;
 import ru.r2cloud.util.Configuration;
@@ -43,16 +51,37 @@ public class PredictOreKit {
     public static final double PREDICT_INTERVAL_SECONDS = 3600. * 24 * 2;
     private static final Logger LOG = LoggerFactory.getLogger(PredictOreKit.class);
     private static final double SPEED_OF_LIGHT = 2.99792458E8;
+    private static final double MAX_CHECK_SECONDS = 600;
+    // start and end are searched within an hour from the max elevation
+    private static final double MAX_HALF_PASS_SECONDS = 60 * 60.0;
+    private static final long EPHEMERIS_MARGIN_MILLIS = 60 * 1000L;
 
     private final double minElevation;
     private final double guaranteedElevation;
+    private final boolean screening;
     private final Configuration config;
     private final Frame earthFrame;
     private final BodyShape earth;
+    // rebuilt only when the configured location differs
+    private volatile TopocentricFrame position;
+    private final long ephemerisStepMillis;
+    private final Map<String, Ephemeris> ephemerides;
 
     public PredictOreKit(Configuration config) {
         this.minElevation = config.getDouble("scheduler.elevation.min");
         this.guaranteedElevation = config.getDouble("scheduler.elevation.guaranteed");
+        this.screening = config.getBoolean("scheduler.predict.screening.enabled");
+        this.ephemerisStepMillis = Math.max(1, config.getLong("scheduler.predict.ephemeris.stepMillis"));
+        final int maxEphemerides = config.getInteger("scheduler.predict.ephemeris.maxObservations");
+        this.ephemerides = new LinkedHashMap<String, Ephemeris>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ephemeris> eldest) {
+                return size() > maxEphemerides;
+            }
+        };
         this.config = config;
 
         File orekitData = new File(config.getProperty("scheduler.orekit.path"));
@@ -76,33 +105,165 @@ public class PredictOreKit {
         AbsoluteDate date = new AbsoluteDate(new Date(utcTimeMillis), TimeScalesFactory.getUTC());
         PVCoordinates currentState = tlePropagator.getPVCoordinates(date);
         final double rangeRate = currentLocation.getRangeRate(currentState, tlePropagator.getFrame(), date);
+        return getDownlinkFreq(freq, rangeRate);
+    }
+
+    public static long getDownlinkFreq(long freq, double rangeRate) {
         return (long) ((double) freq * (SPEED_OF_LIGHT - rangeRate) / SPEED_OF_LIGHT);
     }
 
     public Position getSatellitePosition(long utcTimeMillis, TopocentricFrame currentLocation, final TLEPropagator tlePropagator) {
         AbsoluteDate date = new AbsoluteDate(new Date(utcTimeMillis), TimeScalesFactory.getUTC());
         PVCoordinates currentState = tlePropagator.getPVCoordinates(date);
-        double azimuth = FastMath.toDegrees(currentLocation.getAzimuth(currentState.getPosition(), tlePropagator.getFrame(), date));
-        double elevation = FastMath.toDegrees(currentLocation.getElevation(currentState.getPosition(), tlePropagator.getFrame(), date));
+        // same as TopocentricFrame#getAzimuth and #getElevation but with a single transform
+        Vector3D topocentric = tlePropagator.getFrame().getTransformTo(currentLocation, date).transformPosition(currentState.getPosition());
         Position result = new Position();
-        result.setAzimuth(azimuth);
-        result.setElevation(elevation);
+        result.setAzimuth(getAzimuth(topocentric));
+        result.setElevation(FastMath.toDegrees(topocentric.getDelta()));
+        return result;
+    }
+
+    /**
+     * Ephemeris of the observation shared by the rotator and the decoders. It is
+     * calculated once and kept in memory for the most recent observations
+     */
+    public Ephemeris getEphemeris(ObservationRequest req) {
+        return getEphemeris(req, null);
+    }
+
+    /**
+     * Same as {@link #getEphemeris(ObservationRequest)}, but previously saved
+     * ephemeris is loaded from the file if it is not in memory
+     */
+    public Ephemeris getEphemeris(ObservationRequest req, File saved) {
+        Ephemeris result;
+        synchronized (ephemerides) {
+            result = ephemerides.get(req.getId());
+        }
+        if (covers(result, req)) {
+            return result;
+        }
+        result = null;
+        if (saved != null && saved.exists()) {
+            try (BufferedReader r = new BufferedReader(new FileReader(saved))) {
+                result = Ephemeris.fromCsv(r);
+            } catch (IOException e) {
+                LOG.error("[{}] unable to load ephemeris from {}", req.getId(), saved.getAbsolutePath(), e);
+            }
+        }
+        if (!covers(result, req)) {
+            TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new org.orekit.propagation.analytical.tle.TLE(req.getTle().getRaw()[1], req.getTle().getRaw()[2]));
+            // actual start and end might be slightly different
+            long margin = (EPHEMERIS_MARGIN_MILLIS + ephemerisStepMillis - 1) / ephemerisStepMillis * ephemerisStepMillis;
+            result = calculateEphemeris(req.getStartTimeMillis() - margin, req.getEndTimeMillis() + margin, ephemerisStepMillis, getPosition(req.getGroundStation()), tlePropagator);
+        }
+        if (req.getId() != null) {
+            synchronized (ephemerides) {
+                ephemerides.put(req.getId(), result);
+            }
+        }
+        return result;
+    }
+
+    private static boolean covers(Ephemeris ephemeris, ObservationRequest req) {
+        return ephemeris != null && ephemeris.covers(req.getStartTimeMillis()) && ephemeris.covers(req.getEndTimeMillis());
+    }
+
+    public Ephemeris calculateEphemeris(long startMillis, long endMillis, long stepMillis, TopocentricFrame currentLocation, TLEPropagator tlePropagator) {
+        return calculateEphemerides(startMillis, endMillis, stepMillis, currentLocation, Collections.singletonList(tlePropagator)).get(0);
+    }
+
+    /**
+     * Same as {@link #calculateEphemeris(long, long, long, TopocentricFrame, TLEPropagator)}
+     * for many satellites. TLE propagators share the same frame, so the transform
+     * to the ground station is calculated once per time step for all
+     * satellites.
+     */
+    public List<Ephemeris> calculateEphemerides(long startMillis, long endMillis, long stepMillis, TopocentricFrame currentLocation, List<TLEPropagator> tlePropagators) {
+        int rows = (int) ((endMillis - startMillis + stepMillis - 1) / stepMillis) + 1;
+        rows = Math.max(rows, 2);
+        double[][] azimuth = new double[tlePropagators.size()][rows];
+        double[][] elevation = new double[tlePropagators.size()][rows];
+        double[][] rangeRate = new double[tlePropagators.size()][rows];
+        for (int i = 0; i < rows; i++) {
+            AbsoluteDate date = new AbsoluteDate(new Date(startMillis + i * stepMillis), TimeScalesFactory.getUTC());
+            Frame previousFrame = null;
+            Transform transform = null;
+            for (int j = 0; j < tlePropagators.size(); j++) {
+                TLEPropagator tlePropagator = tlePropagators.get(j);
+                PVCoordinates currentState = tlePropagator.getPVCoordinates(date);
+                if (transform == null || previousFrame != tlePropagator.getFrame()) {
+                    previousFrame = tlePropagator.getFrame();
+                    transform = previousFrame.getTransformTo(currentLocation, date);
+                }
+                // single transform for both position and range rate
+                Vector3D topocentric = transform.transformPosition(currentState.getPosition());
+                azimuth[j][i] = getAzimuth(topocentric);
+                elevation[j][i] = FastMath.toDegrees(topocentric.getDelta());
+                // same as TopocentricFrame#getRangeRate
+                PVCoordinates topocentricState = transform.transformPVCoordinates(currentState);
+                rangeRate[j][i] = Vector3D.dotProduct(topocentricState.getPosition(), topocentricState.getVelocity()) / topocentricState.getPosition().getNorm();
+            }
+        }
+        List<Ephemeris> result = new ArrayList<>(tlePropagators.size());
+        for (int j = 0; j < tlePropagators.size(); j++) {
+            Ephemeris cur = new Ephemeris();
+            cur.setStartMillis(startMillis);
+            cur.setStepMillis(stepMillis);
+            cur.setAzimuth(azimuth[j]);
+            cur.setElevation(elevation[j]);
+            cur.setRangeRate(rangeRate[j]);
+            result.add(cur);
+        }
         return result;
     }
 
+    private static double getAzimuth(Vector3D topocentric) {
+        double azimuth = FastMath.atan2(topocentric.getX(), topocentric.getY());
+        if (azimuth < 0.0) {
+            azimuth += MathUtils.TWO_PI;
+        }
+        return FastMath.toDegrees(azimuth);
+    }
+
     public List<SatPass> calculateSchedule(Date current, TLEPropagator tlePropagator) {
-        List<SatPass> result = new ArrayList<>();
         TopocentricFrame baseStationFrame = getPosition();
         if (baseStationFrame == null) {
             return Collections.emptyList();
         }
+        return calculateSchedule(current, tlePropagator, baseStationFrame, PREDICT_INTERVAL_SECONDS);
+    }
+
+    public List<SatPass> calculateSchedule(Date current, TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, double intervalSeconds) {
+        List<SatPass> result = findPasses(current, tlePropagator, baseStationFrame, intervalSeconds);
+        AbsoluteDate initialDate = new AbsoluteDate(current, TimeScalesFactory.getUTC());
+        for (SatPass cur : result) {
+            if (cur.getStartMillis() < current.getTime()) {
+                cur.setStart(initialDate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #calculateSchedule(Date, TLEPropagator, TopocentricFrame, double)},
+     * but passes started before the current time are not trimmed
+     */
+    public List<SatPass> findPasses(Date current, TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, double intervalSeconds) {
+        if (screening) {
+            return findScreenedPasses(current, tlePropagator, baseStationFrame, intervalSeconds);
+        }
+        List<SatPass> result = new ArrayList<>();
         AbsoluteDate initialDate = new AbsoluteDate(current, TimeScalesFactory.getUTC());
         List<AbsoluteDate> max = new ArrayList<>();
-        ElevationExtremumDetector maxDetector = new ElevationExtremumDetector(600, 1, baseStationFrame).withMaxIter(48 * 60).withHandler(new EventHandler<ElevationExtremumDetector>() {
+        List<Double> maxElevations = new ArrayList<>();
+        ElevationExtremumDetector maxDetector = new ElevationExtremumDetector(MAX_CHECK_SECONDS, 1, baseStationFrame).withMaxIter(48 * 60).withHandler(new EventHandler<ElevationExtremumDetector>() {
             @Override
             public Action eventOccurred(SpacecraftState s, ElevationExtremumDetector detector, boolean increasing) {
-                if (FastMath.toDegrees(detector.getElevation(s)) > guaranteedElevation) {
+                double elevation = FastMath.toDegrees(detector.getElevation(s));
+                if (elevation > guaranteedElevation) {
                     max.add(s.getDate());
+                    maxElevations.add(elevation);
                 }
                 return Action.CONTINUE;
             }
@@ -111,17 +272,15 @@ public class PredictOreKit {
         tlePropagator.addEventDetector(new EventSlopeFilter<EventDetector>(maxDetector, FilterType.TRIGGER_ONLY_DECREASING_EVENTS));
         tlePropagator.setSlaveMode();
         try {
-            tlePropagator.propagate(initialDate, new AbsoluteDate(initialDate, PREDICT_INTERVAL_SECONDS));
+            tlePropagator.propagate(initialDate, new AbsoluteDate(initialDate, intervalSeconds));
         } catch (Exception e) {
             LOG.error("unable to calculate schedule for {} date: {}", tlePropagator.getTLE().getSatelliteNumber(), initialDate, e);
             return Collections.emptyList();
         }
-        for (AbsoluteDate curMax : max) {
-            SatPass cur = findStartEnd(tlePropagator, baseStationFrame, curMax);
+        for (int i = 0; i < max.size(); i++) {
+            SatPass cur = findStartEnd(tlePropagator, baseStationFrame, max.get(i));
             if (cur != null) {
-                if (cur.getStartMillis() < current.getTime()) {
-                    cur.setStart(initialDate);
-                }
+                cur.setMaxElevationDegrees(maxElevations.get(i));
                 result.add(cur);
             }
         }
@@ -129,6 +288,64 @@ public class PredictOreKit {
         return result;
     }
 
+    /**
+     * Search the max elevation only within the windows where it is
+     * geometrically possible and the bounds only within the window of the
+     * pass. The result is the same as the full search within the 1 second
+     * detection threshold
+     */
+    private List<SatPass> findScreenedPasses(Date current, TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, double intervalSeconds) {
+        AbsoluteDate initialDate = new AbsoluteDate(current, TimeScalesFactory.getUTC());
+        AbsoluteDate endDate = new AbsoluteDate(initialDate, intervalSeconds);
+        // bounds of the passes at the interval edges are searched the same way as in the full search
+        VisibilityScreen screen = new VisibilityScreen(tlePropagator, baseStationFrame, initialDate.shiftedBy(-MAX_HALF_PASS_SECONDS), intervalSeconds + 2 * MAX_HALF_PASS_SECONDS, FastMath.toRadians(minElevation), FastMath.toRadians(guaranteedElevation));
+        List<AbsoluteDate> max = new ArrayList<>();
+        List<Double> maxElevations = new ArrayList<>();
+        ElevationExtremumDetector maxDetector = new ElevationExtremumDetector(MAX_CHECK_SECONDS, 1, baseStationFrame).withMaxIter(48 * 60).withHandler(new EventHandler<ElevationExtremumDetector>() {
+            @Override
+            public Action eventOccurred(SpacecraftState s, ElevationExtremumDetector detector, boolean increasing) {
+                double elevation = FastMath.toDegrees(detector.getElevation(s));
+                if (elevation > guaranteedElevation && s.getDate().compareTo(initialDate) >= 0 && s.getDate().compareTo(endDate) <= 0) {
+                    max.add(s.getDate());
+                    maxElevations.add(elevation);
+                }
+                return Action.CONTINUE;
+            }
+        });
+        tlePropagator.clearEventsDetectors();
+        tlePropagator.addEventDetector(new EventSlopeFilter<EventDetector>(maxDetector, FilterType.TRIGGER_ONLY_DECREASING_EVENTS));
+        tlePropagator.setSlaveMode();
+        try {
+            for (AbsoluteDate[] cur : screen.getMaxWindows()) {
+                tlePropagator.propagate(cur[0], cur[1]);
+            }
+        } catch (Exception e) {
+            LOG.error("unable to calculate schedule for {} date: {}", tlePropagator.getTLE().getSatelliteNumber(), initialDate, e);
+            return Collections.emptyList();
+        }
+        List<SatPass> result = new ArrayList<>();
+        for (int i = 0; i < max.size(); i++) {
+            AbsoluteDate maxElevationTime = max.get(i);
+            AbsoluteDate from = maxElevationTime.shiftedBy(-MAX_HALF_PASS_SECONDS);
+            AbsoluteDate to = maxElevationTime.shiftedBy(MAX_HALF_PASS_SECONDS);
+            AbsoluteDate[] window = screen.findPassWindow(maxElevationTime);
+            if (window != null) {
+                if (window[0].compareTo(from) > 0) {
+                    from = window[0];
+                }
+                if (window[1].compareTo(to) < 0) {
+                    to = window[1];
+                }
+            }
+            SatPass cur = findStartEnd(tlePropagator, baseStationFrame, maxElevationTime, from, to);
+            if (cur != null) {
+                cur.setMaxElevationDegrees(maxElevations.get(i));
+                result.add(cur);
+            }
+        }
+        return result;
+    }
+
     public SatPass calculateNext(Date current, TLEPropagator tlePropagator) {
         TopocentricFrame baseStationFrame = getPosition();
         if (baseStationFrame == null) {
@@ -155,9 +372,24 @@ public class PredictOreKit {
         tlePropagator.clearEventsDetectors();
         tlePropagator.addEventDetector(boundsDetector);
         // 60 mins before and 60 mins later
-        AbsoluteDate startDate = maxElevationTime.shiftedBy(-60 * 60.0);
-        tlePropagator.propagate(startDate, maxElevationTime.shiftedBy(60 * 60.0));
+        AbsoluteDate startDate = maxElevationTime.shiftedBy(-MAX_HALF_PASS_SECONDS);
+        tlePropagator.propagate(startDate, maxElevationTime.shiftedBy(MAX_HALF_PASS_SECONDS));
+        return createPass(minElevationHandler, maxElevationTime);
+    }
+
+    // the pass window might be shorter than the max check interval, so rise and
+    // set are searched separately. each half has exactly one sign change
+    private SatPass findStartEnd(TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, AbsoluteDate maxElevationTime, AbsoluteDate from, AbsoluteDate to) {
+        MinElevationHandler minElevationHandler = new MinElevationHandler();
+        ElevationDetector boundsDetector = new ElevationDetector(600, 1, baseStationFrame).withConstantElevation(FastMath.toRadians(minElevation)).withHandler(minElevationHandler);
+        tlePropagator.clearEventsDetectors();
+        tlePropagator.addEventDetector(boundsDetector);
+        tlePropagator.propagate(from, maxElevationTime);
+        tlePropagator.propagate(maxElevationTime, to);
+        return createPass(minElevationHandler, maxElevationTime);
+    }
 
+    private static SatPass createPass(MinElevationHandler minElevationHandler, AbsoluteDate maxElevationTime) {
         if (minElevationHandler.getStart() == null || minElevationHandler.getEnd() == null) {
             return null;
         }
@@ -165,20 +397,43 @@ public class PredictOreKit {
         SatPass result = new SatPass();
         result.setStart(minElevationHandler.getStart());
         result.setEnd(minElevationHandler.getEnd());
+        result.setMaxElevation(maxElevationTime);
         return result;
     }
 
+    public double getMinElevation() {
+        return minElevation;
+    }
+
+    public double getGuaranteedElevation() {
+        return guaranteedElevation;
+    }
+
     public TopocentricFrame getPosition() {
-        // get the current position
+        // always read the current location. config listeners are notified in
+        // arbitrary order, so the others might ask for the position before any
+        // cache invalidation
         Double lat = config.getDouble("locaiton.lat");
         Double lon = config.getDouble("locaiton.lon");
         if (lat == null || lon == null) {
             return null;
         }
-        return getPosition(new GeodeticPoint(FastMath.toRadians(lat), FastMath.toRadians(lon), 0.0));
+        double latitude = FastMath.toRadians(lat);
+        double longitude = FastMath.toRadians(lon);
+        TopocentricFrame result = position;
+        if (result != null && result.getPoint().getLatitude() == latitude && result.getPoint().getLongitude() == longitude) {
+            return result;
+        }
+        result = new TopocentricFrame(earth, new GeodeticPoint(latitude, longitude, 0.0), "station1");
+        position = result;
+        return result;
     }
 
     public TopocentricFrame getPosition(GeodeticPoint point) {
+        TopocentricFrame current = position;
+        if (current != null && current.getPoint().equals(point)) {
+            return current;
+        }
         return new TopocentricFrame(earth, point, "station1");
     }
 
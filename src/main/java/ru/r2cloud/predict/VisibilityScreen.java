@@ -0,0 +1,171 @@
+package ru.r2cloud.predict;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.orekit.frames.TopocentricFrame;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import org.orekit.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cheap screening of the windows where the satellite might be above the given
+ * elevation. The satellite is sampled with the coarse step and the geocentric
+ * angle between the station and the satellite is compared with the widest
+ * visibility cone of the orbit. This angle cannot change faster than the
+ * orbital angular rate plus the Earth rotation, so any pass between the
+ * samples is within the cone extended by the half of the step.
+ */
+class VisibilityScreen {
+
+	private static final Logger LOG = LoggerFactory.getLogger(VisibilityScreen.class);
+
+	private static final double MAX_STEP_SECONDS = 300;
+	// keep the extended cone narrow for the low orbits
+	private static final double MAX_CONE_EXTENSION = FastMath.toRadians(10);
+	// geodetic and geocentric verticals differ up to 0.2 degree
+	private static final double CONE_MARGIN = FastMath.toRadians(1);
+	// osculating orbit differs from the mean elements
+	private static final double RADIUS_MARGIN_METERS = 100_000;
+	private static final double RATE_MARGIN = 1.1;
+
+	private final List<AbsoluteDate[]> passWindows = new ArrayList<>();
+	private final List<AbsoluteDate[]> maxWindows = new ArrayList<>();
+
+	/**
+	 * @param minElevation
+	 *            the whole pass above this elevation is within one of the pass
+	 *            windows
+	 * @param maxElevation
+	 *            the max elevation above this elevation is within one of the
+	 *            max windows
+	 */
+	VisibilityScreen(TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, AbsoluteDate start, double intervalSeconds, double minElevation, double maxElevation) {
+		if (!screen(tlePropagator, baseStationFrame, start, intervalSeconds, minElevation, maxElevation)) {
+			passWindows.clear();
+			maxWindows.clear();
+			passWindows.add(new AbsoluteDate[] { start, start.shiftedBy(intervalSeconds) });
+			maxWindows.add(new AbsoluteDate[] { start, start.shiftedBy(intervalSeconds) });
+		}
+	}
+
+	/**
+	 * @return windows sorted by time
+	 */
+	List<AbsoluteDate[]> getPassWindows() {
+		return Collections.unmodifiableList(passWindows);
+	}
+
+	/**
+	 * @return windows sorted by time
+	 */
+	List<AbsoluteDate[]> getMaxWindows() {
+		return Collections.unmodifiableList(maxWindows);
+	}
+
+	/**
+	 * @return the pass window containing the date or null
+	 */
+	AbsoluteDate[] findPassWindow(AbsoluteDate date) {
+		for (AbsoluteDate[] cur : passWindows) {
+			if (cur[0].compareTo(date) <= 0 && date.compareTo(cur[1]) <= 0) {
+				return cur;
+			}
+		}
+		return null;
+	}
+
+	// false if the orbit cannot be screened
+	private boolean screen(TLEPropagator tlePropagator, TopocentricFrame baseStationFrame, AbsoluteDate start, double intervalSeconds, double minElevation, double maxElevation) {
+		TLE tle = tlePropagator.getTLE();
+		double meanMotion = tle.getMeanMotion();
+		double e = tle.getE();
+		if (meanMotion <= 0.0 || e >= 1.0) {
+			return false;
+		}
+		double semiMajorAxis = FastMath.cbrt(Constants.WGS84_EARTH_MU / (meanMotion * meanMotion));
+		double maxRadius = semiMajorAxis * (1 + e) + RADIUS_MARGIN_METERS;
+		Vector3D station = baseStationFrame.getParentShape().transform(baseStationFrame.getPoint());
+		double stationRadius = station.getNorm();
+		if (maxRadius <= stationRadius) {
+			return false;
+		}
+		// the fastest angular rate is at perigee
+		double rate = meanMotion * (1 + e) * (1 + e) / FastMath.pow(1 - e * e, 1.5) * RATE_MARGIN + Constants.WGS84_EARTH_ANGULAR_VELOCITY;
+		double step = Math.min(MAX_STEP_SECONDS, 2 * MAX_CONE_EXTENSION / rate);
+		double passThreshold = getCone(stationRadius, maxRadius, minElevation) + rate * step / 2;
+		double maxThreshold = getCone(stationRadius, maxRadius, maxElevation) + rate * step / 2;
+		if (passThreshold >= FastMath.PI) {
+			return false;
+		}
+
+		long startMillis = start.toDate(TimeScalesFactory.getUTC()).getTime();
+		int samples = (int) FastMath.ceil(intervalSeconds / step);
+		List<double[]> pass = new ArrayList<>();
+		List<double[]> max = new ArrayList<>();
+		try {
+			for (int i = 0; i <= samples; i++) {
+				double offset = Math.min(i * step, intervalSeconds);
+				Vector3D satellite = tlePropagator.getPVCoordinates(start.shiftedBy(offset)).getPosition();
+				double angle = Vector3D.angle(satellite, toInertial(station, startMillis + (long) (offset * 1000)));
+				if (angle > passThreshold) {
+					continue;
+				}
+				double from = Math.max(0.0, offset - step);
+				double to = Math.min(intervalSeconds, offset + step);
+				append(pass, from, to);
+				if (angle <= maxThreshold) {
+					append(max, from, to);
+				}
+			}
+		} catch (Exception e1) {
+			// precise propagation will report the error
+			LOG.debug("unable to screen {}", tle.getSatelliteNumber(), e1);
+			return false;
+		}
+		for (double[] cur : pass) {
+			passWindows.add(new AbsoluteDate[] { start.shiftedBy(cur[0]), start.shiftedBy(cur[1]) });
+		}
+		for (double[] cur : max) {
+			maxWindows.add(new AbsoluteDate[] { start.shiftedBy(cur[0]), start.shiftedBy(cur[1]) });
+		}
+		return true;
+	}
+
+	private static void append(List<double[]> windows, double from, double to) {
+		if (!windows.isEmpty() && windows.get(windows.size() - 1)[1] >= from) {
+			windows.get(windows.size() - 1)[1] = to;
+		} else {
+			windows.add(new double[] { from, to });
+		}
+	}
+
+	// the widest geocentric angle between the station and the satellite above the
+	// elevation
+	private static double getCone(double stationRadius, double satelliteRadius, double elevation) {
+		return FastMath.acos(stationRadius / satelliteRadius * FastMath.cos(elevation)) - elevation + CONE_MARGIN;
+	}
+
+	// TEME differs from the Earth-fixed frame by the GMST rotation. Polar motion
+	// and UT1-UTC are well within the margins
+	private static Vector3D toInertial(Vector3D earthFixed, long utcMillis) {
+		double gmst = getGmst(utcMillis);
+		double cos = FastMath.cos(gmst);
+		double sin = FastMath.sin(gmst);
+		return new Vector3D(earthFixed.getX() * cos - earthFixed.getY() * sin, earthFixed.getX() * sin + earthFixed.getY() * cos, earthFixed.getZ());
+	}
+
+	// IAU-82 model used by SGP4
+	static double getGmst(long utcMillis) {
+		double t = (utcMillis / 86400000.0 + 2440587.5 - 2451545.0) / 36525.0;
+		double seconds = 67310.54841 + (876600.0 * 3600.0 + 8640184.812866) * t + 0.093104 * t * t - 6.2e-6 * t * t * t;
+		return FastMath.toRadians((seconds % 86400.0) / 240.0);
+	}
+}
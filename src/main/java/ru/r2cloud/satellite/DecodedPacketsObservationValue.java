@@ -0,0 +1,83 @@
+package ru.r2cloud.satellite;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.util.Clock;
+
+/**
+ * Satellites which were decoded successfully before are more likely to be
+ * decoded again. Average number of decoded packets per observation is loaded
+ * from disk, so it is cached for some time
+ */
+public class DecodedPacketsObservationValue implements ObservationValue {
+
+	private static final long CACHE_MILLIS = 60 * 60 * 1000L;
+	private static final int MAX_OBSERVATIONS = 20;
+
+	private final IObservationDao dao;
+	private final Clock clock;
+	private final Map<String, AveragePackets> averageBySatelliteId = new ConcurrentHashMap<>();
+
+	public DecodedPacketsObservationValue(IObservationDao dao, Clock clock) {
+		this.dao = dao;
+		this.clock = clock;
+	}
+
+	@Override
+	public double getValue(ObservationRequest req) {
+		long current = clock.millis();
+		AveragePackets average = averageBySatelliteId.get(req.getSatelliteId());
+		if (average == null || current - average.getCalculatedMillis() > CACHE_MILLIS) {
+			average = new AveragePackets(calculateAverage(req.getSatelliteId()), current);
+			averageBySatelliteId.put(req.getSatelliteId(), average);
+		}
+		// never observed satellites still have some value
+		return 1.0 + average.getValue();
+	}
+
+	private double calculateAverage(String satelliteId) {
+		ObservationFilter filter = new ObservationFilter();
+		filter.setSatelliteId(satelliteId);
+		filter.setLimit(MAX_OBSERVATIONS);
+		// latest observations only. Not yet decoded are skipped
+		List<Observation> latest = dao.findAll(filter);
+		long total = 0;
+		int count = 0;
+		for (Observation cur : latest) {
+			if (cur.getNumberOfDecodedPackets() == null) {
+				continue;
+			}
+			total += cur.getNumberOfDecodedPackets();
+			count++;
+		}
+		if (count == 0) {
+			return 0.0;
+		}
+		return (double) total / count;
+	}
+
+	private static class AveragePackets {
+
+		private final double value;
+		private final long calculatedMillis;
+
+		AveragePackets(double value, long calculatedMillis) {
+			this.value = value;
+			this.calculatedMillis = calculatedMillis;
+		}
+
+		double getValue() {
+			return value;
+		}
+
+		long getCalculatedMillis() {
+			return calculatedMillis;
+		}
+	}
+
+}
@@ -0,0 +1,12 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.model.ObservationRequest;
+
+public class DurationObservationValue implements ObservationValue {
+
+	@Override
+	public double getValue(ObservationRequest req) {
+		return (req.getEndTimeMillis() - req.getStartTimeMillis()) / 1000.0;
+	}
+
+}
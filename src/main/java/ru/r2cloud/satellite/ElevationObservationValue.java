@@ -0,0 +1,15 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.model.ObservationRequest;
+
+/**
+ * Higher passes have better signal and longer duration
+ */
+public class ElevationObservationValue implements ObservationValue {
+
+	@Override
+	public double getValue(ObservationRequest req) {
+		return Math.max(1.0, req.getMaxElevation());
+	}
+
+}
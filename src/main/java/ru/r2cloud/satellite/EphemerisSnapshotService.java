@@ -0,0 +1,125 @@
+package ru.r2cloud.satellite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.orekit.frames.TopocentricFrame;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.r2cloud.Lifecycle;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.predict.Ephemeris;
+import ru.r2cloud.predict.EphemerisSnapshot;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.util.Clock;
+import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.NamingThreadFactory;
+import ru.r2cloud.util.SafeRunnable;
+import ru.r2cloud.util.ThreadPoolFactory;
+import ru.r2cloud.util.Util;
+
+/**
+ * Periodically calculates positions of all enabled satellites. Requests are
+ * served from the latest snapshot, so the cost of propagation doesn't depend
+ * on the number of clients.
+ */
+public class EphemerisSnapshotService implements Lifecycle {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EphemerisSnapshotService.class);
+
+	private final SatelliteDao satelliteDao;
+	private final PredictOreKit predict;
+	private final ThreadPoolFactory threadFactory;
+	private final Clock clock;
+	private final long periodMillis;
+	private final long intervalMillis;
+	private final long stepMillis;
+
+	private ScheduledExecutorService executor = null;
+	private volatile EphemerisSnapshot snapshot;
+
+	public EphemerisSnapshotService(Configuration config, SatelliteDao satelliteDao, PredictOreKit predict, ThreadPoolFactory threadFactory, Clock clock) {
+		this.satelliteDao = satelliteDao;
+		this.predict = predict;
+		this.threadFactory = threadFactory;
+		this.clock = clock;
+		this.periodMillis = config.getLong("ephemeris.snapshot.periodMillis");
+		this.stepMillis = Math.max(1, config.getLong("ephemeris.snapshot.stepMillis"));
+		// next snapshot should be ready before the current ends
+		this.intervalMillis = Math.max(config.getLong("ephemeris.snapshot.intervalMillis"), 2 * periodMillis);
+	}
+
+	@Override
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = threadFactory.newScheduledThreadPool(1, new NamingThreadFactory("ephemeris"));
+		executor.scheduleAtFixedRate(new SafeRunnable() {
+
+			@Override
+			public void safeRun() {
+				refresh(clock.millis());
+			}
+		}, 0, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (executor != null) {
+			Util.shutdown(executor, threadFactory.getThreadPoolShutdownMillis());
+			executor = null;
+		}
+	}
+
+	public void refresh(long current) {
+		long startMillis = current - current % stepMillis;
+		long endMillis = startMillis + intervalMillis;
+		Map<String, Ephemeris> ephemerides = new LinkedHashMap<>();
+		TopocentricFrame groundStation = predict.getPosition();
+		if (groundStation != null) {
+			List<String> ids = new ArrayList<>();
+			List<TLEPropagator> propagators = new ArrayList<>();
+			for (Satellite cur : satelliteDao.findEnabled()) {
+				if (cur.getTle() == null) {
+					continue;
+				}
+				try {
+					propagators.add(TLEPropagator.selectExtrapolator(new TLE(cur.getTle().getRaw()[1], cur.getTle().getRaw()[2])));
+				} catch (Exception e) {
+					LOG.error("[{}] invalid tle", cur.getId(), e);
+					continue;
+				}
+				ids.add(cur.getId());
+			}
+			if (!propagators.isEmpty()) {
+				List<Ephemeris> calculated = predict.calculateEphemerides(startMillis, endMillis, stepMillis, groundStation, propagators);
+				for (int i = 0; i < ids.size(); i++) {
+					ephemerides.put(ids.get(i), calculated.get(i));
+				}
+			}
+		}
+		EphemerisSnapshot result = new EphemerisSnapshot();
+		result.setStartMillis(startMillis);
+		result.setEndMillis(endMillis);
+		result.setStepMillis(stepMillis);
+		result.setEphemerides(Collections.unmodifiableMap(ephemerides));
+		snapshot = result;
+		LOG.debug("ephemeris snapshot calculated for {} satellites in {} ms", ephemerides.size(), clock.millis() - current);
+	}
+
+	/**
+	 * @return latest snapshot or null if not calculated yet
+	 */
+	public EphemerisSnapshot getSnapshot() {
+		return snapshot;
+	}
+}
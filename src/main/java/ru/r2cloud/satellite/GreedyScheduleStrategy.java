@@ -0,0 +1,101 @@
+package ru.r2cloud.satellite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Transmitter;
+
+/**
+ * Reserve the first available pass of every transmitter in turn, so each
+ * transmitter gets roughly the same number of observations
+ */
+public class GreedyScheduleStrategy implements ScheduleStrategy {
+
+	@Override
+	public List<ObservationRequest> schedule(List<Transmitter> transmitters, Map<String, List<ObservationRequest>> passesByTransmitterId, Timetable timetable, Map<String, TimeSlot> slotById) {
+		List<ObservationRequest> result = new ArrayList<>();
+		// fill-in full observations
+		while (!Thread.currentThread().isInterrupted()) {
+			boolean moreObservationsToCheck = false;
+			for (Transmitter cur : transmitters) {
+				List<ObservationRequest> allPasses = passesByTransmitterId.get(cur.getId());
+				if (allPasses == null) {
+					continue;
+				}
+				ObservationRequest reserved = reserveFullSlot(allPasses, timetable, slotById);
+				if (reserved == null) {
+					continue;
+				}
+				moreObservationsToCheck = true;
+				result.add(reserved);
+				allPasses.remove(reserved);
+			}
+
+			if (!moreObservationsToCheck) {
+				break;
+			}
+		}
+		result.addAll(schedulePartially(transmitters, passesByTransmitterId, timetable, slotById));
+		return result;
+	}
+
+	static List<ObservationRequest> schedulePartially(List<Transmitter> transmitters, Map<String, List<ObservationRequest>> passesByTransmitterId, Timetable timetable, Map<String, TimeSlot> slotById) {
+		List<ObservationRequest> result = new ArrayList<>();
+		while (!Thread.currentThread().isInterrupted()) {
+			boolean moreObservationsToCheck = false;
+			for (Transmitter cur : transmitters) {
+				List<ObservationRequest> allPasses = passesByTransmitterId.get(cur.getId());
+				if (allPasses == null) {
+					continue;
+				}
+				ObservationRequest reserved = reservePartialSlot(allPasses, timetable, slotById);
+				if (reserved == null) {
+					continue;
+				}
+				moreObservationsToCheck = true;
+				result.add(reserved);
+				allPasses.remove(reserved);
+			}
+
+			if (!moreObservationsToCheck) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	static TimeSlot createSlot(ObservationRequest req) {
+		TimeSlot slot = new TimeSlot();
+		slot.setStart(req.getStartTimeMillis());
+		slot.setEnd(req.getEndTimeMillis());
+		slot.setFrequency(req.getCenterBandFrequency());
+		return slot;
+	}
+
+	private static ObservationRequest reserveFullSlot(List<ObservationRequest> allPasses, Timetable timetable, Map<String, TimeSlot> slotById) {
+		for (ObservationRequest curObservation : allPasses) {
+			TimeSlot slot = createSlot(curObservation);
+			if (timetable.addFully(slot)) {
+				slotById.put(curObservation.getId(), slot);
+				return curObservation;
+			}
+		}
+		return null;
+	}
+
+	private static ObservationRequest reservePartialSlot(List<ObservationRequest> allPasses, Timetable timetable, Map<String, TimeSlot> slotById) {
+		for (ObservationRequest curObservation : allPasses) {
+			TimeSlot partial = timetable.addPartially(createSlot(curObservation));
+			if (partial != null) {
+				curObservation.setStartTimeMillis(partial.getStart());
+				curObservation.setEndTimeMillis(partial.getEnd());
+				slotById.put(curObservation.getId(), partial);
+				return curObservation;
+			}
+		}
+		return null;
+	}
+
+}
@@ -4,13 +4,26 @@ import java.io.File;
 import java.util.List;
 
 import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationStatus;
+import ru.r2cloud.model.ObservationSummary;
+import ru.r2cloud.predict.Ephemeris;
 
 public interface IObservationDao {
 
 	List<Observation> findAll();
 
+	/**
+	 * Same as {@link #findAll()}, but without loading full observations
+	 */
+	List<ObservationSummary> findAllSummaries();
+
 	List<Observation> findAllBySatelliteId(String satelliteId);
 
+	List<Observation> findAllByStatus(ObservationStatus status);
+
+	List<Observation> findAll(ObservationFilter filter);
+
 	Observation find(String satelliteId, String observationId);
 
 	File saveImage(String satelliteId, String observationId, File a);
@@ -19,6 +32,8 @@ public interface IObservationDao {
 
 	File saveSpectogram(String satelliteId, String observationId, File a);
 
+	File saveEphemeris(String satelliteId, String observationId, Ephemeris ephemeris);
+
 	void insert(Observation observation);
 
 	void cancel(Observation observation);
@@ -0,0 +1,242 @@
+package ru.r2cloud.satellite;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Same as {@link OverlappedTimetable}, but bands are indexed by start time.
+ * Bands ending before the new slot cannot change the outcome, so the search
+ * starts from the first band which might reach the slot. The longest band
+ * seen so far bounds the lookup, thus every operation takes O(log n + k)
+ * where k is the number of bands within the slot and the longest band
+ */
+public class IndexedOverlappedTimetable implements Timetable {
+
+	private final NavigableMap<Long, BandTimeSlot> bands = new TreeMap<>();
+
+	private final long partialToleranceMillis;
+	// bands never shrink, so this is the upper bound
+	// of any band length until clear
+	private long maxBandLengthMillis = 0;
+
+	public IndexedOverlappedTimetable(long partialToleranceMillis) {
+		this.partialToleranceMillis = partialToleranceMillis;
+	}
+
+	@Override
+	public boolean addFully(TimeSlot slot) {
+		if (bands.isEmpty()) {
+			add(new BandTimeSlot(slot));
+			return true;
+		}
+		Entry<Long, BandTimeSlot> curEntry = findFirstCandidate(slot);
+		Entry<Long, BandTimeSlot> previousEntry = bands.lowerEntry(curEntry.getKey());
+		while (curEntry != null) {
+			BandTimeSlot cur = curEntry.getValue();
+			BandTimeSlot previous = previousEntry != null ? previousEntry.getValue() : null;
+			Entry<Long, BandTimeSlot> nextEntry = bands.higherEntry(curEntry.getKey());
+			boolean last = nextEntry == null;
+			// 1. slot fully sits in the current
+			if (cur.getStart() <= slot.getStart() && slot.getEnd() <= cur.getEnd()) {
+				if (slot.getFrequency() == cur.getFrequency()) {
+					cur.addSlot(slot);
+					return true;
+				}
+				return false;
+			}
+			// 2. slot is between the previous and current
+			if (previous != null && previous.getEnd() < slot.getStart() && slot.getEnd() < cur.getStart()) {
+				add(new BandTimeSlot(slot));
+				return true;
+			}
+			// 3. slot intersects with both previous and current
+			if (previous != null && slot.getStart() <= previous.getEnd() && cur.getStart() <= slot.getEnd()) {
+				// if both bands are the same and slot is the same, then merge all together
+				if (slot.getFrequency() == previous.getFrequency() && slot.getFrequency() == cur.getFrequency()) {
+					bands.remove(cur.getStart());
+					previous.setEnd(cur.getEnd());
+					previous.addSlot(slot);
+					// copy slots from the cur
+					for (TimeSlot curSlot : cur.getSlots()) {
+						previous.addSlot(curSlot);
+					}
+					updateMaxBandLength(previous);
+					return true;
+				}
+				return false;
+			}
+			// 4. slot is before the first (current)
+			if (previous == null && slot.getEnd() < cur.getStart()) {
+				add(new BandTimeSlot(slot));
+				return true;
+			}
+			// 5. slot is after the last (current)
+			if (last && cur.getEnd() < slot.getStart()) {
+				add(new BandTimeSlot(slot));
+				return true;
+			}
+			// 6. slot intersects with the current
+			if (slot.getStart() <= cur.getStart() && cur.getStart() <= slot.getEnd()) {
+				if (cur.getFrequency() == slot.getFrequency()) {
+					grow(cur, slot);
+					return true;
+				}
+				return false;
+			}
+			// 7. slot intersects with the current
+			if (last && cur.getStart() <= slot.getStart() && slot.getStart() <= cur.getEnd()) {
+				if (cur.getFrequency() == slot.getFrequency()) {
+					grow(cur, slot);
+					return true;
+				}
+				return false;
+			}
+			// 8. slot intersects with the previous
+			if (previous != null && slot.getStart() <= previous.getEnd() && slot.getEnd() < cur.getStart()) {
+				if (previous.getFrequency() == slot.getFrequency()) {
+					grow(previous, slot);
+					return true;
+				}
+				return false;
+			}
+			previousEntry = curEntry;
+			curEntry = nextEntry;
+		}
+		return false;
+	}
+
+	@Override
+	public TimeSlot addPartially(TimeSlot slot) {
+		if (bands.isEmpty()) {
+			add(new BandTimeSlot(slot));
+			return slot;
+		}
+		Entry<Long, BandTimeSlot> curEntry = findFirstCandidate(slot);
+		Entry<Long, BandTimeSlot> previousEntry = bands.lowerEntry(curEntry.getKey());
+		while (curEntry != null) {
+			BandTimeSlot cur = curEntry.getValue();
+			BandTimeSlot previous = previousEntry != null ? previousEntry.getValue() : null;
+			Entry<Long, BandTimeSlot> nextEntry = bands.higherEntry(curEntry.getKey());
+			boolean last = nextEntry == null;
+			// 1. slot intersects both previous and current
+			if (previous != null && slot.getStart() <= previous.getEnd() && cur.getStart() <= slot.getEnd()) {
+				boolean matchesPreviousFreq = slot.getFrequency() == previous.getFrequency() && slot.getFrequency() != cur.getFrequency();
+				boolean matchesCurrentFreq = slot.getFrequency() != previous.getFrequency() && slot.getFrequency() == cur.getFrequency();
+				boolean matchesNoneFreq = slot.getFrequency() != previous.getFrequency() && slot.getFrequency() != cur.getFrequency();
+				TimeSlot result = null;
+				if (matchesPreviousFreq && cur.getStart() - slot.getStart() >= partialToleranceMillis) {
+					previous.setEnd(cur.getStart());
+					result = create(slot.getStart(), cur.getStart(), slot.getFrequency());
+					previous.addSlot(result);
+					updateMaxBandLength(previous);
+				}
+				if (matchesCurrentFreq && slot.getEnd() - previous.getEnd() >= partialToleranceMillis) {
+					bands.remove(cur.getStart());
+					cur.setStart(previous.getEnd());
+					result = create(previous.getEnd(), slot.getEnd(), slot.getFrequency());
+					cur.addSlot(result);
+					add(cur);
+				}
+				if (matchesNoneFreq && cur.getStart() - previous.getEnd() >= partialToleranceMillis) {
+					result = create(previous.getEnd(), cur.getStart(), slot.getFrequency());
+					add(new BandTimeSlot(result));
+				}
+				return result;
+			}
+			if (previous == null && cur.getStart() <= slot.getEnd() && slot.getEnd() <= cur.getEnd()) {
+				if (slot.getFrequency() != cur.getFrequency() && cur.getStart() - slot.getStart() >= partialToleranceMillis) {
+					TimeSlot result = create(slot.getStart(), cur.getStart(), slot.getFrequency());
+					add(new BandTimeSlot(result));
+					return result;
+				}
+				return null;
+			}
+			if (last && cur.getStart() <= slot.getStart() && slot.getStart() <= cur.getEnd()) {
+				if (cur.getFrequency() != slot.getFrequency() && slot.getEnd() - cur.getEnd() >= partialToleranceMillis) {
+					TimeSlot result = create(cur.getEnd(), slot.getEnd(), slot.getFrequency());
+					add(new BandTimeSlot(result));
+					return result;
+				}
+				return null;
+			}
+			if (previous != null && slot.getStart() <= previous.getEnd() && slot.getEnd() < cur.getStart()) {
+				if (previous.getFrequency() != slot.getFrequency() && slot.getEnd() - previous.getEnd() >= partialToleranceMillis) {
+					TimeSlot result = create(previous.getEnd(), slot.getEnd(), slot.getFrequency());
+					add(new BandTimeSlot(result));
+					return result;
+				}
+				return null;
+			}
+			previousEntry = curEntry;
+			curEntry = nextEntry;
+		}
+		return null;
+	}
+
+	@Override
+	public void clear() {
+		bands.clear();
+		maxBandLengthMillis = 0;
+	}
+
+	@Override
+	public boolean remove(TimeSlot slot) {
+		if (slot == null) {
+			return false;
+		}
+		// slot normally belongs to the band around it
+		if (remove(slot, bands.subMap(slot.getStart() - maxBandLengthMillis, true, slot.getEnd(), true).values().iterator())) {
+			return true;
+		}
+		return remove(slot, bands.values().iterator());
+	}
+
+	private static boolean remove(TimeSlot slot, Iterator<BandTimeSlot> it) {
+		while (it.hasNext()) {
+			BandTimeSlot cur = it.next();
+			if (cur.getSlots().remove(slot)) {
+				if (cur.getSlots().isEmpty()) {
+					it.remove();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// bands ending before the slot start are not affected by the slot
+	private Entry<Long, BandTimeSlot> findFirstCandidate(TimeSlot slot) {
+		Entry<Long, BandTimeSlot> result = bands.ceilingEntry(slot.getStart() - maxBandLengthMillis);
+		if (result == null) {
+			result = bands.lastEntry();
+		}
+		return result;
+	}
+
+	private void grow(BandTimeSlot band, TimeSlot slot) {
+		bands.remove(band.getStart());
+		band.setStart(Math.min(slot.getStart(), band.getStart()));
+		band.setEnd(Math.max(slot.getEnd(), band.getEnd()));
+		band.addSlot(slot);
+		add(band);
+	}
+
+	private void add(BandTimeSlot band) {
+		bands.put(band.getStart(), band);
+		updateMaxBandLength(band);
+	}
+
+	private void updateMaxBandLength(BandTimeSlot band) {
+		maxBandLengthMillis = Math.max(maxBandLengthMillis, band.getEnd() - band.getStart());
+	}
+
+	private static TimeSlot create(long start, long end, long frequency) {
+		TimeSlot result = new TimeSlot();
+		result.setStart(start);
+		result.setEnd(end);
+		result.setFrequency(frequency);
+		return result;
+	}
+}
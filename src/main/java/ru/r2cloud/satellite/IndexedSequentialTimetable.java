@@ -0,0 +1,150 @@
+package ru.r2cloud.satellite;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Same as {@link SequentialTimetable}, but slots are kept in a balanced tree.
+ * Slots never overlap, so only the gaps around the new slot are checked and
+ * every operation takes O(log n). Slots shorter than the partial tolerance
+ * might produce inverted partial slots in both implementations and are not
+ * supported
+ */
+public class IndexedSequentialTimetable implements Timetable {
+
+	private final NavigableSet<TimeSlot> slots = new TreeSet<>(TimeSlotComparator.INSTANCE);
+
+	private final long partialToleranceMillis;
+
+	public IndexedSequentialTimetable(long partialToleranceMillis) {
+		this.partialToleranceMillis = partialToleranceMillis;
+	}
+
+	@Override
+	public boolean addFully(TimeSlot slot) {
+		if (slots.isEmpty()) {
+			slots.add(slot);
+			return true;
+		}
+		TimeSlot first = slots.first();
+		if (slot.getEnd() <= first.getStart()) {
+			slots.add(slot);
+			return true;
+		}
+		// the only gap which might fit the slot
+		TimeSlot next = startsAtOrAfter(slot.getEnd());
+		TimeSlot cur;
+		if (next == null) {
+			cur = slots.last();
+		} else {
+			cur = slots.lower(next);
+		}
+		if (cur.getEnd() <= slot.getStart()) {
+			slots.add(slot);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public TimeSlot addPartially(TimeSlot slot) {
+		if (slots.isEmpty()) {
+			slots.add(slot);
+			return slot;
+		}
+		long toleranceEnd = slot.getEnd() - partialToleranceMillis;
+		long toleranceStart = slot.getStart() + partialToleranceMillis;
+		TimeSlot first = slots.first();
+		if (toleranceEnd <= first.getStart()) {
+			TimeSlot partial = new TimeSlot();
+			partial.setStart(slot.getStart());
+			partial.setEnd(getEnd(slot, first));
+			slots.add(partial);
+			return partial;
+		}
+		// gaps ending before toleranceEnd cannot fit the slot
+		TimeSlot next = startsAtOrAfter(toleranceEnd);
+		TimeSlot cur;
+		if (next == null) {
+			cur = slots.last();
+		} else {
+			cur = slots.lower(next);
+		}
+		// gaps starting after toleranceStart cannot fit the slot either
+		while (cur.getEnd() <= toleranceStart) {
+			if (next == null) {
+				TimeSlot partial = new TimeSlot();
+				partial.setStart(getStart(slot, cur));
+				partial.setEnd(slot.getEnd());
+				slots.add(partial);
+				return partial;
+			}
+			boolean fitStart = cur.getEnd() <= slot.getStart();
+			boolean fitEnd = slot.getEnd() <= next.getStart();
+			if (fitStart && fitEnd) {
+				slots.add(slot);
+				return slot;
+			}
+			boolean fitToleranceStart = cur.getEnd() <= toleranceStart;
+			boolean fitToleranceEnd = toleranceEnd <= next.getStart();
+			if (fitStart && fitToleranceEnd) {
+				TimeSlot partial = new TimeSlot();
+				partial.setStart(slot.getStart());
+				partial.setEnd(getEnd(slot, next));
+				slots.add(partial);
+				return partial;
+			}
+			if (fitToleranceStart && fitEnd) {
+				TimeSlot partial = new TimeSlot();
+				partial.setStart(getStart(slot, cur));
+				partial.setEnd(slot.getEnd());
+				slots.add(partial);
+				return partial;
+			}
+			if (fitToleranceStart && fitToleranceEnd && toleranceEnd - toleranceStart >= partialToleranceMillis) {
+				TimeSlot partial = new TimeSlot();
+				partial.setStart(getStart(slot, cur));
+				partial.setEnd(getEnd(slot, next));
+				slots.add(partial);
+				return partial;
+			}
+			cur = next;
+			next = slots.higher(next);
+		}
+		return null;
+	}
+
+	private TimeSlot startsAtOrAfter(long time) {
+		TimeSlot probe = new TimeSlot();
+		probe.setStart(time);
+		probe.setEnd(Long.MIN_VALUE);
+		return slots.ceiling(probe);
+	}
+
+	private static long getStart(TimeSlot slot, TimeSlot existing) {
+		if (slot.getStart() > existing.getEnd()) {
+			return slot.getStart();
+		}
+		return existing.getEnd();
+	}
+
+	private static long getEnd(TimeSlot slot, TimeSlot existing) {
+		if (slot.getEnd() < existing.getStart()) {
+			return slot.getEnd();
+		}
+		return existing.getStart();
+	}
+
+	@Override
+	public void clear() {
+		slots.clear();
+	}
+
+	@Override
+	public boolean remove(TimeSlot slot) {
+		if (slot == null) {
+			return false;
+		}
+		return slots.remove(slot);
+	}
+}
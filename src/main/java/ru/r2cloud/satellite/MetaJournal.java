@@ -0,0 +1,200 @@
+package ru.r2cloud.satellite;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.util.NamingThreadFactory;
+import ru.r2cloud.util.SafeRunnable;
+
+/**
+ * Write-behind for meta.json. Updates of the same observation within the
+ * flush window are coalesced. The whole batch is journaled into the
+ * observation index with a single fsync before meta.json files are replaced,
+ * so that it can be replayed after a crash. If flush window is 0, then
+ * meta.json is written synchronously. Updates that cannot be lost are written
+ * synchronously regardless of the flush window.
+ */
+public class MetaJournal {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MetaJournal.class);
+	private static final String META_FILENAME = "meta.json";
+
+	private final Path basepath;
+	private final ObservationIndex index;
+	private final long flushMillis;
+	private final ScheduledThreadPoolExecutor executor;
+	private final Object flushLock = new Object();
+	// guarded by this
+	private final Map<ObservationCacheKey, JsonObject> pending = new LinkedHashMap<>();
+	private final Map<ObservationCacheKey, JsonObject> flushing = new LinkedHashMap<>();
+	private boolean flushScheduled = false;
+
+	public MetaJournal(Path basepath, ObservationIndex index, long flushMillis) {
+		this.basepath = basepath;
+		this.index = index;
+		this.flushMillis = flushMillis;
+		if (flushMillis > 0) {
+			executor = new ScheduledThreadPoolExecutor(1, new NamingThreadFactory("meta-flush"));
+			executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+		} else {
+			executor = null;
+		}
+	}
+
+	public boolean write(ObservationCacheKey key, JsonObject meta) {
+		if (executor == null) {
+			return writeSync(key, meta);
+		}
+		synchronized (this) {
+			pending.put(key, meta);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				executor.schedule(new SafeRunnable() {
+
+					@Override
+					public void safeRun() {
+						flush();
+					}
+				}, flushMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write meta.json and index it before return
+	 */
+	public boolean writeSync(ObservationCacheKey key, JsonObject meta) {
+		// pending update is older. in-progress flush should not overwrite the
+		// result
+		synchronized (flushLock) {
+			synchronized (this) {
+				pending.remove(key);
+			}
+			if (!writeMeta(getObservationBasepath(key), meta)) {
+				return false;
+			}
+			index.put(key, meta);
+			return true;
+		}
+	}
+
+	/**
+	 * @return the latest meta which is not yet written to disk or null
+	 */
+	public synchronized JsonObject get(ObservationCacheKey key) {
+		JsonObject result = pending.get(key);
+		if (result == null) {
+			result = flushing.get(key);
+		}
+		if (result == null) {
+			return null;
+		}
+		// caller might modify it
+		return new JsonObject(result);
+	}
+
+	public synchronized Map<ObservationCacheKey, JsonObject> getAll() {
+		Map<ObservationCacheKey, JsonObject> result = new LinkedHashMap<>(flushing);
+		result.putAll(pending);
+		return result;
+	}
+
+	public void delete(ObservationCacheKey key) {
+		// wait for in-progress flush. otherwise it might
+		// journal observation after it was deleted
+		synchronized (flushLock) {
+			synchronized (this) {
+				pending.remove(key);
+			}
+			index.delete(key);
+		}
+	}
+
+	/**
+	 * Write meta.json of observations journaled, but not applied before the
+	 * crash
+	 */
+	public void recover(Map<ObservationCacheKey, JsonObject> notApplied) {
+		if (notApplied.isEmpty()) {
+			return;
+		}
+		LOG.info("recovering {} observations from journal", notApplied.size());
+		boolean applied = true;
+		for (Entry<ObservationCacheKey, JsonObject> cur : notApplied.entrySet()) {
+			Path observationBasepath = getObservationBasepath(cur.getKey());
+			if (!Files.exists(observationBasepath)) {
+				continue;
+			}
+			applied &= writeMeta(observationBasepath, cur.getValue());
+		}
+		if (applied) {
+			index.checkpoint();
+		}
+	}
+
+	public void flush() {
+		synchronized (flushLock) {
+			Map<ObservationCacheKey, JsonObject> batch;
+			synchronized (this) {
+				flushScheduled = false;
+				if (pending.isEmpty()) {
+					return;
+				}
+				flushing.putAll(pending);
+				batch = new LinkedHashMap<>(pending);
+				pending.clear();
+			}
+			boolean journaled = index.journal(batch);
+			boolean applied = true;
+			for (Entry<ObservationCacheKey, JsonObject> cur : batch.entrySet()) {
+				applied &= writeMeta(getObservationBasepath(cur.getKey()), cur.getValue());
+			}
+			// on failure journaled records will be replayed on the next start
+			if (journaled && applied) {
+				index.checkpoint();
+			}
+			synchronized (this) {
+				flushing.clear();
+			}
+		}
+	}
+
+	private Path getObservationBasepath(ObservationCacheKey key) {
+		return basepath.resolve(key.getSatelliteId()).resolve("data").resolve(key.getObservationId());
+	}
+
+	private static boolean writeMeta(Path observationBasepath, JsonObject meta) {
+		Path temp = observationBasepath.resolve(META_FILENAME + ".tmp");
+		try (BufferedWriter w = Files.newBufferedWriter(temp)) {
+			w.append(meta.toString());
+		} catch (IOException e) {
+			LOG.error("unable to write meta", e);
+			return false;
+		}
+		Path dest = observationBasepath.resolve(META_FILENAME);
+		try {
+			Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOG.error("unable to write meta", e);
+			return false;
+		}
+		return true;
+	}
+
+}
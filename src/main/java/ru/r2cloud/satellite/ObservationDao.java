@@ -14,17 +14,32 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
 
 import ru.r2cloud.FilenameComparator;
 import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationCacheKey;
 import ru.r2cloud.model.ObservationComparator;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationStatus;
+import ru.r2cloud.model.ObservationSummary;
+import ru.r2cloud.predict.Ephemeris;
 import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.NamingThreadFactory;
 import ru.r2cloud.util.Util;
 
 public class ObservationDao implements IObservationDao {
@@ -34,9 +49,12 @@ public class ObservationDao implements IObservationDao {
 	private static final String DATA_FILENAME = "data.bin";
 	private static final String IMAGE_FILENAME = "a.jpg";
 	private static final String META_FILENAME = "meta.json";
+	public static final String EPHEMERIS_FILENAME = "ephemeris.csv";
 	private static final String OUTPUT_WAV_FILENAME = "output.wav";
 	private static final String OUTPUT_RAW_FILENAME_GZIPPED = "output.raw.gz";
 	private static final String OUTPUT_RAW_FILENAME = "output.raw";
+	private static final String INDEX_FILENAME = "observations.idx";
+	private static final String ARTIFACTS = "artifacts";
 
 	private static final Logger LOG = LoggerFactory.getLogger(ObservationDao.class);
 	private static final Map<String, List<Observation>> IN_FLIGHT_OBSERVATIONS = new HashMap<>();
@@ -45,18 +63,71 @@ public class ObservationDao implements IObservationDao {
 	private final int maxCount;
 	private final int maxCountRawData;
 	private final TimeSizeRetention retention;
+	private final ObservationIndex index;
+	private final MetaJournal journal;
+	private final ObservationScanner scanner;
+	private final Object cleanupLock = new Object();
+	private final Object metaLock = new Object();
+	// guarded by cleanupLock
+	private final Map<String, NavigableSet<Path>> observationsBySatellite = new HashMap<>();
+	private final Map<String, NavigableSet<Path>> rawBySatellite = new HashMap<>();
+	private final ThreadPoolExecutor deleter;
+	// evicted, but not yet deleted by the deleter
+	private final Set<Path> pendingDeletion = ConcurrentHashMap.newKeySet();
+	// index loaded during the journal recovery
+	// reused by the first findAll
+	private Map<ObservationCacheKey, JsonObject> recoveredIndex;
+	private volatile ObservationDaoListener listener;
 
 	public ObservationDao(Configuration config) {
 		this.basepath = config.getSatellitesBasePath();
+		this.index = new ObservationIndex(basepath.resolve(INDEX_FILENAME));
+		this.journal = new MetaJournal(basepath, index, config.getLong("scheduler.data.meta.flushMillis"));
+		// deletion of old observations can be slow on sd cards
+		// do not block the thread that saves new observation
+		this.deleter = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory("retention", Thread.MIN_PRIORITY));
+		this.deleter.allowCoreThreadTimeOut(true);
 		this.maxCount = config.getInteger("scheduler.data.retention.count");
 		this.maxCountRawData = config.getInteger("scheduler.data.retention.raw.count");
 		if (maxCountRawData > maxCount) {
 			LOG.error("scheduler.data.retention.raw.count: {} is more than scheduler.data.retention.count: {}. did you mean the opposite?", maxCountRawData, maxCount);
 		}
+		Integer scanThreads = config.getInteger("scheduler.data.scan.threads");
+		if (scanThreads == null) {
+			scanThreads = Runtime.getRuntime().availableProcessors();
+		}
+		this.scanner = new ObservationScanner(scanThreads);
 		Long maxRetentionSize = config.getLong("scheduler.data.retention.maxSizeBytes");
+		ObservationScanResult scan = null;
+		if (Files.exists(basepath)) {
+			recoveredIndex = index.load();
+			journal.recover(index.getNotApplied());
+			// single pass over the observations tree for both
+			// index rebuild and size-based retention
+			if (recoveredIndex == null || maxRetentionSize != null) {
+				scan = scanner.scan(basepath, recoveredIndex == null, maxRetentionSize != null);
+				if (scan != null && recoveredIndex == null) {
+					recoveredIndex = scan.getMeta();
+					index.rewrite(recoveredIndex);
+				}
+			}
+		}
 		if (maxRetentionSize != null) {
 			LOG.info("retention: keep last {}Mb of observations", (maxRetentionSize / 1024 / 1024));
-			retention = new TimeSizeRetention(maxRetentionSize, basepath);
+			retention = new TimeSizeRetention(maxRetentionSize, scan, new RetentionListener() {
+
+				@Override
+				public void onDelete(Path observation) {
+					ObservationCacheKey key = toKey(observation);
+					synchronized (ObservationDao.this) {
+						if (recoveredIndex != null) {
+							recoveredIndex.remove(key);
+						}
+					}
+					journal.delete(key);
+					notifyDelete(key);
+				}
+			}, deleter);
 		} else {
 			LOG.info("retention: keep last {} observations per satellite and last {} raw data", maxCount, maxCountRawData);
 			retention = null;
@@ -65,19 +136,108 @@ public class ObservationDao implements IObservationDao {
 
 	@Override
 	public List<Observation> findAll() {
+		Map<ObservationCacheKey, JsonObject> indexed = loadIndexed();
+		List<Observation> result = new ArrayList<>(indexed.size());
+		for (Entry<ObservationCacheKey, JsonObject> cur : indexed.entrySet()) {
+			Path observationBasepath = getObservationBasepath(cur.getKey().getSatelliteId(), cur.getKey().getObservationId());
+			if (pendingDeletion.contains(observationBasepath)) {
+				continue;
+			}
+			Observation observation = fromMeta(cur.getKey().getSatelliteId(), observationBasepath, cur.getValue());
+			if (observation == null) {
+				continue;
+			}
+			result.add(observation);
+		}
+		synchronized (IN_FLIGHT_OBSERVATIONS) {
+			for (List<Observation> inFlight : IN_FLIGHT_OBSERVATIONS.values()) {
+				result.addAll(inFlight);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public List<ObservationSummary> findAllSummaries() {
+		Map<ObservationCacheKey, JsonObject> indexed = loadIndexed();
+		List<ObservationSummary> result = new ArrayList<>(indexed.size());
+		for (Entry<ObservationCacheKey, JsonObject> cur : indexed.entrySet()) {
+			if (pendingDeletion.contains(getObservationBasepath(cur.getKey().getSatelliteId(), cur.getKey().getObservationId()))) {
+				continue;
+			}
+			try {
+				result.add(ObservationSummary.fromJson(cur.getKey(), cur.getValue()));
+			} catch (Exception e) {
+				LOG.error("unable to load meta from {}", cur.getKey(), e);
+			}
+		}
+		synchronized (IN_FLIGHT_OBSERVATIONS) {
+			for (List<Observation> inFlight : IN_FLIGHT_OBSERVATIONS.values()) {
+				for (Observation cur : inFlight) {
+					result.add(new ObservationSummary(new ObservationCacheKey(cur.getSatelliteId(), cur.getId()), cur));
+				}
+			}
+		}
+		return result;
+	}
+
+	private Map<ObservationCacheKey, JsonObject> loadIndexed() {
 		if (!Files.exists(basepath)) {
-			return Collections.emptyList();
+			return Collections.emptyMap();
+		}
+		Map<ObservationCacheKey, JsonObject> indexed;
+		synchronized (this) {
+			indexed = recoveredIndex;
+			recoveredIndex = null;
 		}
-		try (DirectoryStream<Path> ds = Files.newDirectoryStream(basepath)) {
-			List<Observation> result = new ArrayList<>();
-			for (Path curSatellite : ds) {
-				result.addAll(findAllBySatelliteId(curSatellite.getFileName().toString()));
+		if (indexed == null) {
+			indexed = index.load();
+		}
+		if (indexed == null) {
+			ObservationScanResult scan = scanner.scan(basepath, true, false);
+			if (scan == null) {
+				return Collections.emptyMap();
 			}
-			return result;
-		} catch (IOException e) {
-			LOG.error("unable to find all", e);
-			return Collections.emptyList();
+			indexed = scan.getMeta();
+			index.rewrite(indexed);
+		}
+		// not yet flushed to disk
+		indexed.putAll(journal.getAll());
+		return indexed;
+	}
+
+	@Override
+	public List<Observation> findAllByStatus(ObservationStatus status) {
+		ObservationFilter filter = new ObservationFilter();
+		filter.setStatus(status);
+		return findAll(filter);
+	}
+
+	@Override
+	public List<Observation> findAll(ObservationFilter filter) {
+		List<Observation> all;
+		if (filter.getSatelliteId() != null) {
+			all = findAllBySatelliteId(filter.getSatelliteId());
+		} else {
+			all = findAll();
+			Collections.sort(all, ObservationComparator.INSTANCE);
 		}
+		List<Observation> result = new ArrayList<>();
+		int skipped = 0;
+		for (Observation cur : all) {
+			if (filter.isLimitReached(result.size())) {
+				break;
+			}
+			if (!filter.matches(new ObservationSummary(cur.getSatelliteId(), cur.getId(), cur.getTransmitterId(), cur.getStartTimeMillis(), cur.getStatus()))) {
+				continue;
+			}
+			if (skipped < filter.getOffset()) {
+				skipped++;
+				continue;
+			}
+			result.add(cur);
+		}
+		return result;
 	}
 
 	@Override
@@ -137,41 +297,125 @@ public class ObservationDao implements IObservationDao {
 		return find(satelliteId, baseDirectory);
 	}
 
-	private static Observation find(String satelliteId, Path curDirectory) {
+	/**
+	 * Synchronize the index with the observation changed on disk by external
+	 * tools
+	 * 
+	 * @return current observation or null if it was deleted or partially written
+	 */
+	public Observation reindex(String satelliteId, String observationId) {
+		ObservationCacheKey key = new ObservationCacheKey(satelliteId, observationId);
+		Path observationBasepath = getObservationBasepath(satelliteId, observationId);
+		if (!Files.exists(observationBasepath)) {
+			journal.delete(key);
+			// might be in-flight
+			return find(satelliteId, observationId);
+		}
+		synchronized (metaLock) {
+			// not yet flushed update is newer than meta on disk
+			if (journal.get(key) == null) {
+				JsonObject meta = loadMeta(observationBasepath);
+				if (meta != null) {
+					index.put(key, meta);
+				}
+			}
+		}
+		return find(satelliteId, observationId);
+	}
+
+	private Observation find(String satelliteId, Path curDirectory) {
+		if (pendingDeletion.contains(curDirectory)) {
+			return null;
+		}
+		JsonObject meta = journal.get(new ObservationCacheKey(satelliteId, curDirectory.getFileName().toString()));
+		if (meta == null) {
+			meta = loadMeta(curDirectory);
+		}
+		if (meta == null) {
+			return null;
+		}
+		return fromMeta(satelliteId, curDirectory, meta);
+	}
+
+	static JsonObject loadMeta(Path curDirectory) {
 		Path dest = curDirectory.resolve(META_FILENAME);
 		if (!Files.exists(dest)) {
 			return null;
 		}
-		Observation full;
+		JsonObject meta;
 		try (BufferedReader r = Files.newBufferedReader(dest)) {
-			JsonObject meta = Json.parse(r).asObject();
-			full = Observation.fromJson(meta);
+			meta = Json.parse(r).asObject();
 		} catch (Exception e) {
 			LOG.error("unable to load meta from {}", dest, e);
 			return null;
 		}
+		// artifacts are recorded on save. probe only legacy meta
+		if (meta.get(ARTIFACTS) == null) {
+			meta.set(ARTIFACTS, probeArtifacts(curDirectory));
+		}
+		return meta;
+	}
 
-		Path a = curDirectory.resolve(IMAGE_FILENAME);
-		if (Files.exists(a)) {
-			full.setImagePath(a.toFile());
-			full.setaURL("/api/v1/admin/static/satellites/" + satelliteId + "/data/" + full.getId() + "/" + IMAGE_FILENAME);
+	private static JsonObject probeArtifacts(Path curDirectory) {
+		JsonObject result = new JsonObject();
+		if (Files.exists(curDirectory.resolve(IMAGE_FILENAME))) {
+			result.add("a", IMAGE_FILENAME);
 		}
-		Path data = curDirectory.resolve(DATA_FILENAME);
-		if (Files.exists(data)) {
-			full.setDataPath(data.toFile());
-			full.setDataURL("/api/v1/admin/static/satellites/" + satelliteId + "/data/" + full.getId() + "/" + DATA_FILENAME);
+		if (Files.exists(curDirectory.resolve(DATA_FILENAME))) {
+			result.add("data", DATA_FILENAME);
 		}
 		Path rawPath = resolveRawPath(curDirectory);
 		if (Files.exists(rawPath)) {
-			full.setRawPath(rawPath.toFile());
-			full.setRawURL("/api/v1/admin/static/satellites/" + satelliteId + "/data/" + full.getId() + "/" + rawPath.getFileName());
+			result.add("raw", rawPath.getFileName().toString());
+		}
+		if (Files.exists(curDirectory.resolve(SPECTOGRAM_FILENAME))) {
+			result.add("spectogram", SPECTOGRAM_FILENAME);
 		}
-		Path spectogram = curDirectory.resolve(SPECTOGRAM_FILENAME);
-		if (Files.exists(spectogram)) {
-			full.setSpectogramPath(spectogram.toFile());
-			full.setSpectogramURL("/api/v1/admin/static/satellites/" + satelliteId + "/data/" + full.getId() + "/" + SPECTOGRAM_FILENAME);
+		if (Files.exists(curDirectory.resolve(EPHEMERIS_FILENAME))) {
+			result.add("ephemeris", EPHEMERIS_FILENAME);
 		}
+		return result;
+	}
 
+	private static Observation fromMeta(String satelliteId, Path curDirectory, JsonObject meta) {
+		Observation full;
+		try {
+			full = Observation.fromJson(meta);
+		} catch (Exception e) {
+			LOG.error("unable to load meta from {}", curDirectory, e);
+			return null;
+		}
+		JsonValue artifactsValue = meta.get(ARTIFACTS);
+		if (artifactsValue == null || !artifactsValue.isObject()) {
+			return full;
+		}
+		JsonObject artifacts = artifactsValue.asObject();
+		String urlPrefix = "/api/v1/admin/static/satellites/" + satelliteId + "/data/" + full.getId() + "/";
+		String a = artifacts.getString("a", null);
+		if (a != null) {
+			full.setImagePath(curDirectory.resolve(a).toFile());
+			full.setaURL(urlPrefix + a);
+		}
+		String data = artifacts.getString("data", null);
+		if (data != null) {
+			full.setDataPath(curDirectory.resolve(data).toFile());
+			full.setDataURL(urlPrefix + data);
+		}
+		String raw = artifacts.getString("raw", null);
+		if (raw != null) {
+			full.setRawPath(curDirectory.resolve(raw).toFile());
+			full.setRawURL(urlPrefix + raw);
+		}
+		String spectogram = artifacts.getString("spectogram", null);
+		if (spectogram != null) {
+			full.setSpectogramPath(curDirectory.resolve(spectogram).toFile());
+			full.setSpectogramURL(urlPrefix + spectogram);
+		}
+		String ephemeris = artifacts.getString("ephemeris", null);
+		if (ephemeris != null) {
+			full.setEphemerisPath(curDirectory.resolve(ephemeris).toFile());
+			full.setEphemerisURL(urlPrefix + ephemeris);
+		}
 		return full;
 	}
 
@@ -197,6 +441,7 @@ public class ObservationDao implements IObservationDao {
 		if (!a.renameTo(dest.toFile())) {
 			return null;
 		}
+		updateArtifact(satelliteId, observationId, "a", IMAGE_FILENAME);
 		return dest.toFile();
 	}
 
@@ -210,6 +455,7 @@ public class ObservationDao implements IObservationDao {
 		if (!a.renameTo(dest.toFile())) {
 			return null;
 		}
+		updateArtifact(satelliteId, observationId, "data", DATA_FILENAME);
 		return dest.toFile();
 	}
 
@@ -223,6 +469,36 @@ public class ObservationDao implements IObservationDao {
 		if (!a.renameTo(dest.toFile())) {
 			return null;
 		}
+		updateArtifact(satelliteId, observationId, "spectogram", SPECTOGRAM_FILENAME);
+		return dest.toFile();
+	}
+
+	@Override
+	public File saveEphemeris(String satelliteId, String observationId, Ephemeris ephemeris) {
+		Path observationBasepath = getObservationBasepath(satelliteId, observationId);
+		Path dest = observationBasepath.resolve(EPHEMERIS_FILENAME);
+		if (Files.exists(dest)) {
+			LOG.info(DEST_ALREADY_EXIST_MESSAGE, dest.toAbsolutePath());
+			return null;
+		}
+		if (!Files.exists(observationBasepath)) {
+			return null;
+		}
+		// ensure temp and output are on the same filestore
+		Path temp = observationBasepath.resolve(EPHEMERIS_FILENAME + ".tmp");
+		try (BufferedWriter w = Files.newBufferedWriter(temp)) {
+			ephemeris.toCsv(w);
+		} catch (IOException e) {
+			Util.logIOException(LOG, "unable to save ephemeris: " + temp.toAbsolutePath(), e);
+			return null;
+		}
+		try {
+			Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOG.error("unable to move .tmp to dst", e);
+			return null;
+		}
+		updateArtifact(satelliteId, observationId, "ephemeris", EPHEMERIS_FILENAME);
 		return dest.toFile();
 	}
 
@@ -260,8 +536,7 @@ public class ObservationDao implements IObservationDao {
 
 	@Override
 	public File update(Observation observation, File rawFile) {
-		synchronized (IN_FLIGHT_OBSERVATIONS) {
-			cancel(observation);
+		try {
 			if (retention == null) {
 				cleanupPreviousObservations(observation);
 			}
@@ -271,38 +546,160 @@ public class ObservationDao implements IObservationDao {
 				return null;
 			}
 
-			if (!update(observation)) {
+			// raw file goes first, so that meta.json is written only once
+			// together with the artifact manifest
+			File result = insertRawFile(observation, rawFile);
+			// new observation. do not lose it on crash
+			if (!update(observation, true, result)) {
+				// raw file is not referenced by any meta. let caller retry or
+				// cleanup
+				if (result != null && !result.renameTo(rawFile)) {
+					LOG.error("unable to restore raw file from {} to {}", result.getAbsolutePath(), rawFile.getAbsolutePath());
+				}
 				return null;
 			}
+			if (retention == null) {
+				trackObservation(observation, result != null);
+			}
+			if (result != null && retention != null) {
+				// re-index and cleanup on new raw File
+				// rawFile is the biggest file in the observation
+				retention.indexAndCleanup(observationBasePath);
+			}
+			return result;
+		} finally {
+			// remove from in-flight only after meta is on disk
+			// so that concurrent readers will always see the observation
+			cancel(observation);
+		}
+	}
+
+	/**
+	 * Make room for the upcoming observations. Supported only by size-based
+	 * retention
+	 * 
+	 * @param reservedBytes - expected size of the upcoming observations
+	 * @param shortageBytes - bytes missing on disk even if retention size is
+	 *                      respected
+	 */
+	public void reserve(long reservedBytes, long shortageBytes) {
+		if (retention == null) {
+			if (shortageBytes > 0) {
+				LOG.warn("not enough disk space for the upcoming observations: {} bytes missing. configure scheduler.data.retention.maxSizeBytes to free it up", shortageBytes);
+			}
+			return;
+		}
+		// shortage was calculated before the reservation
+		long remaining = shortageBytes - retention.reserve(reservedBytes);
+		if (remaining > 0) {
+			long freed = retention.free(remaining);
+			if (freed < remaining) {
+				LOG.warn("not enough disk space for the upcoming observations: {} bytes missing", remaining - freed);
+			}
 		}
-		return insertRawFile(observation, rawFile);
 	}
 
 	private void cleanupPreviousObservations(Observation observation) {
-		try {
+		synchronized (cleanupLock) {
+			cleanupPreviousObservationsInternally(observation);
+		}
+	}
+
+	private void cleanupPreviousObservationsInternally(Observation observation) {
+		NavigableSet<Path> observations = observationsBySatellite.get(observation.getSatelliteId());
+		NavigableSet<Path> withRaw = rawBySatellite.get(observation.getSatelliteId());
+		if (observations == null) {
+			// list the data directory only once
+			// and then track all changes in memory
+			observations = new TreeSet<>(FilenameComparator.INSTANCE_ASC);
+			withRaw = new TreeSet<>(FilenameComparator.INSTANCE_ASC);
 			Path satelliteBasePath = basepath.resolve(observation.getSatelliteId()).resolve("data");
 			if (Files.exists(satelliteBasePath)) {
-				List<Path> dataDirs = Util.toList(Files.newDirectoryStream(satelliteBasePath));
-				Collections.sort(dataDirs, FilenameComparator.INSTANCE_ASC);
-				// the new observation will be added after the cleanup
-				// see below
-				int currentPlusNew = dataDirs.size() + 1;
-				if (currentPlusNew > maxCountRawData) {
-					for (int i = 0; i < (currentPlusNew - maxCountRawData); i++) {
-						Util.deleteQuietly(resolveRawPath(dataDirs.get(i)));
+				try (DirectoryStream<Path> ds = Files.newDirectoryStream(satelliteBasePath)) {
+					for (Path cur : ds) {
+						observations.add(cur);
+						if (Files.exists(resolveRawPath(cur))) {
+							withRaw.add(cur);
+						}
 					}
+				} catch (IOException e) {
+					LOG.error("unable to cleanup old observations", e);
+					return;
 				}
-				if (currentPlusNew > maxCount) {
-					for (int i = 0; i < (currentPlusNew - maxCount); i++) {
-						Util.deleteDirectory(dataDirs.get(i));
+			}
+			observationsBySatellite.put(observation.getSatelliteId(), observations);
+			rawBySatellite.put(observation.getSatelliteId(), withRaw);
+		}
+		// the new observation will be added after the cleanup
+		// see below
+		while (observations.size() + 1 > maxCount) {
+			Path oldest = observations.pollFirst();
+			if (oldest == null) {
+				break;
+			}
+			withRaw.remove(oldest);
+			pendingDeletion.add(oldest);
+			notifyDelete(toKey(oldest));
+			deleter.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (Util.deleteDirectory(oldest)) {
+						journal.delete(toKey(oldest));
 					}
+					pendingDeletion.remove(oldest);
 				}
+			});
+		}
+		while (withRaw.size() + 1 > maxCountRawData) {
+			Path oldest = withRaw.pollFirst();
+			if (oldest == null) {
+				break;
 			}
-		} catch (IOException e) {
-			LOG.error("unable to cleanup old observations", e);
+			deleter.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					Util.deleteQuietly(resolveRawPath(oldest));
+					updateArtifact(observation.getSatelliteId(), oldest.getFileName().toString(), "raw", null);
+					ObservationDaoListener copy = listener;
+					if (copy != null) {
+						copy.onArtifactsChanged(toKey(oldest));
+					}
+				}
+			});
+		}
+	}
+
+	private void trackObservation(Observation observation, boolean raw) {
+		synchronized (cleanupLock) {
+			NavigableSet<Path> observations = observationsBySatellite.get(observation.getSatelliteId());
+			NavigableSet<Path> withRaw = rawBySatellite.get(observation.getSatelliteId());
+			if (observations == null || withRaw == null) {
+				return;
+			}
+			Path current = getObservationBasepath(observation);
+			observations.add(current);
+			if (raw) {
+				withRaw.add(current);
+			}
+		}
+	}
+
+	private void notifyDelete(ObservationCacheKey key) {
+		ObservationDaoListener copy = listener;
+		if (copy != null) {
+			copy.onDelete(key);
 		}
 	}
 
+	/**
+	 * Notify about observations deleted or changed by the retention
+	 */
+	public void setListener(ObservationDaoListener listener) {
+		this.listener = listener;
+	}
+
 	private File insertRawFile(Observation observation, File rawFile) {
 		String filename;
 		if (rawFile.getName().endsWith("wav")) {
@@ -325,32 +722,84 @@ public class ObservationDao implements IObservationDao {
 			LOG.error("unable to save file from {} to {}. Check src and dst are on the same filesystem", rawFile.getAbsolutePath(), dest.toFile().getAbsolutePath());
 			return null;
 		}
-		if (retention != null) {
-			// re-index and cleanup on new raw File
-			// rawFile is the biggest file in the observation
-			retention.indexAndCleanup(observationBasepath);
-		}
 		return dest.toFile();
 	}
 
 	@Override
 	public boolean update(Observation cur) {
+		return update(cur, ObservationStatus.RECEIVED.equals(cur.getStatus()), null);
+	}
+
+	private boolean update(Observation cur, boolean durable, File raw) {
 		JsonObject meta = cur.toJson(null);
-		Path temp = getObservationBasepath(cur).resolve(META_FILENAME + ".tmp");
-		try (BufferedWriter w = Files.newBufferedWriter(temp)) {
-			w.append(meta.toString());
-		} catch (IOException e) {
-			LOG.error("unable to write meta", e);
-			return false;
+		Path observationBasepath = getObservationBasepath(cur);
+		ObservationCacheKey key = new ObservationCacheKey(cur.getSatelliteId(), cur.getId());
+		synchronized (metaLock) {
+			// keep artifacts recorded so far
+			JsonObject artifacts = getArtifacts(findMeta(key, observationBasepath));
+			if (raw != null) {
+				artifacts.set("raw", raw.getName());
+			}
+			meta.add(ARTIFACTS, artifacts);
+			if (durable) {
+				return journal.writeSync(key, meta);
+			}
+			return journal.write(key, meta);
 		}
-		Path dest = getObservationBasepath(cur).resolve(META_FILENAME);
-		try {
-			Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
-			return true;
-		} catch (IOException e) {
-			LOG.error("unable to write meta", e);
-			return false;
+	}
+
+	private void updateArtifact(String satelliteId, String observationId, String name, String filename) {
+		ObservationCacheKey key = new ObservationCacheKey(satelliteId, observationId);
+		// artifacts might be updated concurrently with the observation itself
+		synchronized (metaLock) {
+			JsonObject meta = findMeta(key, getObservationBasepath(satelliteId, observationId));
+			if (meta == null) {
+				return;
+			}
+			JsonObject artifacts = getArtifacts(meta);
+			if (filename != null) {
+				artifacts.set(name, filename);
+			} else {
+				artifacts.remove(name);
+			}
+			meta.set(ARTIFACTS, artifacts);
+			journal.write(key, meta);
+		}
+	}
+
+	// the latest meta without probing the observation directory
+	private JsonObject findMeta(ObservationCacheKey key, Path observationBasepath) {
+		JsonObject result = journal.get(key);
+		if (result == null) {
+			result = index.get(key);
 		}
+		if (result == null) {
+			result = loadMeta(observationBasepath);
+		}
+		return result;
+	}
+
+	private static JsonObject getArtifacts(JsonObject meta) {
+		if (meta == null) {
+			return new JsonObject();
+		}
+		JsonValue result = meta.get(ARTIFACTS);
+		if (result == null || !result.isObject()) {
+			return new JsonObject();
+		}
+		return new JsonObject(result.asObject());
+	}
+
+	/**
+	 * Write all pending meta updates to disk
+	 */
+	public void flush() {
+		journal.flush();
+	}
+
+	private static ObservationCacheKey toKey(Path observationBasepath) {
+		// basepath/satelliteId/data/observationId
+		return new ObservationCacheKey(observationBasepath.getParent().getParent().getFileName().toString(), observationBasepath.getFileName().toString());
 	}
 
 	private Path getObservationBasepath(Observation observation) {
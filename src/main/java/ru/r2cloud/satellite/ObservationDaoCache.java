@@ -2,161 +2,389 @@ package ru.r2cloud.satellite;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import ru.r2cloud.ObservationFullComparator;
 import ru.r2cloud.model.Observation;
 import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationStatus;
+import ru.r2cloud.model.ObservationSummary;
+import ru.r2cloud.model.ObservationSummaryComparator;
+import ru.r2cloud.predict.Ephemeris;
 
-public class ObservationDaoCache implements IObservationDao {
+/**
+ * Disk I/O is never performed while holding the lock. Readers wait only for
+ * in-memory index updates. Observations loaded from disk concurrently with
+ * any write are returned, but not cached. Compact summaries are kept for every
+ * observation, while full observations are kept only for the most recently
+ * used ones
+ */
+public class ObservationDaoCache implements IObservationDao, ObservationDaoListener {
 
 	private final IObservationDao impl;
-	private final Map<String, Observation> cacheById = new HashMap<>();
-	private final Set<ObservationCacheKey> allObservations = new HashSet<>();
+	// guarded by itself. access-ordered LRU
+	private final Map<String, Observation> cacheById;
+	private final AtomicLong modifications = new AtomicLong();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// guarded by lock
+	private final Map<ObservationCacheKey, ObservationSummary> allObservations = new HashMap<>();
+	// secondary indexes. all ordered by start time desc
+	private final NavigableSet<ObservationSummary> byStartTime = new TreeSet<>(ObservationSummaryComparator.INSTANCE);
+	private final Map<String, NavigableSet<ObservationSummary>> bySatellite = new HashMap<>();
+	private final Map<String, NavigableSet<ObservationSummary>> byTransmitter = new HashMap<>();
+	private final Map<ObservationStatus, NavigableSet<ObservationSummary>> byStatus = new EnumMap<>(ObservationStatus.class);
 
-	public ObservationDaoCache(IObservationDao impl) {
+	public ObservationDaoCache(IObservationDao impl, int maxCachedObservations) {
 		this.impl = impl;
-		synchronized (cacheById) {
-			for (Observation cur : impl.findAll()) {
-				cacheById.put(cur.getId(), cur);
-				allObservations.add(new ObservationCacheKey(cur.getSatelliteId(), cur.getId()));
+		this.cacheById = new LinkedHashMap<String, Observation>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Observation> eldest) {
+				return size() > maxCachedObservations;
+			}
+		};
+		// full observations are loaded on demand
+		List<ObservationSummary> all = impl.findAllSummaries();
+		lock.writeLock().lock();
+		try {
+			for (ObservationSummary cur : all) {
+				index(cur);
 			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
 	@Override
 	public List<Observation> findAll() {
-		synchronized (cacheById) {
-			List<Observation> result = new ArrayList<>(allObservations.size());
-			List<ObservationCacheKey> missing = new ArrayList<>();
-			for (ObservationCacheKey id : allObservations) {
-				Observation cur = cacheById.get(id.getObservationId());
-				if (cur == null) {
-					missing.add(id);
-				} else {
-					result.add(cur);
-				}
-			}
-			result.addAll(findAndIndex(missing));
-			return result;
+		return findAll(new ObservationFilter());
+	}
+
+	@Override
+	public List<ObservationSummary> findAllSummaries() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(byStartTime);
+		} finally {
+			lock.readLock().unlock();
 		}
 	}
 
 	@Override
 	public List<Observation> findAllBySatelliteId(String satelliteId) {
-		synchronized (cacheById) {
-			List<Observation> result = new ArrayList<>();
-			List<ObservationCacheKey> missing = new ArrayList<>();
-			for (ObservationCacheKey id : allObservations) {
-				if (!id.getSatelliteId().equals(satelliteId)) {
+		ObservationFilter filter = new ObservationFilter();
+		filter.setSatelliteId(satelliteId);
+		return findAll(filter);
+	}
+
+	@Override
+	public List<Observation> findAllByStatus(ObservationStatus status) {
+		ObservationFilter filter = new ObservationFilter();
+		filter.setStatus(status);
+		return findAll(filter);
+	}
+
+	@Override
+	public List<Observation> findAll(ObservationFilter filter) {
+		long version = modifications.get();
+		List<Observation> result = new ArrayList<>();
+		// sub sets cannot be inverted
+		if (filter.getStartTimeMillisFrom() != null && filter.getStartTimeMillisTo() != null && filter.getStartTimeMillisFrom() > filter.getStartTimeMillisTo()) {
+			return result;
+		}
+		List<ObservationCacheKey> missing = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			NavigableSet<ObservationSummary> source = byStartTime;
+			if (filter.getSatelliteId() != null) {
+				source = smallest(source, bySatellite.get(filter.getSatelliteId()));
+			}
+			if (filter.getTransmitterId() != null) {
+				source = smallest(source, byTransmitter.get(filter.getTransmitterId()));
+			}
+			if (filter.getStatus() != null) {
+				source = smallest(source, byStatus.get(filter.getStatus()));
+			}
+			if (filter.getStartTimeMillisTo() != null) {
+				// start time desc, so "to" is the head
+				source = source.tailSet(new ObservationSummary(null, null, null, filter.getStartTimeMillisTo() - 1, null), true);
+			}
+			if (filter.getStartTimeMillisFrom() != null) {
+				source = source.headSet(new ObservationSummary(null, null, null, filter.getStartTimeMillisFrom() - 1, null), false);
+			}
+			int skipped = 0;
+			int pageSize = 0;
+			for (ObservationSummary cur : source) {
+				if (filter.isLimitReached(pageSize)) {
+					break;
+				}
+				if (!filter.matches(cur)) {
+					continue;
+				}
+				if (skipped < filter.getOffset()) {
+					skipped++;
 					continue;
 				}
-				Observation cur = cacheById.get(id.getObservationId());
-				if (cur == null) {
-					missing.add(id);
+				pageSize++;
+				Observation observation = getCached(cur.getId());
+				if (observation == null) {
+					missing.add(cur.getKey());
 				} else {
-					result.add(cur);
+					result.add(observation);
 				}
 			}
-			result.addAll(findAndIndex(missing));
-			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (!missing.isEmpty()) {
+			result.addAll(findAndIndex(version, missing));
+			Collections.sort(result, ObservationFullComparator.INSTANCE);
+		}
+		return result;
+	}
+
+	private static NavigableSet<ObservationSummary> smallest(NavigableSet<ObservationSummary> current, NavigableSet<ObservationSummary> candidate) {
+		if (candidate == null) {
+			return Collections.emptyNavigableSet();
 		}
+		if (candidate.size() < current.size()) {
+			return candidate;
+		}
+		return current;
 	}
 
 	// this will load into allObservations cache
 	// if observation somehow added onto disk directly
 	// shouldn't happen in real life, mostly used by tests
-	private Collection<? extends Observation> findAndIndex(List<ObservationCacheKey> missing) {
+	private List<Observation> findAndIndex(long version, List<ObservationCacheKey> missing) {
 		List<Observation> result = new ArrayList<>();
 		for (ObservationCacheKey cur : missing) {
 			Observation observation = impl.find(cur.getSatelliteId(), cur.getObservationId());
+			cacheIfNotModified(version, cur, observation);
+			if (observation != null) {
+				result.add(observation);
+			}
+		}
+		return result;
+	}
+
+	private void cacheIfNotModified(long version, ObservationCacheKey key, Observation observation) {
+		lock.writeLock().lock();
+		try {
+			// observation might be loaded before the concurrent write completed
+			if (modifications.get() != version) {
+				return;
+			}
 			if (observation == null) {
-				continue;
+				unindex(key);
+				return;
+			}
+			putCached(observation);
+			index(key, observation);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void invalidate(ObservationCacheKey key, Observation indexed) {
+		lock.writeLock().lock();
+		try {
+			modifications.incrementAndGet();
+			removeCached(key.getObservationId());
+			if (indexed == null) {
+				unindex(key);
+			} else {
+				index(key, indexed);
 			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void invalidate(String observationId) {
+		lock.writeLock().lock();
+		try {
+			modifications.incrementAndGet();
+			removeCached(observationId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Observation getCached(String observationId) {
+		synchronized (cacheById) {
+			return cacheById.get(observationId);
+		}
+	}
+
+	private void putCached(Observation observation) {
+		synchronized (cacheById) {
 			cacheById.put(observation.getId(), observation);
-			allObservations.add(cur);
-			result.add(observation);
 		}
-		return result;
+	}
+
+	private void removeCached(String observationId) {
+		synchronized (cacheById) {
+			cacheById.remove(observationId);
+		}
+	}
+
+	private void index(ObservationCacheKey key, Observation observation) {
+		index(new ObservationSummary(key, observation));
+	}
+
+	private void index(ObservationSummary summary) {
+		ObservationCacheKey key = summary.getKey();
+		unindex(key);
+		allObservations.put(key, summary);
+		byStartTime.add(summary);
+		add(bySatellite, summary.getSatelliteId(), summary);
+		if (summary.getTransmitterId() != null) {
+			add(byTransmitter, summary.getTransmitterId(), summary);
+		}
+		if (summary.getStatus() != null) {
+			add(byStatus, summary.getStatus(), summary);
+		}
+	}
+
+	private void unindex(ObservationCacheKey key) {
+		ObservationSummary previous = allObservations.remove(key);
+		if (previous == null) {
+			return;
+		}
+		byStartTime.remove(previous);
+		remove(bySatellite, previous.getSatelliteId(), previous);
+		remove(byTransmitter, previous.getTransmitterId(), previous);
+		remove(byStatus, previous.getStatus(), previous);
+	}
+
+	private static <K> void add(Map<K, NavigableSet<ObservationSummary>> index, K key, ObservationSummary summary) {
+		NavigableSet<ObservationSummary> values = index.get(key);
+		if (values == null) {
+			values = new TreeSet<>(ObservationSummaryComparator.INSTANCE);
+			index.put(key, values);
+		}
+		values.add(summary);
+	}
+
+	private static <K> void remove(Map<K, NavigableSet<ObservationSummary>> index, K key, ObservationSummary summary) {
+		if (key == null) {
+			return;
+		}
+		NavigableSet<ObservationSummary> values = index.get(key);
+		if (values == null) {
+			return;
+		}
+		values.remove(summary);
+		if (values.isEmpty()) {
+			index.remove(key);
+		}
 	}
 
 	@Override
 	public Observation find(String satelliteId, String observationId) {
-		synchronized (cacheById) {
-			Observation result = cacheById.get(observationId);
-			if (result == null) {
-				result = impl.find(satelliteId, observationId);
-				if (result != null) {
-					cacheById.put(observationId, result);
-					// ensure indexes in allObservations
-					allObservations.add(new ObservationCacheKey(satelliteId, observationId));
-				}
-			}
+		Observation result = getCached(observationId);
+		if (result != null) {
 			return result;
 		}
+		long version = modifications.get();
+		result = impl.find(satelliteId, observationId);
+		if (result != null) {
+			// ensure indexes in allObservations
+			cacheIfNotModified(version, new ObservationCacheKey(satelliteId, observationId), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Replace cached observation with the one changed on disk by external tools
+	 *
+	 * @param observation - current observation or null if it was deleted
+	 */
+	public void refresh(ObservationCacheKey key, Observation observation) {
+		invalidate(key, observation);
+	}
+
+	@Override
+	public void onDelete(ObservationCacheKey key) {
+		invalidate(key, null);
+	}
+
+	@Override
+	public void onArtifactsChanged(ObservationCacheKey key) {
+		invalidate(key.getObservationId());
 	}
 
 	@Override
 	public File saveImage(String satelliteId, String observationId, File a) {
-		synchronized (cacheById) {
-			cacheById.remove(observationId);
-		}
-		return impl.saveImage(satelliteId, observationId, a);
+		File result = impl.saveImage(satelliteId, observationId, a);
+		invalidate(observationId);
+		return result;
 	}
 
 	@Override
 	public File saveData(String satelliteId, String observationId, File a) {
-		synchronized (cacheById) {
-			cacheById.remove(observationId);
-		}
-		return impl.saveData(satelliteId, observationId, a);
+		File result = impl.saveData(satelliteId, observationId, a);
+		invalidate(observationId);
+		return result;
 	}
 
 	@Override
 	public File saveSpectogram(String satelliteId, String observationId, File a) {
-		synchronized (cacheById) {
-			cacheById.remove(observationId);
-		}
-		return impl.saveSpectogram(satelliteId, observationId, a);
+		File result = impl.saveSpectogram(satelliteId, observationId, a);
+		invalidate(observationId);
+		return result;
+	}
+
+	@Override
+	public File saveEphemeris(String satelliteId, String observationId, Ephemeris ephemeris) {
+		File result = impl.saveEphemeris(satelliteId, observationId, ephemeris);
+		invalidate(observationId);
+		return result;
 	}
 
 	@Override
 	public void insert(Observation observation) {
 		impl.insert(observation);
-		synchronized (cacheById) {
-			allObservations.add(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()));
-		}
+		invalidate(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()), observation);
 	}
 
 	@Override
 	public void cancel(Observation observation) {
 		impl.cancel(observation);
-		synchronized (cacheById) {
-			cacheById.remove(observation.getId());
-			allObservations.remove(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()));
-		}
+		invalidate(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()), null);
 	}
 
 	@Override
 	public File update(Observation observation, File rawFile) {
-		synchronized (cacheById) {
-			cacheById.remove(observation.getId());
-			// update also insert new observation
-			allObservations.add(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()));
-		}
-		return impl.update(observation, rawFile);
+		File result = impl.update(observation, rawFile);
+		// update also insert new observation
+		invalidate(new ObservationCacheKey(observation.getSatelliteId(), observation.getId()), observation);
+		return result;
 	}
 
 	@Override
 	public boolean update(Observation cur) {
-		synchronized (cacheById) {
-			cacheById.remove(cur.getId());
+		boolean result = impl.update(cur);
+		if (result) {
+			invalidate(new ObservationCacheKey(cur.getSatelliteId(), cur.getId()), cur);
+		} else {
+			invalidate(cur.getId());
 		}
-		return impl.update(cur);
+		return result;
 	}
 
 }
@@ -0,0 +1,11 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.model.ObservationCacheKey;
+
+public interface ObservationDaoListener {
+
+	void onDelete(ObservationCacheKey key);
+
+	void onArtifactsChanged(ObservationCacheKey key);
+
+}
@@ -3,7 +3,15 @@ package ru.r2cloud.satellite;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.orekit.propagation.analytical.tle.TLEPropagator;
 import org.slf4j.Logger;
@@ -15,6 +23,7 @@ import ru.r2cloud.model.SatPass;
 import ru.r2cloud.model.SdrType;
 import ru.r2cloud.model.Tle;
 import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.PassCache;
 import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.util.Configuration;
 
@@ -23,25 +32,106 @@ public class ObservationFactory {
 	private static final Logger LOG = LoggerFactory.getLogger(ObservationFactory.class);
 	public static final int DC_OFFSET = 10_000;
 	private static final long MAX_OBSERVATION_MILLIS = 15 * 60 * 1000;
+	public static final long PREDICT_INTERVAL_MILLIS = (long) (PredictOreKit.PREDICT_INTERVAL_SECONDS * 1000);
 
 	private final PredictOreKit predict;
+	private final PassCache passCache;
 	private final Configuration config;
+	private final ForkJoinPool pool;
 
-	public ObservationFactory(PredictOreKit predict, Configuration config) {
+	public ObservationFactory(PredictOreKit predict, PassCache passCache, Configuration config) {
 		this.predict = predict;
+		this.passCache = passCache;
 		this.config = config;
+		Integer threads = config.getInteger("scheduler.predict.threads");
+		if (threads == null) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		// worker threads are started on demand and terminated when idle
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/**
+	 * Predict passes for every transmitter. Each prediction uses its own
+	 * TLEPropagator, so predictions run in parallel. Transmitters of the same
+	 * satellite share the prediction through {@link PassCache}.
+	 * The result is ordered the same way as the input and contains only
+	 * transmitters with at least one pass
+	 */
+	public Map<String, List<ObservationRequest>> createSchedule(Date date, List<Transmitter> transmitters) {
+		return createSchedule(date.getTime(), date.getTime(), date.getTime() + PREDICT_INTERVAL_MILLIS, transmitters);
+	}
+
+	/**
+	 * Same as {@link #createSchedule(Date, List)}, but only passes with the max
+	 * elevation within [windowStartMillis, windowEndMillis) are returned
+	 */
+	public Map<String, List<ObservationRequest>> createSchedule(long current, long windowStartMillis, long windowEndMillis, List<Transmitter> transmitters) {
+		Map<String, List<ObservationRequest>> result = new LinkedHashMap<>();
+		if (transmitters.isEmpty()) {
+			return result;
+		}
+		long start = System.currentTimeMillis();
+		List<Callable<List<ObservationRequest>>> tasks = new ArrayList<>(transmitters.size());
+		for (Transmitter cur : transmitters) {
+			tasks.add(new Callable<List<ObservationRequest>>() {
+
+				@Override
+				public List<ObservationRequest> call() throws Exception {
+					return createSchedule(current, windowStartMillis, windowEndMillis, cur);
+				}
+			});
+		}
+		List<Future<List<ObservationRequest>>> futures;
+		try {
+			futures = pool.invokeAll(tasks);
+		} catch (RejectedExecutionException e) {
+			LOG.info("prediction is stopped");
+			return result;
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			Transmitter cur = transmitters.get(i);
+			List<ObservationRequest> passes;
+			try {
+				passes = futures.get(i).get();
+			} catch (ExecutionException e) {
+				LOG.error("unable to predict passes for: {}", cur.getId(), e.getCause());
+				continue;
+			} catch (CancellationException e) {
+				LOG.info("prediction is stopped");
+				break;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			if (passes.isEmpty()) {
+				continue;
+			}
+			result.put(cur.getId(), passes);
+		}
+		LOG.info("predicted passes for {} transmitters using {} threads in {}ms", transmitters.size(), pool.getParallelism(), System.currentTimeMillis() - start);
+		return result;
+	}
+
+	public void stop() {
+		pool.shutdownNow();
 	}
 
 	public List<ObservationRequest> createSchedule(Date date, Transmitter transmitter) {
+		return createSchedule(date.getTime(), date.getTime(), date.getTime() + PREDICT_INTERVAL_MILLIS, transmitter);
+	}
+
+	public List<ObservationRequest> createSchedule(long current, long windowStartMillis, long windowEndMillis, Transmitter transmitter) {
 		if (transmitter.getTle() == null) {
 			LOG.error("no tle for: {}", transmitter.getSatelliteId());
 			return Collections.emptyList();
 		}
-		TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new org.orekit.propagation.analytical.tle.TLE(transmitter.getTle().getRaw()[1], transmitter.getTle().getRaw()[2]));
-		List<SatPass> batch = predict.calculateSchedule(date, tlePropagator);
+		List<SatPass> batch = passCache.find(current, windowStartMillis, windowEndMillis, transmitter.getTle());
 		if (batch == null || batch.isEmpty()) {
 			return Collections.emptyList();
 		}
+		// propagator is still needed for doppler correction
+		TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new org.orekit.propagation.analytical.tle.TLE(transmitter.getTle().getRaw()[1], transmitter.getTle().getRaw()[2]));
 		List<ObservationRequest> result = new ArrayList<>();
 		for (SatPass cur : batch) {
 			long endMillis = cur.getEndMillis();
@@ -57,15 +147,15 @@ public class ObservationFactory {
 			// Raspberry PI might not be able to perform such long observations
 			// better split into several
 			while (endMillis - startMillis > MAX_OBSERVATION_MILLIS) {
-				result.add(convert(transmitter, transmitter.getTle(), tlePropagator, startMillis, startMillis + MAX_OBSERVATION_MILLIS));
+				result.add(convert(transmitter, transmitter.getTle(), tlePropagator, startMillis, startMillis + MAX_OBSERVATION_MILLIS, cur.getMaxElevationDegrees()));
 				startMillis += MAX_OBSERVATION_MILLIS;
 			}
-			result.add(convert(transmitter, transmitter.getTle(), tlePropagator, startMillis, endMillis));
+			result.add(convert(transmitter, transmitter.getTle(), tlePropagator, startMillis, endMillis, cur.getMaxElevationDegrees()));
 		}
 		return result;
 	}
 
-	private ObservationRequest convert(Transmitter transmitter, Tle tle, TLEPropagator tlePropagator, long startMillis, long endMillis) {
+	private ObservationRequest convert(Transmitter transmitter, Tle tle, TLEPropagator tlePropagator, long startMillis, long endMillis, double maxElevation) {
 		ObservationRequest result = new ObservationRequest();
 		result.setSatelliteId(transmitter.getSatelliteId());
 		result.setTransmitterId(transmitter.getId());
@@ -73,6 +163,7 @@ public class ObservationFactory {
 		result.setGroundStation(predict.getPosition().getPoint());
 		result.setStartTimeMillis(startMillis);
 		result.setEndTimeMillis(endMillis);
+		result.setMaxElevation(maxElevation);
 		result.setId(String.valueOf(result.getStartTimeMillis()) + "-" + transmitter.getId());
 		// only r2lora can handle lora modulation
 		if (transmitter.getModulation() != null && transmitter.getModulation().equals(Modulation.LORA)) {
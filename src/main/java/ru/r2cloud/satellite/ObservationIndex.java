@@ -0,0 +1,342 @@
+package ru.r2cloud.satellite;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.util.Util;
+
+/**
+ * Append-only log of observation metadata. Every line is a single record
+ * prefixed with crc32 of its body. Torn write at the end of the file is
+ * ignored, corrupted record in the middle invalidates the whole index.
+ * 
+ * Journaled records might not be written into meta.json yet. They are
+ * considered applied after the next checkpoint record.
+ */
+public class ObservationIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ObservationIndex.class);
+	private static final String HEADER = "r2cloud-observation-index-v1";
+	private static final String OP_PUT = "put";
+	private static final String OP_DELETE = "del";
+	private static final String OP_JOURNAL_PUT = "jput";
+	private static final String OP_CHECKPOINT = "ckpt";
+	private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+	private final Path file;
+	// serialized latest indexed metadata
+	private final Map<ObservationCacheKey, String> live = new HashMap<>();
+	private final Map<ObservationCacheKey, JsonObject> notApplied = new LinkedHashMap<>();
+	private int records = 0;
+
+	public ObservationIndex(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return all indexed observations' metadata or null if index is missing or
+	 *         corrupted and full rescan required
+	 */
+	public synchronized Map<ObservationCacheKey, JsonObject> load() {
+		live.clear();
+		notApplied.clear();
+		records = 0;
+		if (!Files.exists(file)) {
+			LOG.info("observation index is missing: {}", file);
+			return null;
+		}
+		Map<ObservationCacheKey, JsonObject> result = new LinkedHashMap<>();
+		boolean tornTail = false;
+		try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String header = r.readLine();
+			if (header == null || !header.equals(HEADER)) {
+				LOG.info("unsupported observation index format: {}", file);
+				return null;
+			}
+			String curLine = null;
+			while ((curLine = r.readLine()) != null) {
+				if (tornTail) {
+					LOG.error("observation index is corrupted: {}", file);
+					return null;
+				}
+				JsonObject record = parse(curLine);
+				if (record == null) {
+					// most likely the last record was partially written
+					// check it is actually the last one
+					tornTail = true;
+					continue;
+				}
+				records++;
+				String op = record.getString("op", null);
+				if (OP_CHECKPOINT.equals(op)) {
+					notApplied.clear();
+					continue;
+				}
+				ObservationCacheKey key = new ObservationCacheKey(record.getString("satellite", null), record.getString("id", null));
+				if (OP_PUT.equals(op)) {
+					result.put(key, record.get("observation").asObject());
+					notApplied.remove(key);
+				} else if (OP_JOURNAL_PUT.equals(op)) {
+					JsonObject observation = record.get("observation").asObject();
+					result.put(key, observation);
+					notApplied.put(key, observation);
+				} else if (OP_DELETE.equals(op)) {
+					result.remove(key);
+					notApplied.remove(key);
+				} else {
+					LOG.error("unknown operation in observation index: {}", op);
+					return null;
+				}
+			}
+		} catch (Exception e) {
+			LOG.error("unable to load observation index: {}", file, e);
+			return null;
+		}
+		for (Entry<ObservationCacheKey, JsonObject> cur : result.entrySet()) {
+			live.put(cur.getKey(), cur.getValue().toString());
+		}
+		if (tornTail || (records > MIN_RECORDS_TO_COMPACT && records > 2 * live.size())) {
+			rewrite(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Replace the index with the given observations. Used after full rescan and
+	 * to compact the log
+	 */
+	public synchronized void rewrite(Map<ObservationCacheKey, JsonObject> observations) {
+		Map<ObservationCacheKey, String> serialized = new LinkedHashMap<>();
+		for (Entry<ObservationCacheKey, JsonObject> cur : observations.entrySet()) {
+			serialized.put(cur.getKey(), cur.getValue().toString());
+		}
+		rewriteSerialized(serialized);
+	}
+
+	private boolean rewriteSerialized(Map<ObservationCacheKey, String> observations) {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter w = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			w.append(HEADER).append('\n');
+			for (Entry<ObservationCacheKey, String> cur : observations.entrySet()) {
+				// keep journaled records until they are applied
+				String op = notApplied.containsKey(cur.getKey()) ? OP_JOURNAL_PUT : OP_PUT;
+				w.append(serialize(createRecord(op, cur.getKey(), Json.parse(cur.getValue()).asObject())));
+			}
+		} catch (IOException e) {
+			LOG.error("unable to write observation index: {}", temp, e);
+			return false;
+		}
+		try (SeekableByteChannel channel = Files.newByteChannel(temp, StandardOpenOption.WRITE)) {
+			sync(channel);
+		} catch (IOException e) {
+			LOG.error("unable to sync observation index: {}", temp, e);
+			return false;
+		}
+		try {
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOG.error("unable to write observation index: {}", file, e);
+			return false;
+		}
+		if (live != observations) {
+			live.clear();
+			live.putAll(observations);
+		}
+		records = live.size();
+		LOG.info("observation index has been written: {} observations", records);
+		return true;
+	}
+
+	/**
+	 * @return journaled observations which might not be written into meta.json
+	 *         before the crash. Populated by {@link #load()}
+	 */
+	/**
+	 * @return the latest indexed metadata or null if not indexed
+	 */
+	public JsonObject get(ObservationCacheKey key) {
+		String result;
+		synchronized (this) {
+			result = live.get(key);
+		}
+		if (result == null) {
+			return null;
+		}
+		return Json.parse(result).asObject();
+	}
+
+	public synchronized Map<ObservationCacheKey, JsonObject> getNotApplied() {
+		return new LinkedHashMap<>(notApplied);
+	}
+
+	public void put(ObservationCacheKey key, JsonObject observation) {
+		synchronized (this) {
+			// already indexed. save fsync
+			String previous = live.get(key);
+			if (previous != null && !notApplied.containsKey(key) && previous.equals(observation.toString())) {
+				return;
+			}
+		}
+		append(Collections.singletonMap(key, createRecord(OP_PUT, key, observation)), true);
+	}
+
+	/**
+	 * Journal observations before writing them into meta.json. All records are
+	 * written with a single fsync
+	 * 
+	 * @return false if journal is not available
+	 */
+	public boolean journal(Map<ObservationCacheKey, JsonObject> observations) {
+		Map<ObservationCacheKey, JsonObject> records = new LinkedHashMap<>();
+		for (Entry<ObservationCacheKey, JsonObject> cur : observations.entrySet()) {
+			records.put(cur.getKey(), createRecord(OP_JOURNAL_PUT, cur.getKey(), cur.getValue()));
+		}
+		return append(records, true);
+	}
+
+	/**
+	 * Mark all journaled observations as written into meta.json. Checkpoint is
+	 * not synced: if it is lost, journaled observations will be written again
+	 */
+	public void checkpoint() {
+		JsonObject record = new JsonObject();
+		record.add("op", OP_CHECKPOINT);
+		append(Collections.singletonMap(null, record), false);
+	}
+
+	public void delete(ObservationCacheKey key) {
+		synchronized (this) {
+			if (!live.containsKey(key)) {
+				return;
+			}
+		}
+		JsonObject record = new JsonObject();
+		record.add("op", OP_DELETE);
+		record.add("satellite", key.getSatelliteId());
+		record.add("id", key.getObservationId());
+		append(Collections.singletonMap(key, record), true);
+	}
+
+	private synchronized boolean append(Map<ObservationCacheKey, JsonObject> batch, boolean sync) {
+		if (!Files.exists(file)) {
+			// index will be created on the next full scan
+			return false;
+		}
+		StringBuilder str = new StringBuilder();
+		for (JsonObject cur : batch.values()) {
+			str.append(serialize(cur));
+		}
+		ByteBuffer buf = ByteBuffer.wrap(str.toString().getBytes(StandardCharsets.UTF_8));
+		boolean appended = false;
+		try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			if (sync) {
+				sync(channel);
+			}
+			appended = true;
+		} catch (IOException e) {
+			LOG.error("unable to append to observation index: {}", file, e);
+		}
+		for (Entry<ObservationCacheKey, JsonObject> cur : batch.entrySet()) {
+			records++;
+			String op = cur.getValue().getString("op", null);
+			if (OP_CHECKPOINT.equals(op)) {
+				notApplied.clear();
+			} else if (OP_DELETE.equals(op)) {
+				live.remove(cur.getKey());
+				notApplied.remove(cur.getKey());
+			} else if (OP_JOURNAL_PUT.equals(op)) {
+				JsonObject observation = cur.getValue().get("observation").asObject();
+				live.put(cur.getKey(), observation.toString());
+				notApplied.put(cur.getKey(), observation);
+			} else {
+				live.put(cur.getKey(), cur.getValue().get("observation").asObject().toString());
+				notApplied.remove(cur.getKey());
+			}
+		}
+		if (appended) {
+			return true;
+		}
+		// log might end with the partial record, but in-memory state is
+		// still valid. replace the log with it
+		if (rewriteSerialized(live)) {
+			return true;
+		}
+		// index no longer reflects the state on disk
+		// force full rescan on the next start
+		Util.deleteQuietly(file);
+		return false;
+	}
+
+	private static void sync(SeekableByteChannel channel) throws IOException {
+		// not every filesystem provider supports fsync
+		if (channel instanceof FileChannel) {
+			((FileChannel) channel).force(false);
+		}
+	}
+
+	private static JsonObject createRecord(String op, ObservationCacheKey key, JsonObject observation) {
+		JsonObject record = new JsonObject();
+		record.add("op", op);
+		record.add("satellite", key.getSatelliteId());
+		record.add("id", key.getObservationId());
+		record.add("observation", observation);
+		return record;
+	}
+
+	private static String serialize(JsonObject record) {
+		String body = record.toString();
+		CRC32 crc = new CRC32();
+		crc.update(body.getBytes(StandardCharsets.UTF_8));
+		return Long.toHexString(crc.getValue()) + " " + body + "\n";
+	}
+
+	private static JsonObject parse(String line) {
+		int index = line.indexOf(' ');
+		if (index <= 0) {
+			return null;
+		}
+		String body = line.substring(index + 1);
+		CRC32 crc = new CRC32();
+		crc.update(body.getBytes(StandardCharsets.UTF_8));
+		long expected;
+		try {
+			expected = Long.parseLong(line.substring(0, index), 16);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (expected != crc.getValue()) {
+			return null;
+		}
+		try {
+			return Json.parse(body).asObject();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+}
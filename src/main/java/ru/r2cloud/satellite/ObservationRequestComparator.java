@@ -10,6 +10,11 @@ public class ObservationRequestComparator implements Comparator<ObservationReque
 
 	@Override
 	public int compare(ObservationRequest o1, ObservationRequest o2) {
-		return Long.compare(o1.getStartTimeMillis(), o2.getStartTimeMillis());
+		int result = Long.compare(o1.getStartTimeMillis(), o2.getStartTimeMillis());
+		if (result != 0) {
+			return result;
+		}
+		// make it consistent with equals for the sorted sets
+		return o1.getId().compareTo(o2.getId());
 	}
 }
@@ -0,0 +1,23 @@
+package ru.r2cloud.satellite;
+
+import java.util.Comparator;
+
+import ru.r2cloud.model.ObservationRequest;
+
+public class ObservationRequestEndComparator implements Comparator<ObservationRequest> {
+
+	public static final ObservationRequestEndComparator INSTANCE = new ObservationRequestEndComparator();
+
+	@Override
+	public int compare(ObservationRequest o1, ObservationRequest o2) {
+		int result = Long.compare(o1.getEndTimeMillis(), o2.getEndTimeMillis());
+		if (result != 0) {
+			return result;
+		}
+		result = Long.compare(o1.getStartTimeMillis(), o2.getStartTimeMillis());
+		if (result != 0) {
+			return result;
+		}
+		return o1.getId().compareTo(o2.getId());
+	}
+}
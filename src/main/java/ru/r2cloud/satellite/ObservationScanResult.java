@@ -0,0 +1,32 @@
+package ru.r2cloud.satellite;
+
+import java.util.List;
+import java.util.Map;
+
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.PathStats;
+
+public class ObservationScanResult {
+
+	private Map<ObservationCacheKey, JsonObject> meta;
+	private List<PathStats> stats;
+
+	public Map<ObservationCacheKey, JsonObject> getMeta() {
+		return meta;
+	}
+
+	public void setMeta(Map<ObservationCacheKey, JsonObject> meta) {
+		this.meta = meta;
+	}
+
+	public List<PathStats> getStats() {
+		return stats;
+	}
+
+	public void setStats(List<PathStats> stats) {
+		this.stats = stats;
+	}
+
+}
@@ -0,0 +1,148 @@
+package ru.r2cloud.satellite;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.PathStats;
+
+/**
+ * Single pass over the observations tree. Loads meta and size/time stats of
+ * every observation directory in parallel
+ */
+public class ObservationScanner {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ObservationScanner.class);
+	private static final int DIRECTORIES_PER_TASK = 32;
+
+	private final int parallelism;
+
+	public ObservationScanner(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @return scan result or null if observations tree cannot be listed
+	 */
+	public ObservationScanResult scan(Path basepath, boolean includeMeta, boolean includeStats) {
+		long start = System.currentTimeMillis();
+		List<Path> directories = new ArrayList<>();
+		if (Files.exists(basepath)) {
+			try (DirectoryStream<Path> ds = Files.newDirectoryStream(basepath)) {
+				for (Path curSatellite : ds) {
+					Path dataRoot = curSatellite.resolve("data");
+					if (!Files.exists(dataRoot)) {
+						// do not empty satellite directory
+						// it might contain cached tle.txt file which is useful
+						// when no internet connection present and new observation is about
+						// to schedule
+						continue;
+					}
+					try (DirectoryStream<Path> observations = Files.newDirectoryStream(dataRoot)) {
+						for (Path curDirectory : observations) {
+							directories.add(curDirectory);
+						}
+					}
+				}
+			} catch (IOException e) {
+				LOG.error("unable to list observations: {}", basepath, e);
+				return null;
+			}
+		}
+		long listed = System.currentTimeMillis();
+		ObservationScanResult result;
+		if (directories.isEmpty()) {
+			result = new ObservationScanResult();
+			result.setMeta(new LinkedHashMap<>());
+			result.setStats(new ArrayList<>());
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				result = pool.invoke(new ScanTask(directories, includeMeta, includeStats));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		long end = System.currentTimeMillis();
+		LOG.info("scanned {} observation directories using {} threads. listing: {}ms, meta and stats: {}ms, total: {}ms", directories.size(), parallelism, listed - start, end - listed, end - start);
+		return result;
+	}
+
+	public static PathStats stat(Path curObservation) {
+		long minTime = Long.MAX_VALUE;
+		long totalSize = 0;
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(curObservation)) {
+			for (Path file : dir) {
+				minTime = Math.min(minTime, Files.getLastModifiedTime(file).toMillis());
+				totalSize += Files.size(file);
+			}
+		} catch (IOException e) {
+			LOG.error("unable to index observation: {}", curObservation, e);
+		}
+		PathStats result = new PathStats();
+		result.setLastUpdateTime(minTime);
+		result.setPath(curObservation);
+		result.setSize(totalSize);
+		return result;
+	}
+
+	private static class ScanTask extends RecursiveTask<ObservationScanResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient List<Path> directories;
+		private final boolean includeMeta;
+		private final boolean includeStats;
+
+		ScanTask(List<Path> directories, boolean includeMeta, boolean includeStats) {
+			this.directories = directories;
+			this.includeMeta = includeMeta;
+			this.includeStats = includeStats;
+		}
+
+		@Override
+		protected ObservationScanResult compute() {
+			if (directories.size() > DIRECTORIES_PER_TASK) {
+				int middle = directories.size() / 2;
+				ScanTask left = new ScanTask(directories.subList(0, middle), includeMeta, includeStats);
+				ScanTask right = new ScanTask(directories.subList(middle, directories.size()), includeMeta, includeStats);
+				left.fork();
+				ObservationScanResult result = right.compute();
+				ObservationScanResult leftResult = left.join();
+				// keep the listing order
+				leftResult.getMeta().putAll(result.getMeta());
+				leftResult.getStats().addAll(result.getStats());
+				return leftResult;
+			}
+			ObservationScanResult result = new ObservationScanResult();
+			result.setMeta(new LinkedHashMap<>());
+			result.setStats(new ArrayList<>());
+			for (Path cur : directories) {
+				if (includeMeta) {
+					JsonObject meta = ObservationDao.loadMeta(cur);
+					// some directories might be corrupted
+					if (meta != null) {
+						// basepath/satelliteId/data/observationId
+						result.getMeta().put(new ObservationCacheKey(cur.getParent().getParent().getFileName().toString(), cur.getFileName().toString()), meta);
+					}
+				}
+				if (includeStats) {
+					result.getStats().add(stat(cur));
+				}
+			}
+			return result;
+		}
+	}
+}
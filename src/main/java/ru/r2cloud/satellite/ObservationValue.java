@@ -0,0 +1,13 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.model.ObservationRequest;
+
+/**
+ * Expected value of the observation. Used by {@link ValueScheduleStrategy} to
+ * choose between the overlapping passes. Must be positive
+ */
+public interface ObservationValue {
+
+	double getValue(ObservationRequest req);
+
+}
@@ -0,0 +1,229 @@
+package ru.r2cloud.satellite;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.r2cloud.Lifecycle;
+import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.util.Clock;
+import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.NamingThreadFactory;
+import ru.r2cloud.util.SafeRunnable;
+import ru.r2cloud.util.ThreadPoolFactory;
+import ru.r2cloud.util.Util;
+
+/**
+ * Picks up observations added, updated or deleted on disk by external tools.
+ * Observation is reindexed only when there were no changes in its directory
+ * for the debounce period, so that partially written files and moves are not
+ * indexed. WatchService is not recursive, thus every satellite, data and
+ * observation directory is registered separately
+ */
+public class ObservationWatcher implements Lifecycle {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ObservationWatcher.class);
+	private static final String DATA_DIRNAME = "data";
+	// basepath/satelliteId/data/observationId
+	private static final int OBSERVATION_DEPTH = 3;
+
+	private final Configuration config;
+	private final ObservationDao dao;
+	private final ObservationDaoCache cache;
+	private final ThreadPoolFactory threadpoolFactory;
+	private final Clock clock;
+	private final Path basepath;
+
+	// accessed only from the executor thread after start
+	private final Map<WatchKey, Path> watched = new HashMap<>();
+	private final Map<ObservationCacheKey, Long> lastChangeByObservation = new LinkedHashMap<>();
+
+	private ScheduledExecutorService executor = null;
+	private WatchService watchService = null;
+
+	public ObservationWatcher(Configuration config, ObservationDao dao, ObservationDaoCache cache, ThreadPoolFactory threadpoolFactory, Clock clock) {
+		this.config = config;
+		this.dao = dao;
+		this.cache = cache;
+		this.threadpoolFactory = threadpoolFactory;
+		this.clock = clock;
+		this.basepath = config.getSatellitesBasePath();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		if (!config.getBoolean("scheduler.data.watch.enabled")) {
+			LOG.info("observations watcher is disabled");
+			return;
+		}
+		if (!Files.exists(basepath)) {
+			try {
+				Files.createDirectories(basepath);
+			} catch (IOException e) {
+				LOG.error("unable to create basepath: {}", basepath, e);
+				return;
+			}
+		}
+		try {
+			watchService = basepath.getFileSystem().newWatchService();
+		} catch (Exception e) {
+			LOG.error("unable to start observations watcher", e);
+			return;
+		}
+		// register before start, so that changes made afterwards are not lost
+		long start = clock.millis();
+		register(basepath);
+		LOG.info("watching {} directories. registration took {}ms", watched.size(), clock.millis() - start);
+		long debounceMillis = config.getLong("scheduler.data.watch.debounceMillis");
+		executor = threadpoolFactory.newScheduledThreadPool(1, new NamingThreadFactory("observation-watcher"));
+		executor.scheduleWithFixedDelay(new SafeRunnable() {
+
+			@Override
+			public void safeRun() {
+				poll(debounceMillis);
+			}
+		}, debounceMillis, debounceMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll(long debounceMillis) {
+		WatchKey key;
+		while ((key = watchService.poll()) != null) {
+			Path dir = watched.get(key);
+			if (dir != null) {
+				for (WatchEvent<?> event : key.pollEvents()) {
+					process(dir, event);
+				}
+			}
+			// directory was deleted
+			if (!key.reset()) {
+				watched.remove(key);
+			}
+		}
+		long current = clock.millis();
+		Iterator<Entry<ObservationCacheKey, Long>> it = lastChangeByObservation.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<ObservationCacheKey, Long> cur = it.next();
+			if (current - cur.getValue() < debounceMillis) {
+				continue;
+			}
+			it.remove();
+			Observation observation = dao.reindex(cur.getKey().getSatelliteId(), cur.getKey().getObservationId());
+			cache.refresh(cur.getKey(), observation);
+			LOG.info("observation {} has been {} on disk", cur.getKey().getObservationId(), observation == null ? "removed" : "changed");
+		}
+	}
+
+	private void process(Path dir, WatchEvent<?> event) {
+		if (event.kind() == OVERFLOW) {
+			LOG.info("some events were lost. reindex: {}", dir);
+			changedAll(dir);
+			return;
+		}
+		Path child = dir.resolve((Path) event.context());
+		Path relative = basepath.relativize(child);
+		if (relative.getNameCount() >= 2 && !relative.getName(1).toString().equals(DATA_DIRNAME)) {
+			// tle.txt and other satellite files
+			return;
+		}
+		if (event.kind() == ENTRY_CREATE && relative.getNameCount() <= OBSERVATION_DEPTH && Files.isDirectory(child)) {
+			register(child);
+			// files created before the registration
+			changedAll(child);
+		}
+		if (relative.getNameCount() >= OBSERVATION_DEPTH) {
+			changed(relative);
+		}
+	}
+
+	private void changedAll(Path dir) {
+		Path relative = basepath.relativize(dir);
+		if (relative.getNameCount() >= OBSERVATION_DEPTH) {
+			changed(relative);
+			return;
+		}
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+			for (Path cur : ds) {
+				if (Files.isDirectory(cur)) {
+					changedAll(cur);
+				}
+			}
+		} catch (IOException e) {
+			LOG.error("unable to list: {}", dir, e);
+		}
+	}
+
+	private void changed(Path relative) {
+		if (relative.getNameCount() < OBSERVATION_DEPTH || !relative.getName(1).toString().equals(DATA_DIRNAME)) {
+			return;
+		}
+		ObservationCacheKey key = new ObservationCacheKey(relative.getName(0).toString(), relative.getName(2).toString());
+		// move to the end to keep the order of changes
+		lastChangeByObservation.remove(key);
+		lastChangeByObservation.put(key, clock.millis());
+	}
+
+	private void register(Path dir) {
+		Path relative = basepath.relativize(dir);
+		int depth = dir.equals(basepath) ? 0 : relative.getNameCount();
+		if (depth > OBSERVATION_DEPTH || (depth >= 2 && !relative.getName(1).toString().equals(DATA_DIRNAME))) {
+			return;
+		}
+		try {
+			watched.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+		} catch (IOException e) {
+			LOG.error("unable to watch: {}", dir, e);
+			return;
+		}
+		if (depth == OBSERVATION_DEPTH) {
+			return;
+		}
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+			for (Path cur : ds) {
+				if (Files.isDirectory(cur)) {
+					register(cur);
+				}
+			}
+		} catch (IOException e) {
+			LOG.error("unable to list: {}", dir, e);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (executor == null) {
+			return;
+		}
+		Util.shutdown(executor, config.getThreadPoolShutdownMillis());
+		executor = null;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOG.error("unable to close watch service", e);
+		}
+		watchService = null;
+	}
+
+}
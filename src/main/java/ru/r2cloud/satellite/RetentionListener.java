@@ -0,0 +1,9 @@
+package ru.r2cloud.satellite;
+
+import java.nio.file.Path;
+
+public interface RetentionListener {
+
+	void onDelete(Path observation);
+
+}
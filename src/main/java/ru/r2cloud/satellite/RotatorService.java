@@ -25,6 +25,8 @@ import ru.r2cloud.util.Util;
 public class RotatorService implements Lifecycle {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RotatorService.class);
+	// precompute trajectory before the pass
+	private static final long TRAJECTORY_LEAD_MILLIS = 10000;
 
 	private ScheduledExecutorService executor = null;
 	private RotctrldClient rotClient;
@@ -71,19 +73,48 @@ public class RotatorService implements Lifecycle {
 
 			private Position previousPosition;
 			private boolean log = true;
+			// calculated right before the pass, so only started observations are calculated
+			private RotatorTrajectory trajectory;
 
 			@Override
 			public void run() {
 				long current = clock.millis();
 				if (current > req.getEndTimeMillis()) {
 					LOG.info("[{}] observation time passed. cancelling rotation", req.getId());
+					status.setPointingError(0.0);
 					throw new RuntimeException("observation time passed");
 				}
 				if (startFuture != null && startFuture.isDone()) {
 					LOG.info("[{}] observation stopped. cancelling rotation", req.getId());
+					status.setPointingError(0.0);
 					throw new RuntimeException("observation stopped");
 				}
-				Position currentPosition = predict.getSatellitePosition(current, groundStation, tlePropagator);
+				if (trajectory == null) {
+					trajectory = new RotatorTrajectory(predict.getEphemeris(req), config);
+					if (trajectory.isFlip()) {
+						LOG.info("[{}] pass crosses the north. using elevation above 90 degrees", req.getId());
+					}
+				}
+				if (current < req.getStartTimeMillis()) {
+					return;
+				}
+				Position expectedPosition;
+				Position currentPosition;
+				if (trajectory.covers(current)) {
+					expectedPosition = trajectory.getExpected(current);
+					currentPosition = trajectory.getPosition(current);
+				} else {
+					expectedPosition = predict.getSatellitePosition(current, groundStation, tlePropagator);
+					currentPosition = expectedPosition;
+				}
+				updatePosition(currentPosition);
+				// rotator stays at the previous position until the change exceeds the tolerance
+				if (previousPosition != null) {
+					status.setPointingError(RotatorTrajectory.getPointingError(expectedPosition, previousPosition));
+				}
+			}
+
+			private void updatePosition(Position currentPosition) {
 				if (previousPosition != null) {
 					double tolerance = config.getTolerance();
 					double azimuthDelta = Math.abs(currentPosition.getAzimuth() - previousPosition.getAzimuth());
@@ -115,7 +146,7 @@ public class RotatorService implements Lifecycle {
 					}
 				}
 			}
-		}, req.getStartTimeMillis() - current, config.getCycleMillis(), TimeUnit.MILLISECONDS);
+		}, req.getStartTimeMillis() - TRAJECTORY_LEAD_MILLIS - current, config.getCycleMillis(), TimeUnit.MILLISECONDS);
 		return result;
 	}
 
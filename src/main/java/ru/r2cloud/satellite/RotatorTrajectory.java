@@ -0,0 +1,132 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.model.RotatorConfiguration;
+import ru.r2cloud.predict.Ephemeris;
+import ru.r2cloud.rotctrld.Position;
+
+/**
+ * Rotator positions for the whole pass. Passes crossing the north would
+ * require the full turn in the middle of the pass. Depending on the rotator
+ * limits such passes are followed either over the azimuth overlap or with the
+ * elevation above 90 degrees (flip). Otherwise the rotator makes the full
+ * turn as before.
+ */
+public class RotatorTrajectory {
+
+	private final Ephemeris ephemeris;
+	// continuous azimuth. might be below 0 or above 360
+	private final double[] azimuth;
+	private final double azimuthOffset;
+	private final boolean flip;
+	private final boolean unwrapped;
+
+	public RotatorTrajectory(Ephemeris ephemeris, RotatorConfiguration config) {
+		this.ephemeris = ephemeris;
+		double[] original = ephemeris.getAzimuth();
+		azimuth = new double[original.length];
+		double min = original[0];
+		double max = original[0];
+		azimuth[0] = original[0];
+		for (int i = 1; i < original.length; i++) {
+			azimuth[i] = azimuth[i - 1] + normalize(original[i] - original[i - 1]);
+			min = Math.min(min, azimuth[i]);
+			max = Math.max(max, azimuth[i]);
+		}
+		boolean crossNorth = min < 0.0 || max >= 360.0;
+		Double offset = null;
+		if (crossNorth) {
+			offset = findOffset(min, max, config.getMaxAzimuth());
+		}
+		if (offset != null) {
+			azimuthOffset = offset;
+			flip = false;
+			unwrapped = true;
+			return;
+		}
+		if (crossNorth && config.getMaxElevation() >= 180.0) {
+			offset = findOffset(min + 180.0, max + 180.0, config.getMaxAzimuth());
+			if (offset != null) {
+				azimuthOffset = offset + 180.0;
+				flip = true;
+				unwrapped = true;
+				return;
+			}
+		}
+		azimuthOffset = 0.0;
+		flip = false;
+		unwrapped = false;
+	}
+
+	public boolean covers(long millis) {
+		return ephemeris.covers(millis);
+	}
+
+	/**
+	 * @return direction to the satellite
+	 */
+	public Position getExpected(long millis) {
+		return ephemeris.getPosition(millis);
+	}
+
+	/**
+	 * @return position of the rotator pointing to the satellite
+	 */
+	public Position getPosition(long millis) {
+		Position result = ephemeris.getPosition(millis);
+		if (!unwrapped) {
+			return result;
+		}
+		int index = (int) Math.min((millis - ephemeris.getStartMillis()) / ephemeris.getStepMillis(), azimuth.length - 2);
+		double fraction = (millis - ephemeris.getStartMillis() - index * ephemeris.getStepMillis()) / (double) ephemeris.getStepMillis();
+		double current = azimuth[index];
+		if (fraction != 0.0) {
+			current += (azimuth[index + 1] - azimuth[index]) * fraction;
+		}
+		result.setAzimuth(current + azimuthOffset);
+		if (flip) {
+			result.setElevation(180.0 - result.getElevation());
+		}
+		return result;
+	}
+
+	public boolean isFlip() {
+		return flip;
+	}
+
+	/**
+	 * @return angle in degrees between the rotator and the satellite directions
+	 */
+	public static double getPointingError(Position expected, Position actual) {
+		double[] a = toVector(expected);
+		double[] b = toVector(actual);
+		double cos = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+		return Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, cos))));
+	}
+
+	// flipped positions and azimuth beyond 360 give the same direction
+	private static double[] toVector(Position position) {
+		double azimuth = Math.toRadians(position.getAzimuth());
+		double elevation = Math.toRadians(position.getElevation());
+		return new double[] { Math.cos(elevation) * Math.sin(azimuth), Math.cos(elevation) * Math.cos(azimuth), Math.sin(elevation) };
+	}
+
+	// shift the continuous track into the rotator range
+	private static Double findOffset(double min, double max, double maxAzimuth) {
+		for (double cur : new double[] { 0.0, 360.0, -360.0, 720.0, -720.0 }) {
+			if (min + cur >= 0.0 && max + cur <= maxAzimuth) {
+				return cur;
+			}
+		}
+		return null;
+	}
+
+	private static double normalize(double delta) {
+		double result = delta % 360.0;
+		if (result > 180.0) {
+			result -= 360.0;
+		} else if (result < -180.0) {
+			result += 360.0;
+		}
+		return result;
+	}
+}
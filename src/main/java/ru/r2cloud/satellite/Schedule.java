@@ -4,32 +4,52 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.Priority;
+import ru.r2cloud.model.ScheduleSnapshot;
 import ru.r2cloud.model.Transmitter;
 
 public class Schedule {
 
 	private static final Logger LOG = LoggerFactory.getLogger(Schedule.class);
+	private static final long MAX_PASS_MILLIS = 60 * 60 * 1000L;
 
 	private final ObservationFactory factory;
 	private final Timetable timetable;
+	private final ScheduleStrategy strategy;
 
 	private final Map<String, ScheduledObservation> tasksById = new HashMap<>();
 	private final Map<String, ObservationRequest> observationsById = new HashMap<>();
 	private final Map<String, TimeSlot> timeSlotById = new HashMap<>();
+	// sorted by start time
 	private final Map<String, List<ObservationRequest>> observationsByTransmitterId = new HashMap<>();
+	private final NavigableSet<ObservationRequest> observationsByStart = new TreeSet<>(ObservationRequestComparator.INSTANCE);
+	// observations can be moved, so the longest observation is tracked
+	private long maxDurationMillis = 0;
+	// passes with the max elevation before this time were already considered
+	private final Map<String, Long> scheduledUntilByTransmitterId = new HashMap<>();
 
 	public Schedule(Timetable timetable, ObservationFactory factory) {
+		this(timetable, factory, new GreedyScheduleStrategy());
+	}
+
+	public Schedule(Timetable timetable, ObservationFactory factory, ScheduleStrategy strategy) {
 		this.factory = factory;
 		this.timetable = timetable;
+		this.strategy = strategy;
 	}
 
 	public synchronized void assignTasksToSlot(String observationId, ScheduledObservation entry) {
@@ -74,86 +94,318 @@ public class Schedule {
 			previous.cancel();
 		}
 		observationsById.clear();
+		observationsByStart.clear();
+		scheduledUntilByTransmitterId.clear();
 	}
 
 	public synchronized List<ObservationRequest> createInitialSchedule(List<Transmitter> allSatellites, long current) {
-		Map<String, List<ObservationRequest>> passesBySatellite = new HashMap<>();
+		// passes are predicted in parallel, but scheduled in the order of transmitters
+		Map<String, List<ObservationRequest>> passesBySatellite = factory.createSchedule(new Date(current), allSatellites);
 		for (Transmitter cur : allSatellites) {
-			List<ObservationRequest> passes = factory.createSchedule(new Date(current), cur);
-			if (passes.isEmpty()) {
-				continue;
-			}
-			passesBySatellite.put(cur.getId(), passes);
+			scheduledUntilByTransmitterId.put(cur.getId(), current + ObservationFactory.PREDICT_INTERVAL_MILLIS);
 		}
+		return schedulePasses(allSatellites, passesBySatellite);
+	}
 
+	/**
+	 * Reserve previously computed observations without predicting them again.
+	 * Observations of unknown transmitters and completed observations are
+	 * ignored. Observations in progress are trimmed to the current time and
+	 * get new ids
+	 */
+	public synchronized List<ObservationRequest> restore(List<Transmitter> transmitters, ScheduleSnapshot snapshot, long current) {
+		Set<String> transmitterIds = new HashSet<>();
+		for (Transmitter cur : transmitters) {
+			transmitterIds.add(cur.getId());
+			Long until = snapshot.getScheduledUntilByTransmitterId().get(cur.getId());
+			if (until != null) {
+				scheduledUntilByTransmitterId.put(cur.getId(), until);
+			}
+		}
 		List<ObservationRequest> result = new ArrayList<>();
-		result.addAll(scheduleSatellites(findByPriority(allSatellites, Priority.HIGH), passesBySatellite, Priority.HIGH));
-		result.addAll(scheduleSatellites(findByPriority(allSatellites, Priority.NORMAL), passesBySatellite, Priority.NORMAL));
-
+		for (ObservationRequest cur : snapshot.getObservations()) {
+			if (cur.getEndTimeMillis() <= current || !transmitterIds.contains(cur.getTransmitterId())) {
+				continue;
+			}
+			if (cur.getStartTimeMillis() < current) {
+				// same as ObservationFactory does
+				cur.setStartTimeMillis(current);
+				cur.setId(String.valueOf(current) + "-" + cur.getTransmitterId());
+			}
+			if (observationsById.containsKey(cur.getId())) {
+				continue;
+			}
+			TimeSlot slot = GreedyScheduleStrategy.createSlot(cur);
+			if (!timetable.addFully(slot)) {
+				LOG.info("unable to restore observation: {}", cur.getId());
+				continue;
+			}
+			timeSlotById.put(cur.getId(), slot);
+			result.add(cur);
+		}
 		index(result);
 		Collections.sort(result, ObservationRequestComparator.INSTANCE);
 		return result;
 	}
 
-	private static List<Transmitter> findByPriority(List<Transmitter> allSatellites, Priority priority) {
-		List<Transmitter> result = new ArrayList<>();
-		for (Transmitter cur : allSatellites) {
-			if (cur.getPriority().equals(priority)) {
-				result.add(cur);
+	/**
+	 * Export observations and prediction horizon of the given transmitters. Schedule
+	 * can be shared between devices, so other transmitters are ignored
+	 */
+	public synchronized void exportTo(List<Transmitter> transmitters, ScheduleSnapshot snapshot) {
+		for (Transmitter cur : transmitters) {
+			Long until = scheduledUntilByTransmitterId.get(cur.getId());
+			if (until == null || cur.getTle() == null) {
+				continue;
+			}
+			snapshot.getTleByTransmitterId().put(cur.getId(), cur.getTle());
+			snapshot.getScheduledUntilByTransmitterId().put(cur.getId(), until);
+			List<ObservationRequest> observations = observationsByTransmitterId.get(cur.getId());
+			if (observations != null) {
+				snapshot.getObservations().addAll(observations);
+			}
+		}
+	}
+
+	/**
+	 * @return the earliest prediction horizon of the given transmitters or null
+	 */
+	public synchronized Long findScheduledUntil(List<Transmitter> transmitters) {
+		Long result = null;
+		for (Transmitter cur : transmitters) {
+			Long until = scheduledUntilByTransmitterId.get(cur.getId());
+			if (until != null && (result == null || until < result)) {
+				result = until;
 			}
 		}
 		return result;
 	}
 
-	private List<ObservationRequest> scheduleSatellites(List<Transmitter> allSatellites, Map<String, List<ObservationRequest>> passesBySatellite, Priority priority) {
-		List<ObservationRequest> result = new ArrayList<>();
-		// fill-in full observations
-		while (!Thread.currentThread().isInterrupted()) {
-			boolean moreObservationsToCheck = false;
-			for (Transmitter cur : allSatellites) {
-				List<ObservationRequest> allPasses = passesBySatellite.get(cur.getId());
-				if (allPasses == null) {
-					continue;
+	/**
+	 * Append passes up to the new horizon. Already scheduled observations are
+	 * left untouched and only new observations are returned
+	 */
+	public synchronized List<ObservationRequest> extendSchedule(List<Transmitter> allSatellites, long current, long until) {
+		removeExpired(current);
+		// transmitters scheduled at the same time share the prediction window
+		Map<Long, List<Transmitter>> transmittersByStart = new TreeMap<>();
+		for (Transmitter cur : allSatellites) {
+			Long start = scheduledUntilByTransmitterId.get(cur.getId());
+			if (start == null) {
+				start = current;
+			}
+			if (start >= until) {
+				continue;
+			}
+			List<Transmitter> curList = transmittersByStart.get(start);
+			if (curList == null) {
+				curList = new ArrayList<>();
+				transmittersByStart.put(start, curList);
+			}
+			curList.add(cur);
+		}
+		Map<String, List<ObservationRequest>> passesBySatellite = new HashMap<>();
+		for (Entry<Long, List<Transmitter>> cur : transmittersByStart.entrySet()) {
+			for (Entry<String, List<ObservationRequest>> curPasses : factory.createSchedule(current, cur.getKey(), until, cur.getValue()).entrySet()) {
+				passesBySatellite.put(curPasses.getKey(), removeScheduled(curPasses.getValue()));
+			}
+			for (Transmitter curTransmitter : cur.getValue()) {
+				scheduledUntilByTransmitterId.put(curTransmitter.getId(), until);
+			}
+		}
+		return schedulePasses(allSatellites, passesBySatellite);
+	}
+
+	/**
+	 * Predict passes of the given transmitters again, for example after the TLE
+	 * update. Already started observations are kept. Observations of other
+	 * transmitters are left untouched
+	 */
+	public synchronized List<ObservationRequest> repredict(List<Transmitter> transmitters, long current) {
+		Map<Long, List<Transmitter>> transmittersByEnd = new TreeMap<>();
+		for (Transmitter cur : transmitters) {
+			List<ObservationRequest> previous = observationsByTransmitterId.get(cur.getId());
+			if (previous != null) {
+				for (ObservationRequest curObservation : new ArrayList<>(previous)) {
+					if (curObservation.getStartTimeMillis() > current) {
+						cancel(curObservation.getId());
+					}
 				}
-				ObservationRequest reserved = reserveFullSlot(allPasses);
-				if (reserved == null) {
+			}
+			Long end = scheduledUntilByTransmitterId.get(cur.getId());
+			if (end == null) {
+				end = current + ObservationFactory.PREDICT_INTERVAL_MILLIS;
+				scheduledUntilByTransmitterId.put(cur.getId(), end);
+			}
+			List<Transmitter> curList = transmittersByEnd.get(end);
+			if (curList == null) {
+				curList = new ArrayList<>();
+				transmittersByEnd.put(end, curList);
+			}
+			curList.add(cur);
+		}
+		Map<String, List<ObservationRequest>> passesBySatellite = new HashMap<>();
+		for (Entry<Long, List<Transmitter>> cur : transmittersByEnd.entrySet()) {
+			for (Entry<String, List<ObservationRequest>> curPasses : factory.createSchedule(current, current, cur.getKey(), cur.getValue()).entrySet()) {
+				passesBySatellite.put(curPasses.getKey(), removeScheduled(curPasses.getValue()));
+			}
+		}
+		return schedulePasses(transmitters, passesBySatellite);
+	}
+
+	/**
+	 * Try to schedule passes which might fit into the time freed by the cancelled
+	 * observations. The rest of the schedule is left untouched
+	 */
+	public synchronized List<ObservationRequest> fillGaps(List<Transmitter> allSatellites, List<ObservationRequest> freed, long current) {
+		List<TimeSlot> gaps = mergeGaps(freed, current);
+		if (gaps.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// transmitters with the same horizon are predicted together
+		Map<Long, List<Transmitter>> transmittersByEnd = new TreeMap<>();
+		for (Transmitter cur : allSatellites) {
+			Long until = scheduledUntilByTransmitterId.get(cur.getId());
+			if (until == null) {
+				continue;
+			}
+			List<Transmitter> curList = transmittersByEnd.get(until);
+			if (curList == null) {
+				curList = new ArrayList<>();
+				transmittersByEnd.put(until, curList);
+			}
+			curList.add(cur);
+		}
+		Map<String, List<ObservationRequest>> passesBySatellite = new HashMap<>();
+		for (TimeSlot gap : gaps) {
+			// window of the gap in the future doesn't depend on the current time.
+			// thus predictions are shared between devices via PassCache
+			long windowStart = Math.max(current, gap.getStart() - MAX_PASS_MILLIS);
+			for (Entry<Long, List<Transmitter>> cur : transmittersByEnd.entrySet()) {
+				// passes beyond the horizon will be considered on the next extension
+				long windowEnd = Math.min(cur.getKey(), gap.getEnd() + MAX_PASS_MILLIS);
+				if (windowEnd <= windowStart) {
 					continue;
 				}
-				moreObservationsToCheck = true;
-				result.add(reserved);
-				allPasses.remove(reserved);
+				for (Entry<String, List<ObservationRequest>> curPasses : factory.createSchedule(current, windowStart, windowEnd, cur.getValue()).entrySet()) {
+					List<ObservationRequest> candidates = passesBySatellite.get(curPasses.getKey());
+					if (candidates == null) {
+						candidates = new ArrayList<>();
+						passesBySatellite.put(curPasses.getKey(), candidates);
+					}
+					for (ObservationRequest curPass : curPasses.getValue()) {
+						if (curPass.getStartTimeMillis() >= gap.getEnd() || curPass.getEndTimeMillis() <= gap.getStart()) {
+							continue;
+						}
+						// the same pass might overlap the previous gap
+						if (!candidates.isEmpty() && candidates.get(candidates.size() - 1).getEndTimeMillis() > curPass.getStartTimeMillis()) {
+							continue;
+						}
+						candidates.add(curPass);
+					}
+				}
 			}
+		}
+		Iterator<Entry<String, List<ObservationRequest>>> it = passesBySatellite.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<String, List<ObservationRequest>> cur = it.next();
+			List<ObservationRequest> candidates = removeScheduled(cur.getValue());
+			if (candidates.isEmpty()) {
+				it.remove();
+			} else {
+				cur.setValue(candidates);
+			}
+		}
+		return schedulePasses(allSatellites, passesBySatellite);
+	}
 
-			if (!moreObservationsToCheck) {
-				break;
+	// overlapping observations are merged. the rest are kept separate
+	private static List<TimeSlot> mergeGaps(List<ObservationRequest> freed, long current) {
+		List<ObservationRequest> sorted = new ArrayList<>(freed);
+		Collections.sort(sorted, ObservationRequestComparator.INSTANCE);
+		List<TimeSlot> result = new ArrayList<>();
+		TimeSlot last = null;
+		for (ObservationRequest cur : sorted) {
+			if (cur.getEndTimeMillis() <= current) {
+				continue;
+			}
+			long start = Math.max(cur.getStartTimeMillis(), current);
+			if (last != null && start <= last.getEnd()) {
+				last.setEnd(Math.max(last.getEnd(), cur.getEndTimeMillis()));
+				continue;
 			}
+			last = new TimeSlot();
+			last.setStart(start);
+			last.setEnd(cur.getEndTimeMillis());
+			result.add(last);
 		}
+		return result;
+	}
 
-		// fill-in partial observations
-		while (!Thread.currentThread().isInterrupted()) {
-			boolean moreObservationsToCheck = false;
-			for (Transmitter cur : allSatellites) {
-				List<ObservationRequest> allPasses = passesBySatellite.get(cur.getId());
-				if (allPasses == null) {
-					continue;
-				}
-				ObservationRequest reserved = reservePartialSlot(allPasses);
-				if (reserved == null) {
-					continue;
+	private List<ObservationRequest> schedulePasses(List<Transmitter> allSatellites, Map<String, List<ObservationRequest>> passesBySatellite) {
+		List<ObservationRequest> result = new ArrayList<>();
+		// high priority passes are never displaced by normal ones
+		result.addAll(scheduleSatellites(findByPriority(allSatellites, Priority.HIGH), passesBySatellite, Priority.HIGH));
+		result.addAll(scheduleSatellites(findByPriority(allSatellites, Priority.NORMAL), passesBySatellite, Priority.NORMAL));
+
+		index(result);
+		Collections.sort(result, ObservationRequestComparator.INSTANCE);
+		return result;
+	}
+
+	// the same pass might be predicted with slightly different time from different
+	// windows. thus compare by time and not by id
+	private List<ObservationRequest> removeScheduled(List<ObservationRequest> passes) {
+		List<ObservationRequest> result = new ArrayList<>(passes.size());
+		for (ObservationRequest cur : passes) {
+			List<ObservationRequest> scheduled = observationsByTransmitterId.get(cur.getTransmitterId());
+			boolean found = false;
+			if (scheduled != null) {
+				for (ObservationRequest curScheduled : scheduled) {
+					if (curScheduled.getStartTimeMillis() < cur.getEndTimeMillis() && cur.getStartTimeMillis() < curScheduled.getEndTimeMillis()) {
+						found = true;
+						break;
+					}
 				}
-				moreObservationsToCheck = true;
-				result.add(reserved);
-				allPasses.remove(reserved);
 			}
+			if (!found) {
+				result.add(cur);
+			}
+		}
+		return result;
+	}
 
-			if (!moreObservationsToCheck) {
-				break;
+	// completed observations are not cancelled on extension
+	private void removeExpired(long current) {
+		Iterator<ObservationRequest> it = observationsById.values().iterator();
+		while (it.hasNext()) {
+			ObservationRequest cur = it.next();
+			if (cur.getEndTimeMillis() >= current) {
+				continue;
 			}
+			it.remove();
+			removeFromIndex(cur);
+			timetable.remove(timeSlotById.remove(cur.getId()));
+			tasksById.remove(cur.getId());
 		}
+	}
+
+	private List<ObservationRequest> scheduleSatellites(List<Transmitter> allSatellites, Map<String, List<ObservationRequest>> passesBySatellite, Priority priority) {
+		List<ObservationRequest> result = strategy.schedule(allSatellites, passesBySatellite, timetable, timeSlotById);
 		LOG.info("{}: satellites {} observations {}", priority, allSatellites.size(), result.size());
 		return result;
 	}
 
+	private static List<Transmitter> findByPriority(List<Transmitter> allSatellites, Priority priority) {
+		List<Transmitter> result = new ArrayList<>();
+		for (Transmitter cur : allSatellites) {
+			if (cur.getPriority().equals(priority)) {
+				result.add(cur);
+			}
+		}
+		return result;
+	}
+
 	public synchronized List<ObservationRequest> getByTransmitterId(String transmitterId) {
 		List<ObservationRequest> previous = observationsByTransmitterId.get(transmitterId);
 		if (previous == null) {
@@ -162,7 +414,8 @@ public class Schedule {
 		return previous;
 	}
 
-	public void cancelByTransmitter(String transmitterId) {
+	public synchronized void cancelByTransmitter(String transmitterId) {
+		scheduledUntilByTransmitterId.remove(transmitterId);
 		List<ObservationRequest> previous = observationsByTransmitterId.remove(transmitterId);
 		if (previous == null) {
 			return;
@@ -180,6 +433,7 @@ public class Schedule {
 			return previous;
 		}
 		List<ObservationRequest> allPasses = factory.createSchedule(new Date(current), transmitter);
+		scheduledUntilByTransmitterId.put(transmitter.getId(), current + ObservationFactory.PREDICT_INTERVAL_MILLIS);
 		List<ObservationRequest> batch = new ArrayList<>();
 		for (ObservationRequest cur : allPasses) {
 			TimeSlot slot = new TimeSlot();
@@ -209,13 +463,37 @@ public class Schedule {
 		if (curList == null || curList.isEmpty()) {
 			return null;
 		}
-		for (ObservationRequest cur : curList) {
-			// the list is sorted so it is safe to do that
-			if (cur.getStartTimeMillis() > current) {
-				return cur;
+		// the list is sorted so it is safe to do that
+		int index = findFirstStartedAfter(curList, current);
+		if (index >= curList.size()) {
+			return null;
+		}
+		return curList.get(index);
+	}
+
+	/**
+	 * Find the next observation of every transmitter and return first "limit" of
+	 * them sorted by start time
+	 */
+	public synchronized List<ObservationRequest> findFirstObservations(long current, int limit) {
+		List<ObservationRequest> result = new ArrayList<>();
+		Set<String> transmitterIds = new HashSet<>();
+		for (ObservationRequest cur : observationsByStart.tailSet(createProbe(current + 1), true)) {
+			if (result.size() >= limit) {
+				break;
+			}
+			if (transmitterIds.add(cur.getTransmitterId())) {
+				result.add(cur);
 			}
 		}
-		return null;
+		return result;
+	}
+
+	/**
+	 * @return all observations sorted by start time
+	 */
+	public synchronized List<ObservationRequest> findAll() {
+		return new ArrayList<>(observationsByStart);
 	}
 
 	public synchronized ObservationRequest moveObservation(ObservationRequest req, long startTime) {
@@ -236,10 +514,10 @@ public class Schedule {
 	}
 
 	public synchronized List<ObservationRequest> findObservations(long startTimeMillis, long endTimeMillis) {
-		List<ObservationRequest> sorted = new ArrayList<>(observationsById.values());
-		Collections.sort(sorted, ObservationRequestComparator.INSTANCE);
 		List<ObservationRequest> result = new ArrayList<>();
-		for (ObservationRequest cur : sorted) {
+		// observations started before startTimeMillis - maxDurationMillis are
+		// already completed
+		for (ObservationRequest cur : observationsByStart.subSet(createProbe(startTimeMillis - maxDurationMillis), true, createProbe(endTimeMillis), false)) {
 			if (cur.getStartTimeMillis() > startTimeMillis && cur.getStartTimeMillis() < endTimeMillis) {
 				result.add(cur);
 			} else if (cur.getEndTimeMillis() > startTimeMillis && cur.getEndTimeMillis() < endTimeMillis) {
@@ -251,38 +529,8 @@ public class Schedule {
 		return result;
 	}
 
-	private ObservationRequest reserveFullSlot(List<ObservationRequest> allPasses) {
-		for (ObservationRequest curObservation : allPasses) {
-			TimeSlot slot = new TimeSlot();
-			slot.setStart(curObservation.getStartTimeMillis());
-			slot.setEnd(curObservation.getEndTimeMillis());
-			slot.setFrequency(curObservation.getCenterBandFrequency());
-			if (timetable.addFully(slot)) {
-				timeSlotById.put(curObservation.getId(), slot);
-				return curObservation;
-			}
-		}
-		return null;
-	}
-
-	private ObservationRequest reservePartialSlot(List<ObservationRequest> allPasses) {
-		for (ObservationRequest curObservation : allPasses) {
-			TimeSlot slot = new TimeSlot();
-			slot.setStart(curObservation.getStartTimeMillis());
-			slot.setEnd(curObservation.getEndTimeMillis());
-			slot.setFrequency(curObservation.getCenterBandFrequency());
-			TimeSlot partial = timetable.addPartially(slot);
-			if (partial != null) {
-				curObservation.setStartTimeMillis(partial.getStart());
-				curObservation.setEndTimeMillis(partial.getEnd());
-				timeSlotById.put(curObservation.getId(), partial);
-				return curObservation;
-			}
-		}
-		return null;
-	}
-
 	private void removeFromIndex(ObservationRequest req) {
+		observationsByStart.remove(req);
 		List<ObservationRequest> curList = observationsByTransmitterId.get(req.getTransmitterId());
 		if (curList == null) {
 			return;
@@ -307,13 +555,38 @@ public class Schedule {
 				curList = new ArrayList<>();
 				observationsByTransmitterId.put(cur.getTransmitterId(), curList);
 			}
-			curList.add(cur);
+			// keep the list sorted without sorting the rest of transmitters
+			int index = Collections.binarySearch(curList, cur, ObservationRequestComparator.INSTANCE);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			curList.add(index, cur);
 			observationsById.put(cur.getId(), cur);
+			observationsByStart.add(cur);
+			maxDurationMillis = Math.max(maxDurationMillis, cur.getEndTimeMillis() - cur.getStartTimeMillis());
 		}
+	}
 
-		for (List<ObservationRequest> values : observationsByTransmitterId.values()) {
-			Collections.sort(values, ObservationRequestComparator.INSTANCE);
+	private static int findFirstStartedAfter(List<ObservationRequest> sorted, long current) {
+		int low = 0;
+		int high = sorted.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted.get(mid).getStartTimeMillis() > current) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
 		}
+		return low;
+	}
+
+	// sorted before any observation with the same start time
+	private static ObservationRequest createProbe(long startTimeMillis) {
+		ObservationRequest result = new ObservationRequest();
+		result.setStartTimeMillis(startTimeMillis);
+		result.setId("");
+		return result;
 	}
 
 }
@@ -0,0 +1,74 @@
+package ru.r2cloud.satellite;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eclipsesource.json.Json;
+
+import ru.r2cloud.model.ScheduleSnapshot;
+import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.Util;
+
+public class ScheduleSnapshotDao {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ScheduleSnapshotDao.class);
+
+	private final boolean enabled;
+	private final Path basepath;
+
+	public ScheduleSnapshotDao(Configuration config) {
+		this.enabled = config.getBoolean("scheduler.snapshot.enabled");
+		this.basepath = config.getPathFromProperty("scheduler.snapshot.location");
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public ScheduleSnapshot load(String deviceId) {
+		if (!enabled) {
+			return null;
+		}
+		Path file = basepath.resolve(deviceId + ".json");
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (BufferedReader r = Files.newBufferedReader(file)) {
+			return ScheduleSnapshot.fromJson(Json.parse(r).asObject());
+		} catch (Exception e) {
+			LOG.error("unable to load schedule from {}", file, e);
+			return null;
+		}
+	}
+
+	public void save(String deviceId, ScheduleSnapshot snapshot) {
+		if (!enabled) {
+			return;
+		}
+		if (!Util.initDirectory(basepath)) {
+			return;
+		}
+		Path file = basepath.resolve(deviceId + ".json");
+		// ensure temp and output are on the same filestore
+		Path tempOutput = basepath.resolve(deviceId + ".json.tmp");
+		try (BufferedWriter w = Files.newBufferedWriter(tempOutput)) {
+			snapshot.toJson().writeTo(w);
+		} catch (IOException e) {
+			Util.logIOException(LOG, "unable to save schedule: " + tempOutput.toAbsolutePath(), e);
+			return;
+		}
+		try {
+			Files.move(tempOutput, file, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOG.error("unable to move .tmp to dst", e);
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package ru.r2cloud.satellite;
+
+import java.util.List;
+import java.util.Map;
+
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Transmitter;
+
+public interface ScheduleStrategy {
+
+	/**
+	 * Reserve time slots in the timetable for the predicted passes. Reserved
+	 * passes are removed from passesByTransmitterId and their slots are put into
+	 * slotById. Partially reserved passes get the start and end time of the
+	 * partial slot
+	 */
+	List<ObservationRequest> schedule(List<Transmitter> transmitters, Map<String, List<ObservationRequest>> passesByTransmitterId, Timetable timetable, Map<String, TimeSlot> slotById);
+
+}
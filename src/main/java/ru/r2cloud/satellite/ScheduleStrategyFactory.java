@@ -0,0 +1,50 @@
+package ru.r2cloud.satellite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.r2cloud.util.Clock;
+import ru.r2cloud.util.Configuration;
+
+public class ScheduleStrategyFactory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ScheduleStrategyFactory.class);
+
+	private final String strategy;
+	private final ObservationValue value;
+
+	public ScheduleStrategyFactory(Configuration config, IObservationDao dao, Clock clock) {
+		this.strategy = config.getProperty("scheduler.strategy");
+		this.value = createValue(config.getProperty("scheduler.strategy.value"), dao, clock);
+	}
+
+	public ScheduleStrategy createSequential() {
+		return create(true);
+	}
+
+	public ScheduleStrategy createOverlapped() {
+		return create(false);
+	}
+
+	private ScheduleStrategy create(boolean sequential) {
+		if ("value".equals(strategy)) {
+			return new ValueScheduleStrategy(value, sequential);
+		}
+		return new GreedyScheduleStrategy();
+	}
+
+	private static ObservationValue createValue(String type, IObservationDao dao, Clock clock) {
+		if (type == null || type.equals("duration")) {
+			return new DurationObservationValue();
+		}
+		if (type.equals("elevation")) {
+			return new ElevationObservationValue();
+		}
+		if (type.equals("packets")) {
+			return new DecodedPacketsObservationValue(dao, clock);
+		}
+		LOG.error("unknown observation value: {}. using duration", type);
+		return new DurationObservationValue();
+	}
+
+}
@@ -1,106 +1,175 @@
 package ru.r2cloud.satellite;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ru.r2cloud.model.PathStats;
+import ru.r2cloud.model.PathStatsComparator;
 import ru.r2cloud.util.Util;
 
+/**
+ * Size accounting is updated optimistically: evicted observations are
+ * removed from the index and reported to the listener immediately, while
+ * the directories are deleted by the deleter outside of the lock. Evictions
+ * during the initial indexing are always deleted synchronously, so that the
+ * caller observes consistent state on disk after construction
+ */
 public class TimeSizeRetention {
 
 	private static final Logger LOG = LoggerFactory.getLogger(TimeSizeRetention.class);
+	private static final Executor SYNCHRONOUS = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
 
 	private final Map<String, PathStats> statsByPath = new HashMap<>();
+	private final NavigableSet<PathStats> byLastUpdateTime = new TreeSet<>(PathStatsComparator.INSTANCE);
 	private final long maxSize;
+	private final RetentionListener listener;
+	private final Executor deleter;
 	private long allObservationsSize = 0;
 
 	public TimeSizeRetention(long maxSize, Path basedir) {
+		this(maxSize, basedir, null);
+	}
+
+	public TimeSizeRetention(long maxSize, Path basedir, RetentionListener listener) {
+		this(maxSize, basedir, listener, SYNCHRONOUS);
+	}
+
+	public TimeSizeRetention(long maxSize, Path basedir, RetentionListener listener, Executor deleter) {
+		this(maxSize, new ObservationScanner(1).scan(basedir, false, true), listener, deleter);
+	}
+
+	/**
+	 * @param scan - stats of all observations collected by
+	 *             {@link ObservationScanner}
+	 */
+	public TimeSizeRetention(long maxSize, ObservationScanResult scan, RetentionListener listener, Executor deleter) {
 		this.maxSize = maxSize;
-		try (DirectoryStream<Path> ds = Files.newDirectoryStream(basedir)) {
-			for (Path curSatellite : ds) {
-				Path dataRoot = curSatellite.resolve("data");
-				if (!Files.exists(dataRoot)) {
-					// do not empty satellite directory
-					// it might contain cached tle.txt file which is useful
-					// when no internet connection present and new observation is about
-					// to schedule
-					continue;
-				}
-				try (DirectoryStream<Path> observationDirs = Files.newDirectoryStream(dataRoot)) {
-					for (Path curObservation : observationDirs) {
-						indexAndCleanup(curObservation);
-					}
-				}
+		this.listener = listener;
+		this.deleter = deleter;
+		if (scan == null) {
+			return;
+		}
+		List<PathStats> evicted;
+		synchronized (this) {
+			for (PathStats cur : scan.getStats()) {
+				statsByPath.put(cur.getPath().toString(), cur);
+				byLastUpdateTime.add(cur);
+				allObservationsSize += cur.getSize();
 			}
-		} catch (IOException e) {
-			LOG.error("unable to index all", e);
+			evicted = evictUntil(maxSize);
 		}
+		delete(evicted, SYNCHRONOUS);
 	}
 
 	public void indexAndCleanup(Path curObservation) {
-		long minTime = Long.MAX_VALUE;
-		long totalSize = 0;
-		try (DirectoryStream<Path> dir = Files.newDirectoryStream(curObservation)) {
-			for (Path file : dir) {
-				FileTime time = Files.getLastModifiedTime(file);
-				minTime = Math.min(minTime, time.toMillis());
-				totalSize += Files.size(file);
-			}
-		} catch (IOException e) {
-			LOG.error("unable to index observation: {}", curObservation, e);
-		}
-		PathStats newStats = new PathStats();
-		newStats.setLastUpdateTime(minTime);
-		newStats.setPath(curObservation);
-		newStats.setSize(totalSize);
-
+		PathStats newStats = ObservationScanner.stat(curObservation);
 		String key = curObservation.toString();
+		List<PathStats> evicted;
 		synchronized (this) {
 			PathStats oldStats = statsByPath.remove(key);
 			if (oldStats != null) {
+				byLastUpdateTime.remove(oldStats);
 				allObservationsSize -= oldStats.getSize();
 			}
 			statsByPath.put(key, newStats);
+			byLastUpdateTime.add(newStats);
 			allObservationsSize += newStats.getSize();
-			while (allObservationsSize > maxSize) {
-				String minKey = findMin();
-				if (minKey == null) {
-					LOG.info("no observation with minimum time found"); // this is weird because at least one was just added
-					break;
-				}
-				PathStats min = statsByPath.remove(minKey);
-				if (min == null) {
-					LOG.info("no observation with minimum time found"); // this is weird because at least one was just added
-					break;
-				}
-				LOG.info("deleting old observation: {} last update time: {}", min.getPath(), new Date(min.getLastUpdateTime()));
-				if (Util.deleteDirectory(min.getPath())) {
-					allObservationsSize -= min.getSize();
-				}
-			}
+			evicted = evictUntil(maxSize);
 		}
+		delete(evicted, deleter);
+	}
+
+	/**
+	 * Make room for upcoming observations within the retention size
+	 * 
+	 * @param bytes - expected size of upcoming observations
+	 * @return number of bytes evicted
+	 */
+	public long reserve(long bytes) {
+		if (bytes >= maxSize) {
+			// upcoming observations will be evicted one by one
+			// when they are indexed. do not wipe out the whole archive
+			LOG.warn("upcoming observations require {} bytes, but retention size is {} bytes", bytes, maxSize);
+			return 0;
+		}
+		List<PathStats> evicted;
+		synchronized (this) {
+			evicted = evictUntil(maxSize - bytes);
+		}
+		delete(evicted, deleter);
+		return getSize(evicted);
+	}
 
+	/**
+	 * Evict the oldest observations regardless of the retention size. Used when
+	 * the disk is smaller than the configured retention size
+	 * 
+	 * @param bytes - number of bytes to free
+	 * @return number of bytes actually evicted
+	 */
+	public long free(long bytes) {
+		List<PathStats> evicted;
+		synchronized (this) {
+			evicted = evictUntil(allObservationsSize - bytes);
+		}
+		delete(evicted, deleter);
+		return getSize(evicted);
 	}
 
-	private String findMin() {
-		PathStats min = null;
-		String minKey = null;
-		for (Entry<String, PathStats> cur : statsByPath.entrySet()) {
-			if (min == null || cur.getValue().getLastUpdateTime() < min.getLastUpdateTime()) {
-				min = cur.getValue();
-				minKey = cur.getKey();
+	private static long getSize(List<PathStats> evicted) {
+		long result = 0;
+		for (PathStats cur : evicted) {
+			result += cur.getSize();
+		}
+		return result;
+	}
+
+	private List<PathStats> evictUntil(long targetSize) {
+		List<PathStats> result = new ArrayList<>();
+		while (allObservationsSize > targetSize) {
+			PathStats min = byLastUpdateTime.pollFirst();
+			if (min == null) {
+				break;
 			}
+			statsByPath.remove(min.getPath().toString());
+			allObservationsSize -= min.getSize();
+			result.add(min);
 		}
-		return minKey;
+		return result;
 	}
+
+	private void delete(List<PathStats> evicted, Executor executor) {
+		for (PathStats cur : evicted) {
+			LOG.info("deleting old observation: {} last update time: {}", cur.getPath(), new Date(cur.getLastUpdateTime()));
+			if (listener != null) {
+				listener.onDelete(cur.getPath());
+			}
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (!Util.deleteDirectory(cur.getPath())) {
+						LOG.error("unable to delete old observation: {}", cur.getPath());
+					}
+				}
+			});
+		}
+	}
+
 }
@@ -0,0 +1,18 @@
+package ru.r2cloud.satellite;
+
+import java.util.Comparator;
+
+public class TimeSlotComparator implements Comparator<TimeSlot> {
+
+	public static final TimeSlotComparator INSTANCE = new TimeSlotComparator();
+
+	@Override
+	public int compare(TimeSlot o1, TimeSlot o2) {
+		int result = Long.compare(o1.getStart(), o2.getStart());
+		if (result != 0) {
+			return result;
+		}
+		return Long.compare(o1.getEnd(), o2.getEnd());
+	}
+
+}
@@ -0,0 +1,27 @@
+package ru.r2cloud.satellite;
+
+import ru.r2cloud.util.Configuration;
+
+public class TimetableFactory {
+
+	private final boolean indexed;
+
+	public TimetableFactory(Configuration config) {
+		this.indexed = config.getBoolean("scheduler.timetable.indexed");
+	}
+
+	public Timetable createSequential(long partialToleranceMillis) {
+		if (indexed) {
+			return new IndexedSequentialTimetable(partialToleranceMillis);
+		}
+		return new SequentialTimetable(partialToleranceMillis);
+	}
+
+	public Timetable createOverlapped(long partialToleranceMillis) {
+		if (indexed) {
+			return new IndexedOverlappedTimetable(partialToleranceMillis);
+		}
+		return new OverlappedTimetable(partialToleranceMillis);
+	}
+
+}
@@ -0,0 +1,152 @@
+package ru.r2cloud.satellite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Transmitter;
+
+/**
+ * Reserve passes with the max total value. For the sequential timetable this
+ * is the weighted interval scheduling problem and it is solved exactly in O(n
+ * log n). Overlapped timetable allows several observations within the same
+ * frequency band, so the passes are reserved greedily starting from the most
+ * valuable. Passes which don't fit fully are reserved partially the same way as
+ * {@link GreedyScheduleStrategy} does
+ */
+public class ValueScheduleStrategy implements ScheduleStrategy {
+
+	private final ObservationValue value;
+	private final boolean sequential;
+
+	public ValueScheduleStrategy(ObservationValue value, boolean sequential) {
+		this.value = value;
+		this.sequential = sequential;
+	}
+
+	@Override
+	public List<ObservationRequest> schedule(List<Transmitter> transmitters, Map<String, List<ObservationRequest>> passesByTransmitterId, Timetable timetable, Map<String, TimeSlot> slotById) {
+		List<ObservationRequest> candidates = new ArrayList<>();
+		for (Transmitter cur : transmitters) {
+			List<ObservationRequest> allPasses = passesByTransmitterId.get(cur.getId());
+			if (allPasses == null) {
+				continue;
+			}
+			candidates.addAll(allPasses);
+		}
+		List<ObservationRequest> selected;
+		if (sequential) {
+			selected = selectNonOverlapping(findFitting(candidates, timetable));
+		} else {
+			selected = sortByValue(candidates);
+		}
+		List<ObservationRequest> result = new ArrayList<>();
+		for (ObservationRequest cur : selected) {
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+			TimeSlot slot = GreedyScheduleStrategy.createSlot(cur);
+			if (!timetable.addFully(slot)) {
+				continue;
+			}
+			slotById.put(cur.getId(), slot);
+			result.add(cur);
+			passesByTransmitterId.get(cur.getTransmitterId()).remove(cur);
+		}
+		result.addAll(GreedyScheduleStrategy.schedulePartially(transmitters, passesByTransmitterId, timetable, slotById));
+		return result;
+	}
+
+	// passes might overlap already reserved slots
+	private static List<ObservationRequest> findFitting(List<ObservationRequest> candidates, Timetable timetable) {
+		List<ObservationRequest> result = new ArrayList<>(candidates.size());
+		for (ObservationRequest cur : candidates) {
+			TimeSlot slot = GreedyScheduleStrategy.createSlot(cur);
+			if (timetable.addFully(slot)) {
+				timetable.remove(slot);
+				result.add(cur);
+			}
+		}
+		return result;
+	}
+
+	List<ObservationRequest> selectNonOverlapping(List<ObservationRequest> candidates) {
+		int n = candidates.size();
+		if (n == 0) {
+			return Collections.emptyList();
+		}
+		List<ObservationRequest> sorted = new ArrayList<>(candidates);
+		Collections.sort(sorted, ObservationRequestEndComparator.INSTANCE);
+		long[] ends = new long[n];
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			ends[i] = sorted.get(i).getEndTimeMillis();
+			values[i] = value.getValue(sorted.get(i));
+		}
+		// best[i] is the max value of the first i passes
+		double[] best = new double[n + 1];
+		int[] previous = new int[n];
+		for (int i = 0; i < n; i++) {
+			ObservationRequest cur = sorted.get(i);
+			previous[i] = findLastEndedBefore(ends, i, cur.getStartTimeMillis());
+			double taken = values[i] + best[previous[i] + 1];
+			best[i + 1] = Math.max(best[i], taken);
+		}
+		List<ObservationRequest> result = new ArrayList<>();
+		int i = n - 1;
+		while (i >= 0) {
+			if (values[i] + best[previous[i] + 1] >= best[i]) {
+				result.add(sorted.get(i));
+				i = previous[i];
+			} else {
+				i--;
+			}
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	// index of the last pass within [0, to) which ends at or before the time.
+	// Sequential timetables accept slots which touch each other, so the pass
+	// ended exactly at the start is compatible
+	private static int findLastEndedBefore(long[] ends, int to, long time) {
+		int low = 0;
+		int high = to - 1;
+		int result = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ends[mid] <= time) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	private List<ObservationRequest> sortByValue(List<ObservationRequest> candidates) {
+		Map<String, Double> valueById = new HashMap<>();
+		for (ObservationRequest cur : candidates) {
+			valueById.put(cur.getId(), value.getValue(cur));
+		}
+		List<ObservationRequest> byValue = new ArrayList<>(candidates);
+		Collections.sort(byValue, new Comparator<ObservationRequest>() {
+
+			@Override
+			public int compare(ObservationRequest o1, ObservationRequest o2) {
+				int result = Double.compare(valueById.get(o2.getId()), valueById.get(o1.getId()));
+				if (result != 0) {
+					return result;
+				}
+				return ObservationRequestComparator.INSTANCE.compare(o1, o2);
+			}
+		});
+		return byValue;
+	}
+
+}
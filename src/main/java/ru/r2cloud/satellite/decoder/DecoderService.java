@@ -1,7 +1,6 @@
 package ru.r2cloud.satellite.decoder;
 
 import java.io.File;
-import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.slf4j.Logger;
@@ -18,6 +17,7 @@ import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.ObservationStatus;
 import ru.r2cloud.model.Satellite;
 import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.satellite.IObservationDao;
 import ru.r2cloud.satellite.SatelliteDao;
 import ru.r2cloud.util.Configuration;
@@ -39,11 +39,12 @@ public class DecoderService implements Lifecycle {
 	private final Configuration config;
 	private final Metrics metrics;
 	private final SatelliteDao satelliteDao;
+	private final PredictOreKit predict;
 
 	private Counter lrpt;
 	private Counter telemetry;
 
-	public DecoderService(Configuration config, Decoders decoders, IObservationDao dao, LeoSatDataService r2cloudService, ThreadPoolFactory threadpoolFactory, Metrics metrics, SatelliteDao satelliteDao) {
+	public DecoderService(Configuration config, Decoders decoders, IObservationDao dao, LeoSatDataService r2cloudService, ThreadPoolFactory threadpoolFactory, Metrics metrics, SatelliteDao satelliteDao, PredictOreKit predict) {
 		this.config = config;
 		this.decoders = decoders;
 		this.dao = dao;
@@ -51,6 +52,7 @@ public class DecoderService implements Lifecycle {
 		this.threadpoolFactory = threadpoolFactory;
 		this.metrics = metrics;
 		this.satelliteDao = satelliteDao;
+		this.predict = predict;
 	}
 
 	@Override
@@ -66,29 +68,29 @@ public class DecoderService implements Lifecycle {
 			return;
 		}
 		LOG.info("check for not processed observations");
-		List<Observation> all = dao.findAll();
+		for (Observation cur : dao.findAllByStatus(ObservationStatus.RECEIVED)) {
+			LOG.info("resuming decoding: {}", cur.getId());
+			if (cur.getRawPath() == null) {
+				LOG.info("raw file doesn't exist: {}", cur.getId());
+				cur.setStatus(ObservationStatus.FAILED);
+				dao.update(cur);
+			} else {
+				run(cur.getRawPath(), cur.getReq());
+			}
+		}
 		String apiKey = config.getProperty("r2cloud.apiKey");
-		for (Observation cur : all) {
-			if (cur.getStatus().equals(ObservationStatus.RECEIVED)) {
-				LOG.info("resuming decoding: {}", cur.getId());
-				if (cur.getRawPath() == null) {
-					LOG.info("raw file doesn't exist: {}", cur.getId());
-					cur.setStatus(ObservationStatus.FAILED);
-					dao.update(cur);
-				} else {
-					run(cur.getRawPath(), cur.getReq());
+		if (apiKey == null) {
+			return;
+		}
+		for (Observation cur : dao.findAllByStatus(ObservationStatus.DECODED)) {
+			LOG.info("resume uploading: {}", cur.getId());
+			decoderThread.execute(new SafeRunnable() {
+
+				@Override
+				public void safeRun() {
+					r2cloudService.uploadObservation(cur);
 				}
-			}
-			if (apiKey != null && cur.getStatus().equals(ObservationStatus.DECODED)) {
-				LOG.info("resume uploading: {}", cur.getId());
-				decoderThread.execute(new SafeRunnable() {
-
-					@Override
-					public void safeRun() {
-						r2cloudService.uploadObservation(cur);
-					}
-				});
-			}
+			});
 		}
 	}
 
@@ -135,6 +137,16 @@ public class DecoderService implements Lifecycle {
 			LOG.info("[{}] raw data for observation is missing. This can be caused by slow decoding of other observations and too aggressive retention. Increase scheduler.data.retention.raw.count or reduce number of scheduled satellites or use faster hardware", request.getId());
 			return;
 		}
+		if (request.getEphemerisPath() == null && request.getTle() != null) {
+			// shared with the decoders and kept for re-decoding
+			// recording thread is not blocked by propagation and disk I/O
+			// decoders fall back to their own propagation without ephemeris
+			try {
+				request.setEphemerisPath(dao.saveEphemeris(request.getSatelliteId(), request.getId(), predict.getEphemeris(request)));
+			} catch (Exception e) {
+				LOG.error("[{}] unable to save ephemeris. decoding without it", request.getId(), e);
+			}
+		}
 		LOG.info("[{}] decoding", request.getId());
 		DecoderResult result = decoder.decode(rawFile, request, transmitter);
 		LOG.info("[{}] decoded", request.getId());
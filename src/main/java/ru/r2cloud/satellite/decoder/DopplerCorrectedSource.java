@@ -24,6 +24,7 @@ import ru.r2cloud.jradio.source.SigSource;
 import ru.r2cloud.jradio.source.Waveform;
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.Ephemeris;
 import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.util.Util;
 
@@ -63,8 +64,10 @@ public class DopplerCorrectedSource implements FloatInput {
 		}
 		TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new org.orekit.propagation.analytical.tle.TLE(req.getTle().getRaw()[1], req.getTle().getRaw()[2]));
 		TopocentricFrame groundStation = predict.getPosition(req.getGroundStation());
-		long startFrequency = predict.getDownlinkFreq(transmitter.getFrequency(), req.getStartTimeMillis(), groundStation, tlePropagator);
-		long endFrequency = predict.getDownlinkFreq(transmitter.getFrequency(), req.getEndTimeMillis(), groundStation, tlePropagator);
+		// the same table is used for every baud rate and every re-decode
+		Ephemeris ephemeris = predict.getEphemeris(req, req.getEphemerisPath());
+		long startFrequency = ephemeris.getDownlinkFreq(transmitter.getFrequency(), req.getStartTimeMillis());
+		long endFrequency = ephemeris.getDownlinkFreq(transmitter.getFrequency(), req.getEndTimeMillis());
 
 		long maxOffset = Math.max(Math.abs(transmitter.getFrequency() - startFrequency), Math.abs(transmitter.getFrequency() - endFrequency));
 
@@ -76,6 +79,9 @@ public class DopplerCorrectedSource implements FloatInput {
 
 			@Override
 			public long getDopplerFrequency(long satelliteFrequency, long currentTimeMillis) {
+				if (ephemeris.covers(currentTimeMillis)) {
+					return ephemeris.getDownlinkFreq(satelliteFrequency, currentTimeMillis);
+				}
 				return predict.getDownlinkFreq(satelliteFrequency, currentTimeMillis, groundStation, tlePropagator);
 			}
 		}, 1.0);
@@ -1,10 +1,16 @@
 package ru.r2cloud.tle;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import ru.r2cloud.cloud.LeoSatDataClient;
 import ru.r2cloud.cloud.NotModifiedException;
 import ru.r2cloud.cloud.SatnogsClient;
@@ -19,6 +25,8 @@ import ru.r2cloud.util.Util;
 
 public class Housekeeping {
 
+	private static final Logger LOG = LoggerFactory.getLogger(Housekeeping.class);
+
 	private final ThreadPoolFactory threadFactory;
 	private final SatelliteDao dao;
 	private final Configuration config;
@@ -27,8 +35,12 @@ public class Housekeeping {
 	private final SatnogsClient satnogs;
 	private final TleDao tleDao;
 	private final DecoderService decoder;
+	private final List<TleListener> listeners = new CopyOnWriteArrayList<>();
+	// tle applied to satellites on the previous run
+	private final Map<String, Tle> appliedTle = new HashMap<>();
 
 	private ScheduledExecutorService executor = null;
+	private boolean tleLoaded = false;
 
 	public Housekeeping(Configuration config, SatelliteDao dao, ThreadPoolFactory threadFactory, CelestrakClient celestrak, TleDao tleDao, SatnogsClient satnogs, LeoSatDataClient leosatdata, DecoderService decoder) {
 		this.config = config;
@@ -41,6 +53,10 @@ public class Housekeeping {
 		this.decoder = decoder;
 	}
 
+	public void subscribe(TleListener listener) {
+		listeners.add(listener);
+	}
+
 	public synchronized void start() {
 		if (executor != null) {
 			return;
@@ -145,6 +161,52 @@ public class Housekeeping {
 		if (reloadTle) {
 			tleDao.saveTle(updated);
 		}
+		notifyTleChanges();
+	}
+
+	private void notifyTleChanges() {
+		List<Satellite> changed = new ArrayList<>();
+		for (Satellite cur : dao.findAll()) {
+			Tle previous;
+			if (cur.getTle() == null) {
+				previous = appliedTle.remove(cur.getId());
+			} else {
+				previous = appliedTle.put(cur.getId(), cur.getTle());
+			}
+			if (cur.getTle() != null && !isSameOrbit(previous, cur.getTle())) {
+				changed.add(cur);
+			}
+		}
+		// everything is scheduled from scratch on start
+		if (!tleLoaded) {
+			tleLoaded = true;
+			return;
+		}
+		if (changed.isEmpty()) {
+			return;
+		}
+		LOG.info("tle updated for {} satellites", changed.size());
+		for (TleListener cur : listeners) {
+			cur.onTleUpdated(changed);
+		}
+	}
+
+	// name line might change without any change in the orbit
+	private static boolean isSameOrbit(Tle previous, Tle current) {
+		if (previous == null) {
+			return false;
+		}
+		String[] previousRaw = previous.getRaw();
+		String[] currentRaw = current.getRaw();
+		if (previousRaw.length != currentRaw.length) {
+			return false;
+		}
+		for (int i = 1; i < currentRaw.length; i++) {
+			if (!previousRaw[i].equals(currentRaw[i])) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public synchronized void stop() {
@@ -0,0 +1,11 @@
+package ru.r2cloud.tle;
+
+import java.util.List;
+
+import ru.r2cloud.model.Satellite;
+
+public interface TleListener {
+
+	void onTleUpdated(List<Satellite> updated);
+
+}
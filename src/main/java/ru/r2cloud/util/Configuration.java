@@ -396,6 +396,15 @@ public class Configuration {
 		result.setTolerance(getThreadPoolShutdownMillis());
 		result.setTolerance(tolerance);
 		result.setCycleMillis(cycleMillis);
+		// rotators with the overlap or the elevation up to 180 degrees
+		Double maxAzimuth = getDouble(prefix + "rotator.maxAzimuth");
+		if (maxAzimuth != null) {
+			result.setMaxAzimuth(maxAzimuth);
+		}
+		Double maxElevation = getDouble(prefix + "rotator.maxElevation");
+		if (maxElevation != null) {
+			result.setMaxElevation(maxElevation);
+		}
 		return result;
 	}
 
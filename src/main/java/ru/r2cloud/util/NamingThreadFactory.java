@@ -6,15 +6,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class NamingThreadFactory implements ThreadFactory {
 
 	private final String prefix;
+	private final int priority;
 	private final AtomicInteger threadCreated = new AtomicInteger(0);
 
 	public NamingThreadFactory(String prefix) {
+		this(prefix, Thread.NORM_PRIORITY);
+	}
+
+	public NamingThreadFactory(String prefix, int priority) {
 		this.prefix = prefix;
+		this.priority = priority;
 	}
 
 	@Override
 	public Thread newThread(Runnable r) {
-		return new Thread(r, prefix + "-" + threadCreated.incrementAndGet());
+		Thread result = new Thread(r, prefix + "-" + threadCreated.incrementAndGet());
+		result.setPriority(priority);
+		return result;
 	}
 	
 	public String getPrefix() {
@@ -194,6 +194,14 @@ public class WebServer extends NanoHTTPD {
 		return Integer.valueOf(param);
 	}
 
+	public static Long getLong(IHTTPSession session, String name) {
+		String param = getParameter(session, name);
+		if (param == null || param.trim().length() == 0) {
+			return null;
+		}
+		return Long.valueOf(param);
+	}
+
 	public static boolean getBoolean(IHTTPSession session, String name) {
 		String param = getParameter(session, name);
 		if (param == null || param.trim().length() == 0) {
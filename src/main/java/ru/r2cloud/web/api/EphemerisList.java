@@ -0,0 +1,147 @@
+package ru.r2cloud.web.api;
+
+import java.util.Map.Entry;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+
+import fi.iki.elonen.NanoHTTPD.IHTTPSession;
+import ru.r2cloud.device.DeviceManager;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.Ephemeris;
+import ru.r2cloud.predict.EphemerisSnapshot;
+import ru.r2cloud.rotctrld.Position;
+import ru.r2cloud.satellite.EphemerisSnapshotService;
+import ru.r2cloud.satellite.SatelliteDao;
+import ru.r2cloud.util.Clock;
+import ru.r2cloud.web.AbstractHttpController;
+import ru.r2cloud.web.BadRequest;
+import ru.r2cloud.web.ModelAndView;
+import ru.r2cloud.web.ValidationResult;
+import ru.r2cloud.web.WebServer;
+
+public class EphemerisList extends AbstractHttpController {
+
+	private final EphemerisSnapshotService service;
+	private final SatelliteDao satelliteDao;
+	private final DeviceManager deviceManager;
+	private final Clock clock;
+
+	public EphemerisList(EphemerisSnapshotService service, SatelliteDao satelliteDao, DeviceManager deviceManager, Clock clock) {
+		this.service = service;
+		this.satelliteDao = satelliteDao;
+		this.deviceManager = deviceManager;
+		this.clock = clock;
+	}
+
+	@Override
+	public ModelAndView doGet(IHTTPSession session) {
+		ValidationResult errors = new ValidationResult();
+		long current = clock.millis();
+		Long from = null;
+		Long to = null;
+		Long step = null;
+		try {
+			from = WebServer.getLong(session, "from");
+		} catch (NumberFormatException e) {
+			errors.put("from", "not an integer");
+		}
+		try {
+			to = WebServer.getLong(session, "to");
+		} catch (NumberFormatException e) {
+			errors.put("to", "not an integer");
+		}
+		try {
+			step = WebServer.getLong(session, "step");
+			if (step != null && step <= 0) {
+				errors.put("step", Messages.CANNOT_BE_NEGATIVE);
+			}
+		} catch (NumberFormatException e) {
+			errors.put("step", "not an integer");
+		}
+		if (from == null) {
+			from = current;
+		}
+		if (to == null) {
+			to = from;
+		}
+		if (to < from) {
+			errors.put("to", "cannot be less than from");
+		}
+		if (!errors.isEmpty()) {
+			return new BadRequest(errors);
+		}
+		JsonObject entity = new JsonObject();
+		JsonArray satellites = new JsonArray();
+		EphemerisSnapshot snapshot = service.getSnapshot();
+		if (snapshot != null) {
+			if (from > snapshot.getEndMillis() || to < snapshot.getStartMillis()) {
+				errors.put("from", "not within the calculated ephemeris: " + snapshot.getStartMillis() + " - " + snapshot.getEndMillis());
+				return new BadRequest(errors);
+			}
+			// window is limited by the snapshot
+			from = Math.max(from, snapshot.getStartMillis());
+			to = Math.min(to, snapshot.getEndMillis());
+			if (step == null || step < snapshot.getStepMillis()) {
+				step = snapshot.getStepMillis();
+			}
+			entity.add("from", from);
+			entity.add("to", to);
+			for (Entry<String, Ephemeris> cur : snapshot.getEphemerides().entrySet()) {
+				Satellite satellite = satelliteDao.findById(cur.getKey());
+				if (satellite == null) {
+					continue;
+				}
+				satellites.add(createSatellite(satellite, cur.getValue(), from, to, step));
+			}
+		}
+		entity.add("satellites", satellites);
+		ModelAndView result = new ModelAndView();
+		result.setData(entity);
+		return result;
+	}
+
+	private JsonObject createSatellite(Satellite satellite, Ephemeris ephemeris, long from, long to, long step) {
+		JsonObject result = new JsonObject();
+		result.add("id", satellite.getId());
+		result.add("name", satellite.getName());
+		Transmitter transmitter = null;
+		for (Transmitter curTransmitter : satellite.getTransmitters()) {
+			ObservationRequest nextObservation = deviceManager.findFirstByTransmitter(curTransmitter);
+			if (transmitter == null) {
+				transmitter = curTransmitter;
+			}
+			if (nextObservation == null) {
+				continue;
+			}
+			// override transmitter for the schedule pass
+			transmitter = curTransmitter;
+			result.add("nextPass", nextObservation.getStartTimeMillis());
+			break;
+		}
+		if (transmitter != null) {
+			result.add("frequency", transmitter.getFrequency());
+		}
+		JsonArray positions = new JsonArray();
+		for (long cur = from; cur <= to; cur += step) {
+			Position position = ephemeris.getPosition(cur);
+			JsonObject curPosition = new JsonObject();
+			curPosition.add("time", cur);
+			curPosition.add("azimuth", position.getAzimuth());
+			curPosition.add("elevation", position.getElevation());
+			if (transmitter != null) {
+				curPosition.add("frequency", ephemeris.getDownlinkFreq(transmitter.getFrequency(), cur));
+			}
+			positions.add(curPosition);
+		}
+		result.add("positions", positions);
+		return result;
+	}
+
+	@Override
+	public String getRequestMappingURL() {
+		return "/api/v1/admin/ephemeris";
+	}
+}
@@ -1,7 +1,6 @@
 package ru.r2cloud.web.api;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import com.eclipsesource.json.JsonArray;
@@ -9,14 +8,12 @@ import com.eclipsesource.json.JsonObject;
 
 import fi.iki.elonen.NanoHTTPD.IHTTPSession;
 import fi.iki.elonen.NanoHTTPD.Response;
-import ru.r2cloud.ObservationFullComparator;
 import ru.r2cloud.device.DeviceManager;
 import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationFilter;
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.Satellite;
-import ru.r2cloud.model.Transmitter;
 import ru.r2cloud.satellite.IObservationDao;
-import ru.r2cloud.satellite.ObservationRequestComparator;
 import ru.r2cloud.satellite.SatelliteDao;
 import ru.r2cloud.util.Configuration;
 import ru.r2cloud.web.AbstractHttpController;
@@ -45,24 +42,14 @@ public class PresentationMode extends AbstractHttpController {
             result.setData("{}");
             return result;
         }
-        List<Satellite> all = dao.findAll();
-        List<Observation> observations = new ArrayList<>();
-        List<ObservationRequest> requests = new ArrayList<>();
-        for (Satellite cur : all) {
-            observations.addAll(resultDao.findAllBySatelliteId(cur.getId()));
-            for (Transmitter curTransmitter : cur.getTransmitters()) {
-                ObservationRequest nextObservation = deviceManager.findFirstByTransmitter(curTransmitter);
-                if (nextObservation == null) {
-                    continue;
-                }
-                requests.add(nextObservation);
-            }
-        }
-        Collections.sort(requests, ObservationRequestComparator.INSTANCE);
+        List<ObservationRequest> requests = deviceManager.findFirstObservations(5);
         JsonArray jsonObservations = new JsonArray();
         for (int i = 0; i < 5 && i < requests.size(); i++) {
             ObservationRequest cur = requests.get(i);
             Satellite curSatellite = dao.findById(cur.getSatelliteId());
+            if (curSatellite == null) {
+                continue;
+            }
             JsonObject curRequest = new JsonObject();
             curRequest.add("id", cur.getId());
             curRequest.add("name", curSatellite.getName());
@@ -76,8 +63,8 @@ public class PresentationMode extends AbstractHttpController {
             jsonObservations.add(curRequest);
         }
 
-        Collections.sort(observations, ObservationFullComparator.INSTANCE);
-        for (int i = 0; i < 5 && i < observations.size(); i++) {
+        List<Observation> observations = findLatestObservations(5);
+        for (int i = 0; i < observations.size(); i++) {
             Observation cur = observations.get(i);
             Satellite curSatellite = dao.findById(cur.getSatelliteId());
             if (curSatellite == null || cur.getTle() == null) {
@@ -108,6 +95,30 @@ public class PresentationMode extends AbstractHttpController {
         return result;
     }
 
+    // the latest observations of the known satellites only
+    private List<Observation> findLatestObservations(int count) {
+        List<Observation> result = new ArrayList<>(count);
+        ObservationFilter filter = new ObservationFilter();
+        filter.setLimit(count);
+        while (result.size() < count) {
+            List<Observation> page = resultDao.findAll(filter);
+            for (Observation cur : page) {
+                if (result.size() >= count) {
+                    break;
+                }
+                if (dao.findById(cur.getSatelliteId()) == null) {
+                    continue;
+                }
+                result.add(cur);
+            }
+            if (page.size() < count) {
+                break;
+            }
+            filter.setOffset(filter.getOffset() + count);
+        }
+        return result;
+    }
+
     @Override
     public String getRequestMappingURL() {
         return "/api/v1/presentationMode";
@@ -1,19 +1,23 @@
 package ru.r2cloud.web.api.observation;
 
-import java.util.Collections;
 import java.util.List;
 
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 
 import fi.iki.elonen.NanoHTTPD.IHTTPSession;
-import ru.r2cloud.ObservationFullComparator;
 import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationStatus;
 import ru.r2cloud.model.Satellite;
 import ru.r2cloud.satellite.IObservationDao;
 import ru.r2cloud.satellite.SatelliteDao;
 import ru.r2cloud.web.AbstractHttpController;
+import ru.r2cloud.web.BadRequest;
 import ru.r2cloud.web.ModelAndView;
+import ru.r2cloud.web.ValidationResult;
+import ru.r2cloud.web.WebServer;
+import ru.r2cloud.web.api.Messages;
 
 public class ObservationList extends AbstractHttpController {
 
@@ -27,8 +31,57 @@ public class ObservationList extends AbstractHttpController {
 
 	@Override
 	public ModelAndView doGet(IHTTPSession session) {
-		List<Observation> observations = resultDao.findAll();
-		Collections.sort(observations, ObservationFullComparator.INSTANCE);
+		ValidationResult errors = new ValidationResult();
+		ObservationFilter filter = new ObservationFilter();
+		filter.setSatelliteId(WebServer.getParameter(session, "satelliteId"));
+		filter.setTransmitterId(WebServer.getParameter(session, "transmitterId"));
+		String status = WebServer.getParameter(session, "status");
+		if (status != null) {
+			try {
+				filter.setStatus(ObservationStatus.valueOf(status));
+			} catch (IllegalArgumentException e) {
+				errors.put("status", "unknown status");
+			}
+		}
+		try {
+			filter.setStartTimeMillisFrom(WebServer.getLong(session, "from"));
+		} catch (NumberFormatException e) {
+			errors.put("from", "not an integer");
+		}
+		try {
+			filter.setStartTimeMillisTo(WebServer.getLong(session, "to"));
+		} catch (NumberFormatException e) {
+			errors.put("to", "not an integer");
+		}
+		if (filter.getStartTimeMillisFrom() != null && filter.getStartTimeMillisTo() != null && filter.getStartTimeMillisTo() < filter.getStartTimeMillisFrom()) {
+			errors.put("to", "cannot be less than from");
+		}
+		try {
+			Integer offset = WebServer.getInteger(session, "offset");
+			if (offset != null) {
+				if (offset < 0) {
+					errors.put("offset", Messages.CANNOT_BE_NEGATIVE);
+				} else {
+					filter.setOffset(offset);
+				}
+			}
+		} catch (NumberFormatException e) {
+			errors.put("offset", "not an integer");
+		}
+		try {
+			Integer limit = WebServer.getInteger(session, "limit");
+			if (limit != null && limit < 0) {
+				errors.put("limit", Messages.CANNOT_BE_NEGATIVE);
+			} else {
+				filter.setLimit(limit);
+			}
+		} catch (NumberFormatException e) {
+			errors.put("limit", "not an integer");
+		}
+		if (!errors.isEmpty()) {
+			return new BadRequest(errors);
+		}
+		List<Observation> observations = resultDao.findAll(filter);
 		JsonArray satellites = new JsonArray();
 		for (Observation cur : observations) {
 			JsonObject curObservation = new JsonObject();
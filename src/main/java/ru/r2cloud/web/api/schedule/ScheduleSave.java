@@ -1,5 +1,7 @@
 package ru.r2cloud.web.api.schedule;
 
+import java.util.Collections;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,9 +56,9 @@ public class ScheduleSave extends AbstractHttpController {
 
 		ObservationRequest nextObservation = null;
 		if (enabled) {
-			nextObservation = scheduler.enableSatellite(satelliteToEdit);
+			nextObservation = scheduler.enableSatellites(Collections.singletonList(satelliteToEdit)).get(satelliteToEdit.getId());
 		} else {
-			scheduler.disableSatellite(satelliteToEdit);
+			scheduler.disableSatellites(Collections.singletonList(satelliteToEdit));
 		}
 
 		JsonObject entity = new JsonObject();
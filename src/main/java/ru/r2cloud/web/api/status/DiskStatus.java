@@ -0,0 +1,57 @@
+package ru.r2cloud.web.api.status;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+
+import fi.iki.elonen.NanoHTTPD.IHTTPSession;
+import ru.r2cloud.device.DiskBudgetPlanner;
+import ru.r2cloud.model.DiskBudget;
+import ru.r2cloud.model.DiskReservation;
+import ru.r2cloud.web.AbstractHttpController;
+import ru.r2cloud.web.ModelAndView;
+
+public class DiskStatus extends AbstractHttpController {
+
+	private final DiskBudgetPlanner planner;
+
+	public DiskStatus(DiskBudgetPlanner planner) {
+		this.planner = planner;
+	}
+
+	@Override
+	public ModelAndView doGet(IHTTPSession session) {
+		ModelAndView result = new ModelAndView();
+		JsonObject entity = Json.object();
+		DiskBudget budget = planner.getBudget();
+		if (budget != null) {
+			entity.add("calculated", budget.getCalculatedTimeMillis());
+			entity.add("horizonMillis", budget.getHorizonMillis());
+			if (budget.getFreeBytes() != null) {
+				entity.add("freeBytes", budget.getFreeBytes());
+			}
+			entity.add("reservedBytes", budget.getReservedBytes());
+			if (budget.getProjectedFreeBytes() != null) {
+				entity.add("projectedFreeBytes", budget.getProjectedFreeBytes());
+			}
+			JsonArray reservations = new JsonArray();
+			for (DiskReservation cur : budget.getReservations()) {
+				JsonObject curObj = Json.object();
+				curObj.add("id", cur.getObservationId());
+				curObj.add("satelliteId", cur.getSatelliteId());
+				curObj.add("start", cur.getStartTimeMillis());
+				curObj.add("bytes", cur.getBytes());
+				reservations.add(curObj);
+			}
+			entity.add("reservations", reservations);
+		}
+		result.setData(entity.toString());
+		return result;
+	}
+
+	@Override
+	public String getRequestMappingURL() {
+		return "/api/v1/admin/status/disk";
+	}
+
+}
@@ -0,0 +1,156 @@
+package ru.r2cloud.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import ru.r2cloud.SteppingClock;
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.satellite.ObservationFactory;
+import ru.r2cloud.satellite.SatelliteDao;
+import ru.r2cloud.util.NamingThreadFactory;
+import ru.r2cloud.util.ThreadPoolFactory;
+
+public class DeviceManagerTest {
+
+	private static final long DEBOUNCE_MILLIS = 5000;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ScheduledExecutorService executor;
+	private ObservationFactory factory;
+	private List<ScheduledFuture<?>> futures;
+	private Device first;
+	private Device second;
+	private DeviceManager manager;
+
+	@Test
+	public void testDebounceDisable() {
+		when(first.removeTransmitters(anyList())).thenReturn(true);
+		manager.disableSatellites(createSatellites("1", "2"));
+		manager.disableSatellites(createSatellites("3"));
+
+		// observations are cancelled immediately
+		ArgumentCaptor<List<Transmitter>> removed = newListCaptor();
+		verify(first, times(2)).removeTransmitters(removed.capture());
+		assertEquals(2, removed.getAllValues().get(0).size());
+		assertEquals(1, removed.getAllValues().get(1).size());
+		verify(second, times(2)).removeTransmitters(anyList());
+
+		// every change restarts the timer
+		ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor, times(2)).schedule(tasks.capture(), eq(DEBOUNCE_MILLIS), eq(TimeUnit.MILLISECONDS));
+		verify(futures.get(0)).cancel(false);
+		verify(first, never()).fillFreedSlots(anyLong());
+
+		// single rebuild per device with the same window
+		tasks.getAllValues().get(1).run();
+		ArgumentCaptor<Long> current = ArgumentCaptor.forClass(Long.class);
+		verify(first, times(1)).fillFreedSlots(current.capture());
+		verify(second, times(1)).fillFreedSlots(current.getValue());
+		verify(first, never()).reschedule(anyLong());
+		verify(second, never()).reschedule(anyLong());
+	}
+
+	@Test
+	public void testSameWindowForAllDevices() {
+		when(first.restoreSchedule()).thenReturn(null);
+		when(second.restoreSchedule()).thenReturn(null);
+		manager.stop();
+		manager.start();
+		// balanced assignment predicts passes before the reschedule
+		ArgumentCaptor<Date> current = ArgumentCaptor.forClass(Date.class);
+		verify(factory).createSchedule(current.capture(), anyList());
+		verify(first).reschedule(current.getValue().getTime());
+		verify(second).reschedule(current.getValue().getTime());
+	}
+
+	@Test
+	public void testNothingToDisable() {
+		manager.disableSatellites(createSatellites("1"));
+		verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+		verify(first, never()).fillFreedSlots(anyLong());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ArgumentCaptor<List<Transmitter>> newListCaptor() {
+		return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+	}
+
+	private static List<Satellite> createSatellites(String... ids) {
+		List<Satellite> result = new ArrayList<>();
+		for (String cur : ids) {
+			Transmitter transmitter = new Transmitter();
+			transmitter.setId(cur + "-0");
+			Satellite satellite = new Satellite();
+			satellite.setId(cur);
+			satellite.setTransmitters(Collections.singletonList(transmitter));
+			result.add(satellite);
+		}
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		TestConfiguration config = new TestConfiguration(tempFolder);
+		config.setProperty("scheduler.reschedule.debounceMillis", DEBOUNCE_MILLIS);
+		futures = new ArrayList<>();
+		executor = mock(ScheduledExecutorService.class);
+		when(executor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(new Answer<ScheduledFuture<?>>() {
+
+			@Override
+			public ScheduledFuture<?> answer(InvocationOnMock invocation) throws Throwable {
+				ScheduledFuture<?> result = mock(ScheduledFuture.class);
+				futures.add(result);
+				return result;
+			}
+		});
+		ThreadPoolFactory threadFactory = mock(ThreadPoolFactory.class);
+		when(threadFactory.newScheduledThreadPool(any(Integer.class), any(NamingThreadFactory.class))).thenReturn(executor);
+		SatelliteDao dao = mock(SatelliteDao.class);
+		when(dao.findEnabled()).thenReturn(Collections.emptyList());
+		// every call returns new time
+		SteppingClock clock = new SteppingClock(1591422629000L, 1000);
+		factory = mock(ObservationFactory.class);
+		manager = new DeviceManager(config, dao, factory, threadFactory, clock, new Metrics(config, clock));
+		first = mock(Device.class, RETURNS_DEEP_STUBS);
+		when(first.getId()).thenReturn("first");
+		second = mock(Device.class, RETURNS_DEEP_STUBS);
+		when(second.getId()).thenReturn("second");
+		manager.addDevice(first);
+		manager.addDevice(second);
+		manager.start();
+		// initial schedule
+		futures.clear();
+		clearInvocations(executor, factory, first, second);
+	}
+}
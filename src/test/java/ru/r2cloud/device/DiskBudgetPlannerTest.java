@@ -0,0 +1,127 @@
+package ru.r2cloud.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.FixedClock;
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.DiskBudget;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.SdrType;
+import ru.r2cloud.satellite.ObservationDao;
+import ru.r2cloud.util.ThreadPoolFactoryImpl;
+import ru.r2cloud.web.api.status.DiskStatus;
+
+public class DiskBudgetPlannerTest {
+
+	private static final long CURRENT = 1591422629000L;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private TestConfiguration config;
+	private DeviceManager deviceManager;
+	private List<ObservationRequest> scheduled;
+	private DiskBudgetPlanner planner;
+
+	@Test
+	public void testEstimateBytes() {
+		ObservationRequest req = create("1", SdrType.RTLSDR, CURRENT, CURRENT + 10000);
+		assertEquals(10 * 240000 * 2, DiskBudgetPlanner.estimateBytes(req, CURRENT));
+		// in progress
+		assertEquals(5 * 240000 * 2, DiskBudgetPlanner.estimateBytes(req, CURRENT + 5000));
+		assertEquals(0, DiskBudgetPlanner.estimateBytes(req, CURRENT + 10000));
+		req.setSdrType(SdrType.PLUTOSDR);
+		assertEquals(10 * 240000 * 4, DiskBudgetPlanner.estimateBytes(req, CURRENT));
+		req.setSdrType(SdrType.SDRSERVER);
+		assertEquals(10 * 240000 * 8, DiskBudgetPlanner.estimateBytes(req, CURRENT));
+		req.setSdrType(SdrType.R2LORA);
+		assertEquals(0, DiskBudgetPlanner.estimateBytes(req, CURRENT));
+		req.setSdrType(null);
+		assertEquals(0, DiskBudgetPlanner.estimateBytes(req, CURRENT));
+	}
+
+	@Test
+	public void testPlan() {
+		long horizonMillis = TimeUnit.HOURS.toMillis(config.getLong("scheduler.data.planner.horizonHours"));
+		scheduled.add(create("finished", SdrType.RTLSDR, CURRENT - 20000, CURRENT - 10000));
+		scheduled.add(create("inprogress", SdrType.RTLSDR, CURRENT - 10000, CURRENT + 10000));
+		scheduled.add(create("lora", SdrType.R2LORA, CURRENT + 10000, CURRENT + 20000));
+		scheduled.add(create("upcoming", SdrType.PLUTOSDR, CURRENT + 10000, CURRENT + 20000));
+		scheduled.add(create("beyond", SdrType.RTLSDR, CURRENT + horizonMillis + 1, CURRENT + horizonMillis + 10000));
+		DiskBudget budget = planner.plan();
+		assertEquals(CURRENT, budget.getCalculatedTimeMillis());
+		assertEquals(horizonMillis, budget.getHorizonMillis());
+		assertEquals(2, budget.getReservations().size());
+		assertEquals("inprogress", budget.getReservations().get(0).getObservationId());
+		assertEquals(10 * 240000 * 2, budget.getReservations().get(0).getBytes());
+		assertEquals("upcoming", budget.getReservations().get(1).getObservationId());
+		assertEquals(10 * 240000 * 4, budget.getReservations().get(1).getBytes());
+		assertEquals(10 * 240000 * 6, budget.getReservedBytes());
+		assertNotNull(budget.getFreeBytes());
+		assertEquals(budget.getFreeBytes() - budget.getReservedBytes(), budget.getProjectedFreeBytes().longValue());
+	}
+
+	@Test
+	public void testStatus() {
+		DiskStatus controller = new DiskStatus(planner);
+		// not yet calculated
+		assertEquals(0, Json.parse(controller.doGet(null).getData()).asObject().size());
+		scheduled.add(create("upcoming", SdrType.RTLSDR, CURRENT + 10000, CURRENT + 20000));
+		planner.plan();
+		JsonObject actual = Json.parse(controller.doGet(null).getData()).asObject();
+		assertEquals(CURRENT, actual.getLong("calculated", 0));
+		assertEquals(10 * 240000 * 2, actual.getLong("reservedBytes", 0));
+		assertNotNull(actual.get("freeBytes"));
+		assertNotNull(actual.get("projectedFreeBytes"));
+		JsonArray reservations = actual.get("reservations").asArray();
+		assertEquals(1, reservations.size());
+		JsonObject reservation = reservations.get(0).asObject();
+		assertEquals("upcoming", reservation.getString("id", null));
+		assertEquals("40069", reservation.getString("satelliteId", null));
+		assertEquals(CURRENT + 10000, reservation.getLong("start", 0));
+		assertEquals(10 * 240000 * 2, reservation.getLong("bytes", 0));
+	}
+
+	private static ObservationRequest create(String id, SdrType sdrType, long start, long end) {
+		ObservationRequest result = new ObservationRequest();
+		result.setId(id);
+		result.setSatelliteId("40069");
+		result.setSdrType(sdrType);
+		result.setSampleRate(240000);
+		result.setStartTimeMillis(start);
+		result.setEndTimeMillis(end);
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		config = new TestConfiguration(tempFolder);
+		config.setProperty("satellites.basepath.location", tempFolder.getRoot().getAbsolutePath() + File.separator + "satellites");
+		Files.createDirectories(config.getSatellitesBasePath());
+		scheduled = new ArrayList<>();
+		deviceManager = mock(DeviceManager.class);
+		when(deviceManager.findScheduledObservations()).thenReturn(scheduled);
+		FixedClock clock = new FixedClock(CURRENT);
+		planner = new DiskBudgetPlanner(config, deviceManager, new ObservationDao(config), new ThreadPoolFactoryImpl(60000), new Metrics(config, clock), clock);
+	}
+
+}
@@ -0,0 +1,111 @@
+package ru.r2cloud.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.satellite.TransmitterFilter;
+
+public class LoadBalancerTest {
+
+	private static final TransmitterFilter ALL = new TransmitterFilter() {
+
+		@Override
+		public boolean accept(Transmitter transmitter) {
+			return true;
+		}
+	};
+
+	@Test
+	public void testBalanceBusyTime() {
+		List<TransmitterFilter> filters = new ArrayList<>();
+		filters.add(ALL);
+		filters.add(ALL);
+		LoadBalancer balancer = new LoadBalancer(filters, new int[] { 1, 1 });
+		Map<String, Long> busy = new HashMap<>();
+		List<Transmitter> transmitters = new ArrayList<>();
+		transmitters.add(create("1", 100L, busy));
+		transmitters.add(create("2", 100L, busy));
+		transmitters.add(create("3", 50L, busy));
+		transmitters.add(create("4", 50L, busy));
+		transmitters.add(create("5", 200L, busy));
+		balancer.assign(transmitters, busy);
+		// round robin would give 350 and 150
+		assertEquals(250L, balancer.getBusyMillis(0));
+		assertEquals(250L, balancer.getBusyMillis(1));
+	}
+
+	@Test
+	public void testIncompatibleDevice() {
+		List<TransmitterFilter> filters = new ArrayList<>();
+		filters.add(ALL);
+		filters.add(new TransmitterFilter() {
+
+			@Override
+			public boolean accept(Transmitter transmitter) {
+				return transmitter.getFrequency() > 1000;
+			}
+		});
+		LoadBalancer balancer = new LoadBalancer(filters, new int[] { 1, 1 });
+		Map<String, Long> busy = new HashMap<>();
+		List<Transmitter> transmitters = new ArrayList<>();
+		transmitters.add(create("1", 100L, busy));
+		transmitters.add(create("2", 10L, busy));
+		Transmitter high = create("3", 1000L, busy);
+		high.setFrequency(2000);
+		transmitters.add(high);
+		balancer.assign(transmitters, busy);
+		assertEquals(1, balancer.getAssigned(1).size());
+		assertEquals("3", balancer.getAssigned(1).get(0).getId());
+		assertEquals(2, balancer.getAssigned(0).size());
+	}
+
+	@Test
+	public void testCapacity() {
+		List<TransmitterFilter> filters = new ArrayList<>();
+		filters.add(ALL);
+		filters.add(ALL);
+		LoadBalancer balancer = new LoadBalancer(filters, new int[] { 1, 3 });
+		Map<String, Long> busy = new HashMap<>();
+		List<Transmitter> transmitters = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			transmitters.add(create(String.valueOf(i), 100L, busy));
+		}
+		balancer.assign(transmitters, busy);
+		assertEquals(1, balancer.getAssigned(0).size());
+		assertEquals(3, balancer.getAssigned(1).size());
+	}
+
+	@Test
+	public void testWithoutPasses() {
+		List<TransmitterFilter> filters = new ArrayList<>();
+		filters.add(ALL);
+		filters.add(ALL);
+		LoadBalancer balancer = new LoadBalancer(filters, new int[] { 1, 1 });
+		List<Transmitter> transmitters = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			transmitters.add(create(String.valueOf(i), null, new HashMap<>()));
+		}
+		balancer.assign(transmitters, new HashMap<>());
+		assertEquals(2, balancer.getAssigned(0).size());
+		assertEquals(2, balancer.getAssigned(1).size());
+		assertTrue(balancer.getBusyMillis(0) == 0);
+	}
+
+	private static Transmitter create(String id, Long busyMillis, Map<String, Long> busy) {
+		Transmitter result = new Transmitter();
+		result.setId(id);
+		result.setFrequency(100);
+		if (busyMillis != null) {
+			busy.put(id, busyMillis);
+		}
+		return result;
+	}
+}
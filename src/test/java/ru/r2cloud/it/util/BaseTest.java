@@ -153,6 +153,7 @@ public abstract class BaseTest {
 		config.setProperty("acme.basepath", tempFolder.getRoot().getAbsolutePath() + File.separator + "data" + File.separator + "ssl");
 		config.setProperty("acme.webroot", tempFolder.getRoot().getAbsolutePath() + File.separator + "data" + File.separator + "html");
 		config.setProperty("satellites.basepath.location", tempFolder.getRoot().getAbsolutePath() + File.separator + "data" + File.separator + "satellites");
+		config.setProperty("scheduler.snapshot.location", tempFolder.getRoot().getAbsolutePath() + File.separator + "data" + File.separator + "schedule");
 		config.setProperty("satellites.wxtoimg.license.path", tempFolder.getRoot().getAbsolutePath() + File.separator + "data" + File.separator + "wxtoimg" + File.separator + ".wxtoimglic");
 		File setupKeyword = new File(tempFolder.getRoot(), "r2cloud.txt");
 		try (Writer w = new FileWriter(setupKeyword)) {
@@ -0,0 +1,106 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.predict.Ephemeris;
+import ru.r2cloud.predict.EphemerisSnapshot;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.util.DefaultClock;
+import ru.r2cloud.util.ThreadPoolFactoryImpl;
+
+public class EphemerisSnapshotServiceTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private TestConfiguration config;
+	private PredictOreKit predict;
+	private SatelliteDao satelliteDao;
+	private List<Satellite> satellites;
+
+	@Test
+	public void testSameAsSingleSatellite() {
+		EphemerisSnapshotService service = createService();
+		assertNull(service.getSnapshot());
+		long current = 1591422629123L;
+		service.refresh(current);
+		EphemerisSnapshot snapshot = service.getSnapshot();
+		assertEquals(current - current % 5000, snapshot.getStartMillis());
+		assertEquals(2, snapshot.getEphemerides().size());
+		for (Satellite cur : satellites) {
+			Ephemeris actual = snapshot.getEphemerides().get(cur.getId());
+			assertTrue(actual.covers(current));
+			assertTrue(actual.covers(snapshot.getEndMillis()));
+			TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new TLE(cur.getTle().getRaw()[1], cur.getTle().getRaw()[2]));
+			Ephemeris expected = predict.calculateEphemeris(snapshot.getStartMillis(), snapshot.getEndMillis(), snapshot.getStepMillis(), predict.getPosition(), tlePropagator);
+			for (long time = snapshot.getStartMillis(); time <= snapshot.getEndMillis(); time += snapshot.getStepMillis()) {
+				assertEquals(expected.getPosition(time).getAzimuth(), actual.getPosition(time).getAzimuth(), 0.0);
+				assertEquals(expected.getPosition(time).getElevation(), actual.getPosition(time).getElevation(), 0.0);
+				assertEquals(expected.getRangeRate(time), actual.getRangeRate(time), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSkipWithoutTle() {
+		satellites.get(0).setTle(null);
+		EphemerisSnapshotService service = createService();
+		service.refresh(1591422629123L);
+		assertEquals(1, service.getSnapshot().getEphemerides().size());
+	}
+
+	@Test
+	public void testEmptyWithoutLocation() {
+		config.remove("locaiton.lat");
+		config.update();
+		EphemerisSnapshotService service = createService();
+		service.refresh(1591422629123L);
+		assertTrue(service.getSnapshot().getEphemerides().isEmpty());
+	}
+
+	private EphemerisSnapshotService createService() {
+		return new EphemerisSnapshotService(config, satelliteDao, predict, new ThreadPoolFactoryImpl(10000), new DefaultClock());
+	}
+
+	@Before
+	public void start() throws Exception {
+		config = new TestConfiguration(tempFolder);
+		config.setProperty("locaiton.lat", "51.721");
+		config.setProperty("locaiton.lon", "5.030");
+		config.setProperty("scheduler.orekit.path", "./src/test/resources/data/orekit-data");
+		config.setProperty("ephemeris.snapshot.stepMillis", "5000");
+		predict = new PredictOreKit(config);
+
+		satellites = new ArrayList<>();
+		satellites.add(create("39444", new Tle(new String[] { "funcube-1", "1 39444U 13066AE  20157.75071106  .00000221  00000-0  33451-4 0  9997", "2 39444  97.5589 158.6491 0056696 309.6463  49.9756 14.82127945351637" })));
+		satellites.add(create("25338", new Tle(new String[] { "noaa15", "1 25338U 98030A   17271.51297398  .00000037  00000-0  34305-4 0  9992", "2 25338  98.7817 282.6269 0009465 266.6019  93.4077 14.25818111  7720" })));
+		satelliteDao = mock(SatelliteDao.class);
+		when(satelliteDao.findEnabled()).thenReturn(satellites);
+	}
+
+	private static Satellite create(String id, Tle tle) {
+		Satellite result = new Satellite();
+		result.setId(id);
+		result.setName(tle.getRaw()[0]);
+		result.setEnabled(true);
+		result.setTle(tle);
+		return result;
+	}
+}
@@ -0,0 +1,261 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.ObservationFilter;
+import ru.r2cloud.model.ObservationStatus;
+import ru.r2cloud.model.ObservationSummary;
+import ru.r2cloud.predict.Ephemeris;
+
+public class ObservationDaoCacheTest {
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	@Test
+	public void testReadersDoNotWaitForWriters() throws Exception {
+		BlockingObservationDao impl = new BlockingObservationDao();
+		for (int i = 0; i < 1000; i++) {
+			impl.put(create(i));
+		}
+		ObservationDaoCache cache = new ObservationDaoCache(impl, 100);
+		assertNotNull(cache.find("satellite", "5"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			impl.blockUpdates();
+			Future<Boolean> writer = executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					Observation cur = create(5);
+					cur.setStatus(ObservationStatus.DECODED);
+					return cache.update(cur);
+				}
+			});
+			assertTrue(impl.awaitUpdate());
+
+			// writer is blocked within the delegate
+			Future<Observation> reader = executor.submit(new Callable<Observation>() {
+
+				@Override
+				public Observation call() throws Exception {
+					ObservationFilter filter = new ObservationFilter();
+					filter.setLimit(20);
+					assertEquals(20, cache.findAll(filter).size());
+					assertNotNull(cache.find("satellite", "6"));
+					return cache.find("satellite", "5");
+				}
+			});
+			assertEquals(ObservationStatus.RECEIVED, reader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus());
+			assertFalse(writer.isDone());
+
+			impl.releaseUpdates();
+			assertTrue(writer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals(ObservationStatus.DECODED, cache.find("satellite", "5").getStatus());
+		} finally {
+			impl.releaseUpdates();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUpdateVisibleAfterWrite() throws Exception {
+		BlockingObservationDao impl = new BlockingObservationDao();
+		impl.put(create(1));
+		ObservationDaoCache cache = new ObservationDaoCache(impl, 100);
+		Observation updated = create(1);
+		updated.setStatus(ObservationStatus.DECODED);
+		cache.update(updated);
+		assertEquals(ObservationStatus.DECODED, cache.find("satellite", "1").getStatus());
+		assertEquals(1, cache.findAllByStatus(ObservationStatus.DECODED).size());
+	}
+
+	@Test
+	public void testTimeRange() throws Exception {
+		BlockingObservationDao impl = new BlockingObservationDao();
+		for (int i = 0; i < 5; i++) {
+			impl.put(create(i));
+		}
+		ObservationDaoCache cache = new ObservationDaoCache(impl, 100);
+		ObservationFilter filter = new ObservationFilter();
+		filter.setStartTimeMillisFrom(1L);
+		filter.setStartTimeMillisTo(3L);
+		List<Observation> actual = cache.findAll(filter);
+		assertEquals(2, actual.size());
+		assertEquals("2", actual.get(0).getId());
+		assertEquals("1", actual.get(1).getId());
+		filter.setStartTimeMillisFrom(3L);
+		assertTrue(cache.findAll(filter).isEmpty());
+		// inverted
+		filter.setStartTimeMillisFrom(4L);
+		assertTrue(cache.findAll(filter).isEmpty());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		BlockingObservationDao impl = new BlockingObservationDao();
+		for (int i = 0; i < 5; i++) {
+			impl.put(create(i));
+		}
+		ObservationDaoCache cache = new ObservationDaoCache(impl, 2);
+		// only summaries are loaded on start
+		assertEquals(0, impl.finds.get());
+		assertEquals(5, cache.findAllSummaries().size());
+		assertNotNull(cache.find("satellite", "4"));
+		assertNotNull(cache.find("satellite", "3"));
+		assertNotNull(cache.find("satellite", "0"));
+		assertEquals(3, impl.finds.get());
+		// "4" is the least recently used
+		assertNotNull(cache.find("satellite", "0"));
+		assertNotNull(cache.find("satellite", "3"));
+		assertEquals(3, impl.finds.get());
+		assertNotNull(cache.find("satellite", "4"));
+		assertEquals(4, impl.finds.get());
+	}
+
+	private static Observation create(int index) {
+		Observation result = new Observation();
+		result.setId(String.valueOf(index));
+		result.setSatelliteId("satellite");
+		result.setTransmitterId("satellite-0");
+		result.setStartTimeMillis(index);
+		result.setStatus(ObservationStatus.RECEIVED);
+		return result;
+	}
+
+	private static class BlockingObservationDao implements IObservationDao {
+
+		private final Map<String, Observation> data = new ConcurrentHashMap<>();
+		private final AtomicInteger finds = new AtomicInteger();
+		private final CountDownLatch updateStarted = new CountDownLatch(1);
+		private volatile CountDownLatch release;
+
+		void blockUpdates() {
+			release = new CountDownLatch(1);
+		}
+
+		void releaseUpdates() {
+			CountDownLatch latch = release;
+			if (latch != null) {
+				latch.countDown();
+			}
+		}
+
+		boolean awaitUpdate() throws InterruptedException {
+			return updateStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+
+		void put(Observation observation) {
+			data.put(observation.getId(), observation);
+		}
+
+		@Override
+		public List<Observation> findAll() {
+			return new ArrayList<>(data.values());
+		}
+
+		@Override
+		public List<ObservationSummary> findAllSummaries() {
+			List<ObservationSummary> result = new ArrayList<>();
+			for (Observation cur : data.values()) {
+				result.add(new ObservationSummary(new ObservationCacheKey(cur.getSatelliteId(), cur.getId()), cur));
+			}
+			return result;
+		}
+
+		@Override
+		public List<Observation> findAllBySatelliteId(String satelliteId) {
+			return findAll();
+		}
+
+		@Override
+		public List<Observation> findAllByStatus(ObservationStatus status) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<Observation> findAll(ObservationFilter filter) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Observation find(String satelliteId, String observationId) {
+			finds.incrementAndGet();
+			return data.get(observationId);
+		}
+
+		@Override
+		public File saveImage(String satelliteId, String observationId, File a) {
+			return a;
+		}
+
+		@Override
+		public File saveData(String satelliteId, String observationId, File a) {
+			return a;
+		}
+
+		@Override
+		public File saveSpectogram(String satelliteId, String observationId, File a) {
+			return a;
+		}
+
+		@Override
+		public File saveEphemeris(String satelliteId, String observationId, Ephemeris ephemeris) {
+			return null;
+		}
+
+		@Override
+		public void insert(Observation observation) {
+			// do nothing
+		}
+
+		@Override
+		public void cancel(Observation observation) {
+			// do nothing
+		}
+
+		@Override
+		public File update(Observation observation, File rawFile) {
+			update(observation);
+			return new File(UUID.randomUUID().toString());
+		}
+
+		@Override
+		public boolean update(Observation cur) {
+			updateStarted.countDown();
+			CountDownLatch latch = release;
+			if (latch != null) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			data.put(cur.getId(), cur);
+			return true;
+		}
+
+	}
+}
@@ -10,7 +10,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
@@ -25,10 +27,14 @@ import org.orekit.bodies.GeodeticPoint;
 
 import com.aerse.mockfs.FailingByteChannelCallback;
 import com.aerse.mockfs.MockFileSystem;
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
 
 import ru.r2cloud.ObservationFullComparator;
 import ru.r2cloud.TestConfiguration;
 import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.ObservationFilter;
 import ru.r2cloud.model.ObservationStatus;
 import ru.r2cloud.model.SdrType;
 import ru.r2cloud.model.Tle;
@@ -60,6 +66,22 @@ public class ObservationDaoTest {
 		assertEquals(ObservationStatus.RECEIVED, observation.getStatus());
 	}
 
+	@Test
+	public void testRestoreRawFileOnFailedInsert() throws Exception {
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		File rawFile = createTempFile("wav");
+		Path pathToMock = config.getSatellitesBasePath().resolve(req.getSatelliteId()).resolve("data").resolve(req.getId());
+		fs.mock(pathToMock, new FailingByteChannelCallback(3));
+		assertNull(dao.update(req, rawFile));
+		fs.removeMock(pathToMock);
+		assertTrue(rawFile.exists());
+		assertFalse(pathToMock.resolve("output.wav").toFile().exists());
+		// retry
+		assertNotNull(dao.update(req, rawFile));
+		assertNotNull(dao.find(req.getSatelliteId(), req.getId()).getRawPath());
+	}
+
 	@Test
 	public void testFindUnknownObservation() throws Exception {
 		assertNull(dao.find(UUID.randomUUID().toString(), UUID.randomUUID().toString()));
@@ -74,6 +96,230 @@ public class ObservationDaoTest {
 		assertEquals(expectedObservations, dao.findAll().size());
 	}
 
+	@Test
+	public void testLoadFromIndex() throws Exception {
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		assertNotNull(dao.update(req, createTempFile("wav")));
+		assertNotNull(dao.saveData(req.getSatelliteId(), req.getId(), createTempFile("data")));
+		req.setStatus(ObservationStatus.DECODED);
+		assertTrue(dao.update(req));
+		// should be loaded from the index
+		List<Observation> all = new ObservationDao(config).findAll();
+		assertEquals(1, all.size());
+		Observation actual = all.get(0);
+		assertEquals(ObservationStatus.DECODED, actual.getStatus());
+		assertNotNull(actual.getRawPath());
+		assertNotNull(actual.getDataPath());
+		assertNotNull(actual.getDataURL());
+		assertNull(actual.getImagePath());
+	}
+
+	@Test
+	public void testArtifactsRecordedInMeta() throws Exception {
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		assertNotNull(dao.update(req, createTempFile("wav")));
+		File data = dao.saveData(req.getSatelliteId(), req.getId(), createTempFile("data"));
+		assertNotNull(data);
+		Path meta = config.getSatellitesBasePath().resolve(req.getSatelliteId()).resolve("data").resolve(req.getId()).resolve("meta.json");
+		JsonObject artifacts = Json.parse(new String(Files.readAllBytes(meta), StandardCharsets.UTF_8)).asObject().get("artifacts").asObject();
+		assertEquals("output.wav", artifacts.getString("raw", null));
+		assertEquals("data.bin", artifacts.getString("data", null));
+		assertNull(artifacts.get("a"));
+		// artifacts are not probed on load
+		assertTrue(data.delete());
+		Observation actual = new ObservationDao(config).find(req.getSatelliteId(), req.getId());
+		assertNotNull(actual.getDataPath());
+		assertNotNull(actual.getRawPath());
+		// and on meta update
+		req.setStatus(ObservationStatus.DECODED);
+		assertTrue(dao.update(req));
+		actual = dao.find(req.getSatelliteId(), req.getId());
+		assertEquals(ObservationStatus.DECODED, actual.getStatus());
+		assertNotNull(actual.getDataPath());
+	}
+
+	@Test
+	public void testCountRetention() throws Exception {
+		config.setProperty("scheduler.data.retention.count", 2);
+		config.setProperty("scheduler.data.retention.raw.count", 1);
+		ObservationDao impl = new ObservationDao(config);
+		String satelliteId = UUID.randomUUID().toString();
+		for (int i = 1; i <= 2; i++) {
+			Observation req = createObservation();
+			req.setId(String.valueOf(i));
+			req.setSatelliteId(satelliteId);
+			assertNotNull(impl.update(req, createTempFile("wav")));
+		}
+		// old files are deleted in background
+		Observation first = impl.find(satelliteId, "1");
+		for (int i = 0; i < 50 && first.getRawPath() != null; i++) {
+			Thread.sleep(100);
+			first = impl.find(satelliteId, "1");
+		}
+		assertNull(first.getRawPath());
+		assertNotNull(impl.find(satelliteId, "2").getRawPath());
+
+		Observation req = createObservation();
+		req.setId("3");
+		req.setSatelliteId(satelliteId);
+		assertNotNull(impl.update(req, createTempFile("wav")));
+		for (int i = 0; i < 50 && impl.find(satelliteId, "1") != null; i++) {
+			Thread.sleep(100);
+		}
+		assertNull(impl.find(satelliteId, "1"));
+		assertEquals(2, impl.findAllBySatelliteId(satelliteId).size());
+	}
+
+	@Test
+	public void testCountRetentionInvalidatesCache() throws Exception {
+		config.setProperty("scheduler.data.retention.count", 2);
+		config.setProperty("scheduler.data.retention.raw.count", 1);
+		ObservationDao impl = new ObservationDao(config);
+		ObservationDaoCache cache = new ObservationDaoCache(impl, 100);
+		impl.setListener(cache);
+		String satelliteId = UUID.randomUUID().toString();
+		for (int i = 1; i <= 2; i++) {
+			Observation req = createObservation();
+			req.setId(String.valueOf(i));
+			req.setSatelliteId(satelliteId);
+			assertNotNull(cache.update(req, createTempFile("wav")));
+			// cache the observation
+			assertNotNull(cache.find(satelliteId, req.getId()));
+		}
+		Observation first = cache.find(satelliteId, "1");
+		for (int i = 0; i < 50 && first.getRawPath() != null; i++) {
+			Thread.sleep(100);
+			first = cache.find(satelliteId, "1");
+		}
+		assertNull(first.getRawPath());
+
+		Observation req = createObservation();
+		req.setId("3");
+		req.setSatelliteId(satelliteId);
+		assertNotNull(cache.update(req, createTempFile("wav")));
+		assertNull(cache.find(satelliteId, "1"));
+		assertEquals(2, cache.findAllBySatelliteId(satelliteId).size());
+	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		config.setProperty("scheduler.data.meta.flushMillis", 60000L);
+		ObservationDao impl = new ObservationDao(config);
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		assertNotNull(impl.update(req, createTempFile("wav")));
+		// new observation is written synchronously
+		Observation actual = new ObservationDao(config).find(req.getSatelliteId(), req.getId());
+		assertEquals(ObservationStatus.RECEIVED, actual.getStatus());
+		assertNotNull(actual.getRawPath());
+		req.setStatus(ObservationStatus.DECODED);
+		assertTrue(impl.update(req));
+		assertEquals(ObservationStatus.RECEIVED, new ObservationDao(config).find(req.getSatelliteId(), req.getId()).getStatus());
+		// latest state is visible before flush
+		assertEquals(ObservationStatus.DECODED, impl.find(req.getSatelliteId(), req.getId()).getStatus());
+		assertEquals(1, impl.findAllBySatelliteId(req.getSatelliteId()).size());
+		assertEquals(ObservationStatus.DECODED, impl.findAll().get(0).getStatus());
+		impl.flush();
+		actual = new ObservationDao(config).find(req.getSatelliteId(), req.getId());
+		assertEquals(ObservationStatus.DECODED, actual.getStatus());
+		assertNotNull(actual.getRawPath());
+	}
+
+	@Test
+	public void testRecoverFromJournal() throws Exception {
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		assertNotNull(dao.update(req, createTempFile("wav")));
+		// simulate crash after journal, but before meta.json written
+		ObservationIndex index = new ObservationIndex(config.getSatellitesBasePath().resolve("observations.idx"));
+		index.load();
+		req.setStatus(ObservationStatus.DECODED);
+		index.journal(Collections.singletonMap(new ObservationCacheKey(req.getSatelliteId(), req.getId()), req.toJson(null)));
+		assertEquals(ObservationStatus.DECODED, new ObservationDao(config).find(req.getSatelliteId(), req.getId()).getStatus());
+		index = new ObservationIndex(config.getSatellitesBasePath().resolve("observations.idx"));
+		index.load();
+		assertTrue(index.getNotApplied().isEmpty());
+	}
+
+	@Test
+	public void testRescanCorruptedIndex() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(dao.update(createObservation(), createTempFile("wav")));
+		}
+		Path index = config.getSatellitesBasePath().resolve("observations.idx");
+		List<String> lines = Files.readAllLines(index);
+		lines.set(1, "corrupted");
+		Files.write(index, lines);
+		assertEquals(3, new ObservationDao(config).findAll().size());
+		// index rebuilt
+		assertEquals(3, Files.readAllLines(index).size() - 1);
+	}
+
+	@Test
+	public void testFindAllByStatus() throws Exception {
+		Observation req = createObservation();
+		req.setStatus(ObservationStatus.RECEIVED);
+		assertNotNull(dao.update(req, createTempFile("wav")));
+		assertEquals(1, dao.findAllByStatus(ObservationStatus.RECEIVED).size());
+		assertTrue(dao.findAllByStatus(ObservationStatus.DECODED).isEmpty());
+
+		Observation actual = dao.find(req.getSatelliteId(), req.getId());
+		actual.setStatus(ObservationStatus.DECODED);
+		assertTrue(dao.update(actual));
+		assertTrue(dao.findAllByStatus(ObservationStatus.RECEIVED).isEmpty());
+		List<Observation> decoded = dao.findAllByStatus(ObservationStatus.DECODED);
+		assertEquals(1, decoded.size());
+		assertEquals(req.getId(), decoded.get(0).getId());
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		config.setProperty("scheduler.data.retention.count", 10);
+		config.setProperty("scheduler.data.retention.raw.count", 10);
+		dao = new ObservationDaoCache(new ObservationDao(config), config.getInteger("scheduler.data.cache.maxObservations"));
+		String satelliteId = UUID.randomUUID().toString();
+		long baseTime = 100_000L;
+		for (int i = 0; i < 6; i++) {
+			Observation req = createObservation();
+			req.setStartTimeMillis(baseTime + i * 1000L);
+			if (i % 2 == 0) {
+				req.setSatelliteId(satelliteId);
+			}
+			req.setStatus(i < 3 ? ObservationStatus.DECODED : ObservationStatus.RECEIVED);
+			assertNotNull(dao.update(req, createTempFile("wav")));
+		}
+		ObservationFilter filter = new ObservationFilter();
+		// ignore in-flight observations from the other tests
+		filter.setStartTimeMillisFrom(baseTime);
+		filter.setLimit(2);
+		List<Observation> page = dao.findAll(filter);
+		assertEquals(2, page.size());
+		assertEquals(baseTime + 5000L, page.get(0).getStartTimeMillis());
+		assertEquals(baseTime + 4000L, page.get(1).getStartTimeMillis());
+		filter.setOffset(4);
+		page = dao.findAll(filter);
+		assertEquals(2, page.size());
+		assertEquals(baseTime, page.get(1).getStartTimeMillis());
+
+		filter = new ObservationFilter();
+		filter.setSatelliteId(satelliteId);
+		filter.setStatus(ObservationStatus.DECODED);
+		page = dao.findAll(filter);
+		assertEquals(2, page.size());
+		assertEquals(baseTime + 2000L, page.get(0).getStartTimeMillis());
+		assertEquals(baseTime, page.get(1).getStartTimeMillis());
+
+		filter = new ObservationFilter();
+		filter.setStartTimeMillisFrom(baseTime + 1000L);
+		filter.setStartTimeMillisTo(baseTime + 3000L);
+		page = dao.findAll(filter);
+		assertEquals(2, page.size());
+		assertEquals(baseTime + 2000L, page.get(0).getStartTimeMillis());
+		assertEquals(baseTime + 1000L, page.get(1).getStartTimeMillis());
+	}
+
 	@Test
 	public void testRetention() throws Exception {
 		String satelliteId = UUID.randomUUID().toString();
@@ -233,6 +479,6 @@ public class ObservationDaoTest {
 		config.setProperty("satellites.basepath.location", tempFolder.getRoot().getAbsolutePath());
 		config.update();
 
-		dao = new ObservationDaoCache(new ObservationDao(config));
+		dao = new ObservationDaoCache(new ObservationDao(config), config.getInteger("scheduler.data.cache.maxObservations"));
 	}
 }
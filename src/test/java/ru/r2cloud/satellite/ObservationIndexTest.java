@@ -0,0 +1,111 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+
+public class ObservationIndexTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path file;
+	private ObservationIndex index;
+
+	@Test
+	public void testMissing() {
+		assertNull(index.load());
+	}
+
+	@Test
+	public void testPutDelete() {
+		index.rewrite(Map.of());
+		ObservationCacheKey first = new ObservationCacheKey("1", "1");
+		ObservationCacheKey second = new ObservationCacheKey("1", "2");
+		index.put(first, create("first"));
+		index.put(second, create("second"));
+		index.put(first, create("updated"));
+		index.delete(second);
+		Map<ObservationCacheKey, JsonObject> actual = new ObservationIndex(file).load();
+		assertNotNull(actual);
+		assertEquals(1, actual.size());
+		assertEquals("updated", actual.get(first).getString("status", null));
+	}
+
+	@Test
+	public void testSameHashCode() {
+		index.rewrite(Map.of());
+		ObservationCacheKey first = new ObservationCacheKey("1", "1");
+		// "Aa" and "BB" have the same hash code
+		index.put(first, create("Aa"));
+		index.put(first, create("BB"));
+		assertEquals("BB", new ObservationIndex(file).load().get(first).getString("status", null));
+	}
+
+	@Test
+	public void testTornTail() throws Exception {
+		index.rewrite(Map.of());
+		index.put(new ObservationCacheKey("1", "1"), create("first"));
+		Files.write(file, "1234 {\"op\":\"put\",\"satel".getBytes(), StandardOpenOption.APPEND);
+		Map<ObservationCacheKey, JsonObject> actual = index.load();
+		assertNotNull(actual);
+		assertEquals(1, actual.size());
+		// torn tail removed
+		assertEquals(2, Files.readAllLines(file).size());
+	}
+
+	@Test
+	public void testCorrupted() throws Exception {
+		index.rewrite(Map.of());
+		index.put(new ObservationCacheKey("1", "1"), create("first"));
+		Files.write(file, "1234 {}\n".getBytes(), StandardOpenOption.APPEND);
+		index.put(new ObservationCacheKey("1", "2"), create("second"));
+		assertNull(index.load());
+	}
+
+	@Test
+	public void testJournal() throws Exception {
+		index.rewrite(Map.of());
+		ObservationCacheKey first = new ObservationCacheKey("1", "1");
+		index.put(first, create("first"));
+		index.journal(Map.of(first, create("journaled")));
+		ObservationIndex actual = new ObservationIndex(file);
+		assertEquals("journaled", actual.load().get(first).getString("status", null));
+		assertEquals(1, actual.getNotApplied().size());
+		// journaled records survive compaction
+		actual.rewrite(actual.load());
+		actual.load();
+		assertEquals(1, actual.getNotApplied().size());
+		actual.checkpoint();
+		actual = new ObservationIndex(file);
+		assertEquals("journaled", actual.load().get(first).getString("status", null));
+		assertTrue(actual.getNotApplied().isEmpty());
+	}
+
+	private static JsonObject create(String status) {
+		JsonObject result = new JsonObject();
+		result.add("status", status);
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		file = tempFolder.getRoot().toPath().resolve("observations.idx");
+		index = new ObservationIndex(file);
+	}
+}
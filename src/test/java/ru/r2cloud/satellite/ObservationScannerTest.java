@@ -0,0 +1,70 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eclipsesource.json.JsonObject;
+
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.PathStats;
+
+public class ObservationScannerTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws Exception {
+		Path basepath = tempFolder.getRoot().toPath();
+		// satellite without data directory
+		Files.createDirectories(basepath.resolve("40069"));
+		Map<String, Long> expectedSizes = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			String satelliteId = String.valueOf(i % 3);
+			Path observation = basepath.resolve(satelliteId).resolve("data").resolve(String.valueOf(i));
+			Files.createDirectories(observation);
+			byte[] meta = new JsonObject().add("id", String.valueOf(i)).toString().getBytes();
+			Files.write(observation.resolve("meta.json"), meta);
+			Files.write(observation.resolve("data.bin"), new byte[i]);
+			expectedSizes.put(observation.toString(), (long) (meta.length + i));
+		}
+		// corrupted directory
+		Files.createDirectories(basepath.resolve("0").resolve("data").resolve("corrupted"));
+
+		ObservationScanResult result = new ObservationScanner(4).scan(basepath, true, true);
+		assertNotNull(result);
+		assertEquals(100, result.getMeta().size());
+		JsonObject meta = result.getMeta().get(new ObservationCacheKey("1", "10"));
+		assertNotNull(meta);
+		assertEquals("10", meta.getString("id", null));
+		assertEquals("data.bin", meta.get("artifacts").asObject().getString("data", null));
+
+		assertEquals(101, result.getStats().size());
+		for (PathStats cur : result.getStats()) {
+			Long expected = expectedSizes.get(cur.getPath().toString());
+			if (expected == null) {
+				assertEquals(0, cur.getSize());
+				continue;
+			}
+			assertEquals(expected.longValue(), cur.getSize());
+		}
+	}
+
+	@Test
+	public void testMissingBasepath() {
+		ObservationScanResult result = new ObservationScanner(2).scan(tempFolder.getRoot().toPath().resolve("missing"), true, true);
+		assertTrue(result.getMeta().isEmpty());
+		assertTrue(result.getStats().isEmpty());
+	}
+
+}
@@ -0,0 +1,115 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.orekit.bodies.GeodeticPoint;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.model.Observation;
+import ru.r2cloud.model.ObservationCacheKey;
+import ru.r2cloud.model.ObservationStatus;
+import ru.r2cloud.model.SdrType;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.util.DefaultClock;
+import ru.r2cloud.util.ThreadPoolFactoryImpl;
+import ru.r2cloud.util.Util;
+
+public class ObservationWatcherTest {
+
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private TestConfiguration config;
+	private ObservationDaoCache cache;
+	private ObservationWatcher watcher;
+
+	@Test
+	public void testExternalChanges() throws Exception {
+		Observation req = createObservation();
+		Path observationDir = config.getSatellitesBasePath().resolve(req.getSatelliteId()).resolve("data").resolve(req.getId());
+		Files.createDirectories(observationDir);
+		Files.write(observationDir.resolve("meta.json"), req.toJson(null).toString().getBytes(StandardCharsets.UTF_8));
+		assertTrue(waitForObservations(req.getSatelliteId(), 1));
+		ObservationIndex index = new ObservationIndex(config.getSatellitesBasePath().resolve("observations.idx"));
+		assertTrue(index.load().containsKey(new ObservationCacheKey(req.getSatelliteId(), req.getId())));
+
+		req.setStatus(ObservationStatus.DECODED);
+		Files.write(observationDir.resolve("meta.json"), req.toJson(null).toString().getBytes(StandardCharsets.UTF_8));
+		long start = System.currentTimeMillis();
+		while (cache.findAllByStatus(ObservationStatus.DECODED).isEmpty() && System.currentTimeMillis() - start < TIMEOUT_MILLIS) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, cache.findAllByStatus(ObservationStatus.DECODED).size());
+
+		assertTrue(Util.deleteDirectory(observationDir));
+		assertTrue(waitForObservations(req.getSatelliteId(), 0));
+		assertFalse(index.load().containsKey(new ObservationCacheKey(req.getSatelliteId(), req.getId())));
+	}
+
+	private boolean waitForObservations(String satelliteId, int expected) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() - start < TIMEOUT_MILLIS) {
+			List<Observation> all = cache.findAllBySatelliteId(satelliteId);
+			if (all.size() == expected) {
+				return true;
+			}
+			Thread.sleep(50);
+		}
+		return false;
+	}
+
+	private static Observation createObservation() {
+		Observation result = new Observation();
+		result.setId(UUID.randomUUID().toString());
+		result.setSatelliteId(UUID.randomUUID().toString());
+		result.setTransmitterId(UUID.randomUUID().toString());
+		result.setStartTimeMillis(System.currentTimeMillis());
+		result.setEndTimeMillis(result.getStartTimeMillis() + TimeUnit.SECONDS.toMillis(5));
+		result.setSampleRate(1);
+		result.setActualFrequency(2);
+		result.setTle(new Tle(new String[] { "meteor", "1 40069U 14037A   18286.52491495 -.00000023  00000-0  92613-5 0  9990", "2 40069  98.5901 334.4030 0004544 256.4188 103.6490 14.20654800221188" }));
+		result.setGroundStation(new GeodeticPoint(11.1, -2.333566, 0.0));
+		result.setGain("45.0");
+		result.setSdrType(SdrType.RTLSDR);
+		result.setStatus(ObservationStatus.RECEIVED);
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		config = new TestConfiguration(tempFolder);
+		config.setProperty("satellites.basepath.location", tempFolder.getRoot().toPath().resolve("satellites").toString());
+		config.setProperty("scheduler.data.watch.enabled", true);
+		config.setProperty("scheduler.data.watch.debounceMillis", 100L);
+		config.update();
+		// index is created by the first scan
+		Files.createDirectories(config.getSatellitesBasePath());
+		ObservationDao dao = new ObservationDao(config);
+		cache = new ObservationDaoCache(dao, config.getInteger("scheduler.data.cache.maxObservations"));
+		watcher = new ObservationWatcher(config, dao, cache, new ThreadPoolFactoryImpl(config.getThreadPoolShutdownMillis()), new DefaultClock());
+		watcher.start();
+	}
+
+	@After
+	public void stop() {
+		if (watcher != null) {
+			watcher.stop();
+		}
+	}
+}
@@ -7,16 +7,35 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+@RunWith(Parameterized.class)
 public class OverlappedTimetableTest {
 
 	private static final SimpleDateFormat SDF = new SimpleDateFormat("HH:mm");
 
+	private final boolean indexed;
+
+	public OverlappedTimetableTest(boolean indexed) {
+		this.indexed = indexed;
+	}
+
+	@Parameterized.Parameters(name = "indexed={0}")
+	public static Collection<?> parameters() {
+		return Arrays.asList(new Object[][] { { false }, { true } });
+	}
+
 	@Test
 	public void testIntersectWithPrevious() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:20", "12:30", 2)));
 		assertFalse(table.addFully(create("12:05", "12:15", 2)));
@@ -24,7 +43,7 @@ public class OverlappedTimetableTest {
 	
 	@Test
 	public void testGrowBand() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:05", "12:15", 1)));
 		assertTrue(table.addFully(create("12:09", "12:19", 1)));
@@ -33,7 +52,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testMergeBands() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:15", "12:25", 1)));
 		assertTrue(table.addFully(create("12:08", "12:18", 1)));
@@ -41,7 +60,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testAddPartial() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(120_000);
+		Timetable table = createTable(120_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		TimeSlot outOfBand = create("11:55", "12:05", 2);
 		assertFalse(table.addFully(outOfBand));
@@ -54,7 +73,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testAddPartialBetweenExisting1() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:20", "12:30", 2)));
 		assertSlot("12:08", "12:20", 1, table.addPartially(create("12:08", "12:22", 1)));
@@ -62,7 +81,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testAddPartialBetweenExisting2() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:20", "12:30", 2)));
 		assertSlot("12:10", "12:22", 2, table.addPartially(create("12:08", "12:22", 2)));
@@ -70,7 +89,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testAddPartialBetweenExisting3() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		assertTrue(table.addFully(create("12:20", "12:30", 2)));
 		assertSlot("12:10", "12:20", 3, table.addPartially(create("12:08", "12:22", 3)));
@@ -78,7 +97,7 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testRemoveLastSlot() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		// remove unknown slot
 		assertFalse(table.remove(create("12:10", "12:20", 1)));
 		// remove null slot
@@ -92,12 +111,73 @@ public class OverlappedTimetableTest {
 
 	@Test
 	public void testClear() throws Exception {
-		OverlappedTimetable table = new OverlappedTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10", 1)));
 		table.clear();
 		assertTrue(table.addFully(create("12:00", "12:10", 2)));
 	}
 
+	@Test
+	public void testSameAsReference() throws Exception {
+		for (int seed = 0; seed < 200; seed++) {
+			Random random = new Random(seed);
+			Timetable reference = new OverlappedTimetable(240_000);
+			Timetable table = createTable(240_000);
+			List<TimeSlot> added = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String message = "seed: " + seed + " operation: " + i;
+				int operation = random.nextInt(5);
+				if (operation == 0 && !added.isEmpty()) {
+					TimeSlot slot = added.remove(random.nextInt(added.size()));
+					assertEquals(message, reference.remove(slot), table.remove(slot));
+					continue;
+				}
+				long start = random.nextInt(24 * 60) * 60_000L;
+				TimeSlot slot = createRandom(start, start + (1 + random.nextInt(20)) * 60_000L, random.nextInt(3));
+				if (operation % 2 == 0) {
+					boolean expected = reference.addFully(slot);
+					assertEquals(message, expected, table.addFully(slot));
+					if (expected) {
+						added.add(slot);
+					}
+				} else {
+					TimeSlot expected = reference.addPartially(slot);
+					TimeSlot actual = table.addPartially(createRandom(slot.getStart(), slot.getEnd(), slot.getFrequency()));
+					assertSameSlot(message, expected, actual);
+					if (expected != null) {
+						added.add(expected);
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertSameSlot(String message, TimeSlot expected, TimeSlot actual) {
+		if (expected == null) {
+			assertNull(message, actual);
+			return;
+		}
+		assertNotNull(message, actual);
+		assertEquals(message, expected.getStart(), actual.getStart());
+		assertEquals(message, expected.getEnd(), actual.getEnd());
+		assertEquals(message, expected.getFrequency(), actual.getFrequency());
+	}
+
+	private static TimeSlot createRandom(long start, long end, long freq) {
+		TimeSlot result = new TimeSlot();
+		result.setStart(start);
+		result.setEnd(end);
+		result.setFrequency(freq);
+		return result;
+	}
+
+	private Timetable createTable(long partialToleranceMillis) {
+		if (indexed) {
+			return new IndexedOverlappedTimetable(partialToleranceMillis);
+		}
+		return new OverlappedTimetable(partialToleranceMillis);
+	}
+
 	private static void assertSlot(String start, String end, long freq, TimeSlot actual) throws Exception {
 		assertNotNull(actual);
 		assertEquals(SDF.parse(start).getTime(), actual.getStart());
@@ -0,0 +1,168 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import com.codahale.metrics.Counter;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.device.Device;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.BandFrequency;
+import ru.r2cloud.model.Framing;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Priority;
+import ru.r2cloud.model.SatPass;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.PassCache;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.util.DefaultClock;
+
+public class PassCacheTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private TestConfiguration config;
+	private Tle noaa15;
+	private PredictOreKit predict;
+	private PassCache cache;
+	private Counter hit;
+	private Counter miss;
+
+	@Test
+	public void testSameAsPredict() throws Exception {
+		long hits = hit.getCount();
+		long misses = miss.getCount();
+		List<SatPass> next2Days = cache.find(getDate("29-09-2017 14:54:00"), noaa15);
+		assertPosition("18:05:57", "18:17:12", next2Days.get(0));
+		assertEquals(8, next2Days.size());
+		assertEquals(misses + 1, miss.getCount());
+
+		// same window
+		next2Days = cache.find(getDate("29-09-2017 14:54:00"), noaa15);
+		assertEquals(hits + 1, hit.getCount());
+		assertPosition("18:05:57", "18:17:12", next2Days.get(0));
+	}
+
+	@Test
+	public void testOffsetStartSameAsPredict() throws Exception {
+		Date first = getDate("29-09-2017 14:54:00");
+		cache.find(first, noaa15);
+		TLEPropagator tlePropagator = TLEPropagator.selectExtrapolator(new TLE(noaa15.getRaw()[1], noaa15.getRaw()[2]));
+		for (long offset : new long[] { 1000, 60_000, 1_800_000, 3_599_000 }) {
+			Date current = new Date(first.getTime() + offset);
+			long misses = miss.getCount();
+			assertSamePasses(predict.calculateSchedule(current, tlePropagator), cache.find(current, noaa15));
+			// windows with different start are never served from the same prediction
+			assertEquals(misses + 1, miss.getCount());
+		}
+	}
+
+	@Test
+	public void testShareBetweenDevices() throws Exception {
+		ObservationFactory factory = new ObservationFactory(predict, cache, config);
+		// each device has its own schedule and its own transmitter of the same satellite
+		Schedule first = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		Schedule second = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		long current = getDate("29-09-2017 14:54:00").getTime();
+		long misses = miss.getCount();
+		long hits = hit.getCount();
+		List<ObservationRequest> expected = first.createInitialSchedule(Collections.singletonList(createTransmitter("25338-0")), current);
+		assertEquals(misses + 1, miss.getCount());
+		List<ObservationRequest> actual = second.createInitialSchedule(Collections.singletonList(createTransmitter("25338-1")), current);
+		assertEquals(misses + 1, miss.getCount());
+		assertEquals(hits + 1, hit.getCount());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getStartTimeMillis(), actual.get(i).getStartTimeMillis());
+			assertEquals(expected.get(i).getEndTimeMillis(), actual.get(i).getEndTimeMillis());
+		}
+		// prediction pool is shared between the calls until stopped
+		factory.stop();
+		assertTrue(factory.createSchedule(new Date(current), Collections.singletonList(createTransmitter("25338-2"))).isEmpty());
+	}
+
+	private Transmitter createTransmitter(String id) {
+		BandFrequency band = new BandFrequency();
+		band.setCenter(137_620_000L);
+		Transmitter result = new Transmitter();
+		result.setId(id);
+		result.setSatelliteId("25338");
+		result.setPriority(Priority.NORMAL);
+		result.setFraming(Framing.APT);
+		result.setFrequency(137_620_000L);
+		result.setFrequencyBand(band);
+		result.setTle(noaa15);
+		return result;
+	}
+
+	@Test
+	public void testTrimOngoingPass() throws Exception {
+		Date current = getDate("29-09-2017 18:10:00");
+		List<SatPass> next2Days = cache.find(current, noaa15);
+		assertEquals(current.getTime(), next2Days.get(0).getStartMillis());
+	}
+
+	@Test
+	public void testInvalidateOnLocationChange() throws Exception {
+		cache.find(getDate("29-09-2017 14:54:00"), noaa15);
+		long misses = miss.getCount();
+		config.setProperty("locaiton.lat", "56.189");
+		config.update();
+		assertFalse(cache.find(getDate("29-09-2017 14:54:00"), noaa15).isEmpty());
+		assertEquals(misses + 1, miss.getCount());
+	}
+
+	private static void assertSamePasses(List<SatPass> expected, List<SatPass> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getStartMillis(), actual.get(i).getStartMillis());
+			assertEquals(expected.get(i).getEndMillis(), actual.get(i).getEndMillis());
+		}
+	}
+
+	private static Date getDate(String str) throws Exception {
+		SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
+		sdf.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+		return sdf.parse(str);
+	}
+
+	private static void assertPosition(String start, String end, SatPass pass) throws Exception {
+		SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss");
+		sdf.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+		assertEquals(start, sdf.format(new Date(pass.getStartMillis())));
+		assertEquals(end, sdf.format(new Date(pass.getEndMillis())));
+	}
+
+	@Before
+	public void start() throws Exception {
+		config = new TestConfiguration(tempFolder);
+		config.setProperty("locaiton.lat", "51.49");
+		config.setProperty("locaiton.lon", "0.01");
+		config.setProperty("scheduler.orekit.path", "./src/test/resources/data/orekit-data");
+
+		Metrics metrics = new Metrics(config, new DefaultClock());
+		hit = metrics.getRegistry().counter("pass-cache-hit");
+		miss = metrics.getRegistry().counter("pass-cache-miss");
+		predict = new PredictOreKit(config);
+		cache = new PassCache(predict, config, metrics);
+		noaa15 = new Tle(new String[] { "noaa15", "1 25338U 98030A   17271.51297398  .00000037  00000-0  34305-4 0  9992", "2 25338  98.7817 282.6269 0009465 266.6019  93.4077 14.25818111  7720" });
+	}
+
+}
@@ -0,0 +1,123 @@
+package ru.r2cloud.satellite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.FileSystems;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.orekit.frames.TopocentricFrame;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import ru.r2cloud.it.util.BaseTest;
+import ru.r2cloud.model.SatPass;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.util.Configuration;
+
+/**
+ * Compare full event search with the coarse screening over the whole catalog
+ */
+public class PassFinderBenchmark {
+
+	// passes are matched by the max elevation time
+	private static final long MATCH_MILLIS = 5 * 60 * 1000L;
+
+	public static void main(String[] args) throws Exception {
+		Configuration config;
+		File userSettingsLocation = new File("target/.r2cloud-" + UUID.randomUUID().toString());
+		try (InputStream is = BaseTest.class.getClassLoader().getResourceAsStream("config-dev.properties")) {
+			config = new Configuration(is, userSettingsLocation.getAbsolutePath(), "config-common-test.properties", FileSystems.getDefault());
+		}
+		config.setProperty("locaiton.lat", "51.49");
+		config.setProperty("locaiton.lon", "0.01");
+		config.setProperty("scheduler.predict.screening.enabled", false);
+		PredictOreKit full = new PredictOreKit(config);
+		config.setProperty("scheduler.predict.screening.enabled", true);
+		PredictOreKit screened = new PredictOreKit(config);
+		TopocentricFrame frame = full.getPosition();
+
+		List<TLE> catalog = loadCatalog("tle-2020-09-27.txt");
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+		Date current = sdf.parse("2020-09-30 22:17:01");
+
+		// warm up
+		for (int i = 0; i < 50; i++) {
+			full.findPasses(current, TLEPropagator.selectExtrapolator(catalog.get(i)), frame, PredictOreKit.PREDICT_INTERVAL_SECONDS);
+			screened.findPasses(current, TLEPropagator.selectExtrapolator(catalog.get(i)), frame, PredictOreKit.PREDICT_INTERVAL_SECONDS);
+		}
+
+		long fullNanos = 0;
+		long screenedNanos = 0;
+		int passes = 0;
+		int missing = 0;
+		int extra = 0;
+		long maxStartDiff = 0;
+		long maxEndDiff = 0;
+		long maxElevationDiff = 0;
+		for (TLE cur : catalog) {
+			long start = System.nanoTime();
+			List<SatPass> expected = full.findPasses(current, TLEPropagator.selectExtrapolator(cur), frame, PredictOreKit.PREDICT_INTERVAL_SECONDS);
+			fullNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			List<SatPass> actual = screened.findPasses(current, TLEPropagator.selectExtrapolator(cur), frame, PredictOreKit.PREDICT_INTERVAL_SECONDS);
+			screenedNanos += System.nanoTime() - start;
+
+			passes += expected.size();
+			List<SatPass> unmatched = new ArrayList<>(actual);
+			for (SatPass curExpected : expected) {
+				SatPass match = findMatch(unmatched, curExpected);
+				if (match == null) {
+					missing++;
+					System.out.println("missing " + cur.getSatelliteNumber() + " " + new Date(curExpected.getMaxElevation().toDate(org.orekit.time.TimeScalesFactory.getUTC()).getTime()) + " " + curExpected.getMaxElevationDegrees());
+					continue;
+				}
+				unmatched.remove(match);
+				maxStartDiff = Math.max(maxStartDiff, Math.abs(match.getStartMillis() - curExpected.getStartMillis()));
+				maxEndDiff = Math.max(maxEndDiff, Math.abs(match.getEndMillis() - curExpected.getEndMillis()));
+				maxElevationDiff = Math.max(maxElevationDiff, Math.abs(getMaxElevationMillis(match) - getMaxElevationMillis(curExpected)));
+			}
+			extra += unmatched.size();
+		}
+		System.out.println("satellites: " + catalog.size() + " passes: " + passes);
+		System.out.println("full search: " + fullNanos / 1_000_000 + "ms screened: " + screenedNanos / 1_000_000 + "ms speedup: " + String.format("%.2f", fullNanos / (double) screenedNanos));
+		System.out.println("missing: " + missing + " extra: " + extra);
+		System.out.println("max difference ms. start: " + maxStartDiff + " end: " + maxEndDiff + " max elevation: " + maxElevationDiff);
+	}
+
+	private static SatPass findMatch(List<SatPass> passes, SatPass expected) {
+		for (SatPass cur : passes) {
+			if (Math.abs(getMaxElevationMillis(cur) - getMaxElevationMillis(expected)) < MATCH_MILLIS) {
+				return cur;
+			}
+		}
+		return null;
+	}
+
+	private static long getMaxElevationMillis(SatPass pass) {
+		return pass.getMaxElevation().toDate(org.orekit.time.TimeScalesFactory.getUTC()).getTime();
+	}
+
+	private static List<TLE> loadCatalog(String file) throws Exception {
+		List<TLE> result = new ArrayList<>();
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(PassFinderBenchmark.class.getClassLoader().getResourceAsStream(file)))) {
+			String name;
+			while ((name = r.readLine()) != null) {
+				String line1 = r.readLine();
+				String line2 = r.readLine();
+				if (line1 == null || line2 == null) {
+					break;
+				}
+				result.add(new TLE(line1, line2));
+			}
+		}
+		return result;
+	}
+}
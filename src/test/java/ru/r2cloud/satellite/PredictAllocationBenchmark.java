@@ -0,0 +1,86 @@
+package ru.r2cloud.satellite;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystems;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import ru.r2cloud.it.util.BaseTest;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.util.Configuration;
+
+/**
+ * Bytes allocated by the hot prediction paths: ground station lookup, doppler
+ * sample, rotator tick and the 2 days schedule
+ */
+public class PredictAllocationBenchmark {
+
+	private static final int ITERATIONS = 100_000;
+
+	public static void main(String[] args) throws Exception {
+		Configuration config;
+		File userSettingsLocation = new File("target/.r2cloud-" + UUID.randomUUID().toString());
+		try (InputStream is = BaseTest.class.getClassLoader().getResourceAsStream("config-dev.properties")) {
+			config = new Configuration(is, userSettingsLocation.getAbsolutePath(), "config-common-test.properties", FileSystems.getDefault());
+		}
+		config.setProperty("locaiton.lat", "51.49");
+		config.setProperty("locaiton.lon", "0.01");
+		config.setProperty("scheduler.orekit.path", "./src/test/resources/data/orekit-data");
+		PredictOreKit predict = new PredictOreKit(config);
+		TLEPropagator noaa15 = TLEPropagator.selectExtrapolator(new TLE("1 25338U 98030A   17271.51297398  .00000037  00000-0  34305-4 0  9992", "2 25338  98.7817 282.6269 0009465 266.6019  93.4077 14.25818111  7720"));
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+		Date current = sdf.parse("2017-09-29 17:05:57");
+		long start = current.getTime();
+
+		// warm up
+		for (int i = 0; i < ITERATIONS; i++) {
+			predict.getPosition();
+			predict.getDownlinkFreq(137_620_000L, start + i, predict.getPosition(), noaa15);
+			predict.getSatellitePosition(start + i, predict.getPosition(), noaa15);
+		}
+		predict.calculateSchedule(current, noaa15);
+
+		long before = getAllocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			predict.getPosition();
+		}
+		report("ground station", before, ITERATIONS);
+
+		before = getAllocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			predict.getDownlinkFreq(137_620_000L, start + i, predict.getPosition(), noaa15);
+		}
+		report("doppler sample", before, ITERATIONS);
+
+		before = getAllocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			predict.getSatellitePosition(start + i, predict.getPosition(), noaa15);
+		}
+		report("rotator tick", before, ITERATIONS);
+
+		int schedules = 20;
+		before = getAllocatedBytes();
+		for (int i = 0; i < schedules; i++) {
+			predict.calculateSchedule(current, noaa15);
+		}
+		report("schedule", before, schedules);
+	}
+
+	private static void report(String name, long before, int iterations) {
+		long bytes = getAllocatedBytes() - before;
+		System.out.println(name + ": " + bytes / iterations + " bytes per call");
+	}
+
+	private static long getAllocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -1,22 +1,36 @@
 package ru.r2cloud.satellite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 
+import org.hipparchus.util.FastMath;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.orekit.frames.TopocentricFrame;
 import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.TimeScalesFactory;
 
 import ru.r2cloud.TestConfiguration;
 import ru.r2cloud.model.SatPass;
+import ru.r2cloud.predict.Ephemeris;
 import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.rotctrld.Position;
 
 public class PredictOreKitTest {
 
@@ -40,6 +54,65 @@ public class PredictOreKitTest {
 		assertEquals(8, next2Days.size());
 	}
 
+	@Test
+	public void testScreeningSameAsFullSearch() throws Exception {
+		TLEPropagator astroBio = TLEPropagator.selectExtrapolator(new org.orekit.propagation.analytical.tle.TLE("1 84002U          22194.52504630  .00000000  00000-0  00000-0 0    00", "2 84002  70.1600  50.0000 0000815  30.0000 147.0000  6.38669028    02"));
+		List<SatPass> expectedLeo = predict.calculateSchedule(getDate("29-09-2017 14:54:00"), noaa15);
+		List<SatPass> expectedMeo = predict.calculateSchedule(getDate("29-09-2022 14:54:00"), astroBio);
+		config.setProperty("scheduler.predict.screening.enabled", true);
+		PredictOreKit screened = new PredictOreKit(config);
+		assertSamePasses(expectedLeo, screened.calculateSchedule(getDate("29-09-2017 14:54:00"), noaa15));
+		assertSamePasses(expectedMeo, screened.calculateSchedule(getDate("29-09-2022 14:54:00"), astroBio));
+	}
+
+	// dev and test configuration use full search, prod uses screening
+	@Test
+	public void testScreeningSameAsFullSearchForFixtures() throws Exception {
+		config.setProperty("scheduler.predict.screening.enabled", true);
+		PredictOreKit screened = new PredictOreKit(config);
+		List<org.orekit.propagation.analytical.tle.TLE> fixtures = new ArrayList<>();
+		fixtures.addAll(loadTle("sample-tle.txt", Integer.MAX_VALUE));
+		fixtures.addAll(loadTle("tle-2020-09-27.txt", 50));
+		for (org.orekit.propagation.analytical.tle.TLE cur : fixtures) {
+			Date current = cur.getDate().toDate(TimeScalesFactory.getUTC());
+			List<SatPass> expected = predict.calculateSchedule(current, TLEPropagator.selectExtrapolator(cur));
+			List<SatPass> actual = screened.calculateSchedule(current, TLEPropagator.selectExtrapolator(cur));
+			// elevation changes fast near the zenith, so 1 second is up to 0.1 degree
+			assertSamePasses(expected, actual, 0.1);
+		}
+	}
+
+	@Test
+	public void testRebuildPositionOnLocationChange() throws Exception {
+		TopocentricFrame position = predict.getPosition();
+		assertSame(position, predict.getPosition());
+		assertSame(position, predict.getPosition(position.getPoint()));
+		// no config notification is needed
+		config.setProperty("locaiton.lat", "56.189");
+		TopocentricFrame updated = predict.getPosition();
+		assertNotSame(position, updated);
+		assertEquals(56.189, FastMath.toDegrees(updated.getPoint().getLatitude()), 0.000001);
+	}
+
+	@Test
+	public void testEphemerisSameAsPropagation() throws Exception {
+		long start = getDate("29-09-2017 18:05:57").getTime();
+		long end = getDate("29-09-2017 18:17:12").getTime();
+		TopocentricFrame position = predict.getPosition();
+		Ephemeris ephemeris = predict.calculateEphemeris(start, end, 1000, position, noaa15);
+		StringWriter w = new StringWriter();
+		ephemeris.toCsv(w);
+		Ephemeris saved = Ephemeris.fromCsv(new BufferedReader(new StringReader(w.toString())));
+		for (long cur = start; cur <= end; cur += 500) {
+			Position expected = predict.getSatellitePosition(cur, position, noaa15);
+			Position actual = saved.getPosition(cur);
+			assertEquals(expected.getAzimuth(), actual.getAzimuth(), 0.01);
+			assertEquals(expected.getElevation(), actual.getElevation(), 0.01);
+			assertEquals(predict.getDownlinkFreq(137_620_000L, cur, position, noaa15), saved.getDownlinkFreq(137_620_000L, cur), 1);
+		}
+		assertFalse(saved.covers(end + 1000));
+	}
+
 	// happens on initial startup
 	@Test
 	public void testPredictWithoutBaseStationCoordinates() throws Exception {
@@ -56,6 +129,26 @@ public class PredictOreKitTest {
 		assertPosition("19:46:56", "19:56:34", predict.calculateNext(getDate("29-09-2017 19:00:00"), noaa15));
 	}
 
+	private static List<org.orekit.propagation.analytical.tle.TLE> loadTle(String file, int limit) throws Exception {
+		List<org.orekit.propagation.analytical.tle.TLE> result = new ArrayList<>();
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(PredictOreKitTest.class.getClassLoader().getResourceAsStream(file)))) {
+			while (result.size() < limit && r.readLine() != null) {
+				String line1 = r.readLine();
+				String line2 = r.readLine();
+				if (line1 == null || line2 == null) {
+					break;
+				}
+				result.add(new org.orekit.propagation.analytical.tle.TLE(line1, line2));
+			}
+		}
+		return result;
+	}
+
+	// assertEquals with delta would compare millis as floats
+	private static void assertWithinSecond(long expected, long actual) {
+		assertTrue("expected: " + expected + " but was: " + actual, Math.abs(expected - actual) <= 1000);
+	}
+
 	private static Date getDate(String str) throws Exception {
 		SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
 		sdf.setTimeZone(TimeZone.getTimeZone("Europe/London"));
@@ -69,6 +162,20 @@ public class PredictOreKitTest {
 		assertEquals(end, sdf.format(new Date(pass.getEndMillis())));
 	}
 
+	private static void assertSamePasses(List<SatPass> expected, List<SatPass> actual) {
+		assertSamePasses(expected, actual, 0.01);
+	}
+
+	// within the event detection threshold
+	private static void assertSamePasses(List<SatPass> expected, List<SatPass> actual, double elevationDelta) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertWithinSecond(expected.get(i).getStartMillis(), actual.get(i).getStartMillis());
+			assertWithinSecond(expected.get(i).getEndMillis(), actual.get(i).getEndMillis());
+			assertEquals(expected.get(i).getMaxElevationDegrees(), actual.get(i).getMaxElevationDegrees(), elevationDelta);
+		}
+	}
+
 	@Before
 	public void start() throws Exception {
 		config = new TestConfiguration(tempFolder);
@@ -0,0 +1,127 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.hipparchus.util.FastMath;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.orekit.bodies.GeodeticPoint;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.RotatorConfiguration;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.predict.Ephemeris;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.rotctrld.Position;
+
+public class RotatorTrajectoryTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ObservationRequest req;
+	private Ephemeris ephemeris;
+
+	@Test
+	public void testFullTurnByDefault() {
+		RotatorTrajectory trajectory = new RotatorTrajectory(ephemeris, new RotatorConfiguration());
+		assertFalse(trajectory.isFlip());
+		for (long cur = req.getStartTimeMillis(); cur <= req.getEndTimeMillis(); cur += 1000) {
+			Position expected = trajectory.getExpected(cur);
+			Position actual = trajectory.getPosition(cur);
+			assertEquals(expected.getAzimuth(), actual.getAzimuth(), 0.0);
+			assertEquals(expected.getElevation(), actual.getElevation(), 0.0);
+		}
+	}
+
+	@Test
+	public void testFlip() {
+		RotatorConfiguration config = new RotatorConfiguration();
+		config.setMaxElevation(180.0);
+		RotatorTrajectory trajectory = new RotatorTrajectory(ephemeris, config);
+		assertTrue(trajectory.isFlip());
+		boolean aboveZenith = false;
+		Position previous = null;
+		for (long cur = req.getStartTimeMillis(); cur <= req.getEndTimeMillis(); cur += 1000) {
+			Position actual = trajectory.getPosition(cur);
+			assertTrue(actual.getAzimuth() >= 0.0 && actual.getAzimuth() <= 360.0);
+			assertTrue(actual.getElevation() >= 90.0 && actual.getElevation() <= 180.0);
+			assertEquals(0.0, RotatorTrajectory.getPointingError(trajectory.getExpected(cur), actual), 0.0001);
+			if (previous != null) {
+				// no full turn. azimuth changes quickly only near the zenith
+				assertTrue(Math.abs(actual.getAzimuth() - previous.getAzimuth()) < 30.0);
+			}
+			aboveZenith |= actual.getElevation() > 90.0;
+			previous = actual;
+		}
+		assertTrue(aboveZenith);
+	}
+
+	@Test
+	public void testAzimuthOverlap() {
+		RotatorConfiguration config = new RotatorConfiguration();
+		config.setMaxAzimuth(450.0);
+		config.setMaxElevation(180.0);
+		RotatorTrajectory trajectory = new RotatorTrajectory(ephemeris, config);
+		// overlap is preferred
+		assertFalse(trajectory.isFlip());
+		Position previous = null;
+		for (long cur = req.getStartTimeMillis(); cur <= req.getEndTimeMillis(); cur += 1000) {
+			Position actual = trajectory.getPosition(cur);
+			assertTrue(actual.getAzimuth() >= 0.0 && actual.getAzimuth() <= 450.0);
+			assertTrue(actual.getElevation() <= 90.0);
+			assertEquals(0.0, RotatorTrajectory.getPointingError(trajectory.getExpected(cur), actual), 0.0001);
+			if (previous != null) {
+				// no full turn. azimuth changes quickly only near the zenith
+				assertTrue(Math.abs(actual.getAzimuth() - previous.getAzimuth()) < 30.0);
+			}
+			previous = actual;
+		}
+	}
+
+	@Test
+	public void testPointingError() {
+		Position expected = new Position();
+		expected.setAzimuth(10.0);
+		expected.setElevation(45.0);
+		Position actual = new Position();
+		actual.setAzimuth(10.0);
+		actual.setElevation(40.0);
+		assertEquals(5.0, RotatorTrajectory.getPointingError(expected, actual), 0.0001);
+		actual.setAzimuth(370.0);
+		actual.setElevation(45.0);
+		assertEquals(0.0, RotatorTrajectory.getPointingError(expected, actual), 0.0001);
+	}
+
+	@Before
+	public void start() throws Exception {
+		TestConfiguration config = new TestConfiguration(tempFolder);
+		config.setProperty("locaiton.lat", "51.721");
+		config.setProperty("locaiton.lon", "5.030");
+		config.setProperty("scheduler.orekit.path", "./src/test/resources/data/orekit-data");
+		PredictOreKit predict = new PredictOreKit(config);
+
+		req = new ObservationRequest();
+		req.setTle(new Tle(new String[] { "funcube-1", "1 39444U 13066AE  20157.75071106  .00000221  00000-0  33451-4 0  9997", "2 39444  97.5589 158.6491 0056696 309.6463  49.9756 14.82127945351637" }));
+		req.setStartTimeMillis(getTime("2020-06-06 05:50:29"));
+		req.setEndTimeMillis(getTime("2020-06-06 06:01:42"));
+		req.setGroundStation(new GeodeticPoint(FastMath.toRadians(51.721), FastMath.toRadians(5.030), 0.0));
+		ephemeris = predict.getEphemeris(req);
+	}
+
+	private static long getTime(String str) throws ParseException {
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.UK);
+		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return sdf.parse(str).getTime();
+	}
+}
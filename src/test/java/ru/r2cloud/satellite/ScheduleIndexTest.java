@@ -0,0 +1,167 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.device.Device;
+import ru.r2cloud.model.BandFrequency;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Priority;
+import ru.r2cloud.model.Transmitter;
+
+public class ScheduleIndexTest {
+
+	private static final long MINUTE = 60_000L;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final Map<String, List<ObservationRequest>> passesByTransmitterId = new HashMap<>();
+	private Schedule schedule;
+
+	@Test
+	public void testSameAsFullScan() throws Exception {
+		Random random = new Random(0);
+		List<Transmitter> transmitters = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Transmitter transmitter = createTransmitter(String.valueOf(i));
+			List<ObservationRequest> passes = new ArrayList<>();
+			Set<Long> starts = new HashSet<>();
+			for (int j = 0; j < 10; j++) {
+				long start = random.nextInt(48 * 60) * MINUTE;
+				// id is unique within the transmitter
+				if (!starts.add(start)) {
+					continue;
+				}
+				passes.add(create(transmitter.getId(), start, start + (1 + random.nextInt(15)) * MINUTE));
+			}
+			passesByTransmitterId.put(transmitter.getId(), passes);
+			transmitters.add(transmitter);
+		}
+		List<ObservationRequest> all = new ArrayList<>();
+		for (Transmitter cur : transmitters) {
+			all.addAll(schedule.addToSchedule(cur, 0));
+		}
+		// cancel some of them
+		for (int i = 0; i < 20; i++) {
+			ObservationRequest cancelled = all.remove(random.nextInt(all.size()));
+			schedule.cancel(cancelled.getId());
+		}
+		Collections.sort(all, ObservationRequestComparator.INSTANCE);
+		assertEquals(all, schedule.findAll());
+
+		for (int i = 0; i < 100; i++) {
+			long current = random.nextInt(48 * 60) * MINUTE;
+			long end = current + random.nextInt(60) * MINUTE;
+			assertEquals(findObservations(all, current, end), schedule.findObservations(current, end));
+			for (Transmitter cur : transmitters) {
+				assertEquals(findFirst(all, cur.getId(), current), schedule.findFirstByTransmitterId(cur.getId(), current));
+			}
+			assertEquals(findFirstObservations(all, current, 5), schedule.findFirstObservations(current, 5));
+		}
+	}
+
+	@Test
+	public void testMoveObservation() throws Exception {
+		Transmitter transmitter = createTransmitter("1");
+		List<ObservationRequest> passes = new ArrayList<>();
+		passes.add(create(transmitter.getId(), 10 * MINUTE, 20 * MINUTE));
+		passes.add(create(transmitter.getId(), 100 * MINUTE, 110 * MINUTE));
+		passesByTransmitterId.put(transmitter.getId(), passes);
+		List<ObservationRequest> batch = schedule.addToSchedule(transmitter, 0);
+		ObservationRequest moved = schedule.moveObservation(batch.get(1), 50 * MINUTE);
+		assertEquals(moved, schedule.findFirstByTransmitterId(transmitter.getId(), 20 * MINUTE));
+		assertEquals(1, schedule.findObservations(45 * MINUTE, 55 * MINUTE).size());
+		assertNull(schedule.findFirstByTransmitterId(transmitter.getId(), 50 * MINUTE));
+	}
+
+	private static List<ObservationRequest> findObservations(List<ObservationRequest> sorted, long startTimeMillis, long endTimeMillis) {
+		List<ObservationRequest> result = new ArrayList<>();
+		for (ObservationRequest cur : sorted) {
+			if (cur.getStartTimeMillis() > startTimeMillis && cur.getStartTimeMillis() < endTimeMillis) {
+				result.add(cur);
+			} else if (cur.getEndTimeMillis() > startTimeMillis && cur.getEndTimeMillis() < endTimeMillis) {
+				result.add(cur);
+			} else if (cur.getStartTimeMillis() < startTimeMillis && endTimeMillis < cur.getEndTimeMillis()) {
+				result.add(cur);
+			}
+		}
+		return result;
+	}
+
+	private static ObservationRequest findFirst(List<ObservationRequest> sorted, String transmitterId, long current) {
+		for (ObservationRequest cur : sorted) {
+			if (cur.getTransmitterId().equals(transmitterId) && cur.getStartTimeMillis() > current) {
+				return cur;
+			}
+		}
+		return null;
+	}
+
+	private static List<ObservationRequest> findFirstObservations(List<ObservationRequest> sorted, long current, int limit) {
+		List<ObservationRequest> result = new ArrayList<>();
+		Set<String> transmitterIds = new HashSet<>();
+		for (ObservationRequest cur : sorted) {
+			if (result.size() >= limit) {
+				break;
+			}
+			if (cur.getStartTimeMillis() > current && transmitterIds.add(cur.getTransmitterId())) {
+				result.add(cur);
+			}
+		}
+		return result;
+	}
+
+	private static Transmitter createTransmitter(String id) {
+		BandFrequency band = new BandFrequency();
+		band.setCenter(Long.parseLong(id));
+		Transmitter result = new Transmitter();
+		result.setId(id);
+		result.setPriority(Priority.NORMAL);
+		result.setFrequencyBand(band);
+		return result;
+	}
+
+	private static ObservationRequest create(String transmitterId, long start, long end) {
+		ObservationRequest result = new ObservationRequest();
+		result.setId(start + "-" + transmitterId);
+		result.setTransmitterId(transmitterId);
+		result.setStartTimeMillis(start);
+		result.setEndTimeMillis(end);
+		result.setCenterBandFrequency(Long.parseLong(transmitterId));
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		TestConfiguration config = new TestConfiguration(tempFolder);
+		// passes are not predicted
+		ObservationFactory factory = new ObservationFactory(null, null, config) {
+			@Override
+			public List<ObservationRequest> createSchedule(Date date, Transmitter transmitter) {
+				List<ObservationRequest> result = passesByTransmitterId.get(transmitter.getId());
+				if (result == null) {
+					return Collections.emptyList();
+				}
+				return new ArrayList<>(result);
+			}
+		};
+		schedule = new Schedule(new OverlappedTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+	}
+}
@@ -0,0 +1,166 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.device.Device;
+import ru.r2cloud.model.BandFrequency;
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Priority;
+import ru.r2cloud.model.ScheduleSnapshot;
+import ru.r2cloud.model.SdrType;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.model.Transmitter;
+
+public class ScheduleSnapshotDaoTest {
+
+	private static final long MINUTE = 60_000L;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final Map<String, List<ObservationRequest>> passesByTransmitterId = new HashMap<>();
+	private TestConfiguration config;
+	private ObservationFactory factory;
+	private ScheduleSnapshotDao dao;
+
+	@Test
+	public void testSaveAndRestore() throws Exception {
+		Transmitter first = createTransmitter("1");
+		Transmitter second = createTransmitter("2");
+		passesByTransmitterId.put("1", createPasses("1", 10, 100, 200));
+		passesByTransmitterId.put("2", createPasses("2", 107));
+		Schedule schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		schedule.addToSchedule(first, 0);
+
+		ScheduleSnapshot snapshot = new ScheduleSnapshot();
+		snapshot.setLatitude(51.49);
+		snapshot.setLongitude(0.01);
+		List<Transmitter> transmitters = new ArrayList<>();
+		transmitters.add(first);
+		transmitters.add(second);
+		schedule.exportTo(transmitters, snapshot);
+		dao.save("rtlsdr.0", snapshot);
+
+		ScheduleSnapshot loaded = dao.load("rtlsdr.0");
+		assertNotNull(loaded);
+		assertEquals(51.49, loaded.getLatitude(), 0.0);
+		assertEquals(first.getTle(), loaded.getTleByTransmitterId().get("1"));
+		// not scheduled transmitters are not exported
+		assertNull(loaded.getTleByTransmitterId().get("2"));
+		assertEquals(3, loaded.getObservations().size());
+		assertEquals(SdrType.RTLSDR, loaded.getObservations().get(0).getSdrType());
+
+		Schedule restored = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		// completed observation is skipped
+		List<ObservationRequest> result = restored.restore(Collections.singletonList(first), loaded, 30 * MINUTE);
+		assertEquals(2, result.size());
+		assertEquals(100 * MINUTE, result.get(0).getStartTimeMillis());
+		assertEquals(result.get(0).getId(), restored.findFirstByTransmitterId("1", 30 * MINUTE).getId());
+		assertEquals(Long.valueOf(loaded.getScheduledUntilByTransmitterId().get("1")), restored.findScheduledUntil(Collections.singletonList(first)));
+		// time slots are reserved
+		List<ObservationRequest> partial = restored.addToSchedule(second, 30 * MINUTE);
+		assertEquals(1, partial.size());
+		assertEquals(110 * MINUTE, partial.get(0).getStartTimeMillis());
+	}
+
+	@Test
+	public void testRestoreInProgress() throws Exception {
+		Transmitter first = createTransmitter("1");
+		passesByTransmitterId.put("1", createPasses("1", 10, 100));
+		Schedule schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		schedule.addToSchedule(first, 0);
+		ScheduleSnapshot snapshot = new ScheduleSnapshot();
+		schedule.exportTo(Collections.singletonList(first), snapshot);
+
+		Schedule restored = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
+		long current = 15 * MINUTE;
+		List<ObservationRequest> result = restored.restore(Collections.singletonList(first), snapshot, current);
+		assertEquals(2, result.size());
+		ObservationRequest inProgress = result.get(0);
+		assertEquals(current, inProgress.getStartTimeMillis());
+		assertEquals(20 * MINUTE, inProgress.getEndTimeMillis());
+		assertEquals(current + "-1", inProgress.getId());
+		assertEquals(inProgress.getId(), restored.findFirstByTransmitterId("1", current - 1).getId());
+		assertEquals(100 * MINUTE, result.get(1).getStartTimeMillis());
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		config.setProperty("scheduler.snapshot.enabled", false);
+		ScheduleSnapshotDao disabled = new ScheduleSnapshotDao(config);
+		disabled.save("rtlsdr.0", new ScheduleSnapshot());
+		assertNull(disabled.load("rtlsdr.0"));
+	}
+
+	@Test
+	public void testCorrupted() throws Exception {
+		Path basepath = config.getPathFromProperty("scheduler.snapshot.location");
+		Files.createDirectories(basepath);
+		Files.write(basepath.resolve("rtlsdr.0.json"), "{".getBytes(StandardCharsets.UTF_8));
+		assertNull(dao.load("rtlsdr.0"));
+	}
+
+	private static List<ObservationRequest> createPasses(String transmitterId, long... startMinutes) {
+		List<ObservationRequest> result = new ArrayList<>();
+		for (long cur : startMinutes) {
+			ObservationRequest req = new ObservationRequest();
+			req.setId(cur * MINUTE + "-" + transmitterId);
+			req.setTransmitterId(transmitterId);
+			req.setSatelliteId(transmitterId);
+			req.setStartTimeMillis(cur * MINUTE);
+			req.setEndTimeMillis((cur + 10) * MINUTE);
+			req.setSdrType(SdrType.RTLSDR);
+			req.setMaxElevation(45.0);
+			result.add(req);
+		}
+		return result;
+	}
+
+	private static Transmitter createTransmitter(String id) {
+		BandFrequency band = new BandFrequency();
+		band.setCenter(Long.parseLong(id));
+		Transmitter result = new Transmitter();
+		result.setId(id);
+		result.setPriority(Priority.NORMAL);
+		result.setFrequencyBand(band);
+		result.setTle(new Tle(new String[] { "sat" + id, "1 25338U 98030A   17271.51297398  .00000037  00000-0  34305-4 0  9992", "2 25338  98.7817 282.6269 0009465 266.6019  93.4077 14.25818111  7720" }));
+		return result;
+	}
+
+	@Before
+	public void start() throws Exception {
+		config = new TestConfiguration(tempFolder);
+		config.setProperty("scheduler.snapshot.enabled", true);
+		config.setProperty("scheduler.snapshot.location", tempFolder.getRoot().getAbsolutePath() + "/schedule");
+		dao = new ScheduleSnapshotDao(config);
+		// passes are not predicted
+		factory = new ObservationFactory(null, null, config) {
+			@Override
+			public List<ObservationRequest> createSchedule(Date date, Transmitter transmitter) {
+				List<ObservationRequest> result = passesByTransmitterId.get(transmitter.getId());
+				if (result == null) {
+					return Collections.emptyList();
+				}
+				return new ArrayList<>(result);
+			}
+		};
+	}
+}
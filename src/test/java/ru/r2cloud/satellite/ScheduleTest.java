@@ -13,13 +13,16 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
+import org.hipparchus.util.FastMath;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -36,14 +39,19 @@ import ru.r2cloud.TestUtil;
 import ru.r2cloud.cloud.LeoSatDataClient;
 import ru.r2cloud.cloud.SatnogsClient;
 import ru.r2cloud.device.Device;
+import ru.r2cloud.metrics.Metrics;
+import ru.r2cloud.model.BandFrequency;
 import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Priority;
 import ru.r2cloud.model.Satellite;
 import ru.r2cloud.model.SdrType;
 import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.PassCache;
 import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.tle.CelestrakClient;
 import ru.r2cloud.tle.Housekeeping;
 import ru.r2cloud.tle.TleDao;
+import ru.r2cloud.util.DefaultClock;
 import ru.r2cloud.util.ThreadPoolFactoryImpl;
 
 public class ScheduleTest {
@@ -75,6 +83,83 @@ public class ScheduleTest {
 		assertObservations(expected, actual);
 	}
 
+	@Test
+	public void testRescheduleAfterLocationChange() throws Exception {
+		houseKeeping.run();
+		List<Transmitter> transmitters = extractSatellites(readExpected("expected/schedule.txt"), satelliteDao);
+		assertFalse(schedule.createInitialSchedule(transmitters, current).isEmpty());
+		// other config listeners might reschedule before any cache invalidation
+		config.setProperty("locaiton.lat", "56.189");
+		config.setProperty("locaiton.lon", "38.174");
+		schedule.cancelAll();
+		List<ObservationRequest> actual = schedule.createInitialSchedule(transmitters, current);
+		assertFalse(actual.isEmpty());
+		for (ObservationRequest cur : actual) {
+			assertEquals(56.189, FastMath.toDegrees(cur.getGroundStation().getLatitude()), 0.000001);
+			assertEquals(38.174, FastMath.toDegrees(cur.getGroundStation().getLongitude()), 0.000001);
+		}
+	}
+
+	@Test
+	public void testFillGaps() throws Exception {
+		long minute = 60_000L;
+		Map<String, long[]> startsByTransmitter = new HashMap<>();
+		startsByTransmitter.put("1", new long[] { 100, 300 });
+		// conflicts with the first transmitter
+		startsByTransmitter.put("2", new long[] { 100, 200, 300 });
+		List<long[]> windows = new ArrayList<>();
+		ObservationFactory fake = new ObservationFactory(null, null, config) {
+			@Override
+			public List<ObservationRequest> createSchedule(long current, long windowStartMillis, long windowEndMillis, Transmitter transmitter) {
+				synchronized (windows) {
+					windows.add(new long[] { windowStartMillis, windowEndMillis });
+				}
+				List<ObservationRequest> result = new ArrayList<>();
+				for (long cur : startsByTransmitter.get(transmitter.getId())) {
+					if (cur * minute < windowStartMillis || cur * minute >= windowEndMillis) {
+						continue;
+					}
+					ObservationRequest req = new ObservationRequest();
+					req.setId(cur * minute + "-" + transmitter.getId());
+					req.setTransmitterId(transmitter.getId());
+					req.setSatelliteId(transmitter.getId());
+					req.setStartTimeMillis(cur * minute);
+					req.setEndTimeMillis((cur + 10) * minute);
+					result.add(req);
+				}
+				return result;
+			}
+		};
+		Transmitter first = createTransmitter("1");
+		Transmitter second = createTransmitter("2");
+		schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), fake);
+		assertEquals(2, schedule.addToSchedule(first, 0).size());
+		assertEquals(1, schedule.addToSchedule(second, 0).size());
+
+		List<ObservationRequest> freed = schedule.getByTransmitterId("1");
+		schedule.cancelByTransmitter("1");
+		windows.clear();
+		List<ObservationRequest> actual = schedule.fillGaps(Collections.singletonList(second), freed, 0);
+		assertEquals(2, actual.size());
+		assertEquals(100 * minute, actual.get(0).getStartTimeMillis());
+		assertEquals(300 * minute, actual.get(1).getStartTimeMillis());
+		// gaps are predicted separately
+		assertEquals(2, windows.size());
+		for (long[] cur : windows) {
+			assertTrue(cur[1] - cur[0] < 200 * minute);
+		}
+	}
+
+	private static Transmitter createTransmitter(String id) {
+		BandFrequency band = new BandFrequency();
+		band.setCenter(Long.parseLong(id));
+		Transmitter result = new Transmitter();
+		result.setId(id);
+		result.setPriority(Priority.NORMAL);
+		result.setFrequencyBand(band);
+		return result;
+	}
+
 	@Test
 	public void testSequentialTimetableForRotator() throws Exception {
 		houseKeeping.run();
@@ -93,6 +178,50 @@ public class ScheduleTest {
 		assertObservations(expected, actual);
 	}
 
+	@Test
+	public void testRollingHorizon() throws Exception {
+		houseKeeping.run();
+		List<Transmitter> transmitters = extractSatellites(readExpected("expected/schedule.txt"), satelliteDao);
+		List<ObservationRequest> initial = schedule.createInitialSchedule(transmitters, current);
+		ObservationRequest last = initial.get(initial.size() - 1);
+		ScheduledObservation tasks = new ScheduledObservation(null, null, null, null);
+		schedule.assignTasksToSlot(last.getId(), tasks);
+
+		long horizon = current + ObservationFactory.PREDICT_INTERVAL_MILLIS;
+		long next = current + 60 * 60 * 1000;
+		List<ObservationRequest> extended = schedule.extendSchedule(transmitters, next, next + ObservationFactory.PREDICT_INTERVAL_MILLIS);
+		assertFalse(extended.isEmpty());
+		for (ObservationRequest cur : extended) {
+			assertTrue(cur.getEndTimeMillis() > horizon);
+		}
+		assertFalse(tasks.isCancelled());
+		assertNotNull(schedule.findFirstByTransmitterId(last.getTransmitterId(), last.getStartTimeMillis() - 1));
+		// same horizon. nothing to add
+		assertTrue(schedule.extendSchedule(transmitters, next, next + ObservationFactory.PREDICT_INTERVAL_MILLIS).isEmpty());
+
+		List<ObservationRequest> freed = new ArrayList<>(schedule.getByTransmitterId(last.getTransmitterId()));
+		schedule.cancelByTransmitter(last.getTransmitterId());
+		assertTrue(tasks.isCancelled());
+		List<Transmitter> remaining = new ArrayList<>();
+		for (Transmitter cur : transmitters) {
+			if (!cur.getId().equals(last.getTransmitterId())) {
+				remaining.add(cur);
+			}
+		}
+		for (ObservationRequest cur : schedule.fillGaps(remaining, freed, next)) {
+			assertTrue(overlaps(cur, freed));
+		}
+	}
+
+	private static boolean overlaps(ObservationRequest req, List<ObservationRequest> all) {
+		for (ObservationRequest cur : all) {
+			if (cur.getStartTimeMillis() < req.getEndTimeMillis() && req.getStartTimeMillis() < cur.getEndTimeMillis()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testInvalidObservationId() throws Exception {
 		schedule.assignTasksToSlot(UUID.randomUUID().toString(), new ScheduledObservation(null, null, null, null));
@@ -200,7 +329,7 @@ public class ScheduleTest {
 		TleDao tleDao = new TleDao(config);
 		houseKeeping = new Housekeeping(config, satelliteDao, new ThreadPoolFactoryImpl(60000), new CelestrakClient(config), tleDao, satnogsClient, r2cloudClient, null);
 		PredictOreKit predict = new PredictOreKit(config);
-		factory = new ObservationFactory(predict, config);
+		factory = new ObservationFactory(predict, new PassCache(predict, config, new Metrics(config, new DefaultClock())), config);
 		schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
 
 	}
@@ -219,6 +348,9 @@ public class ScheduleTest {
 		if (houseKeeping != null) {
 			houseKeeping.stop();
 		}
+		if (factory != null) {
+			factory.stop();
+		}
 	}
 
 	private static void assertObservations(List<ObservationRequest> expected, List<ObservationRequest> actual) {
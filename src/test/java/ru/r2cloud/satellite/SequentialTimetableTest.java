@@ -7,16 +7,35 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+@RunWith(Parameterized.class)
 public class SequentialTimetableTest {
 
 	private static final SimpleDateFormat SDF = new SimpleDateFormat("HH:mm");
+
+	private final boolean indexed;
+
+	public SequentialTimetableTest(boolean indexed) {
+		this.indexed = indexed;
+	}
+
+	@Parameterized.Parameters(name = "indexed={0}")
+	public static Collection<?> parameters() {
+		return Arrays.asList(new Object[][] { { false }, { true } });
+	}
 	
 	@Test
 	public void testClear() throws Exception {
-		SequentialTimetable table = new SequentialTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10")));
 		table.clear();
 		assertTrue(table.addFully(create("12:00", "12:10")));
@@ -24,7 +43,7 @@ public class SequentialTimetableTest {
 
 	@Test
 	public void testRemove() throws Exception {
-		SequentialTimetable table = new SequentialTimetable(60_000);
+		Timetable table = createTable(60_000);
 		// remove unknown slot
 		assertFalse(table.remove(create("12:00", "12:10")));
 		// remove null slot
@@ -36,7 +55,7 @@ public class SequentialTimetableTest {
 
 	@Test
 	public void testFully() throws Exception {
-		SequentialTimetable table = new SequentialTimetable(60_000);
+		Timetable table = createTable(60_000);
 		assertTrue(table.addFully(create("12:00", "12:10")));
 		assertTrue(table.addFully(create("12:10", "12:20")));
 		assertFalse(table.addFully(create("12:15", "12:25")));
@@ -48,7 +67,7 @@ public class SequentialTimetableTest {
 
 	@Test
 	public void testPartially() throws Exception {
-		SequentialTimetable table = new SequentialTimetable(120_000);
+		Timetable table = createTable(120_000);
 		assertSlot("12:00", "12:10", table.addPartially(create("12:00", "12:10")));
 		assertNull(table.addPartially(create("11:59", "12:09")));
 		assertSlot("11:52", "12:00", table.addPartially(create("11:52", "12:02")));
@@ -70,6 +89,66 @@ public class SequentialTimetableTest {
 		assertSlot("13:12", "13:20", table.addPartially(create("13:12", "13:22")));
 	}
 
+	@Test
+	public void testSameAsReference() throws Exception {
+		for (int seed = 0; seed < 200; seed++) {
+			Random random = new Random(seed);
+			Timetable reference = new SequentialTimetable(240_000);
+			Timetable table = createTable(240_000);
+			List<TimeSlot> added = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String message = "seed: " + seed + " operation: " + i;
+				int operation = random.nextInt(5);
+				if (operation == 0 && !added.isEmpty()) {
+					TimeSlot slot = added.remove(random.nextInt(added.size()));
+					assertEquals(message, reference.remove(slot), table.remove(slot));
+					continue;
+				}
+				long start = random.nextInt(24 * 60) * 60_000L;
+				// partial slots are valid only if the slot is longer than the tolerance
+				TimeSlot slot = createRandom(start, start + (5 + random.nextInt(20)) * 60_000L);
+				if (operation % 2 == 0) {
+					boolean expected = reference.addFully(slot);
+					assertEquals(message, expected, table.addFully(slot));
+					if (expected) {
+						added.add(slot);
+					}
+				} else {
+					TimeSlot expected = reference.addPartially(slot);
+					TimeSlot actual = table.addPartially(createRandom(slot.getStart(), slot.getEnd()));
+					assertSameSlot(message, expected, actual);
+					if (expected != null) {
+						added.add(expected);
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertSameSlot(String message, TimeSlot expected, TimeSlot actual) {
+		if (expected == null) {
+			assertNull(message, actual);
+			return;
+		}
+		assertNotNull(message, actual);
+		assertEquals(message, expected.getStart(), actual.getStart());
+		assertEquals(message, expected.getEnd(), actual.getEnd());
+	}
+
+	private static TimeSlot createRandom(long start, long end) {
+		TimeSlot result = new TimeSlot();
+		result.setStart(start);
+		result.setEnd(end);
+		return result;
+	}
+
+	private Timetable createTable(long partialToleranceMillis) {
+		if (indexed) {
+			return new IndexedSequentialTimetable(partialToleranceMillis);
+		}
+		return new SequentialTimetable(partialToleranceMillis);
+	}
+
 	private static void assertSlot(String start, String end, TimeSlot actual) throws Exception {
 		assertNotNull(actual);
 		assertEquals(SDF.parse(start).getTime(), actual.getStart());
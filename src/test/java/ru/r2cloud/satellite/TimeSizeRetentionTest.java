@@ -1,5 +1,6 @@
 package ru.r2cloud.satellite;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -8,7 +9,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -87,6 +92,63 @@ public class TimeSizeRetentionTest {
 		assertTrue(Files.exists(folder2));
 	}
 
+	@Test
+	public void testReserve() throws Exception {
+		long currentTime = System.currentTimeMillis() - 1 * 60 * 60 * 1000;
+		TimeSizeRetention retention = new TimeSizeRetention(30, tempFolder.getRoot().toPath());
+		Path folder1 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime);
+		Path folder2 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime + 1000);
+		Path folder3 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime + 2000);
+		retention.indexAndCleanup(folder1);
+		retention.indexAndCleanup(folder2);
+		retention.indexAndCleanup(folder3);
+		assertTrue(Files.exists(folder1));
+		assertEquals(20, retention.reserve(15));
+		assertFalse(Files.exists(folder1));
+		assertFalse(Files.exists(folder2));
+		assertTrue(Files.exists(folder3));
+		// reservation exceeds retention size
+		assertEquals(0, retention.reserve(30));
+		assertTrue(Files.exists(folder3));
+		assertEquals(10, retention.free(5));
+		assertFalse(Files.exists(folder3));
+		assertEquals(0, retention.free(5));
+	}
+
+	@Test
+	public void testDeleteInBackground() throws Exception {
+		long currentTime = System.currentTimeMillis() - 1 * 60 * 60 * 1000;
+		List<Runnable> pending = new ArrayList<>();
+		List<Path> deleted = new ArrayList<>();
+		TimeSizeRetention retention = new TimeSizeRetention(22, tempFolder.getRoot().toPath(), new RetentionListener() {
+
+			@Override
+			public void onDelete(Path observation) {
+				deleted.add(observation);
+			}
+		}, new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				pending.add(command);
+			}
+		});
+		Path folder1 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime);
+		Path folder2 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime + 1000);
+		Path folder3 = createObservationFolder(UUID.randomUUID().toString(), 10, currentTime + 2000);
+		retention.indexAndCleanup(folder2);
+		retention.indexAndCleanup(folder1);
+		retention.indexAndCleanup(folder3);
+		// accounted, but not yet deleted
+		assertEquals(Collections.singletonList(folder1), deleted);
+		assertTrue(Files.exists(folder1));
+		assertEquals(1, pending.size());
+		pending.get(0).run();
+		assertFalse(Files.exists(folder1));
+		assertTrue(Files.exists(folder2));
+		assertTrue(Files.exists(folder3));
+	}
+
 	private Path createObservationFolder(String satelliteName, int size, long time) {
 		File baseDir = new File(tempFolder.getRoot(), satelliteName);
 		if (!baseDir.exists() && !baseDir.mkdirs()) {
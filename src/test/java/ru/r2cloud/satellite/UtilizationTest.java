@@ -16,14 +16,17 @@ import ru.r2cloud.CelestrakServer;
 import ru.r2cloud.TestUtil;
 import ru.r2cloud.device.Device;
 import ru.r2cloud.it.util.BaseTest;
+import ru.r2cloud.metrics.Metrics;
 import ru.r2cloud.model.ObservationRequest;
 import ru.r2cloud.model.Satellite;
 import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.PassCache;
 import ru.r2cloud.predict.PredictOreKit;
 import ru.r2cloud.tle.CelestrakClient;
 import ru.r2cloud.tle.Housekeeping;
 import ru.r2cloud.tle.TleDao;
 import ru.r2cloud.util.Configuration;
+import ru.r2cloud.util.DefaultClock;
 import ru.r2cloud.util.ThreadPoolFactoryImpl;
 
 public class UtilizationTest {
@@ -49,22 +52,21 @@ public class UtilizationTest {
 		TleDao tleDao = new TleDao(config);
 		Housekeeping houseKeeping = new Housekeeping(config, satelliteDao, new ThreadPoolFactoryImpl(60000), new CelestrakClient(config), tleDao, null, null, null);
 		houseKeeping.start();
-		ObservationFactory factory = new ObservationFactory(predict, config);
+		ObservationFactory factory = new ObservationFactory(predict, new PassCache(predict, config, new Metrics(config, new DefaultClock())), config);
 
 		List<Transmitter> enabledByDefault = getDefaultEnabled(satelliteDao);
 
-		System.out.println("partial default: ");
+		// greedy round-robin vs weighted interval scheduling
+		System.out.println("partial default: transmitters greedy-utilization value-utilization greedy-elevation value-elevation");
 		enabledByDefault = getDefaultEnabled(satelliteDao);
 		while (!enabledByDefault.isEmpty()) {
-			float utilization = calculatePartialUtilization(factory, enabledByDefault);
-			System.out.println(enabledByDefault.size() + " " + utilization);
+			System.out.println(enabledByDefault.size() + " " + compare(factory, enabledByDefault));
 			enabledByDefault.remove(0);
 		}
-		System.out.println("partial 70cm: ");
+		System.out.println("partial 70cm: transmitters greedy-utilization value-utilization greedy-elevation value-elevation");
 		List<Transmitter> cm = loadFromFile(satelliteDao, "70cm-satellites.txt");
 		while (!cm.isEmpty()) {
-			float utilization = calculatePartialUtilization(factory, cm);
-			System.out.println(cm.size() + " " + utilization);
+			System.out.println(cm.size() + " " + compare(factory, cm));
 			cm.remove(0);
 		}
 		celestrak.stop();
@@ -82,15 +84,22 @@ public class UtilizationTest {
 		return result;
 	}
 
-	private static float calculatePartialUtilization(ObservationFactory factory, List<Transmitter> satellites) throws ParseException {
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+	private static String compare(ObservationFactory factory, List<Transmitter> satellites) throws ParseException {
+		List<ObservationRequest> greedy = simulate(factory, satellites, new GreedyScheduleStrategy());
+		List<ObservationRequest> byDuration = simulate(factory, satellites, new ValueScheduleStrategy(new DurationObservationValue(), true));
+		List<ObservationRequest> byElevation = simulate(factory, satellites, new ValueScheduleStrategy(new ElevationObservationValue(), true));
+		ObservationValue elevation = new ElevationObservationValue();
+		return calculatePartialUtilization(greedy) + " " + calculatePartialUtilization(byDuration) + " " + calculateTotalValue(greedy, elevation) + " " + calculateTotalValue(byElevation, elevation);
+	}
 
-		long start = sdf.parse("2020-09-27 11:13:00").getTime();
-		long end = sdf.parse("2020-09-29 11:13:00").getTime(); // +2 days
+	private static List<ObservationRequest> simulate(ObservationFactory factory, List<Transmitter> satellites, ScheduleStrategy strategy) throws ParseException {
+		Schedule schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory, strategy);
+		return schedule.createInitialSchedule(satellites, getStart());
+	}
 
-		Schedule schedule = new Schedule(new SequentialTimetable(Device.PARTIAL_TOLERANCE_MILLIS), factory);
-		List<ObservationRequest> happened = schedule.createInitialSchedule(satellites, start);
+	private static float calculatePartialUtilization(List<ObservationRequest> happened) throws ParseException {
+		long start = getStart();
+		long end = start + 2 * 24 * 60 * 60 * 1000L; // +2 days
 
 		long total = end - start;
 		long utilized = 0;
@@ -100,6 +109,20 @@ public class UtilizationTest {
 		return (utilized / (float) total);
 	}
 
+	private static double calculateTotalValue(List<ObservationRequest> happened, ObservationValue value) {
+		double result = 0.0;
+		for (ObservationRequest cur : happened) {
+			result += value.getValue(cur);
+		}
+		return result;
+	}
+
+	private static long getStart() throws ParseException {
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return sdf.parse("2020-09-27 11:13:00").getTime();
+	}
+
 	private static List<Transmitter> getDefaultEnabled(SatelliteDao dao) {
 		List<Transmitter> result = new ArrayList<>();
 		for (Satellite cur : dao.findEnabled()) {
@@ -0,0 +1,204 @@
+package ru.r2cloud.satellite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ru.r2cloud.model.ObservationRequest;
+import ru.r2cloud.model.Priority;
+import ru.r2cloud.model.Transmitter;
+
+public class ValueScheduleStrategyTest {
+
+	private static final SimpleDateFormat SDF = new SimpleDateFormat("HH:mm");
+
+	@Test
+	public void testPreferLongerPass() throws Exception {
+		List<Transmitter> transmitters = new ArrayList<>();
+		Map<String, List<ObservationRequest>> passes = new HashMap<>();
+		add(transmitters, passes, create("1", "12:00", "12:10"));
+		add(transmitters, passes, create("2", "12:05", "12:28"));
+		add(transmitters, passes, create("3", "12:20", "12:30"));
+
+		// greedy reserves the first pass of each transmitter
+		Timetable greedyTable = new SequentialTimetable(60_000);
+		List<ObservationRequest> greedy = new GreedyScheduleStrategy().schedule(transmitters, copy(passes), greedyTable, new HashMap<>());
+		assertEquals("1", greedy.get(0).getTransmitterId());
+
+		Map<String, TimeSlot> slots = new HashMap<>();
+		List<ObservationRequest> result = new ValueScheduleStrategy(new DurationObservationValue(), true).schedule(transmitters, passes, new SequentialTimetable(60_000), slots);
+		assertEquals("2", result.get(0).getTransmitterId());
+		assertEquals(SDF.parse("12:05").getTime(), result.get(0).getStartTimeMillis());
+		assertEquals(SDF.parse("12:28").getTime(), result.get(0).getEndTimeMillis());
+		assertTrue(slots.containsKey(result.get(0).getId()));
+		assertTrue(passes.get("2").isEmpty());
+	}
+
+	@Test
+	public void testSkipReservedSlots() throws Exception {
+		List<Transmitter> transmitters = new ArrayList<>();
+		Map<String, List<ObservationRequest>> passes = new HashMap<>();
+		add(transmitters, passes, create("1", "12:00", "12:10"));
+		add(transmitters, passes, create("2", "12:05", "12:28"));
+		add(transmitters, passes, create("3", "12:20", "12:30"));
+		Timetable table = new SequentialTimetable(60_000);
+		TimeSlot reserved = new TimeSlot();
+		reserved.setStart(SDF.parse("12:12").getTime());
+		reserved.setEnd(SDF.parse("12:18").getTime());
+		assertTrue(table.addFully(reserved));
+
+		List<ObservationRequest> result = new ValueScheduleStrategy(new DurationObservationValue(), true).schedule(transmitters, passes, table, new HashMap<>());
+		// the longest pass overlaps already reserved slot
+		assertEquals(2, result.size());
+		assertEquals("1", result.get(0).getTransmitterId());
+		assertEquals("3", result.get(1).getTransmitterId());
+		assertEquals(1, passes.get("2").size());
+	}
+
+	@Test
+	public void testTouchingPasses() throws Exception {
+		assertTouchingPasses(new SequentialTimetable(60_000));
+		assertTouchingPasses(new IndexedSequentialTimetable(60_000));
+	}
+
+	private static void assertTouchingPasses(Timetable table) throws Exception {
+		List<Transmitter> transmitters = new ArrayList<>();
+		Map<String, List<ObservationRequest>> passes = new HashMap<>();
+		add(transmitters, passes, create("1", "12:00", "12:10"));
+		add(transmitters, passes, create("2", "12:10", "12:20"));
+		Map<String, TimeSlot> slots = new HashMap<>();
+		List<ObservationRequest> result = new ValueScheduleStrategy(new DurationObservationValue(), true).schedule(transmitters, passes, table, slots);
+		// both are selected and both are reserved fully
+		assertEquals(2, result.size());
+		assertEquals("1", result.get(0).getTransmitterId());
+		assertEquals("2", result.get(1).getTransmitterId());
+		assertEquals(2, slots.size());
+		assertTrue(passes.get("1").isEmpty());
+		assertTrue(passes.get("2").isEmpty());
+	}
+
+	@Test
+	public void testOverlappedByValue() throws Exception {
+		List<Transmitter> transmitters = new ArrayList<>();
+		Map<String, List<ObservationRequest>> passes = new HashMap<>();
+		ObservationRequest low = create("1", "12:00", "12:10");
+		low.setCenterBandFrequency(1);
+		low.setMaxElevation(20);
+		ObservationRequest high = create("2", "12:05", "12:15");
+		high.setCenterBandFrequency(2);
+		high.setMaxElevation(80);
+		add(transmitters, passes, low);
+		add(transmitters, passes, high);
+		List<ObservationRequest> result = new ValueScheduleStrategy(new ElevationObservationValue(), false).schedule(transmitters, passes, new OverlappedTimetable(60_000), new HashMap<>());
+		assertEquals("2", result.get(0).getTransmitterId());
+		assertEquals(SDF.parse("12:05").getTime(), result.get(0).getStartTimeMillis());
+	}
+
+	@Test
+	public void testSameAsBruteForce() throws Exception {
+		ValueScheduleStrategy strategy = new ValueScheduleStrategy(new DurationObservationValue(), true);
+		for (int seed = 0; seed < 200; seed++) {
+			Random random = new Random(seed);
+			List<ObservationRequest> candidates = new ArrayList<>();
+			int n = 1 + random.nextInt(12);
+			for (int i = 0; i < n; i++) {
+				long start = random.nextInt(6 * 60) * 60_000L;
+				ObservationRequest req = new ObservationRequest();
+				req.setId(String.valueOf(i));
+				req.setTransmitterId(String.valueOf(i));
+				req.setStartTimeMillis(start);
+				req.setEndTimeMillis(start + (1 + random.nextInt(30)) * 60_000L);
+				candidates.add(req);
+			}
+			List<ObservationRequest> selected = strategy.selectNonOverlapping(candidates);
+			for (int i = 1; i < selected.size(); i++) {
+				assertTrue(selected.get(i - 1).getEndTimeMillis() <= selected.get(i).getStartTimeMillis());
+			}
+			assertEquals("seed: " + seed, findMaxDuration(candidates), getDuration(selected));
+		}
+	}
+
+	private static long findMaxDuration(List<ObservationRequest> candidates) {
+		long result = 0;
+		for (int mask = 0; mask < (1 << candidates.size()); mask++) {
+			List<ObservationRequest> subset = new ArrayList<>();
+			for (int i = 0; i < candidates.size(); i++) {
+				if ((mask & (1 << i)) != 0) {
+					subset.add(candidates.get(i));
+				}
+			}
+			if (overlaps(subset)) {
+				continue;
+			}
+			result = Math.max(result, getDuration(subset));
+		}
+		return result;
+	}
+
+	private static boolean overlaps(List<ObservationRequest> subset) {
+		for (int i = 0; i < subset.size(); i++) {
+			for (int j = i + 1; j < subset.size(); j++) {
+				ObservationRequest first = subset.get(i);
+				ObservationRequest second = subset.get(j);
+				if (first.getStartTimeMillis() < second.getEndTimeMillis() && second.getStartTimeMillis() < first.getEndTimeMillis()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long getDuration(List<ObservationRequest> requests) {
+		long result = 0;
+		for (ObservationRequest cur : requests) {
+			result += cur.getEndTimeMillis() - cur.getStartTimeMillis();
+		}
+		return result;
+	}
+
+	private static Map<String, List<ObservationRequest>> copy(Map<String, List<ObservationRequest>> passes) {
+		Map<String, List<ObservationRequest>> result = new HashMap<>();
+		for (Map.Entry<String, List<ObservationRequest>> cur : passes.entrySet()) {
+			List<ObservationRequest> curList = new ArrayList<>();
+			for (ObservationRequest curReq : cur.getValue()) {
+				ObservationRequest copy = new ObservationRequest();
+				copy.setId(curReq.getId());
+				copy.setTransmitterId(curReq.getTransmitterId());
+				copy.setStartTimeMillis(curReq.getStartTimeMillis());
+				copy.setEndTimeMillis(curReq.getEndTimeMillis());
+				curList.add(copy);
+			}
+			result.put(cur.getKey(), curList);
+		}
+		return result;
+	}
+
+	private static void add(List<Transmitter> transmitters, Map<String, List<ObservationRequest>> passes, ObservationRequest req) {
+		Transmitter transmitter = new Transmitter();
+		transmitter.setId(req.getTransmitterId());
+		transmitter.setPriority(Priority.NORMAL);
+		transmitters.add(transmitter);
+		List<ObservationRequest> curList = new ArrayList<>();
+		curList.add(req);
+		passes.put(transmitter.getId(), curList);
+	}
+
+	private static ObservationRequest create(String transmitterId, String start, String end) throws Exception {
+		ObservationRequest result = new ObservationRequest();
+		synchronized (SDF) {
+			result.setStartTimeMillis(SDF.parse(start).getTime());
+			result.setEndTimeMillis(SDF.parse(end).getTime());
+		}
+		result.setId(result.getStartTimeMillis() + "-" + transmitterId);
+		result.setTransmitterId(transmitterId);
+		return result;
+	}
+}
@@ -1,7 +1,9 @@
 package ru.r2cloud.tle;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -76,6 +78,34 @@ public class HousekeepingTest {
 		assertNotNull(sat.getTle());
 	}
 
+	@Test
+	public void testNotifyTleChanges() throws Exception {
+		config.setProperty("r2cloud.apiKey", UUID.randomUUID().toString());
+		dao = new Housekeeping(config, satelliteDao, threadPool, celestrak, tleDao, null, leosatdata, null);
+		List<Satellite> updated = new ArrayList<>();
+		dao.subscribe(new TleListener() {
+
+			@Override
+			public void onTleUpdated(List<Satellite> satellites) {
+				updated.addAll(satellites);
+			}
+		});
+		// initial load is not a change
+		dao.run();
+		assertTrue(updated.isEmpty());
+
+		// nothing changed
+		dao.run();
+		assertTrue(updated.isEmpty());
+
+		String id = "00001";
+		satelliteDao.saveLeosatdata(Collections.singletonList(create(id)), System.currentTimeMillis());
+		satelliteDao.reindex();
+		dao.run();
+		assertEquals(1, updated.size());
+		assertEquals(id, updated.get(0).getId());
+	}
+
 	@Test
 	public void testReloadFailure() {
 		String satelliteId = "40069";
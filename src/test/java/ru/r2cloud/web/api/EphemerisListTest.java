@@ -0,0 +1,151 @@
+package ru.r2cloud.web.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+
+import fi.iki.elonen.NanoHTTPD.IHTTPSession;
+import fi.iki.elonen.NanoHTTPD.Response;
+import ru.r2cloud.FixedClock;
+import ru.r2cloud.TestConfiguration;
+import ru.r2cloud.device.DeviceManager;
+import ru.r2cloud.model.Satellite;
+import ru.r2cloud.model.Tle;
+import ru.r2cloud.model.Transmitter;
+import ru.r2cloud.predict.EphemerisSnapshot;
+import ru.r2cloud.predict.PredictOreKit;
+import ru.r2cloud.satellite.EphemerisSnapshotService;
+import ru.r2cloud.satellite.SatelliteDao;
+import ru.r2cloud.util.ThreadPoolFactoryImpl;
+import ru.r2cloud.web.ModelAndView;
+
+public class EphemerisListTest {
+
+	private static final long CURRENT = 1591422629123L;
+	private static final long STEP = 5000;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private EphemerisSnapshotService service;
+	private EphemerisList controller;
+	private Map<String, List<String>> parameters;
+	private IHTTPSession session;
+
+	@Test
+	public void testInvalidParameters() {
+		parameters.put("from", Collections.singletonList("abc"));
+		parameters.put("step", Collections.singletonList("0"));
+		JsonObject errors = assertBadRequest(controller.doGet(session));
+		assertEquals("not an integer", errors.getString("from", null));
+		assertEquals(Messages.CANNOT_BE_NEGATIVE, errors.getString("step", null));
+
+		parameters.clear();
+		parameters.put("from", Collections.singletonList(String.valueOf(CURRENT)));
+		parameters.put("to", Collections.singletonList(String.valueOf(CURRENT - 1)));
+		errors = assertBadRequest(controller.doGet(session));
+		assertEquals("cannot be less than from", errors.getString("to", null));
+	}
+
+	@Test
+	public void testDefaultsToCurrent() {
+		JsonObject actual = assertOk(controller.doGet(session));
+		assertEquals(CURRENT, actual.getLong("from", 0));
+		assertEquals(CURRENT, actual.getLong("to", 0));
+		JsonArray satellites = actual.get("satellites").asArray();
+		assertEquals(1, satellites.size());
+		JsonObject satellite = satellites.get(0).asObject();
+		assertEquals("39444", satellite.getString("id", null));
+		assertEquals(145935000, satellite.getLong("frequency", 0));
+		assertEquals(1, satellite.get("positions").asArray().size());
+	}
+
+	@Test
+	public void testClampToSnapshot() {
+		EphemerisSnapshot snapshot = service.getSnapshot();
+		parameters.put("from", Collections.singletonList(String.valueOf(snapshot.getStartMillis() - 60000)));
+		parameters.put("to", Collections.singletonList(String.valueOf(snapshot.getEndMillis() + 60000)));
+		parameters.put("step", Collections.singletonList("1"));
+		JsonObject actual = assertOk(controller.doGet(session));
+		assertEquals(snapshot.getStartMillis(), actual.getLong("from", 0));
+		assertEquals(snapshot.getEndMillis(), actual.getLong("to", 0));
+		// step cannot be less than the snapshot resolution
+		JsonArray positions = actual.get("satellites").asArray().get(0).asObject().get("positions").asArray();
+		assertEquals((snapshot.getEndMillis() - snapshot.getStartMillis()) / STEP + 1, positions.size());
+		assertEquals(snapshot.getStartMillis() + STEP, positions.get(1).asObject().getLong("time", 0));
+	}
+
+	@Test
+	public void testOutsideOfSnapshot() {
+		EphemerisSnapshot snapshot = service.getSnapshot();
+		parameters.put("from", Collections.singletonList(String.valueOf(snapshot.getEndMillis() + 1)));
+		JsonObject errors = assertBadRequest(controller.doGet(session));
+		assertEquals(1, errors.size());
+		assertNotNull(errors.get("from"));
+
+		parameters.clear();
+		parameters.put("from", Collections.singletonList(String.valueOf(snapshot.getStartMillis() - 60000)));
+		parameters.put("to", Collections.singletonList(String.valueOf(snapshot.getStartMillis() - 1)));
+		assertBadRequest(controller.doGet(session));
+	}
+
+	private static JsonObject assertOk(ModelAndView result) {
+		assertNull(result.getStatus());
+		return Json.parse(result.getData()).asObject();
+	}
+
+	private static JsonObject assertBadRequest(ModelAndView result) {
+		assertEquals(Response.Status.BAD_REQUEST, result.getStatus());
+		return Json.parse(result.getData()).asObject().get("errors").asObject();
+	}
+
+	@Before
+	public void start() throws Exception {
+		TestConfiguration config = new TestConfiguration(tempFolder);
+		config.setProperty("locaiton.lat", "51.721");
+		config.setProperty("locaiton.lon", "5.030");
+		config.setProperty("scheduler.orekit.path", "./src/test/resources/data/orekit-data");
+		config.setProperty("ephemeris.snapshot.stepMillis", String.valueOf(STEP));
+
+		Transmitter transmitter = new Transmitter();
+		transmitter.setId("39444-0");
+		transmitter.setFrequency(145935000);
+		Satellite satellite = new Satellite();
+		satellite.setId("39444");
+		satellite.setName("funcube-1");
+		satellite.setEnabled(true);
+		satellite.setTle(new Tle(new String[] { "funcube-1", "1 39444U 13066AE  20157.75071106  .00000221  00000-0  33451-4 0  9997", "2 39444  97.5589 158.6491 0056696 309.6463  49.9756 14.82127945351637" }));
+		satellite.setTransmitters(Collections.singletonList(transmitter));
+		List<Satellite> satellites = new ArrayList<>();
+		satellites.add(satellite);
+		SatelliteDao satelliteDao = mock(SatelliteDao.class);
+		when(satelliteDao.findEnabled()).thenReturn(satellites);
+		when(satelliteDao.findById("39444")).thenReturn(satellite);
+
+		FixedClock clock = new FixedClock(CURRENT);
+		service = new EphemerisSnapshotService(config, satelliteDao, new PredictOreKit(config), new ThreadPoolFactoryImpl(10000), clock);
+		service.refresh(CURRENT);
+		controller = new EphemerisList(service, satelliteDao, mock(DeviceManager.class), clock);
+
+		parameters = new HashMap<>();
+		session = mock(IHTTPSession.class);
+		when(session.getParameters()).thenReturn(parameters);
+	}
+}